@@ -0,0 +1,388 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * 已生成压缩包的本地磁盘缓存
+ * <p>
+ * 以内容版本（由调用方根据打包内容计算）为键，同一内容的压缩包只生成一次，之后作为普通文件按区间读取。
+ * 内容变化后键随之变化，旧的压缩包不再被访问，容量满时按最久未访问淘汰。
+ * 未命中时压缩包边生成边输出给请求方，同时写入缓存文件，生成完毕后登记；
+ * 同一键已有请求在生成时，其余请求直接打包输出，不等待也不重复写入缓存。
+ * <p>
+ * 缓存文件位于缓存目录下的专用子目录，并按缓存命名规则命名，启动时只清除符合规则的文件；
+ * 被淘汰的压缩包在最后一个读取方关闭后才删除（Windows 不允许删除已打开的文件）。
+ */
+public class ZipArchiveCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ZipArchiveCache.class);
+
+    private static final String SUBDIRECTORY = "zip-archives";
+    /**
+     * 缓存文件（内容版本+随机数.zip）及写入中的临时文件（内容版本+随机数.tmp）的命名规则
+     */
+    private static final Pattern CACHE_FILE_NAME = Pattern.compile("[0-9a-f]{32}\\d+\\.(zip|tmp)");
+
+    /**
+     * 将压缩包写入输出流
+     */
+    @FunctionalInterface
+    public interface ArchiveWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSize;
+    private final long maxFileSize;
+
+    private final LinkedHashMap<String, Artifact> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param enabled     是否启用
+     * @param directory   缓存目录，启动时清除其中上次运行遗留的缓存文件
+     * @param maxSize     缓存总容量（字节）
+     * @param maxFileSize 单个压缩包允许缓存的最大长度（字节）
+     */
+    public ZipArchiveCache(boolean enabled, Path directory, long maxSize, long maxFileSize) throws IOException {
+        this.enabled = enabled;
+        this.directory = directory.resolve(SUBDIRECTORY);
+        this.maxSize = maxSize;
+        this.maxFileSize = Math.min(maxFileSize, maxSize);
+        if (enabled) {
+            Files.createDirectories(this.directory);
+            removeStaleFiles();
+        }
+    }
+
+    /**
+     * 只删除按缓存命名规则生成的文件，缓存目录被误配置为共享目录时不影响其他文件
+     */
+    private void removeStaleFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                if (Files.isRegularFile(path) && CACHE_FILE_NAME.matcher(path.getFileName().toString()).matches()) {
+                    deleteQuietly(path);
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取已缓存的压缩包
+     *
+     * @param key 内容版本（32位十六进制摘要）
+     * @return 压缩包；缓存未启用或未命中时返回 null
+     */
+    public Artifact get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (this) {
+            Artifact artifact = entries.get(key);
+            if (artifact == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return artifact;
+        }
+    }
+
+    /**
+     * 生成压缩包并写入输出流，同时写入缓存文件，生成完毕后登记；
+     * 缓存未启用、预计长度超出上限或同一键正在生成时只写入输出流
+     *
+     * @param key           内容版本（32位十六进制摘要）
+     * @param estimatedSize 预计长度（打包文件原始长度之和）
+     * @param out           输出流，不关闭
+     * @param writer        压缩包生成方法
+     * @throws IOException 生成或写入输出流失败；写入缓存文件失败时只放弃缓存，不影响输出
+     */
+    public void write(String key, long estimatedSize, OutputStream out, ArchiveWriter writer) throws IOException {
+        if (!enabled || estimatedSize > maxFileSize || !building.add(key)) {
+            writer.write(out);
+            return;
+        }
+        try {
+            if (peek(key) != null) {
+                writer.write(out);
+                return;
+            }
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            CachingOutputStream caching = new CachingOutputStream(out, temp, maxFileSize);
+            try {
+                writer.write(caching);
+            } catch (IOException | RuntimeException exp) {
+                caching.close();
+                deleteQuietly(temp);
+                throw exp;
+            }
+            caching.close();
+            long length = caching.getCachedLength();
+            if (length < 0) {
+                log.debug("压缩包超出缓存上限或写入缓存失败，不予缓存：{}", key);
+                deleteQuietly(temp);
+                return;
+            }
+            admit(key, temp, length);
+        } finally {
+            building.remove(key);
+        }
+    }
+
+    /**
+     * 缓存命中、未命中及淘汰统计
+     *
+     * @return 统计结果
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("entries", entries.size());
+        statistics.put("size", size);
+        statistics.put("maxSize", maxSize);
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        statistics.put("evictions", evictions);
+        statistics.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return statistics;
+    }
+
+    private synchronized Artifact peek(String key) {
+        return entries.get(key);
+    }
+
+    private void admit(String key, Path temp, long length) {
+        String name = temp.getFileName().toString();
+        Path path = temp.resolveSibling(name.substring(0, name.length() - ".tmp".length()) + ".zip");
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exp) {
+            log.warn("登记压缩包缓存失败：{}", path, exp);
+            deleteQuietly(temp);
+            return;
+        }
+        List<Artifact> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Artifact> iterator = entries.values().iterator();
+            while (size + length > maxSize && iterator.hasNext()) {
+                Artifact victim = iterator.next();
+                iterator.remove();
+                size -= victim.length;
+                evictions++;
+                evicted.add(victim);
+            }
+            entries.put(key, new Artifact(path, length, "\"" + key + "\""));
+            size += length;
+        }
+        evicted.forEach(Artifact::evict);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException exp) {
+            log.warn("删除压缩包缓存文件失败：{}", path, exp);
+        }
+    }
+
+    /**
+     * 同时写入输出流及缓存文件：输出流的异常照常抛出；
+     * 缓存文件写入失败或超出长度上限时关闭并放弃缓存文件，继续写入输出流
+     */
+    private static class CachingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long maxLength;
+        private OutputStream cache;
+        private long length = 0;
+
+        CachingOutputStream(OutputStream out, Path path, long maxLength) throws IOException {
+            this.out = out;
+            this.cache = Files.newOutputStream(path);
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (cache != null) {
+                length += len;
+                try {
+                    if (length > maxLength) {
+                        abandon();
+                    } else {
+                        cache.write(b, off, len);
+                    }
+                } catch (IOException exp) {
+                    log.warn("写入压缩包缓存文件失败", exp);
+                    abandon();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * 写入缓存文件的长度，缓存已放弃时为 -1
+         */
+        long getCachedLength() {
+            return cache == null ? -1 : length;
+        }
+
+        private void abandon() {
+            try {
+                cache.close();
+            } catch (IOException exp) {
+                // 缓存文件随后删除
+            }
+            cache = null;
+        }
+
+        /**
+         * 只关闭缓存文件，输出流由调用方负责关闭
+         */
+        @Override
+        public void close() {
+            if (cache != null) {
+                try {
+                    cache.close();
+                } catch (IOException exp) {
+                    log.warn("写入压缩包缓存文件失败", exp);
+                    cache = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 已缓存的压缩包
+     */
+    public static class Artifact {
+        private final Path path;
+        private final long length;
+        private final String eTag;
+
+        private int readers = 0;
+        private boolean evicted = false;
+        private boolean deleted = false;
+
+        Artifact(Path path, long length, String eTag) {
+            this.path = path;
+            this.length = length;
+            this.eTag = eTag;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * 读取压缩包指定区间，输入流关闭前压缩包不会被删除
+         *
+         * @param start 起始位置
+         * @param end   结束位置（包含）
+         * @throws FileNotFoundException 压缩包已被淘汰删除
+         */
+        public InputStream open(long start, long end) throws IOException {
+            acquire();
+            AtomicBoolean released = new AtomicBoolean();
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ).position(start);
+                return new BoundedInputStream(Channels.newInputStream(channel), end - start + 1) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                release();
+                            }
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException exp) {
+                release();
+                throw exp;
+            }
+        }
+
+        private synchronized void acquire() throws FileNotFoundException {
+            if (deleted) {
+                throw new FileNotFoundException("压缩包缓存已淘汰：" + path);
+            }
+            readers++;
+        }
+
+        private void release() {
+            boolean delete;
+            synchronized (this) {
+                readers--;
+                delete = evicted && readers == 0 && !deleted;
+                deleted |= delete;
+            }
+            if (delete) {
+                deleteQuietly(path);
+            }
+        }
+
+        /**
+         * 淘汰：无读取方时立即删除，否则由最后一个读取方关闭时删除
+         */
+        private void evict() {
+            boolean delete;
+            synchronized (this) {
+                evicted = true;
+                delete = readers == 0 && !deleted;
+                deleted |= delete;
+            }
+            if (delete) {
+                deleteQuietly(path);
+            }
+        }
+    }
+}
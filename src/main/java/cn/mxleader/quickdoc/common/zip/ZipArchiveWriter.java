@@ -0,0 +1,378 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * ZIP归档写入器：由调用方提供每个条目已处理好的数据（STORED原文或DEFLATED压缩数据）及其CRC32与长度，
+ * 写入器只负责输出本地文件头、条目数据、中央目录及结束记录，条目超过4GB或总量超出限制时使用Zip64扩展。
+ * <p>
+ * 与 {@link java.util.zip.ZipOutputStream} 不同，条目数据可在其他线程预先压缩，写入时不再重复计算。
+ * 条目数据通过本对象的 write 方法写入；finish 后不关闭下层输出流。
+ * <p>
+ * 写入前CRC32及长度未知的条目使用数据描述符（通用标志第3位），在条目数据之后补写CRC32及长度。
+ */
+public class ZipArchiveWriter extends OutputStream {
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x0008;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private final OutputStream out;
+    private final List<Entry> entries = new ArrayList<>();
+    private final byte[] scratch = new byte[8];
+
+    private long offset = 0;
+    private Entry current;
+    private long remaining;
+    private boolean finished = false;
+
+    public ZipArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 写入条目的本地文件头，之后须通过 write 方法写入 compressedSize 字节的条目数据
+     *
+     * @param name           条目名称（含路径）
+     * @param lastModified   最后修改时间（毫秒）
+     * @param method         存储方式：STORED 或 DEFLATED
+     * @param crc            未压缩内容的CRC32
+     * @param compressedSize 条目数据长度
+     * @param size           未压缩内容长度
+     * @throws IOException
+     */
+    public void putEntry(String name, long lastModified, int method, long crc,
+                         long compressedSize, long size) throws IOException {
+        if (finished) {
+            throw new IOException("ZIP归档已结束");
+        }
+        closeEntry();
+        current = new Entry(name.getBytes(StandardCharsets.UTF_8), dosTime(lastModified), UTF8_FLAG, method, crc,
+                compressedSize, size, offset);
+        boolean zip64 = current.needsZip64Sizes();
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(zip64 ? ZIP64_VERSION : VERSION);
+        writeShort(current.flags);
+        writeShort(method);
+        writeInt(current.dosTime);
+        writeInt(crc);
+        writeInt(zip64 ? ZIP64_MAGIC : compressedSize);
+        writeInt(zip64 ? ZIP64_MAGIC : size);
+        writeShort(current.name.length);
+        writeShort(zip64 ? 20 : 0);
+        writeBytes(current.name, 0, current.name.length);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(16);
+            writeLong(size);
+            writeLong(compressedSize);
+        }
+        remaining = compressedSize;
+    }
+
+    /**
+     * 写入CRC32及长度未知的条目的本地文件头，之后通过 write 方法写入条目数据，
+     * 写完后调用 {@link #closeEntry(long, long)} 补写数据描述符。
+     * <p>
+     * 条目长度达到4GB时数据描述符中的长度为8字节（与JDK的ZipInputStream按实际长度判断的方式一致）。
+     *
+     * @param name         条目名称（含路径）
+     * @param lastModified 最后修改时间（毫秒）
+     * @param method       存储方式：STORED 或 DEFLATED
+     * @throws IOException
+     */
+    public void putEntry(String name, long lastModified, int method) throws IOException {
+        if (finished) {
+            throw new IOException("ZIP归档已结束");
+        }
+        closeEntry();
+        current = new Entry(name.getBytes(StandardCharsets.UTF_8), dosTime(lastModified),
+                UTF8_FLAG | DATA_DESCRIPTOR_FLAG, method, 0, 0, 0, offset);
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(current.flags);
+        writeShort(method);
+        writeInt(current.dosTime);
+        writeInt(0);
+        writeInt(0);
+        writeInt(0);
+        writeShort(current.name.length);
+        writeShort(0);
+        writeBytes(current.name, 0, current.name.length);
+        current.dataOffset = offset;
+        remaining = Long.MAX_VALUE;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        scratch[0] = (byte) b;
+        write(scratch, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (current == null || len > remaining) {
+            throw new IOException("条目数据超出声明的长度");
+        }
+        writeBytes(b, off, len);
+        remaining -= len;
+    }
+
+    /**
+     * 跳过条目数据：只推进偏移量而不输出，用于预先计算归档布局，条目数据由调用方另行提供
+     *
+     * @param length 跳过的字节数
+     * @throws IOException
+     */
+    public void skip(long length) throws IOException {
+        if (current == null || length > remaining) {
+            throw new IOException("条目数据超出声明的长度");
+        }
+        offset += length;
+        remaining -= length;
+    }
+
+    /**
+     * 结束当前条目，已写入的数据须与声明的长度一致
+     */
+    public void closeEntry() throws IOException {
+        if (current != null) {
+            if (current.hasDataDescriptor()) {
+                throw new IOException("条目缺少CRC32及长度：" + new String(current.name, StandardCharsets.UTF_8));
+            }
+            if (remaining != 0) {
+                throw new IOException("条目数据不完整：" + new String(current.name, StandardCharsets.UTF_8));
+            }
+            entries.add(current);
+            current = null;
+        }
+    }
+
+    /**
+     * 结束使用数据描述符的条目，补写CRC32及长度
+     *
+     * @param crc  未压缩内容的CRC32
+     * @param size 未压缩内容长度
+     * @throws IOException
+     */
+    public void closeEntry(long crc, long size) throws IOException {
+        if (current == null || !current.hasDataDescriptor()) {
+            throw new IOException("当前条目未使用数据描述符");
+        }
+        long compressedSize = offset - current.dataOffset;
+        if (current.method == STORED && compressedSize != size) {
+            throw new IOException("条目数据不完整：" + new String(current.name, StandardCharsets.UTF_8));
+        }
+        current.crc = crc;
+        current.compressedSize = compressedSize;
+        current.size = size;
+        byte[] descriptor = dataDescriptor(crc, compressedSize, size);
+        writeBytes(descriptor, 0, descriptor.length);
+        entries.add(current);
+        current = null;
+    }
+
+    /**
+     * 数据描述符：签名、CRC32、条目数据长度及未压缩长度，长度达到4GB时为8字节
+     */
+    public static byte[] dataDescriptor(long crc, long compressedSize, long size) {
+        boolean zip64 = size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC;
+        byte[] descriptor = new byte[zip64 ? 24 : 16];
+        putLittleEndian(descriptor, 0, DATA_DESCRIPTOR_SIGNATURE, 4);
+        putLittleEndian(descriptor, 4, crc, 4);
+        putLittleEndian(descriptor, 8, compressedSize, zip64 ? 8 : 4);
+        putLittleEndian(descriptor, zip64 ? 16 : 12, size, zip64 ? 8 : 4);
+        return descriptor;
+    }
+
+    private static void putLittleEndian(byte[] bytes, int offset, long value, int length) {
+        for (int i = 0; i < length; i++) {
+            bytes[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    /**
+     * 写入中央目录及结束记录，不关闭下层输出流
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        closeEntry();
+        long centralOffset = offset;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralSize = offset - centralOffset;
+        boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT
+                || centralOffset >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndOffset = offset;
+            writeInt(ZIP64_END_SIGNATURE);
+            writeLong(44);
+            writeShort(ZIP64_VERSION);
+            writeShort(ZIP64_VERSION);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(centralSize);
+            writeLong(centralOffset);
+            writeInt(ZIP64_LOCATOR_SIGNATURE);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+        writeInt(END_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(centralSize, ZIP64_MAGIC));
+        writeInt(Math.min(centralOffset, ZIP64_MAGIC));
+        writeShort(0);
+        out.flush();
+        finished = true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean sizes64 = entry.needsZip64Sizes();
+        boolean offset64 = entry.offset >= ZIP64_MAGIC;
+        int extraLength = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+        int version = sizes64 || offset64 ? ZIP64_VERSION : VERSION;
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(version);
+        writeShort(version);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(sizes64 ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(sizes64 ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.name.length);
+        writeShort(extraLength > 0 ? extraLength + 4 : 0);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(offset64 ? ZIP64_MAGIC : entry.offset);
+        writeBytes(entry.name, 0, entry.name.length);
+        if (extraLength > 0) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(extraLength);
+            if (sizes64) {
+                writeLong(entry.size);
+                writeLong(entry.compressedSize);
+            }
+            if (offset64) {
+                writeLong(entry.offset);
+            }
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        scratch[0] = (byte) value;
+        scratch[1] = (byte) (value >>> 8);
+        writeBytes(scratch, 0, 2);
+    }
+
+    private void writeInt(long value) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            scratch[i] = (byte) (value >>> (8 * i));
+        }
+        writeBytes(scratch, 0, 4);
+    }
+
+    private void writeLong(long value) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            scratch[i] = (byte) (value >>> (8 * i));
+        }
+        writeBytes(scratch, 0, 8);
+    }
+
+    private void writeBytes(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        offset += len;
+    }
+
+    /**
+     * MS-DOS格式的日期时间，早于1980年的按1980-01-01处理
+     */
+    private static long dosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25)
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private static class Entry {
+        private final byte[] name;
+        private final long dosTime;
+        private final int flags;
+        private final int method;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private final long offset;
+        private long dataOffset;
+
+        Entry(byte[] name, long dosTime, int flags, int method, long crc, long compressedSize, long size,
+              long offset) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.flags = flags;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        boolean hasDataDescriptor() {
+            return (flags & DATA_DESCRIPTOR_FLAG) != 0;
+        }
+
+        boolean needsZip64Sizes() {
+            return size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 预先计算的ZIP归档布局：所有条目以 STORED 方式存储，长度在生成前已知，
+ * 因此归档总长度及每个字节所在的位置（文件头、条目内容或中央目录）均可在输出前确定。
+ * <p>
+ * 归档被划分为若干连续片段：文件头及中央目录由布局直接提供，条目内容按区间从来源读取，
+ * 据此可响应任意字节区间的请求（断点续传）。
+ * <p>
+ * CRC32未知的条目使用数据描述符，其长度固定，不影响布局：CRC32在顺序输出条目内容时计算，
+ * 请求的区间未覆盖完整内容（如续传）时由条目提供；数据描述符及中央目录在读取到时才生成。
+ */
+public class ZipLayout {
+
+    /**
+     * 按字节区间读取条目内容
+     */
+    @FunctionalInterface
+    public interface RangeOpener {
+        /**
+         * @param start 起始位置
+         * @param end   结束位置（包含）
+         */
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    /**
+     * 计算条目内容的CRC32
+     */
+    @FunctionalInterface
+    public interface CrcCalculator {
+        long calculate() throws IOException;
+    }
+
+    /**
+     * 不压缩存储的条目
+     */
+    public static class Entry {
+        private final String name;
+        private final long lastModified;
+        private final long size;
+        private final RangeOpener opener;
+        private final String tag;
+        private final CrcCalculator calculator;
+        private volatile long crc;
+
+        /**
+         * CRC32已知的条目
+         */
+        public Entry(String name, long lastModified, long crc, long size, RangeOpener opener) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.crc = crc;
+            this.size = size;
+            this.opener = opener;
+            this.tag = null;
+            this.calculator = null;
+        }
+
+        /**
+         * CRC32未知的条目，以数据描述符存储
+         *
+         * @param tag        条目内容的唯一标识（如内容摘要），参与归档实体标签的计算
+         * @param calculator 请求的区间未覆盖完整内容时计算CRC32
+         */
+        public Entry(String name, long lastModified, long size, String tag, CrcCalculator calculator,
+                     RangeOpener opener) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.crc = -1;
+            this.size = size;
+            this.opener = opener;
+            this.tag = tag;
+            this.calculator = calculator;
+        }
+
+        private boolean hasDataDescriptor() {
+            return calculator != null;
+        }
+
+        private long getCrc() throws IOException {
+            long value = crc;
+            if (value < 0) {
+                value = calculator.calculate();
+                crc = value;
+            }
+            return value;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final List<Segment> segments = new ArrayList<>();
+    private final long length;
+    private final String eTag;
+    private volatile byte[] trailer;
+
+    public ZipLayout(List<Entry> entries) {
+        this.entries = new ArrayList<>(entries);
+        try {
+            ByteArrayOutputStream headers = new ByteArrayOutputStream();
+            ZipArchiveWriter writer = new ZipArchiveWriter(headers);
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            boolean deferred = false;
+            for (Entry entry : entries) {
+                long headerStart = writer.getOffset();
+                putEntry(writer, entry);
+                addBytes(headerStart, headers, digest);
+                if (entry.size > 0) {
+                    segments.add(new Segment(writer.getOffset(), entry.size, null, entry));
+                }
+                writer.skip(entry.size);
+                if (entry.hasDataDescriptor()) {
+                    // 数据描述符长度与CRC32无关，此处以0占位，读取到时再生成
+                    long descriptorStart = writer.getOffset();
+                    writer.closeEntry(0, entry.size);
+                    headers.reset();
+                    digest.update(entry.tag.getBytes(StandardCharsets.UTF_8));
+                    segments.add(new Segment(descriptorStart, writer.getOffset() - descriptorStart,
+                            () -> ZipArchiveWriter.dataDescriptor(entry.getCrc(), entry.size, entry.size), null));
+                    deferred = true;
+                } else {
+                    writer.closeEntry();
+                }
+            }
+            long trailerStart = writer.getOffset();
+            writer.finish();
+            if (deferred) {
+                byte[] placeholder = headers.toByteArray();
+                headers.reset();
+                digest.update(placeholder);
+                segments.add(new Segment(trailerStart, placeholder.length, this::getTrailer, null));
+            } else {
+                addBytes(trailerStart, headers, digest);
+            }
+            this.length = writer.getOffset();
+            // 文件头及中央目录包含每个条目的名称、时间、CRC32及长度，可唯一确定归档内容
+            this.eTag = "\"" + toHex(digest.digest()) + "\"";
+        } catch (IOException exp) {
+            throw new UncheckedIOException(exp);
+        } catch (NoSuchAlgorithmException exp) {
+            throw new IllegalStateException(exp);
+        }
+    }
+
+    /**
+     * 归档总长度，即 Content-Length
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 归档的强实体标签，条目或其内容变化时随之变化
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * 读取归档指定字节区间的内容，条目内容在读取到时才打开
+     *
+     * @param start 起始位置
+     * @param end   结束位置（包含）
+     * @return 区间内容输入流
+     */
+    public InputStream open(long start, long end) {
+        if (start < 0 || end >= length || start > end + 1) {
+            throw new IllegalArgumentException("Invalid archive range: " + start + "-" + end);
+        }
+        return new SegmentInputStream(findSegment(start), start, end);
+    }
+
+    private int findSegment(long position) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).start <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void addBytes(long start, ByteArrayOutputStream headers, MessageDigest digest) {
+        byte[] bytes = headers.toByteArray();
+        headers.reset();
+        digest.update(bytes);
+        segments.add(new Segment(start, bytes.length, () -> bytes, null));
+    }
+
+    private static void putEntry(ZipArchiveWriter writer, Entry entry) throws IOException {
+        if (entry.hasDataDescriptor()) {
+            writer.putEntry(entry.name, entry.lastModified, ZipArchiveWriter.STORED);
+        } else {
+            writer.putEntry(entry.name, entry.lastModified, ZipArchiveWriter.STORED,
+                    entry.crc, entry.size, entry.size);
+        }
+    }
+
+    /**
+     * 中央目录及结束记录：按相同布局重新生成，其中的CRC32取各条目的实际值
+     */
+    private byte[] getTrailer() throws IOException {
+        byte[] bytes = trailer;
+        if (bytes == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ZipArchiveWriter writer = new ZipArchiveWriter(out);
+            for (Entry entry : entries) {
+                putEntry(writer, entry);
+                writer.skip(entry.size);
+                if (entry.hasDataDescriptor()) {
+                    writer.closeEntry(entry.getCrc(), entry.size);
+                } else {
+                    writer.closeEntry();
+                }
+            }
+            out.reset();
+            writer.finish();
+            bytes = out.toByteArray();
+            trailer = bytes;
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 依次读取区间覆盖的各片段，片段在读取到时才打开，关闭时只需关闭当前片段
+     */
+    private class SegmentInputStream extends InputStream {
+        private final long start;
+        private final long end;
+        private int index;
+        private InputStream current;
+
+        SegmentInputStream(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return count == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current == null) {
+                    if (index >= segments.size() || segments.get(index).start > end) {
+                        return -1;
+                    }
+                    Segment segment = segments.get(index++);
+                    long from = Math.max(start, segment.start) - segment.start;
+                    long to = Math.min(end, segment.start + segment.length - 1) - segment.start;
+                    current = segment.open(from, to);
+                }
+                int count = current.read(b, off, len);
+                if (count != -1) {
+                    return count;
+                }
+                current.close();
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            index = segments.size();
+        }
+    }
+
+    /**
+     * 片段内容，数据描述符及中央目录在读取到时才生成
+     */
+    @FunctionalInterface
+    private interface BytesSupplier {
+        byte[] get() throws IOException;
+    }
+
+    /**
+     * 归档中的连续片段：文件头/数据描述符/中央目录（bytes）或条目内容（entry）
+     */
+    private static class Segment {
+        private final long start;
+        private final long length;
+        private final BytesSupplier bytes;
+        private final Entry entry;
+
+        Segment(long start, long length, BytesSupplier bytes, Entry entry) {
+            this.start = start;
+            this.length = length;
+            this.bytes = bytes;
+            this.entry = entry;
+        }
+
+        InputStream open(long from, long to) throws IOException {
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes.get(), (int) from, (int) (to - from + 1));
+            }
+            InputStream content = entry.opener.open(from, to);
+            // 顺序读取完整内容时顺带计算CRC32，后续的数据描述符及中央目录无需再读取一遍
+            if (entry.crc < 0 && from == 0 && to == entry.size - 1) {
+                return new CrcInputStream(content, entry);
+            }
+            return content;
+        }
+    }
+
+    /**
+     * 读取条目完整内容时计算CRC32，读取完毕后记录于条目
+     */
+    private static class CrcInputStream extends FilterInputStream {
+        private final Entry entry;
+        private final CRC32 crc = new CRC32();
+        private long count;
+
+        CrcInputStream(InputStream in, Entry entry) {
+            super(in);
+            this.entry = entry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                crc.update(value);
+                count++;
+            } else {
+                complete();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int value = super.read(b, off, len);
+            if (value > 0) {
+                crc.update(b, off, value);
+                count += value;
+            } else if (value == -1) {
+                complete();
+            }
+            return value;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 跳过的内容无法计入CRC32
+            count = Long.MIN_VALUE;
+            return super.skip(n);
+        }
+
+        private void complete() {
+            if (count == entry.size) {
+                entry.crc = crc.getValue();
+            }
+        }
+    }
+}
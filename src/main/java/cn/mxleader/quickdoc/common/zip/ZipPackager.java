@@ -0,0 +1,263 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 并行ZIP打包：多个条目同时由工作线程读取并压缩，写入线程按原顺序依次输出。
+ * <p>
+ * 第一个条目由写入线程直接读取并输出（使用数据描述符），其后的条目同时交由工作线程预先处理；
+ * 已提交但尚未写出的条目按内容长度累计，不超过预读字节数上限（至少提交一个条目），
+ * 单个条目处理结果超过 {@link #MEMORY_THRESHOLD} 时暂存于临时文件，以限制内存及磁盘占用；
+ * 已压缩格式（图片、音视频、压缩包等）以 STORED 方式存储，不再重复压缩。
+ */
+public class ZipPackager {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final long maxPendingBytes;
+    private final Predicate<String> compressible;
+
+    /**
+     * @param threads         工作线程数
+     * @param maxPendingBytes 已提交但尚未写出的条目内容总长度上限
+     * @param compressible    按内容类型判断是否需要压缩
+     */
+    public ZipPackager(int threads, long maxPendingBytes, Predicate<String> compressible) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("zip-packager-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+        this.maxPendingBytes = maxPendingBytes;
+        this.compressible = compressible;
+    }
+
+    /**
+     * 将条目按顺序打包写入输出流，不关闭输出流
+     *
+     * @param sources 待打包条目
+     * @param out     输出流
+     * @throws IOException
+     */
+    public void write(List<ZipSource> sources, OutputStream out) throws IOException {
+        ZipArchiveWriter writer = new ZipArchiveWriter(out);
+        Deque<PrepareTask> pending = new ArrayDeque<>();
+        Iterator<ZipSource> iterator = sources.iterator();
+        long pendingBytes = 0;
+        // 超出预读字节数上限、留待下一轮提交的条目
+        ZipSource deferred = null;
+        try {
+            ZipSource first = iterator.hasNext() ? iterator.next() : null;
+            while (first != null || deferred != null || iterator.hasNext() || !pending.isEmpty()) {
+                while (deferred != null || iterator.hasNext()) {
+                    ZipSource source = deferred != null ? deferred : iterator.next();
+                    long length = pendingLength(source);
+                    if (!pending.isEmpty() && pendingBytes + length > maxPendingBytes) {
+                        deferred = source;
+                        break;
+                    }
+                    deferred = null;
+                    PrepareTask task = new PrepareTask(source);
+                    executor.execute(task);
+                    pending.add(task);
+                    pendingBytes += length;
+                }
+                if (first != null) {
+                    stream(first, writer);
+                    first = null;
+                    continue;
+                }
+                PrepareTask task = pending.poll();
+                pendingBytes -= pendingLength(task.source);
+                PreparedEntry entry = await(task);
+                try {
+                    writer.putEntry(entry.source.getName(), entry.source.getLastModified(), entry.method,
+                            entry.crc, entry.data.getByteCount(), entry.size);
+                    if (entry.data.isInMemory()) {
+                        writer.write(entry.data.getData());
+                    } else {
+                        Files.copy(entry.data.getFile().toPath(), writer);
+                    }
+                    writer.closeEntry();
+                } finally {
+                    entry.release();
+                }
+            }
+            writer.finish();
+        } finally {
+            for (PrepareTask task : pending) {
+                discard(task);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 计入预读字节数的条目长度，长度未知时按内存暂存上限计
+     */
+    private static long pendingLength(ZipSource source) {
+        return source.getLength() >= 0 ? source.getLength() : MEMORY_THRESHOLD;
+    }
+
+    /**
+     * 由写入线程直接读取条目内容并写出，不经临时缓冲：CRC32及长度在内容之后以数据描述符写出。
+     * 不需压缩的内容以不压缩的DEFLATE数据块存储（数据描述符须与 DEFLATED 方式配合使用才能被普遍识别）
+     */
+    private void stream(ZipSource source, ZipArchiveWriter writer) throws IOException {
+        Deflater deflater = new Deflater(compressible.test(source.getContentType())
+                ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION, true);
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = source.open()) {
+            writer.putEntry(source.getName(), source.getLastModified(), ZipArchiveWriter.DEFLATED);
+            DeflaterOutputStream target = new DeflaterOutputStream(writer, deflater, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+                size += count;
+                target.write(buffer, 0, count);
+            }
+            target.finish();
+        } finally {
+            deflater.end();
+        }
+        writer.closeEntry(crc.getValue(), size);
+    }
+
+    /**
+     * 读取条目内容，计算CRC32并按需压缩
+     */
+    private PreparedEntry prepare(ZipSource source) throws IOException {
+        boolean deflate = compressible.test(source.getContentType());
+        DeferredFileOutputStream data = new DeferredFileOutputStream(MEMORY_THRESHOLD,
+                "quickdoc-zip-", ".tmp", null);
+        Deflater deflater = deflate ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = source.open();
+             OutputStream target = deflate ? new DeflaterOutputStream(data, deflater, BUFFER_SIZE) : data) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+                size += count;
+                target.write(buffer, 0, count);
+            }
+        } catch (IOException | RuntimeException exp) {
+            deleteQuietly(data);
+            throw exp;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return new PreparedEntry(source, deflate ? ZipArchiveWriter.DEFLATED : ZipArchiveWriter.STORED,
+                crc.getValue(), size, data);
+    }
+
+    private static PreparedEntry await(Future<PreparedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("ZIP打包被中断");
+        } catch (ExecutionException exp) {
+            Throwable cause = exp.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 放弃尚未写出的条目：取消任务，已完成的删除其临时文件；
+     * 取消时仍在处理的任务完成后由 {@link PrepareTask#set} 删除其临时文件
+     */
+    private static void discard(Future<PreparedEntry> future) {
+        if (!future.cancel(true) && future.isDone()) {
+            try {
+                future.get().release();
+            } catch (InterruptedException exp) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException exp) {
+                // 条目处理失败时已自行清理
+            }
+        }
+    }
+
+    private static void deleteQuietly(DeferredFileOutputStream data) {
+        File file = data.getFile();
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+     * 条目处理任务：任务被取消后才处理完成的，处理结果无人取走，随即删除其临时文件
+     */
+    private class PrepareTask extends FutureTask<PreparedEntry> {
+        private final ZipSource source;
+
+        PrepareTask(ZipSource source) {
+            super(() -> prepare(source));
+            this.source = source;
+        }
+
+        @Override
+        protected void set(PreparedEntry entry) {
+            super.set(entry);
+            if (isCancelled()) {
+                entry.release();
+            }
+        }
+    }
+
+    private static class PreparedEntry {
+        private final ZipSource source;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final DeferredFileOutputStream data;
+
+        PreparedEntry(ZipSource source, int method, long crc, long size, DeferredFileOutputStream data) {
+            this.source = source;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        void release() {
+            deleteQuietly(data);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 待打包的条目：名称、修改时间、内容类型、内容长度及内容读取方法
+ */
+public class ZipSource {
+
+    /**
+     * 打开条目内容，由打包线程调用
+     */
+    @FunctionalInterface
+    public interface ContentOpener {
+        InputStream open() throws IOException;
+    }
+
+    private final String name;
+    private final long lastModified;
+    private final String contentType;
+    private final long length;
+    private final ContentOpener opener;
+
+    public ZipSource(String name, long lastModified, @Nullable String contentType, ContentOpener opener) {
+        this(name, lastModified, contentType, -1, opener);
+    }
+
+    /**
+     * @param length 内容长度，未知时为 -1
+     */
+    public ZipSource(String name, long lastModified, @Nullable String contentType, long length,
+                     ContentOpener opener) {
+        this.name = name;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.length = length;
+        this.opener = opener;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Nullable
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 内容长度，未知时为 -1
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public InputStream open() throws IOException {
+        return opener.open();
+    }
+}
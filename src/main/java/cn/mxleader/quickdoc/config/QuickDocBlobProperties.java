@@ -0,0 +1,46 @@
+package cn.mxleader.quickdoc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("quickdoc.blob")
+public class QuickDocBlobProperties {
+
+    /**
+     * 本地文件系统存储后端的根目录
+     */
+    private String localDirectory = System.getProperty("user.home") + "/quickdoc-blobs";
+
+    /**
+     * 存储迁移后源内容的保留时间（秒），保留期内仍在读取旧内容的下载不受影响
+     */
+    private Integer migrationGracePeriod = 3600;
+
+    /**
+     * GridFS存储桶名称，文件、分块、内容等集合均以其为前缀（如 fs.files、fs.chunks）
+     */
+    private String gridFsBucket = "fs";
+
+    public String getLocalDirectory() {
+        return localDirectory;
+    }
+
+    public void setLocalDirectory(String localDirectory) {
+        this.localDirectory = localDirectory;
+    }
+
+    public Integer getMigrationGracePeriod() {
+        return migrationGracePeriod;
+    }
+
+    public void setMigrationGracePeriod(Integer migrationGracePeriod) {
+        this.migrationGracePeriod = migrationGracePeriod;
+    }
+
+    public String getGridFsBucket() {
+        return gridFsBucket;
+    }
+
+    public void setGridFsBucket(String gridFsBucket) {
+        this.gridFsBucket = gridFsBucket;
+    }
+}
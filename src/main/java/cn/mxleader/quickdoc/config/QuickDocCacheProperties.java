@@ -0,0 +1,163 @@
+package cn.mxleader.quickdoc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("quickdoc.cache")
+public class QuickDocCacheProperties {
+
+    /**
+     * 是否启用本地磁盘文件缓存
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 缓存目录，缓存文件位于其下的 gridfs-content 子目录，启动时仅清除该子目录中由缓存生成的文件
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/quickdoc-cache";
+
+    /**
+     * 缓存总容量（MB）
+     */
+    private Integer maxSize = 1024;
+
+    /**
+     * 单个文件允许缓存的最大长度（MB），超出的文件直接从GridFS读取
+     */
+    private Integer maxFileSize = 64;
+
+    /**
+     * 容器内文件数量的缓存时间（秒），本节点的文件增删立即失效，其他节点的变更最多滞后该时间
+     */
+    private Integer countTtl = 60;
+
+    /**
+     * 磁盘文件夹树快照的缓存时间（秒），本节点的文件夹变更立即失效，其他节点的变更最多滞后该时间
+     */
+    private Integer folderTreeTtl = 30;
+
+    /**
+     * 是否缓存已生成的文件夹压缩包
+     */
+    private Boolean zipEnabled = false;
+
+    /**
+     * 压缩包缓存目录，压缩包位于其下的 zip-archives 子目录，启动时仅清除该子目录中由缓存生成的文件
+     */
+    private String zipDirectory = System.getProperty("java.io.tmpdir") + "/quickdoc-zip-cache";
+
+    /**
+     * 压缩包缓存总容量（MB）
+     */
+    private Integer zipMaxSize = 4096;
+
+    /**
+     * 单个压缩包允许缓存的最大长度（MB），超出的压缩包每次直接打包输出
+     */
+    private Integer zipMaxFileSize = 1024;
+
+    /**
+     * 鉴权结果缓存的最大条目数，为 0 时不缓存
+     */
+    private Integer authMaxEntries = 10000;
+
+    /**
+     * 鉴权结果的缓存时间（秒），本节点的授权或用户组变更立即失效，其他节点的变更最多滞后该时间
+     */
+    private Integer authTtl = 5;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public Integer getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(Integer maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Integer getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(Integer maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public Integer getCountTtl() {
+        return countTtl;
+    }
+
+    public void setCountTtl(Integer countTtl) {
+        this.countTtl = countTtl;
+    }
+
+    public Integer getFolderTreeTtl() {
+        return folderTreeTtl;
+    }
+
+    public void setFolderTreeTtl(Integer folderTreeTtl) {
+        this.folderTreeTtl = folderTreeTtl;
+    }
+
+    public Boolean getZipEnabled() {
+        return zipEnabled;
+    }
+
+    public void setZipEnabled(Boolean zipEnabled) {
+        this.zipEnabled = zipEnabled;
+    }
+
+    public String getZipDirectory() {
+        return zipDirectory;
+    }
+
+    public void setZipDirectory(String zipDirectory) {
+        this.zipDirectory = zipDirectory;
+    }
+
+    public Integer getZipMaxSize() {
+        return zipMaxSize;
+    }
+
+    public void setZipMaxSize(Integer zipMaxSize) {
+        this.zipMaxSize = zipMaxSize;
+    }
+
+    public Integer getZipMaxFileSize() {
+        return zipMaxFileSize;
+    }
+
+    public void setZipMaxFileSize(Integer zipMaxFileSize) {
+        this.zipMaxFileSize = zipMaxFileSize;
+    }
+
+    public Integer getAuthMaxEntries() {
+        return authMaxEntries;
+    }
+
+    public void setAuthMaxEntries(Integer authMaxEntries) {
+        this.authMaxEntries = authMaxEntries;
+    }
+
+    public Integer getAuthTtl() {
+        return authTtl;
+    }
+
+    public void setAuthTtl(Integer authTtl) {
+        this.authTtl = authTtl;
+    }
+}
@@ -0,0 +1,43 @@
+package cn.mxleader.quickdoc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@ConfigurationProperties("quickdoc.compression")
+public class QuickDocCompressionProperties {
+
+    /**
+     * 是否启用分块压缩存储（仅GridFS存储后端）
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 不压缩的文件类型（已压缩格式），以 * 结尾表示前缀匹配
+     */
+    private List<String> skipTypes = new ArrayList<>(Arrays.asList(
+            "image/*", "audio/*", "video/*",
+            "application/zip", "application/x-zip-compressed", "application/gzip", "application/x-gzip",
+            "application/x-bzip2", "application/x-xz", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/java-archive",
+            "application/pdf", "application/epub+zip",
+            "application/vnd.openxmlformats-officedocument.*", "application/vnd.oasis.opendocument.*"));
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getSkipTypes() {
+        return skipTypes;
+    }
+
+    public void setSkipTypes(List<String> skipTypes) {
+        this.skipTypes = skipTypes;
+    }
+}
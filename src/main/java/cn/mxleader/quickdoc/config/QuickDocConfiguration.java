@@ -1,5 +1,8 @@
 package cn.mxleader.quickdoc.config;
 
+import cn.mxleader.quickdoc.common.zip.ZipArchiveCache;
+import cn.mxleader.quickdoc.common.zip.ZipPackager;
+import cn.mxleader.quickdoc.dao.blob.CompressionPolicy;
 import cn.mxleader.quickdoc.entities.SysProfile;
 import cn.mxleader.quickdoc.entities.SysUser;
 import cn.mxleader.quickdoc.service.*;
@@ -16,8 +19,10 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.kafka.core.KafkaTemplate;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,7 +30,9 @@ import java.util.List;
 
 @SpringBootConfiguration
 @ConditionalOnClass(StreamService.class)
-@EnableConfigurationProperties(QuickDocStreamProperties.class)
+@EnableConfigurationProperties({QuickDocStreamProperties.class, QuickDocUploadProperties.class,
+        QuickDocCacheProperties.class, QuickDocBlobProperties.class, QuickDocCompressionProperties.class,
+        QuickDocDownloadProperties.class, QuickDocIndexProperties.class, QuickDocTrashProperties.class})
 public class QuickDocConfiguration {
 
     @Value("${server.port}")
@@ -54,6 +61,22 @@ public class QuickDocConfiguration {
         else
             return new StreamServiceDefaultImpl();
     }
+
+    @Bean(destroyMethod = "shutdown")
+    public ZipPackager zipPackager(CompressionPolicy compressionPolicy,
+                                   QuickDocDownloadProperties downloadProperties) {
+        int threads = downloadProperties.getZipThreads() > 0 ? downloadProperties.getZipThreads()
+                : Runtime.getRuntime().availableProcessors();
+        return new ZipPackager(threads, downloadProperties.getZipPendingSize() * 1024L * 1024L,
+                compressionPolicy::isCompressible);
+    }
+
+    @Bean
+    public ZipArchiveCache zipArchiveCache(QuickDocCacheProperties cacheProperties) throws IOException {
+        return new ZipArchiveCache(cacheProperties.getZipEnabled(), Paths.get(cacheProperties.getZipDirectory()),
+                cacheProperties.getZipMaxSize() * 1024L * 1024L,
+                cacheProperties.getZipMaxFileSize() * 1024L * 1024L);
+    }
 /*
     @Bean
     public MultipartResolver multipartResolver(){
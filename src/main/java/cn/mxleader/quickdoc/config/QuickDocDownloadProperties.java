@@ -0,0 +1,85 @@
+package cn.mxleader.quickdoc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("quickdoc.download")
+public class QuickDocDownloadProperties {
+
+    /**
+     * 文件下载及预览响应的 Cache-Control 头，为空时不设置
+     */
+    private String cacheControl = "private, no-cache";
+
+    /**
+     * 顺序读取GridFS内容时预读的分块数量，0 表示不预读
+     */
+    private Integer prefetchDepth = 4;
+
+    /**
+     * 预读线程数上限，线程全部占用时新的读取流不预读，直接读取
+     */
+    private Integer prefetchThreads = 16;
+
+    /**
+     * 预读数据等待读取方取走的最长时间（秒），超时后放弃预读，释放线程及源输入流
+     */
+    private Integer prefetchTimeout = 60;
+
+    /**
+     * ZIP打包的工作线程数，0 表示与处理器核数相同
+     */
+    private Integer zipThreads = 0;
+
+    /**
+     * ZIP打包时已提交但尚未写出的条目内容总大小上限（MB）
+     */
+    private Integer zipPendingSize = 64;
+
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    public void setCacheControl(String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    public Integer getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public void setPrefetchDepth(Integer prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    public Integer getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    public void setPrefetchThreads(Integer prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+
+    public Integer getPrefetchTimeout() {
+        return prefetchTimeout;
+    }
+
+    public void setPrefetchTimeout(Integer prefetchTimeout) {
+        this.prefetchTimeout = prefetchTimeout;
+    }
+
+    public Integer getZipThreads() {
+        return zipThreads;
+    }
+
+    public void setZipThreads(Integer zipThreads) {
+        this.zipThreads = zipThreads;
+    }
+
+    public Integer getZipPendingSize() {
+        return zipPendingSize;
+    }
+
+    public void setZipPendingSize(Integer zipPendingSize) {
+        this.zipPendingSize = zipPendingSize;
+    }
+}
@@ -0,0 +1,48 @@
+package cn.mxleader.quickdoc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("quickdoc.index")
+public class QuickDocIndexProperties {
+
+    public enum Verify {
+        /**
+         * 不校验执行计划
+         */
+        OFF,
+        /**
+         * 发现全表扫描时记录告警日志
+         */
+        WARN,
+        /**
+         * 发现全表扫描时终止启动
+         */
+        FAIL
+    }
+
+    /**
+     * 启动时是否创建索引目录中声明的索引
+     */
+    private Boolean provision = true;
+
+    /**
+     * 启动时的执行计划校验方式
+     */
+    private Verify verify = Verify.WARN;
+
+    public Boolean getProvision() {
+        return provision;
+    }
+
+    public void setProvision(Boolean provision) {
+        this.provision = provision;
+    }
+
+    public Verify getVerify() {
+        return verify;
+    }
+
+    public void setVerify(Verify verify) {
+        this.verify = verify;
+    }
+}
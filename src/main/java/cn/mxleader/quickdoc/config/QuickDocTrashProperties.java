@@ -0,0 +1,59 @@
+package cn.mxleader.quickdoc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("quickdoc.trash")
+public class QuickDocTrashProperties {
+
+    /**
+     * 回收站保留天数，超期的文件由后台回收
+     */
+    private Integer retentionDays = 30;
+
+    /**
+     * 每次后台回收最多处理的文件数量
+     */
+    private Integer reclaimLimit = 100;
+
+    /**
+     * 回收时每批删除的分块数量
+     */
+    private Integer chunkBatchSize = 64;
+
+    /**
+     * 回收时每批之间的暂停时间（毫秒）
+     */
+    private Long pauseMillis = 100L;
+
+    public Integer getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(Integer retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    public Integer getReclaimLimit() {
+        return reclaimLimit;
+    }
+
+    public void setReclaimLimit(Integer reclaimLimit) {
+        this.reclaimLimit = reclaimLimit;
+    }
+
+    public Integer getChunkBatchSize() {
+        return chunkBatchSize;
+    }
+
+    public void setChunkBatchSize(Integer chunkBatchSize) {
+        this.chunkBatchSize = chunkBatchSize;
+    }
+
+    public Long getPauseMillis() {
+        return pauseMillis;
+    }
+
+    public void setPauseMillis(Long pauseMillis) {
+        this.pauseMillis = pauseMillis;
+    }
+}
@@ -0,0 +1,46 @@
+package cn.mxleader.quickdoc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("quickdoc.upload")
+public class QuickDocUploadProperties {
+
+    /**
+     * 断点续传每个分段包含的GridFS分块数量
+     */
+    private Integer partChunks = 20;
+
+    /**
+     * 断点续传会话超时时间（小时），超时未更新的会话将被清理
+     */
+    private Integer sessionTimeout = 24;
+
+    /**
+     * 分段写入及提交占用会话的有效期（分钟），到期未完成视为中断，可由后续提交接管
+     */
+    private Integer leaseTimeout = 10;
+
+    public Integer getPartChunks() {
+        return partChunks;
+    }
+
+    public void setPartChunks(Integer partChunks) {
+        this.partChunks = partChunks;
+    }
+
+    public Integer getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    public void setSessionTimeout(Integer sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    public Integer getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public void setLeaseTimeout(Integer leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+}
@@ -0,0 +1,15 @@
+package cn.mxleader.quickdoc.dao;
+
+import cn.mxleader.quickdoc.entities.SysDeleteJob;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SysDeleteJobRepository extends MongoRepository<SysDeleteJob, ObjectId> {
+
+    List<SysDeleteJob> findAllByStatusIn(Collection<SysDeleteJob.Status> statuses);
+
+    List<SysDeleteJob> findTop50ByOrderByCreatedAtDesc();
+}
@@ -0,0 +1,12 @@
+package cn.mxleader.quickdoc.dao;
+
+import cn.mxleader.quickdoc.entities.SysUpload;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Date;
+import java.util.List;
+
+public interface SysUploadRepository extends MongoRepository<SysUpload, ObjectId> {
+    List<SysUpload> findAllByUpdatedAtBefore(Date date);
+}
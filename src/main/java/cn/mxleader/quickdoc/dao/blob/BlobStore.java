@@ -0,0 +1,70 @@
+package cn.mxleader.quickdoc.dao.blob;
+
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 文件内容（二进制主体）存储接口
+ * <p>
+ * 文件元数据始终保存在 fs.files 集合内，内容按内容ID（fs.files 的 contentId）存放于具体的存储后端，
+ * 文件文档的 blobStore 字段记录内容所在的后端名称。
+ */
+public interface BlobStore {
+
+    /**
+     * 存储后端名称，记录在文件文档的 blobStore 字段内
+     */
+    String getName();
+
+    /**
+     * 写入内容直至输入流结束，已存在的同ID内容将被覆盖
+     *
+     * @param blobId    内容ID
+     * @param chunkSize 分块大小（仅分块存储的后端使用）
+     * @param content   内容输入流
+     * @param compress  是否压缩存储，后端不支持压缩时忽略
+     * @return 实际存储的字节数
+     * @throws IOException
+     */
+    long write(ObjectId blobId, int chunkSize, InputStream content, boolean compress) throws IOException;
+
+    /**
+     * 是否支持压缩存储
+     */
+    default boolean isCompressionSupported() {
+        return false;
+    }
+
+    /**
+     * 读取指定字节区间的内容
+     *
+     * @param blobId    内容ID
+     * @param chunkSize 分块大小（仅分块存储的后端使用）
+     * @param start     起始位置
+     * @param end       结束位置（包含）
+     * @return 区间内容输入流
+     * @throws IOException
+     */
+    InputStream read(ObjectId blobId, int chunkSize, long start, long end) throws IOException;
+
+    /**
+     * 删除内容，内容不存在时忽略
+     *
+     * @param blobId 内容ID
+     */
+    void delete(ObjectId blobId);
+
+    /**
+     * 分批删除内容，每批之间暂停指定时间，用于后台回收时降低对存储的压力；
+     * 不分块存储的后端直接删除
+     *
+     * @param blobId      内容ID
+     * @param batchSize   每批删除的分块数量
+     * @param pauseMillis 每批之间的暂停时间（毫秒）
+     */
+    default void delete(ObjectId blobId, int batchSize, long pauseMillis) {
+        delete(blobId);
+    }
+}
@@ -0,0 +1,44 @@
+package cn.mxleader.quickdoc.dao.blob;
+
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 已注册的存储后端，按名称查找
+ */
+@Component
+public class BlobStores {
+
+    public static final String DEFAULT = GridFsBlobStore.NAME;
+
+    private final Map<String, BlobStore> stores = new LinkedHashMap<>();
+
+    public BlobStores(List<BlobStore> blobStores) {
+        for (BlobStore store : blobStores) {
+            stores.put(store.getName(), store);
+        }
+    }
+
+    /**
+     * 获取存储后端
+     *
+     * @param name 后端名称，为空时返回默认的GridFS后端
+     * @return 存储后端
+     */
+    public BlobStore get(@Nullable String name) {
+        BlobStore store = stores.get(name == null ? DEFAULT : name);
+        if (store == null) {
+            throw new IllegalArgumentException("未知的存储后端：" + name);
+        }
+        return store;
+    }
+
+    public Set<String> names() {
+        return stores.keySet();
+    }
+}
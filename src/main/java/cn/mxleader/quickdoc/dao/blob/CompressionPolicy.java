@@ -0,0 +1,62 @@
+package cn.mxleader.quickdoc.dao.blob;
+
+import cn.mxleader.quickdoc.config.QuickDocCompressionProperties;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * 按文件类型决定是否压缩存储，已压缩的格式（图片、音视频、压缩包、OOXML文档等）不再压缩
+ */
+@Component
+public class CompressionPolicy {
+
+    private final boolean enabled;
+    private final List<String> skipTypes;
+
+    public CompressionPolicy(QuickDocCompressionProperties properties) {
+        this.enabled = properties.getEnabled();
+        this.skipTypes = properties.getSkipTypes().stream()
+                .map(type -> type.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toList());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param contentType 文件类型，未知时为 null
+     * @return 是否压缩存储
+     */
+    public boolean shouldCompress(@Nullable String contentType) {
+        return enabled && isCompressible(contentType);
+    }
+
+    /**
+     * 不论是否启用压缩存储，判断该类型的内容是否值得压缩（如ZIP打包时的条目存储方式）
+     *
+     * @param contentType 文件类型，未知时为 null
+     * @return 不属于已压缩格式时返回 true
+     */
+    public boolean isCompressible(@Nullable String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        for (String skipType : skipTypes) {
+            if (skipType.endsWith("*") ? type.startsWith(skipType.substring(0, skipType.length() - 1))
+                    : type.equals(skipType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
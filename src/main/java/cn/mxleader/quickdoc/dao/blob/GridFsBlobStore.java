@@ -0,0 +1,139 @@
+package cn.mxleader.quickdoc.dao.blob;
+
+import cn.mxleader.quickdoc.config.QuickDocBlobProperties;
+import cn.mxleader.quickdoc.dao.ext.ChunkCodec;
+import cn.mxleader.quickdoc.dao.ext.GridFsChunkInputStream;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * GridFS分块存储（缺省存储桶为 fs.chunks），未指定存储后端的文件均使用该后端。
+ * 压缩存储时每个分块独立压缩，见 {@link ChunkCodec}。
+ */
+@Component
+public class GridFsBlobStore implements BlobStore {
+
+    public static final String NAME = "gridfs";
+
+    private final MongoCollection<Document> chunksCollection;
+
+    @Autowired
+    public GridFsBlobStore(MongoDbFactory dbFactory, QuickDocBlobProperties properties) {
+        this(dbFactory, properties.getGridFsBucket());
+    }
+
+    public GridFsBlobStore(MongoDbFactory dbFactory) {
+        this(dbFactory, "fs");
+    }
+
+    public GridFsBlobStore(MongoDbFactory dbFactory, String bucketName) {
+        this.chunksCollection = dbFactory.getDb().getCollection(bucketName + ".chunks");
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long write(ObjectId blobId, int chunkSize, InputStream content, boolean compress) throws IOException {
+        chunksCollection.deleteMany(eq("files_id", blobId));
+        Deflater deflater = compress ? new Deflater() : null;
+        try {
+            byte[] buffer = new byte[chunkSize];
+            long storedLength = 0;
+            int n = 0;
+            int offset = 0;
+            int count;
+            while ((count = content.read(buffer, offset, chunkSize - offset)) != -1) {
+                offset += count;
+                if (offset == chunkSize) {
+                    storedLength += insertChunk(blobId, n++, buffer, offset, deflater);
+                    offset = 0;
+                }
+            }
+            if (offset > 0) {
+                storedLength += insertChunk(blobId, n, buffer, offset, deflater);
+            }
+            return storedLength;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    @Override
+    public boolean isCompressionSupported() {
+        return true;
+    }
+
+    @Override
+    public InputStream read(ObjectId blobId, int chunkSize, long start, long end) {
+        return new GridFsChunkInputStream(chunksCollection, new BsonObjectId(blobId), chunkSize, start, end);
+    }
+
+    @Override
+    public void delete(ObjectId blobId) {
+        chunksCollection.deleteMany(eq("files_id", blobId));
+    }
+
+    /**
+     * 按分块ID分批删除，线程被中断时不再暂停，继续删除剩余分块
+     */
+    @Override
+    public void delete(ObjectId blobId, int batchSize, long pauseMillis) {
+        boolean throttled = pauseMillis > 0;
+        while (true) {
+            List<Object> chunkIds = chunksCollection.find(eq("files_id", blobId))
+                    .projection(include("_id"))
+                    .limit(batchSize)
+                    .map(chunk -> chunk.get("_id"))
+                    .into(new ArrayList<>());
+            if (chunkIds.isEmpty()) {
+                return;
+            }
+            chunksCollection.deleteMany(in("_id", chunkIds));
+            if (chunkIds.size() < batchSize) {
+                return;
+            }
+            if (throttled) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException exp) {
+                    Thread.currentThread().interrupt();
+                    throttled = false;
+                }
+            }
+        }
+    }
+
+    private int insertChunk(ObjectId blobId, int n, byte[] buffer, int length, Deflater deflater) {
+        byte[] compressed = deflater == null ? null : ChunkCodec.deflate(deflater, buffer, length);
+        Document chunk = new Document("files_id", blobId).append("n", n);
+        if (compressed != null) {
+            chunksCollection.insertOne(chunk.append("data", new Binary(compressed))
+                    .append(ChunkCodec.COMPRESSED_FIELD, true));
+            return compressed.length;
+        }
+        chunksCollection.insertOne(chunk.append("data", new Binary(Arrays.copyOf(buffer, length))));
+        return length;
+    }
+}
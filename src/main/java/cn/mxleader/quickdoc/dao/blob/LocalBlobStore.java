@@ -0,0 +1,161 @@
+package cn.mxleader.quickdoc.dao.blob;
+
+import cn.mxleader.quickdoc.config.QuickDocBlobProperties;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 本地文件系统存储：内容以文件形式保存在本地卷上，写入使用 {@link FileChannel#transferFrom}，
+ * 读取使用 {@link FileChannel#map} 按区域映射，避免经由MongoDB传输大块数据。
+ * <p>
+ * 内容文件按内容ID前两位分目录存放：{localDirectory}/ab/abcdef...
+ */
+@Component
+public class LocalBlobStore implements BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalBlobStore.class);
+
+    public static final String NAME = "local";
+
+    /**
+     * 单次内存映射的区域大小
+     */
+    private static final long MAP_REGION_SIZE = 64L * 1024 * 1024;
+    private static final long TRANSFER_SIZE = 8L * 1024 * 1024;
+
+    private final Path root;
+
+    public LocalBlobStore(QuickDocBlobProperties properties) {
+        this.root = Paths.get(properties.getLocalDirectory());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long write(ObjectId blobId, int chunkSize, InputStream content, boolean compress) throws IOException {
+        Path target = getPath(blobId);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), blobId.toHexString(), ".tmp");
+        try {
+            long length = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ReadableByteChannel source = Channels.newChannel(content);
+                long count;
+                while ((count = channel.transferFrom(source, length, TRANSFER_SIZE)) > 0) {
+                    length += count;
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return length;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream read(ObjectId blobId, int chunkSize, long start, long end) throws IOException {
+        try {
+            return new MappedInputStream(FileChannel.open(getPath(blobId), StandardOpenOption.READ), start, end);
+        } catch (NoSuchFileException exp) {
+            throw new FileNotFoundException("内容文件不存在：" + blobId);
+        }
+    }
+
+    @Override
+    public void delete(ObjectId blobId) {
+        try {
+            Files.deleteIfExists(getPath(blobId));
+        } catch (IOException exp) {
+            log.warn("删除内容文件失败：{}", blobId, exp);
+        }
+    }
+
+    private Path getPath(ObjectId blobId) {
+        String name = blobId.toHexString();
+        return root.resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    /**
+     * 按区域映射读取文件内容，读完当前区域后映射下一区域
+     */
+    private static class MappedInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private MappedByteBuffer region;
+
+        MappedInputStream(FileChannel channel, long start, long end) throws IOException {
+            this.channel = channel;
+            this.position = start;
+            this.end = Math.min(end, channel.size() - 1);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return count == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position > end) {
+                return -1;
+            }
+            if (region == null || !region.hasRemaining()) {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_REGION_SIZE, end - position + 1));
+            }
+            int count = Math.min(len, region.remaining());
+            region.get(b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            long skipped = Math.min(n, end + 1 - position);
+            position += skipped;
+            region = null;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return region == null ? 0 : region.remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            region = null;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import com.mongodb.MongoGridFSException;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * GridFS分块压缩编解码
+ * <p>
+ * 每个分块独立压缩（DEFLATE），压缩后的分块带有 compressed: true 标记；
+ * 逻辑位置与分块编号的对应关系不变，区间读取仍可直接定位到目标分块。
+ */
+public final class ChunkCodec {
+
+    public static final String COMPRESSED_FIELD = "compressed";
+    public static final String DEFLATE = "deflate";
+
+    private ChunkCodec() {
+    }
+
+    /**
+     * 压缩分块数据
+     *
+     * @param deflater 压缩器，由调用方复用并负责释放
+     * @param data     分块数据
+     * @param length   数据长度
+     * @return 压缩后的数据，压缩后未变小时返回 null
+     */
+    public static byte[] deflate(Deflater deflater, byte[] data, int length) {
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        byte[] out = new byte[length];
+        int count = 0;
+        while (!deflater.finished() && count < out.length) {
+            count += deflater.deflate(out, count, out.length - count);
+        }
+        return deflater.finished() && count < length ? Arrays.copyOf(out, count) : null;
+    }
+
+    /**
+     * 读取分块的原始数据，压缩分块将被解压
+     *
+     * @param chunk     fs.chunks 文档
+     * @param chunkSize 分块大小
+     * @return 分块数据
+     */
+    public static byte[] decode(Document chunk, int chunkSize) {
+        byte[] data = chunk.get("data", Binary.class).getData();
+        if (!chunk.getBoolean(COMPRESSED_FIELD, false)) {
+            return data;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[chunkSize];
+            int count = 0;
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(out, count, out.length - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary() || count == out.length)) {
+                    throw new MongoGridFSException("Corrupt compressed chunk " + chunk.get("n")
+                            + " for file_id: " + chunk.get("files_id"));
+                }
+                count += inflated;
+            }
+            return count == out.length ? out : Arrays.copyOf(out, count);
+        } catch (DataFormatException exp) {
+            throw new MongoGridFSException("Corrupt compressed chunk " + chunk.get("n")
+                    + " for file_id: " + chunk.get("files_id"), exp);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocDownloadProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 顺序读取GridFS内容时的分块预读，每个读取流在首次读取时占用一个预读线程；
+ * 线程数有上限，线程全部占用时读取流不预读，直接读取源输入流
+ */
+@Component
+public class ChunkPrefetcher implements DisposableBean {
+
+    private final int depth;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    public ChunkPrefetcher(QuickDocDownloadProperties properties) {
+        this.depth = properties.getPrefetchDepth();
+        this.timeoutMillis = properties.getPrefetchTimeout() * 1000L;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("gridfs-prefetch-");
+        threadFactory.setDaemon(true);
+        int threads = Math.max(1, properties.getPrefetchThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 内容跨越多个分块时包装为预读输入流，预读关闭或内容只有一个分块时原样返回
+     *
+     * @param source    分块内容输入流
+     * @param chunkSize 分块大小
+     * @param length    读取的字节数
+     * @return
+     */
+    public InputStream prefetch(InputStream source, int chunkSize, long length) {
+        if (depth <= 0 || length <= chunkSize) {
+            return source;
+        }
+        return new PrefetchInputStream(source, chunkSize, depth, timeoutMillis, executor);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
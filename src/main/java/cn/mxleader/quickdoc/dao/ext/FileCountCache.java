@@ -0,0 +1,76 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 容器（磁盘、文件夹）内文件数量缓存
+ * <p>
+ * 分页列表每页都需返回文件总数，缓存后同一容器翻页时不再重复执行 count；
+ * 文件存储、删除或添加上级容器时由调用方失效相应容器，缓存时间仅作为兜底。
+ * <p>
+ * 失效只作用于本节点：多节点部署时，其他节点上的变更不会失效本节点的缓存，
+ * 列表总数最多滞后缓存时间（quickdoc.cache.count-ttl）。
+ */
+@Component
+public class FileCountCache {
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final long ttl;
+    private final Map<ObjectId, Entry> counts = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public FileCountCache(QuickDocCacheProperties properties) {
+        this.ttl = properties.getCountTtl() * 1000L;
+    }
+
+    /**
+     * 获取容器内文件数量，缓存不存在或已过期时重新统计
+     *
+     * @param parentId 容器ID
+     * @param counter  统计方法
+     * @return 文件数量
+     */
+    public long get(ObjectId parentId, LongSupplier counter) {
+        long now = System.currentTimeMillis();
+        Entry entry = counts.get(parentId);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.count;
+        }
+        long version = invalidations.get();
+        long count = counter.getAsLong();
+        if (ttl > 0) {
+            if (counts.size() >= MAX_ENTRIES) {
+                counts.clear();
+            }
+            // 与同一容器的失效互斥：统计期间有容器被失效的，本次结果可能已过时，不予登记
+            counts.compute(parentId, (key, current) ->
+                    invalidations.get() == version ? new Entry(count, now + ttl) : current);
+        }
+        return count;
+    }
+
+    public void invalidate(ObjectId parentId) {
+        counts.compute(parentId, (key, current) -> {
+            invalidations.incrementAndGet();
+            return null;
+        });
+    }
+
+    private static class Entry {
+        private final long count;
+        private final long expiresAt;
+
+        Entry(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
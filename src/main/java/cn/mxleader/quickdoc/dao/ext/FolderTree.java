@@ -0,0 +1,106 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import cn.mxleader.quickdoc.entities.SysFolder;
+import cn.mxleader.quickdoc.web.domain.TreeNode;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 磁盘文件夹树的只读快照
+ * <p>
+ * 以数组保存节点，子节点按父节点连续排列（children[childOffsets[i] .. childOffsets[i + 1]) 为节点 i 的子节点），
+ * 末尾的虚拟节点代表磁盘根目录；上级目录不在本磁盘内的文件夹不可达，不会出现在树中。
+ */
+public final class FolderTree {
+
+    private final ObjectId diskId;
+    private final long version;
+    private final ObjectId[] ids;
+    private final String[] names;
+    private final int[] childOffsets;
+    private final int[] children;
+    private final Map<ObjectId, Integer> positions;
+
+    FolderTree(ObjectId diskId, long version, List<SysFolder> folders) {
+        this.diskId = diskId;
+        this.version = version;
+        int size = folders.size();
+        int root = size;
+        this.ids = new ObjectId[size];
+        this.names = new String[size];
+        this.positions = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            ids[i] = folders.get(i).getId();
+            names[i] = folders.get(i).getName();
+            positions.put(ids[i], i);
+        }
+        int[] parents = new int[size];
+        this.childOffsets = new int[size + 2];
+        for (int i = 0; i < size; i++) {
+            SysFolder folder = folders.get(i);
+            Integer parent = folder.getParent().getTarget().equals(AuthTarget.DISK)
+                    ? Integer.valueOf(root) : positions.get(folder.getParent().getId());
+            parents[i] = parent == null ? -1 : parent;
+            if (parent != null) {
+                childOffsets[parent + 1]++;
+            }
+        }
+        for (int i = 0; i <= root; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        this.children = new int[childOffsets[root + 1]];
+        int[] next = new int[root + 1];
+        System.arraycopy(childOffsets, 0, next, 0, root + 1);
+        for (int i = 0; i < size; i++) {
+            if (parents[i] >= 0) {
+                children[next[parents[i]]++] = i;
+            }
+        }
+    }
+
+    public ObjectId getDiskId() {
+        return diskId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * 渲染指定上级目录以下的完整目录树
+     *
+     * @param parentId 磁盘ID或文件夹ID
+     * @return 目录树，上级目录不在本磁盘内时返回空列表
+     */
+    public List<TreeNode> toTreeNodes(ObjectId parentId) {
+        Integer position = parentId.equals(diskId) ? Integer.valueOf(ids.length) : positions.get(parentId);
+        return position == null ? Collections.emptyList() : render(position, parentId.toString(), 0);
+    }
+
+    private List<TreeNode> render(int node, String nodeId, int depth) {
+        int from = childOffsets[node];
+        int to = childOffsets[node + 1];
+        // 防止异常数据构成环
+        if (from == to || depth > ids.length) {
+            return Collections.emptyList();
+        }
+        List<TreeNode> nodes = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int child = children[i];
+            String childId = ids[child].toString();
+            List<TreeNode> subNodes = render(child, childId, depth + 1);
+            nodes.add(new TreeNode(childId, names[child], nodeId, subNodes, subNodes.size() > 0));
+        }
+        return nodes;
+    }
+}
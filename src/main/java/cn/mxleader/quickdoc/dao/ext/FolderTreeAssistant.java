@@ -0,0 +1,407 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.entities.SysDisk;
+import cn.mxleader.quickdoc.entities.SysFolder;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.PushOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * 文件夹树查询
+ * <p>
+ * 每个文件夹保存自顶层起的上级文件夹ID（ancestors），子树、路径查询均只需一次往返；
+ * 文件夹同时记录直接子目录数量（folderCount）及文件数量（fileCount），供逐级展开目录树使用；
+ * 文件夹及磁盘记录其下（含所有下级文件夹）的文件总数（totalFiles）及总字节数（totalSize），
+ * 文件增删时沿上级文件夹链直至磁盘原子累加，文件同时属于多个容器时在每个容器中分别计入；
+ * 启动时为尚未记录 ancestors 或数量的文件夹补齐这些字段，数量可能偏差时由 {@link #recount()} 修正。
+ */
+@Component
+public class FolderTreeAssistant implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderTreeAssistant.class);
+
+    public static final String ANCESTORS_FIELD = "ancestors";
+    public static final String FOLDER_COUNT_FIELD = "folderCount";
+    public static final String FILE_COUNT_FIELD = "fileCount";
+    public static final String TOTAL_FILES_FIELD = "totalFiles";
+    public static final String TOTAL_SIZE_FIELD = "totalSize";
+
+    private static final String PATH = "path";
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final MongoOperations mongoOperations;
+    private final MongoConverter converter;
+    private final String collectionName;
+    private final String diskCollectionName;
+    private final String filesCollectionName;
+
+    public FolderTreeAssistant(MongoOperations mongoOperations, GridFsAssistant gridFsAssistant) {
+        this.mongoOperations = mongoOperations;
+        this.converter = mongoOperations.getConverter();
+        this.collectionName = mongoOperations.getCollectionName(SysFolder.class);
+        this.diskCollectionName = mongoOperations.getCollectionName(SysDisk.class);
+        this.filesCollectionName = gridFsAssistant.getFilesCollectionName();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        backfill();
+        if (collection().count(exists(TOTAL_SIZE_FIELD, false)) > 0
+                || diskCollection().count(exists(TOTAL_SIZE_FIELD, false)) > 0) {
+            recount();
+        }
+    }
+
+    /**
+     * 获取文件夹及其所有下级文件夹（不保证顺序）
+     *
+     * @param folderId 文件夹ID
+     * @return 文件夹列表，首个元素为该文件夹本身；文件夹不存在时返回空列表
+     */
+    public List<SysFolder> findSubtree(ObjectId folderId) {
+        List<SysFolder> folders = mongoOperations.find(Query.query(subtreeOf(folderId)), SysFolder.class);
+        for (int i = 0; i < folders.size(); i++) {
+            if (folders.get(i).getId().equals(folderId)) {
+                Collections.swap(folders, 0, i);
+                return folders;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 获取容器下的一批下级文件夹（级联删除时分批处理）
+     *
+     * @param root  磁盘或文件夹
+     * @param limit 最多返回的数量
+     * @return 下级文件夹，为空表示已全部处理
+     */
+    public List<SysFolder> findDescendants(ParentLink root, int limit) {
+        return mongoOperations.find(Query.query(descendantsOf(root)).limit(limit), SysFolder.class);
+    }
+
+    /**
+     * 文件夹本身及其所有下级文件夹
+     */
+    public static Criteria subtreeOf(ObjectId folderId) {
+        return new Criteria().orOperator(where("_id").is(folderId), where(ANCESTORS_FIELD).is(folderId));
+    }
+
+    /**
+     * 磁盘或文件夹的所有下级文件夹
+     */
+    public static Criteria descendantsOf(ParentLink root) {
+        return root.getTarget().equals(AuthTarget.DISK)
+                ? where("parent.diskId").is(root.getDiskId())
+                : where(ANCESTORS_FIELD).is(root.getId());
+    }
+
+    /**
+     * 批量删除文件夹文档
+     *
+     * @param folderIds 文件夹ID
+     */
+    public void deleteAll(Collection<ObjectId> folderIds) {
+        collection().deleteMany(in("_id", folderIds));
+    }
+
+    /**
+     * 获取自顶层文件夹至该文件夹的完整路径（面包屑）
+     *
+     * @param folderId 文件夹ID
+     * @return 文件夹列表，末尾元素为该文件夹本身；文件夹不存在时返回空列表
+     */
+    public List<SysFolder> findPath(ObjectId folderId) {
+        Document result = collection().aggregate(Arrays.asList(
+                new Document("$match", new Document("_id", folderId)),
+                new Document("$lookup", new Document("from", collectionName)
+                        .append("localField", ANCESTORS_FIELD)
+                        .append("foreignField", "_id")
+                        .append("as", PATH))))
+                .first();
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        @SuppressWarnings("unchecked")
+        List<Document> path = (List<Document>) result.remove(PATH);
+        SysFolder folder = converter.read(SysFolder.class, result);
+        // $lookup 不保证顺序，按 ancestors 重新排列
+        Map<ObjectId, SysFolder> found = new HashMap<>();
+        for (Document document : path) {
+            SysFolder ancestor = converter.read(SysFolder.class, document);
+            found.put(ancestor.getId(), ancestor);
+        }
+        List<SysFolder> folders = new ArrayList<>(folder.getAncestors().size() + 1);
+        for (ObjectId ancestorId : folder.getAncestors()) {
+            SysFolder ancestor = found.get(ancestorId);
+            if (ancestor != null) {
+                folders.add(ancestor);
+            }
+        }
+        folders.add(folder);
+        return folders;
+    }
+
+    /**
+     * 文件夹移动后更新所有下级文件夹的 ancestors：将原有的上级前缀替换为新的前缀
+     *
+     * @param folderId     已移动的文件夹ID
+     * @param oldAncestors 移动前的上级文件夹
+     * @param newAncestors 移动后的上级文件夹
+     */
+    public void moveDescendants(ObjectId folderId, List<ObjectId> oldAncestors, List<ObjectId> newAncestors) {
+        // MongoDB 3.6 不支持在同一更新中对同一数组先删除后插入，分两步执行
+        if (!oldAncestors.isEmpty()) {
+            collection().updateMany(eq(ANCESTORS_FIELD, folderId), pullAll(ANCESTORS_FIELD, oldAncestors));
+        }
+        if (!newAncestors.isEmpty()) {
+            collection().updateMany(eq(ANCESTORS_FIELD, folderId),
+                    pushEach(ANCESTORS_FIELD, newAncestors, new PushOptions().position(0)));
+        }
+    }
+
+    /**
+     * 按字段更新文件夹，避免整体保存时覆盖并发累加的子目录及文件数量
+     *
+     * @param folderId 文件夹ID
+     * @param update   更新内容
+     * @return 更新后的文件夹，文件夹不存在时返回 null
+     */
+    public SysFolder update(ObjectId folderId, Update update) {
+        return mongoOperations.findAndModify(Query.query(where("_id").is(folderId)), update,
+                FindAndModifyOptions.options().returnNew(true), SysFolder.class);
+    }
+
+    /**
+     * 累加文件夹的直接子目录数量及文件数量
+     *
+     * @param folderId 文件夹ID
+     * @param folders  子目录数量增量
+     * @param files    文件数量增量
+     */
+    public void incrementCounts(ObjectId folderId, long folders, long files) {
+        collection().updateOne(eq("_id", folderId),
+                combine(inc(FOLDER_COUNT_FIELD, folders), inc(FILE_COUNT_FIELD, files)));
+    }
+
+    /**
+     * 累加容器及其所有上级文件夹、所在磁盘的文件总数及总字节数
+     *
+     * @param container 磁盘或文件夹
+     * @param files     文件数量增量
+     * @param bytes     字节数增量
+     */
+    public void incrementTotals(ParentLink container, long files, long bytes) {
+        Bson increment = combine(inc(TOTAL_FILES_FIELD, files), inc(TOTAL_SIZE_FIELD, bytes));
+        if (container.getTarget().equals(AuthTarget.FOLDER)) {
+            Document folder = collection().findOneAndUpdate(eq("_id", container.getId()), increment,
+                    new FindOneAndUpdateOptions().projection(include(ANCESTORS_FIELD)));
+            @SuppressWarnings("unchecked")
+            List<ObjectId> ancestors = folder == null ? null : (List<ObjectId>) folder.get(ANCESTORS_FIELD);
+            if (ancestors != null && !ancestors.isEmpty()) {
+                collection().updateMany(in("_id", ancestors), increment);
+            }
+        }
+        diskCollection().updateOne(eq("_id", container.getDiskId()), increment);
+    }
+
+    /**
+     * 按 parent 及 fs.files 的 metadata.parents 重新统计所有文件夹的直接子目录数量、文件数量，
+     * 以及所有文件夹和磁盘的文件总数、总字节数（均不含回收站文件及所在容器已不存在的文件）
+     * <p>
+     * 统计前先读取各容器的当前值，修正时以 $inc 累加（统计值 - 读取值），且仅在容器的当前值仍与读取值一致时更新；
+     * 统计期间有增减的容器保持不变，留待下一次统计，避免覆盖并发的累加。
+     */
+    public void recount() {
+        MongoCollection<Document> folders = collection();
+        MongoCollection<Document> disks = diskCollection();
+        List<Document> all = folders.find().projection(include("_id", ANCESTORS_FIELD, FOLDER_COUNT_FIELD,
+                FILE_COUNT_FIELD, TOTAL_FILES_FIELD, TOTAL_SIZE_FIELD)).into(new ArrayList<>());
+        List<Document> allDisks = disks.find().projection(include("_id", TOTAL_FILES_FIELD, TOTAL_SIZE_FIELD))
+                .into(new ArrayList<>());
+        Set<ObjectId> containers = new HashSet<>();
+        all.forEach(folder -> containers.add(folder.getObjectId("_id")));
+        allDisks.forEach(disk -> containers.add(disk.getObjectId("_id")));
+
+        Map<ObjectId, long[]> counts = new HashMap<>();
+        for (Document group : folders.aggregate(Arrays.asList(
+                new Document("$match", new Document("parent.target", AuthTarget.FOLDER.name())),
+                new Document("$group", new Document("_id", "$parent._id")
+                        .append("count", new Document("$sum", 1)))))) {
+            counts.computeIfAbsent(group.getObjectId("_id"), key -> new long[4])[0] =
+                    ((Number) group.get("count")).longValue();
+        }
+        // 按容器统计直接包含的文件数量及字节数，磁盘总数为该磁盘内所有现存容器之和
+        Map<ObjectId, long[]> diskTotals = new HashMap<>();
+        Map<ObjectId, long[]> direct = new HashMap<>();
+        for (Document group : mongoOperations.getCollection(filesCollectionName).aggregate(Arrays.asList(
+                new Document("$match", new Document(GridFsAssistant.TRASHED_AT_FIELD, new Document("$exists", false))),
+                new Document("$unwind", "$metadata.parents"),
+                new Document("$group", new Document("_id", "$metadata.parents._id")
+                        .append("diskId", new Document("$first", "$metadata.parents.diskId"))
+                        .append("count", new Document("$sum", 1))
+                        .append("bytes", new Document("$sum", "$length")))))) {
+            if (!containers.contains(group.getObjectId("_id"))) {
+                // 容器已删除（如级联删除任务尚未处理完的文件夹）
+                continue;
+            }
+            long count = ((Number) group.get("count")).longValue();
+            long bytes = ((Number) group.get("bytes")).longValue();
+            direct.put(group.getObjectId("_id"), new long[]{count, bytes});
+            long[] total = diskTotals.computeIfAbsent(group.getObjectId("diskId"), key -> new long[2]);
+            total[0] += count;
+            total[1] += bytes;
+        }
+        for (Document folder : all) {
+            long[] files = direct.get(folder.getObjectId("_id"));
+            if (files == null) {
+                continue;
+            }
+            counts.computeIfAbsent(folder.getObjectId("_id"), key -> new long[4])[1] = files[0];
+            // 文件计入所在文件夹及其所有上级文件夹
+            @SuppressWarnings("unchecked")
+            List<ObjectId> ancestors = folder.get(ANCESTORS_FIELD, List.class);
+            List<ObjectId> chain = ancestors == null ? new ArrayList<>() : new ArrayList<>(ancestors);
+            chain.add(folder.getObjectId("_id"));
+            for (ObjectId id : chain) {
+                long[] count = counts.computeIfAbsent(id, key -> new long[4]);
+                count[2] += files[0];
+                count[3] += files[1];
+            }
+        }
+        String[] folderFields = {FOLDER_COUNT_FIELD, FILE_COUNT_FIELD, TOTAL_FILES_FIELD, TOTAL_SIZE_FIELD};
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (Document folder : all) {
+            WriteModel<Document> update = correction(folder, folderFields,
+                    counts.getOrDefault(folder.getObjectId("_id"), new long[4]));
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        long skipped = apply(folders, updates);
+        String[] diskFields = {TOTAL_FILES_FIELD, TOTAL_SIZE_FIELD};
+        updates.clear();
+        for (Document disk : allDisks) {
+            WriteModel<Document> update = correction(disk, diskFields,
+                    diskTotals.getOrDefault(disk.getObjectId("_id"), new long[2]));
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        skipped += apply(disks, updates);
+        log.info("已重新统计{}个文件夹的子目录及文件数量、{}个磁盘的文件总量，{}个容器统计期间有更新，留待下次统计",
+                all.size(), allDisks.size(), skipped);
+    }
+
+    /**
+     * 生成修正：以读取时的值为条件，按统计值与读取值之差累加；无偏差时返回 null
+     */
+    private static WriteModel<Document> correction(Document snapshot, String[] fields, long[] values) {
+        List<Bson> filters = new ArrayList<>();
+        List<Bson> increments = new ArrayList<>();
+        filters.add(eq("_id", snapshot.getObjectId("_id")));
+        for (int i = 0; i < fields.length; i++) {
+            Number current = (Number) snapshot.get(fields[i]);
+            filters.add(eq(fields[i], current));
+            long delta = values[i] - (current == null ? 0L : current.longValue());
+            if (delta != 0 || current == null) {
+                increments.add(inc(fields[i], delta));
+            }
+        }
+        return increments.isEmpty() ? null : new UpdateOneModel<>(and(filters), combine(increments));
+    }
+
+    /**
+     * 分批执行修正
+     *
+     * @return 因统计期间有更新而未修正的容器数量
+     */
+    private static long apply(MongoCollection<Document> collection, List<WriteModel<Document>> updates) {
+        long skipped = 0;
+        for (int from = 0; from < updates.size(); from += BACKFILL_BATCH_SIZE) {
+            List<WriteModel<Document>> batch = updates.subList(from,
+                    Math.min(from + BACKFILL_BATCH_SIZE, updates.size()));
+            skipped += batch.size() - collection.bulkWrite(batch).getMatchedCount();
+        }
+        return skipped;
+    }
+
+    /**
+     * 为尚未记录 ancestors 的文件夹沿 parent 链计算并保存该字段
+     *
+     * @return 补齐的文件夹数量
+     */
+    public int backfill() {
+        MongoCollection<Document> folders = collection();
+        if (folders.count(exists(ANCESTORS_FIELD, false)) == 0) {
+            return 0;
+        }
+        Map<ObjectId, ObjectId> parents = new HashMap<>();
+        Set<ObjectId> missing = new HashSet<>();
+        for (Document folder : folders.find().projection(include("parent", ANCESTORS_FIELD))) {
+            ObjectId id = folder.getObjectId("_id");
+            Document parent = folder.get("parent", Document.class);
+            if (parent != null && AuthTarget.FOLDER.name().equals(parent.getString("target"))) {
+                parents.put(id, parent.getObjectId("_id"));
+            }
+            if (!folder.containsKey(ANCESTORS_FIELD)) {
+                missing.add(id);
+            }
+        }
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (ObjectId id : missing) {
+            LinkedList<ObjectId> ancestors = new LinkedList<>();
+            ObjectId parentId = parents.get(id);
+            // 上级缺失时截断，并防止异常数据构成环
+            while (parentId != null && !ancestors.contains(parentId) && !parentId.equals(id)) {
+                ancestors.addFirst(parentId);
+                parentId = parents.get(parentId);
+            }
+            updates.add(new UpdateOneModel<>(eq("_id", id), set(ANCESTORS_FIELD, ancestors)));
+            if (updates.size() >= BACKFILL_BATCH_SIZE) {
+                folders.bulkWrite(updates);
+                updates.clear();
+            }
+        }
+        if (!updates.isEmpty()) {
+            folders.bulkWrite(updates);
+        }
+        log.info("已为{}个文件夹补齐上级路径", missing.size());
+        return missing.size();
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoOperations.getCollection(collectionName);
+    }
+
+    private MongoCollection<Document> diskCollection() {
+        return mongoOperations.getCollection(diskCollectionName);
+    }
+}
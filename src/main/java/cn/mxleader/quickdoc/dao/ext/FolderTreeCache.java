@@ -0,0 +1,141 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 磁盘文件夹树的进程内缓存
+ * <p>
+ * 每个磁盘缓存一份 {@link FolderTree} 快照，渲染目录树时直接读取内存；
+ * 文件夹新增、重命名、移动或删除时由调用方递增该磁盘的版本号，版本不一致的快照在下次读取时重建。
+ * 版本号只在本节点递增，其他节点上的变更由缓存时间（quickdoc.cache.folder-tree-ttl）兜底。
+ * <p>
+ * 同一磁盘同时只有一个线程重建快照，其余线程等待并直接使用重建结果；磁盘删除后移除其快照及版本号。
+ */
+@Component
+public class FolderTreeCache {
+
+    private final SysFolderRepository sysFolderRepository;
+    private final long ttl;
+
+    private final Map<ObjectId, Slot> slots = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder rebuildNanos = new LongAdder();
+    private final AtomicLong maxRebuildNanos = new AtomicLong();
+
+    public FolderTreeCache(SysFolderRepository sysFolderRepository, QuickDocCacheProperties properties) {
+        this.sysFolderRepository = sysFolderRepository;
+        this.ttl = properties.getFolderTreeTtl() * 1000L;
+    }
+
+    /**
+     * 获取磁盘的文件夹树，快照不存在、版本不一致或已过期时重新读取
+     *
+     * @param diskId 磁盘ID
+     * @return 文件夹树快照
+     */
+    public FolderTree get(ObjectId diskId) {
+        Slot slot = slots.computeIfAbsent(diskId, key -> new Slot());
+        FolderTree tree = slot.current();
+        if (tree != null) {
+            hits.increment();
+            return tree;
+        }
+        synchronized (slot) {
+            // 等待期间其他线程可能已完成重建
+            tree = slot.current();
+            if (tree != null) {
+                hits.increment();
+                return tree;
+            }
+            // 版本号在读取文件夹之前取得，重建期间发生的修改会使该快照在下次读取时再次重建
+            long version = slot.version.get();
+            long start = System.nanoTime();
+            tree = new FolderTree(diskId, version, sysFolderRepository.findAllByParentDiskId(diskId));
+            long elapsed = System.nanoTime() - start;
+            rebuilds.increment();
+            rebuildNanos.add(elapsed);
+            maxRebuildNanos.accumulateAndGet(elapsed, Math::max);
+            slot.tree = tree;
+            slot.expiresAt = System.currentTimeMillis() + ttl;
+            return tree;
+        }
+    }
+
+    /**
+     * 磁盘内文件夹结构变化后递增版本号
+     *
+     * @param diskId 磁盘ID
+     */
+    public void invalidate(ObjectId diskId) {
+        slots.computeIfAbsent(diskId, key -> new Slot()).version.incrementAndGet();
+    }
+
+    /**
+     * 磁盘删除后移除其快照及版本号
+     *
+     * @param diskId 磁盘ID
+     */
+    public void remove(ObjectId diskId) {
+        Slot slot = slots.remove(diskId);
+        if (slot != null) {
+            // 正在读取该快照的线程随即重建，不再使用已删除磁盘的旧快照
+            slot.version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 缓存命中、重建次数及重建耗时统计
+     *
+     * @return 统计结果
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.sum();
+        long rebuildCount = rebuilds.sum();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("disks", slots.size());
+        statistics.put("folders", slots.values().stream()
+                .map(slot -> slot.tree)
+                .filter(Objects::nonNull)
+                .mapToInt(FolderTree::size).sum());
+        statistics.put("hits", hitCount);
+        statistics.put("rebuilds", rebuildCount);
+        statistics.put("hitRate", hitCount + rebuildCount == 0 ? 0.0
+                : (double) hitCount / (hitCount + rebuildCount));
+        statistics.put("averageRebuildMillis", rebuildCount == 0 ? 0.0
+                : rebuildNanos.sum() / 1e6 / rebuildCount);
+        statistics.put("maxRebuildMillis", maxRebuildNanos.get() / 1e6);
+        return statistics;
+    }
+
+    /**
+     * 单个磁盘的版本号及快照，重建时以其为锁
+     */
+    private static class Slot {
+        private final AtomicLong version = new AtomicLong();
+        private volatile FolderTree tree;
+        private volatile long expiresAt;
+
+        /**
+         * 版本一致且未过期的快照，否则返回 null
+         */
+        FolderTree current() {
+            FolderTree snapshot = tree;
+            if (snapshot != null && snapshot.getVersion() == version.get()
+                    && expiresAt > System.currentTimeMillis()) {
+                return snapshot;
+            }
+            return null;
+        }
+    }
+}
@@ -1,18 +1,37 @@
 package cn.mxleader.quickdoc.dao.ext;
 
+import cn.mxleader.quickdoc.config.QuickDocBlobProperties;
+import cn.mxleader.quickdoc.dao.blob.BlobStore;
+import cn.mxleader.quickdoc.dao.blob.BlobStores;
+import cn.mxleader.quickdoc.dao.blob.CompressionPolicy;
+import cn.mxleader.quickdoc.dao.blob.GridFsBlobStore;
+import cn.mxleader.quickdoc.entities.AuthAction;
+import cn.mxleader.quickdoc.entities.Authorization;
 import cn.mxleader.quickdoc.entities.Metadata;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.GridFSBuckets;
-import com.mongodb.client.gridfs.GridFSDownloadStream;
 import com.mongodb.client.gridfs.GridFSFindIterable;
 import com.mongodb.client.gridfs.model.GridFSFile;
-import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.bson.BsonObjectId;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.support.ResourcePatternResolver;
@@ -27,18 +46,68 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import static com.mongodb.assertions.Assertions.notNull;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.elemMatch;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Filters.not;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Filters.regex;
+import static com.mongodb.client.model.Filters.size;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.addEachToSet;
+import static com.mongodb.client.model.Updates.addToSet;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.pull;
+import static com.mongodb.client.model.Updates.pullAll;
+import static com.mongodb.client.model.Updates.pullByFilter;
+import static com.mongodb.client.model.Updates.push;
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.unset;
+import static cn.mxleader.quickdoc.dao.ext.GridFsQueries.linkedTo;
+import static cn.mxleader.quickdoc.dao.ext.GridFsQueries.retiredBefore;
+import static cn.mxleader.quickdoc.dao.ext.GridFsQueries.sharingContent;
+import static cn.mxleader.quickdoc.dao.ext.GridFsQueries.storedAs;
+import static cn.mxleader.quickdoc.dao.ext.GridFsQueries.trashedBefore;
+import static org.bson.codecs.configuration.CodecRegistries.fromCodecs;
 import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 import static org.springframework.data.mongodb.gridfs.GridFsCriteria.whereFilename;
 
+/**
+ * GridFS文件存储扩展
+ * <p>
+ * 文件内容按SHA-256摘要去重：相同内容的文件共享同一组分块（fs.chunks），
+ * 摘要与分块组的对应关系及引用计数记录在 fs.contents 集合内，
+ * 文件文档（fs.files）通过 contentHash / contentId 字段指向其内容。
+ * <p>
+ * 内容主体由 {@link BlobStore} 存储，文件文档及内容文档的 blobStore 字段记录所在的存储后端，
+ * 缺省为GridFS分块存储。
+ * <p>
+ * 启用压缩存储时，按 {@link CompressionPolicy} 对可压缩类型的文件逐块压缩，
+ * compression / storedLength 字段记录压缩方式及实际存储字节数。
+ */
 @Component
 public class GridFsAssistant implements GridFsOperations, ResourcePatternResolver {
 
@@ -48,21 +117,104 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
     private final MongoConverter converter;
     private final QueryMapper queryMapper;
     private final MongoCollection<GridFSFile> filesCollection;
+    private final MongoCollection<Document> filesDocuments;
+    private final MongoCollection<Document> chunksCollection;
+    private final MongoCollection<Document> contentsCollection;
+    private final MongoCollection<Document> retiredCollection;
+    private final GridFsContentCache contentCache;
+    private final BlobStores blobStores;
+    private final CompressionPolicy compressionPolicy;
+    private final ChunkPrefetcher chunkPrefetcher;
+
+    public static final int DEFAULT_CHUNK_SIZE = 255 * 1024;
+    public static final String CONTENT_HASH_FIELD = "contentHash";
+    public static final String CONTENT_ID_FIELD = "contentId";
+    public static final String BLOB_STORE_FIELD = "blobStore";
+    public static final String COMPRESSION_FIELD = "compression";
+    public static final String STORED_LENGTH_FIELD = "storedLength";
+    /**
+     * 文件内容的CRC32，用于生成不压缩（STORED）的ZIP条目
+     */
+    public static final String CRC32_FIELD = "crc32";
+    /**
+     * 移入回收站的时间，存在该字段的文件不再出现在列表中，超过保留期限后由后台回收
+     */
+    public static final String TRASHED_AT_FIELD = "trashedAt";
+    /**
+     * 迁移后源内容的登记时间（fs.retired），保留期过后删除
+     */
+    public static final String RETIRED_AT_FIELD = "retiredAt";
+    private static final String CONTENT_DIGEST_ALGORITHM = "SHA-256";
+    /**
+     * 先读入内存判重的内容上限，超出时边写入边计算摘要，写入完成后再去重
+     */
+    private static final int IN_MEMORY_THRESHOLD = 4 * DEFAULT_CHUNK_SIZE;
+    private static final FindOneAndUpdateOptions RETURN_AFTER =
+            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
 
     @Autowired
-    public GridFsAssistant(MongoDbFactory dbFactory, MongoConverter converter) {
-        this(dbFactory, converter, null);
+    public GridFsAssistant(MongoDbFactory dbFactory, MongoConverter converter, GridFsContentCache contentCache,
+                           BlobStores blobStores, CompressionPolicy compressionPolicy,
+                           ChunkPrefetcher chunkPrefetcher, QuickDocBlobProperties blobProperties) {
+        this(dbFactory, converter, contentCache, blobStores, compressionPolicy, chunkPrefetcher,
+                blobProperties.getGridFsBucket());
+    }
+
+    public GridFsAssistant(MongoDbFactory dbFactory, MongoConverter converter, GridFsContentCache contentCache,
+                           BlobStores blobStores, CompressionPolicy compressionPolicy,
+                           ChunkPrefetcher chunkPrefetcher) {
+        this(dbFactory, converter, contentCache, blobStores, compressionPolicy, chunkPrefetcher, (String) null);
     }
 
-    public GridFsAssistant(MongoDbFactory dbFactory, MongoConverter converter, String bucketName) {
+    public GridFsAssistant(MongoDbFactory dbFactory, MongoConverter converter, GridFsContentCache contentCache,
+                           BlobStores blobStores, CompressionPolicy compressionPolicy,
+                           ChunkPrefetcher chunkPrefetcher, String bucketName) {
         Assert.notNull(dbFactory, "MongoDbFactory must not be null!");
         Assert.notNull(converter, "MongoConverter must not be null!");
+        Assert.notNull(contentCache, "GridFsContentCache must not be null!");
+        Assert.notNull(blobStores, "BlobStores must not be null!");
+        Assert.notNull(compressionPolicy, "CompressionPolicy must not be null!");
+        Assert.notNull(chunkPrefetcher, "ChunkPrefetcher must not be null!");
 
         this.dbFactory = dbFactory;
         this.converter = converter;
         this.queryMapper = new QueryMapper(converter);
         this.bucketName = bucketName == null ? "fs" : bucketName;
         this.filesCollection = getFilesCollection(notNull("database", dbFactory.getDb()), this.bucketName);
+        this.filesDocuments = dbFactory.getDb().getCollection(getFilesCollectionName());
+        this.chunksCollection = dbFactory.getDb().getCollection(getChunksCollectionName());
+        this.contentsCollection = dbFactory.getDb().getCollection(getContentsCollectionName());
+        this.retiredCollection = dbFactory.getDb().getCollection(getRetiredCollectionName());
+        this.contentCache = contentCache;
+        this.blobStores = blobStores;
+        this.compressionPolicy = compressionPolicy;
+        this.chunkPrefetcher = chunkPrefetcher;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getFilesCollectionName() {
+        return bucketName + ".files";
+    }
+
+    public String getChunksCollectionName() {
+        return bucketName + ".chunks";
+    }
+
+    /**
+     * 内容摘要与分块组的对应关系及引用计数
+     */
+    public String getContentsCollectionName() {
+        return bucketName + ".contents";
+    }
+
+    /**
+     * 迁移后等待删除的源内容
+     */
+    public String getRetiredCollectionName() {
+        return bucketName + ".retired";
     }
 
     /*
@@ -136,24 +288,351 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
      * @see org.springframework.data.mongodb.gridfs.GridFsOperations#store(java.io.InputStream, java.lang.String, com.mongodb.Document)
      */
     public ObjectId store(InputStream content, @Nullable String filename, @Nullable String contentType, @Nullable Document metadata) {
+        return store(content, filename, contentType, metadata, null);
+    }
+
+    /**
+     * 存储文件内容至指定的存储后端
+     *
+     * @param content   内容输入流
+     * @param filename  文件名
+     * @param metadata  文件元数据
+     * @param blobStore 存储后端名称，为空时使用GridFS
+     * @return 文件ID
+     */
+    public ObjectId store(InputStream content, @Nullable String filename, @Nullable Object metadata,
+                          @Nullable String blobStore) {
+        Document document = null;
+
+        if (metadata != null) {
+            document = new Document();
+            converter.write(metadata, document);
+        }
+
+        return store(content, filename, null, document, blobStore);
+    }
+
+    private ObjectId store(InputStream content, @Nullable String filename, @Nullable String contentType,
+                           @Nullable Document metadata, @Nullable String blobStore) {
 
         Assert.notNull(content, "InputStream must not be null!");
 
-        GridFSUploadOptions options = new GridFSUploadOptions();
+        BlobStore store = blobStores.get(blobStore);
+        Document metadataDocument = toMetadataDocument(contentType, metadata);
+        boolean compress = store.isCompressionSupported()
+                && compressionPolicy.shouldCompress(metadataDocument.getString("_contentType"));
+        ObjectId fileId = ObjectId.get();
+        MessageDigest contentDigest = newContentDigest();
+        MessageDigest md5 = newDigest("MD5");
+        CRC32 crc32 = new CRC32();
+        try {
+            // 小文件先读入内存计算摘要，内容已存在时不再写入分块
+            byte[] head = new byte[IN_MEMORY_THRESHOLD + 1];
+            int headLength = IOUtils.read(content, head);
+            if (headLength <= IN_MEMORY_THRESHOLD) {
+                contentDigest.update(head, 0, headLength);
+                md5.update(head, 0, headLength);
+                crc32.update(head, 0, headLength);
+                String contentHash = toHex(contentDigest.digest());
+                Document existing = contentsCollection.findOneAndUpdate(eq("_id", contentHash),
+                        inc("references", 1));
+                if (existing != null) {
+                    insertFile(fileId, filename, headLength, DEFAULT_CHUNK_SIZE, toHex(md5.digest()),
+                            crc32.getValue(), metadataDocument, getBlobStoreName(existing),
+                            getStoredLength(existing, headLength), existing.getString(COMPRESSION_FIELD),
+                            new Document(CONTENT_HASH_FIELD, contentHash)
+                                    .append(CONTENT_ID_FIELD, existing.get(CONTENT_ID_FIELD)));
+                    return fileId;
+                }
+                long storedLength = writeBlob(store, fileId,
+                        new ByteArrayInputStream(head, 0, headLength), compress);
+                insertFile(fileId, filename, headLength, DEFAULT_CHUNK_SIZE, toHex(md5.digest()),
+                        crc32.getValue(), metadataDocument, store.getName(), storedLength,
+                        compress ? ChunkCodec.DEFLATE : null, null);
+                deduplicate(fileId, contentHash);
+                return fileId;
+            }
+            // 大文件以临时ID边写入边计算摘要，写入完成后按摘要去重
+            CountingInputStream counting = new CountingInputStream(new DigestInputStream(new DigestInputStream(
+                    new CheckedInputStream(new SequenceInputStream(
+                            new ByteArrayInputStream(head, 0, headLength), content), crc32),
+                    md5), contentDigest));
+            long storedLength = writeBlob(store, fileId, counting, compress);
+            insertFile(fileId, filename, counting.getByteCount(), DEFAULT_CHUNK_SIZE, toHex(md5.digest()),
+                    crc32.getValue(), metadataDocument, store.getName(), storedLength,
+                    compress ? ChunkCodec.DEFLATE : null, null);
+            deduplicate(fileId, toHex(contentDigest.digest()));
+            return fileId;
+        } catch (IOException exp) {
+            throw new MongoGridFSException("IOException when reading from the InputStream", exp);
+        }
+    }
 
-        Document mData = new Document();
+    private long writeBlob(BlobStore store, ObjectId fileId, InputStream content,
+                           boolean compress) throws IOException {
+        try {
+            return store.write(fileId, DEFAULT_CHUNK_SIZE, content, compress);
+        } catch (IOException | RuntimeException exp) {
+            store.delete(fileId);
+            throw exp;
+        }
+    }
 
-        if (StringUtils.hasText(contentType)) {
-            mData.put("_contentType", contentType);
+    /**
+     * 从指定分块编号开始写入定长内容，已存在的同编号分块将被覆盖
+     *
+     * @param filesId    分块所属文件ID
+     * @param chunkSize  分块大小
+     * @param firstChunk 起始分块编号
+     * @param content    内容输入流
+     * @param length     内容长度，输入流长度与之不符时抛出异常
+     * @throws IOException
+     */
+    public void writeChunks(ObjectId filesId, int chunkSize, int firstChunk,
+                            InputStream content, long length) throws IOException {
+        long remaining = length;
+        int n = firstChunk;
+        while (remaining > 0) {
+            byte[] data = new byte[(int) Math.min(chunkSize, remaining)];
+            int offset = 0;
+            while (offset < data.length) {
+                int count = content.read(data, offset, data.length - offset);
+                if (count == -1) {
+                    throw new EOFException("内容长度不足，应为 " + length + " 字节");
+                }
+                offset += count;
+            }
+            chunksCollection.replaceOne(and(eq("files_id", filesId), eq("n", n)),
+                    new Document("files_id", filesId).append("n", n).append("data", new Binary(data)),
+                    new UpdateOptions().upsert(true));
+            remaining -= data.length;
+            n++;
+        }
+        if (content.read() != -1) {
+            throw new IOException("内容长度超出 " + length + " 字节");
         }
+    }
 
+    /**
+     * 将已写入的分块登记为GridFS文件（计算摘要并进行内容去重）
+     *
+     * @param fileId    文件ID，即分块的 files_id
+     * @param filename  文件名
+     * @param length    文件长度
+     * @param chunkSize 分块大小
+     * @param metadata  文件元数据
+     * @return 文件ID
+     * @throws IOException
+     */
+    public ObjectId storeChunks(ObjectId fileId, String filename, long length,
+                                int chunkSize, @Nullable Object metadata) throws IOException {
+        contentCache.invalidate(fileId);
+        MessageDigest contentDigest = newContentDigest();
+        MessageDigest md5 = newDigest("MD5");
+        CRC32 crc32 = new CRC32();
+        try (InputStream content = new GridFsChunkInputStream(chunksCollection, new BsonObjectId(fileId),
+                chunkSize, 0, length - 1)) {
+            byte[] buffer = new byte[chunkSize];
+            int count;
+            while ((count = content.read(buffer)) != -1) {
+                contentDigest.update(buffer, 0, count);
+                md5.update(buffer, 0, count);
+                crc32.update(buffer, 0, count);
+            }
+        }
+        Document document = null;
         if (metadata != null) {
-            mData.putAll(metadata);
+            document = new Document();
+            converter.write(metadata, document);
         }
+        insertFile(fileId, filename, length, chunkSize, toHex(md5.digest()), crc32.getValue(),
+                toMetadataDocument(null, document), BlobStores.DEFAULT, length, null, null);
+        deduplicate(fileId, toHex(contentDigest.digest()));
+        return fileId;
+    }
 
-        options.metadata(mData);
+    private void insertFile(ObjectId fileId, @Nullable String filename, long length, int chunkSize, String md5,
+                            long crc32, Document metadata, String blobStore, long storedLength,
+                            @Nullable String compression, @Nullable Document content) {
+        Document document = new Document("_id", fileId)
+                .append("filename", filename)
+                .append("length", length)
+                .append("chunkSize", chunkSize)
+                .append("uploadDate", new Date())
+                .append("md5", md5)
+                .append(CRC32_FIELD, crc32)
+                .append("metadata", metadata)
+                .append(BLOB_STORE_FIELD, blobStore)
+                .append(STORED_LENGTH_FIELD, storedLength);
+        if (compression != null) {
+            document.append(COMPRESSION_FIELD, compression);
+        }
+        if (content != null) {
+            document.putAll(content);
+        }
+        filesDocuments.insertOne(document);
+    }
 
-        return getGridFs().uploadFromStream(filename, content, options);
+    /**
+     * 删除尚未登记为文件的分块
+     *
+     * @param filesId 分块所属文件ID
+     */
+    public void deleteChunks(ObjectId filesId) {
+        chunksCollection.deleteMany(eq("files_id", filesId));
+    }
+
+    /**
+     * 内容去重：摘要已存在时增加引用计数并删除刚写入的分块，文件指向已有内容；
+     * 否则登记新内容，文件指向自身分块。
+     *
+     * @param fileId      新写入的文件ID
+     * @param contentHash 文件内容摘要
+     */
+    private void deduplicate(ObjectId fileId, String contentHash) {
+        GridFSFile file = filesCollection.find(eq("_id", fileId)).first();
+        Document content = contentsCollection.findOneAndUpdate(eq("_id", contentHash), inc("references", 1));
+        if (content == null) {
+            try {
+                Document newContent = new Document("_id", contentHash)
+                        .append(CONTENT_ID_FIELD, fileId)
+                        .append("length", file.getLength())
+                        .append("references", 1)
+                        .append(BLOB_STORE_FIELD, getBlobStoreName(file))
+                        .append(STORED_LENGTH_FIELD, getStoredLength(file));
+                if (getCompression(file) != null) {
+                    newContent.append(COMPRESSION_FIELD, getCompression(file));
+                }
+                contentsCollection.insertOne(newContent);
+                filesCollection.updateOne(eq("_id", fileId),
+                        combine(set(CONTENT_HASH_FIELD, contentHash), set(CONTENT_ID_FIELD, fileId)));
+                return;
+            } catch (MongoWriteException exp) {
+                if (exp.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    throw exp;
+                }
+                // 并发上传相同内容，转为引用已登记的内容
+                deduplicate(fileId, contentHash);
+                return;
+            }
+        }
+        filesCollection.updateOne(eq("_id", fileId),
+                combine(set(CONTENT_HASH_FIELD, contentHash),
+                        set(CONTENT_ID_FIELD, content.get(CONTENT_ID_FIELD)),
+                        set(BLOB_STORE_FIELD, getBlobStoreName(content)),
+                        set(STORED_LENGTH_FIELD, getStoredLength(content, file.getLength())),
+                        content.containsKey(COMPRESSION_FIELD)
+                                ? set(COMPRESSION_FIELD, content.getString(COMPRESSION_FIELD))
+                                : unset(COMPRESSION_FIELD)));
+        blobStores.get(getBlobStoreName(file)).delete(fileId);
+    }
+
+    /**
+     * 释放文件对内容的引用，最后一个引用释放时删除内容分块
+     *
+     * @param file        已删除的文件
+     * @param batchSize   分批删除分块时每批的数量，0 表示一次删除
+     * @param pauseMillis 每批之间的暂停时间（毫秒）
+     */
+    private void releaseContent(GridFSFile file, int batchSize, long pauseMillis) {
+        String contentHash = getContentHash(file);
+        BlobStore store = blobStores.get(getBlobStoreName(file));
+        if (contentHash == null) {
+            deleteBlob(store, getContentObjectId(file), batchSize, pauseMillis);
+            return;
+        }
+        Document content = contentsCollection.findOneAndUpdate(eq("_id", contentHash), inc("references", -1),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        if (content == null) {
+            deleteBlob(store, getContentObjectId(file), batchSize, pauseMillis);
+        } else if (content.getInteger("references") <= 0
+                && contentsCollection.deleteOne(and(eq("_id", contentHash), lte("references", 0)))
+                .getDeletedCount() > 0) {
+            deleteBlob(blobStores.get(getBlobStoreName(content)), content.getObjectId(CONTENT_ID_FIELD),
+                    batchSize, pauseMillis);
+        }
+    }
+
+    private static void deleteBlob(BlobStore store, ObjectId blobId, int batchSize, long pauseMillis) {
+        if (batchSize > 0) {
+            store.delete(blobId, batchSize, pauseMillis);
+        } else {
+            store.delete(blobId);
+        }
+    }
+
+    /**
+     * 内容去重统计：内容数量、引用数量、实际存储字节数、逻辑字节数及节省的字节数
+     *
+     * @return 统计结果
+     */
+    public Map<String, Object> getDeduplicationReport() {
+        Document stats = contentsCollection.aggregate(Collections.singletonList(
+                new Document("$group", new Document("_id", null)
+                        .append("contents", new Document("$sum", 1))
+                        .append("references", new Document("$sum", "$references"))
+                        .append("storedBytes", new Document("$sum", storedLengthExpression()))
+                        .append("logicalBytes", new Document("$sum",
+                                new Document("$multiply", Arrays.asList("$length", "$references")))))))
+                .first();
+        Map<String, Object> report = new LinkedHashMap<>();
+        long storedBytes = stats == null ? 0L : ((Number) stats.get("storedBytes")).longValue();
+        long logicalBytes = stats == null ? 0L : ((Number) stats.get("logicalBytes")).longValue();
+        report.put("contents", stats == null ? 0 : stats.get("contents"));
+        report.put("references", stats == null ? 0 : stats.get("references"));
+        report.put("storedBytes", storedBytes);
+        report.put("logicalBytes", logicalBytes);
+        report.put("savedBytes", logicalBytes - storedBytes);
+        return report;
+    }
+
+    /**
+     * 各存储后端的内容数量及实际存储字节数
+     *
+     * @return 统计结果
+     */
+    public Map<String, Object> getStorageReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (String name : blobStores.names()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("contents", 0);
+            stats.put("storedBytes", 0L);
+            report.put(name, stats);
+        }
+        for (Document stats : contentsCollection.aggregate(Collections.singletonList(
+                new Document("$group", new Document("_id",
+                        new Document("$ifNull", Arrays.asList("$" + BLOB_STORE_FIELD, BlobStores.DEFAULT)))
+                        .append("contents", new Document("$sum", 1))
+                        .append("storedBytes", new Document("$sum", storedLengthExpression())))))) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("contents", stats.get("contents"));
+            item.put("storedBytes", ((Number) stats.get("storedBytes")).longValue());
+            report.put(stats.getString("_id"), item);
+        }
+        return report;
+    }
+
+    /**
+     * 按磁盘统计文件数量、逻辑字节数及实际存储字节数（含压缩，不计去重）
+     *
+     * @return 磁盘ID与统计结果
+     */
+    public Map<ObjectId, Document> getDiskUsage() {
+        Map<ObjectId, Document> usage = new LinkedHashMap<>();
+        for (Document stats : filesDocuments.aggregate(Arrays.asList(
+                new Document("$unwind", "$metadata.parents"),
+                // 同一文件在一个磁盘内有多个位置时只计一次
+                new Document("$group", new Document("_id",
+                        new Document("disk", "$metadata.parents.diskId").append("file", "$_id"))
+                        .append("length", new Document("$first", "$length"))
+                        .append(STORED_LENGTH_FIELD, new Document("$first", storedLengthExpression()))),
+                new Document("$group", new Document("_id", "$_id.disk")
+                        .append("files", new Document("$sum", 1))
+                        .append("logicalBytes", new Document("$sum", "$length"))
+                        .append("storedBytes", new Document("$sum", "$" + STORED_LENGTH_FIELD)))))) {
+            usage.put(stats.getObjectId("_id"), stats);
+        }
+        return usage;
     }
 
     /*
@@ -169,6 +648,29 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
         return getGridFs().find(queryObject).sort(sortObject);
     }
 
+    /**
+     * 按投影读取 fs.files 文档并由指定解码器直接转换，适用于只需少量字段的列表查询
+     *
+     * @param query  查询条件（包含排序、跳过及数量限制）
+     * @param fields 字段投影
+     * @param codec  文档解码器
+     * @return
+     */
+    public <T> FindIterable<T> find(Query query, Document fields, Codec<T> codec) {
+
+        Assert.notNull(query, "Query must not be null!");
+
+        Document queryObject = getMappedQuery(query.getQueryObject());
+        Document sortObject = getMappedQuery(query.getSortObject());
+        return filesDocuments
+                .withCodecRegistry(fromRegistries(fromCodecs(codec), filesDocuments.getCodecRegistry()))
+                .find(queryObject, codec.getEncoderClass())
+                .projection(fields)
+                .sort(sortObject)
+                .skip((int) query.getSkip())
+                .limit(query.getLimit());
+    }
+
     public long count(Query query){
 
         Document queryObject = getMappedQuery(query.getQueryObject());
@@ -190,17 +692,92 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
     public void delete(Query query) {
 
         for (GridFSFile x : find(query)) {
-            getGridFs().delete(((BsonObjectId) x.getId()).getValue());
+            if (filesCollection.deleteOne(eq("_id", x.getId())).getDeletedCount() > 0) {
+                releaseContent(x, 0, 0);
+                if (x.getId().isObjectId()) {
+                    contentCache.invalidate(x.getObjectId());
+                }
+            }
+        }
+    }
+
+    /**
+     * 将文件移入回收站，仅写入回收时间，内容保留至回收
+     *
+     * @param fileId 文件ID
+     * @return 移入回收站后的文件，文件不存在或已在回收站时返回 null
+     */
+    public GridFSFile trash(ObjectId fileId) {
+        return filesCollection.findOneAndUpdate(notTrashed(fileId),
+                set(TRASHED_AT_FIELD, new Date()), RETURN_AFTER);
+    }
+
+    /**
+     * 从回收站还原文件
+     *
+     * @param fileId 文件ID
+     * @return 还原后的文件，文件不在回收站时返回 null
+     */
+    public GridFSFile restore(ObjectId fileId) {
+        return filesCollection.findOneAndUpdate(and(eq("_id", fileId), exists(TRASHED_AT_FIELD, true)),
+                unset(TRASHED_AT_FIELD), RETURN_AFTER);
+    }
+
+    /**
+     * 彻底删除文件：回收时间置为纪元时间，下次后台回收时即删除，不受保留期限限制
+     *
+     * @param fileId 文件ID
+     * @return 文件存在时返回 true
+     */
+    public boolean purge(ObjectId fileId) {
+        return filesCollection.updateOne(eq("_id", fileId), set(TRASHED_AT_FIELD, new Date(0)))
+                .getMatchedCount() > 0;
+    }
+
+    /**
+     * 回收在指定时间之前移入回收站的文件：删除文件文档并分批删除内容分块
+     *
+     * @param cutoff      回收截止时间
+     * @param limit       本次最多回收的文件数量
+     * @param batchSize   每批删除的分块数量
+     * @param pauseMillis 每批之间的暂停时间（毫秒）
+     * @return 回收的文件
+     */
+    public List<GridFSFile> reclaim(Date cutoff, int limit, int batchSize, long pauseMillis) {
+        List<GridFSFile> reclaimed = new ArrayList<>();
+        for (GridFSFile file : filesCollection.find(trashedBefore(cutoff)).limit(limit)) {
+            // 回收前文件可能已被还原
+            if (filesCollection.deleteOne(and(eq("_id", file.getId()), trashedBefore(cutoff)))
+                    .getDeletedCount() > 0) {
+                releaseContent(file, batchSize, pauseMillis);
+                if (file.getId().isObjectId()) {
+                    contentCache.invalidate(file.getObjectId());
+                }
+                reclaimed.add(file);
+            }
         }
+        return reclaimed;
     }
 
+    /**
+     * 重命名文件，回收站中的文件不可重命名
+     *
+     * @param fileId      文件ID
+     * @param newFilename 新文件名
+     */
     public void rename(ObjectId fileId, String newFilename) {
-        FindIterable<GridFSFile> files = filesCollection.find(eq("_id", fileId));
-        if (files.first() != null) {
-            getGridFs().rename(fileId, newFilename);
+        if (filesCollection.updateOne(notTrashed(fileId), set("filename", newFilename)).getMatchedCount() > 0) {
+            contentCache.invalidate(fileId);
         }
     }
 
+    /**
+     * 更新文件元数据，回收站中的文件不可更新
+     *
+     * @param fileId   文件ID
+     * @param metadata 文件元数据
+     * @return 更新前的文件，文件不存在或已在回收站时返回 null
+     */
     public GridFSFile updateMetadata(ObjectId fileId, Metadata metadata) {
         Document document = null;
 
@@ -208,10 +785,150 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
             document = new Document();
             converter.write(metadata, document);
         }
-        return filesCollection.findOneAndUpdate(eq("_id", fileId),
+        return filesCollection.findOneAndUpdate(notTrashed(fileId),
                 new Document("$set", new Document("metadata", document)));
     }
 
+    /**
+     * 更新文件类型（仅修改 metadata._contentType）
+     *
+     * @param fileId      文件ID
+     * @param contentType 文件类型
+     * @return 更新后的文件，文件不存在或已在回收站时返回 null
+     */
+    public GridFSFile updateContentType(ObjectId fileId, String contentType) {
+        return filesCollection.findOneAndUpdate(notTrashed(fileId), set("metadata._contentType", contentType),
+                RETURN_AFTER);
+    }
+
+    /**
+     * 增加文件所在容器，仅在文件尚未位于该容器时更新，调用方据返回值决定是否累加容器统计
+     *
+     * @param fileId 文件ID
+     * @param parent 容器信息
+     * @return 更新后的文件，文件不存在、已在回收站或已位于该容器时返回 null
+     */
+    public GridFSFile addParent(ObjectId fileId, ParentLink parent) {
+        Document link = toDocument(parent);
+        return filesCollection.findOneAndUpdate(and(notTrashed(fileId), ne("metadata.parents", link)),
+                push("metadata.parents", link), RETURN_AFTER);
+    }
+
+    /**
+     * 移除文件所在容器
+     *
+     * @param fileId 文件ID
+     * @param parent 容器信息
+     * @return 更新后的文件，文件不存在时返回 null
+     */
+    public GridFSFile removeParent(ObjectId fileId, ParentLink parent) {
+        return filesCollection.findOneAndUpdate(eq("_id", fileId), pull("metadata.parents", toDocument(parent)),
+                RETURN_AFTER);
+    }
+
+    /**
+     * 解除文件与一组容器的关联（级联删除容器时使用）
+     *
+     * @param parents 容器
+     * @param limit   本次最多处理的文件数量
+     * @return 本次解除关联的文件ID，为空表示已无关联文件
+     */
+    public List<ObjectId> unlinkParents(Collection<ParentLink> parents, int limit) {
+        List<Document> links = new ArrayList<>(parents.size());
+        for (ParentLink parent : parents) {
+            links.add(toDocument(parent));
+        }
+        List<ObjectId> fileIds = new ArrayList<>();
+        for (Document file : filesDocuments.find(linkedTo(links))
+                .projection(include("_id")).limit(limit)) {
+            fileIds.add(file.getObjectId("_id"));
+        }
+        if (!fileIds.isEmpty()) {
+            filesCollection.updateMany(in("_id", fileIds),
+                    pullByFilter(new Document("metadata.parents", new Document("$in", links))));
+        }
+        return fileIds;
+    }
+
+    /**
+     * 将已不属于任何容器的文件标记为彻底删除，下次回收时删除（仅检查给定文件，避免误删未归属容器的系统文件）
+     *
+     * @param fileIds 文件ID
+     * @return 标记删除的文件数量
+     */
+    public long purgeOrphans(List<ObjectId> fileIds) {
+        return filesCollection.updateMany(and(in("_id", fileIds), size("metadata.parents", 0)),
+                set(TRASHED_AT_FIELD, new Date(0))).getModifiedCount();
+    }
+
+    /**
+     * 增加文件授权：同名（不区分大小写）同类型的授权已存在时合并操作权限，否则追加新授权。
+     * <p>
+     * 合并与追加均为带条件的单次原子更新，并发追加同一授权时，后到者的追加条件不成立，转为合并。
+     *
+     * @param fileId        文件ID
+     * @param authorization 新增授权
+     * @return 更新后的文件，文件不存在或已在回收站时返回 null
+     */
+    public GridFSFile addAuthorization(ObjectId fileId, Authorization authorization) {
+        Bson sameAuthorization = matchAuthorization(authorization);
+        List<String> actions = authorization.getActions().stream().map(AuthAction::name).collect(Collectors.toList());
+        for (int attempt = 0; attempt < 2; attempt++) {
+            GridFSFile file = filesCollection.findOneAndUpdate(and(notTrashed(fileId), sameAuthorization),
+                    addEachToSet("metadata.authorizations.$.actions", actions), RETURN_AFTER);
+            if (file != null) {
+                return file;
+            }
+            file = filesCollection.findOneAndUpdate(and(notTrashed(fileId), not(sameAuthorization)),
+                    push("metadata.authorizations", toDocument(authorization)), RETURN_AFTER);
+            if (file != null) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 移除文件授权的操作权限，操作权限全部移除后删除该授权
+     *
+     * @param fileId        文件ID
+     * @param authorization 待删除授权
+     * @return 更新后的文件，文件不存在、已在回收站或授权不存在时返回 null
+     */
+    public GridFSFile removeAuthorization(ObjectId fileId, Authorization authorization) {
+        List<String> actions = authorization.getActions().stream().map(AuthAction::name).collect(Collectors.toList());
+        GridFSFile file = filesCollection.findOneAndUpdate(
+                and(notTrashed(fileId), matchAuthorization(authorization)),
+                pullAll("metadata.authorizations.$.actions", actions), RETURN_AFTER);
+        if (file == null) {
+            return null;
+        }
+        GridFSFile cleaned = filesCollection.findOneAndUpdate(eq("_id", fileId),
+                pull("metadata.authorizations", and(authorizationName(authorization),
+                        eq("type", authorization.getType().name()), size("actions", 0))),
+                RETURN_AFTER);
+        return cleaned != null ? cleaned : file;
+    }
+
+    private static Bson matchAuthorization(Authorization authorization) {
+        return elemMatch("metadata.authorizations", and(authorizationName(authorization),
+                eq("type", authorization.getType().name())));
+    }
+
+    private static Bson authorizationName(Authorization authorization) {
+        return regex("name", "^" + Pattern.quote(authorization.getName()) + "$", "i");
+    }
+
+    /**
+     * 转换为嵌入文档，与 {@link #updateMetadata} 写入的数组元素格式一致（不含类型信息）
+     */
+    private Document toDocument(Object value) {
+        Document document = new Document();
+        converter.write(value, document);
+        document.remove("_class");
+        return document;
+    }
+
 
     /*
      * (non-Javadoc)
@@ -226,13 +943,346 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
      * @see org.springframework.core.io.ResourceLoader#getResource(org.bson.types.ObjectId)
      */
     public GridFsResource getResource(ObjectId fileId) {
-        GridFSFile file = findOne(query(where("_id").is(fileId)));
-        return file != null ? new GridFsResource(file, getGridFs().openDownloadStream(fileId)) : null;
+        GridFSFile file = findNotTrashed(fileId);
+        return file != null ? new GridFsResource(file, getCachedContentStream(file, 0, file.getLength() - 1)) : null;
+    }
+
+    public InputStream getFSDownloadStream(ObjectId fileId) {
+        GridFSFile file = findNotTrashed(fileId);
+        return file != null ? getCachedContentStream(file, 0, file.getLength() - 1) : null;
+    }
+
+    /**
+     * 读取文件指定字节区间的内容，直接定位到起始位置所在的分块
+     *
+     * @param file  GridFS文件
+     * @param start 起始位置
+     * @param end   结束位置（包含）
+     * @return 区间内容输入流
+     */
+    public InputStream getContentStream(GridFSFile file, long start, long end) {
+        Assert.isTrue(start >= 0 && start <= end + 1 && end < file.getLength(),
+                "Invalid content range: " + start + "-" + end);
+        try {
+            return blobStores.get(getBlobStoreName(file))
+                    .read(getContentObjectId(file), file.getChunkSize(), start, end);
+        } catch (IOException exp) {
+            throw new UncheckedIOException(exp);
+        }
+    }
+
+    /**
+     * 读取文件全部内容
+     *
+     * @param file GridFS文件
+     * @return 文件内容输入流
+     */
+    public InputStream getContentStream(GridFSFile file) {
+        return getContentStream(file, 0, file.getLength() - 1);
+    }
+
+    /**
+     * 获取文件内容摘要，去重功能启用前存储的文件返回 null
+     */
+    @Nullable
+    public static String getContentHash(GridFSFile file) {
+        Document storage = GridFsFileCodec.getStorage(file);
+        return storage == null ? null : storage.getString(CONTENT_HASH_FIELD);
+    }
+
+    /**
+     * 生成文件的强实体标签：优先使用内容摘要，其次为GridFS的MD5，均无时使用文件ID与上传时间
+     */
+    public static String getETag(GridFSFile file) {
+        String tag = getContentHash(file);
+        if (tag == null) {
+            tag = file.getMD5();
+        }
+        if (tag == null) {
+            tag = file.getId().asObjectId().getValue().toHexString() + "-" + file.getUploadDate().getTime();
+        }
+        return "\"" + tag + "\"";
+    }
+
+    /**
+     * 获取文件内容的CRC32：优先使用存储时记录的值，未记录时读取内容计算，
+     * 并写入该文件及共享同一内容的文件
+     *
+     * @param file GridFS文件
+     * @return CRC32
+     * @throws IOException
+     */
+    public long getCrc32(GridFSFile file) throws IOException {
+        Long recorded = getRecordedCrc32(file);
+        if (recorded != null) {
+            return recorded;
+        }
+        CRC32 crc32 = new CRC32();
+        if (file.getLength() > 0) {
+            try (InputStream content = getPrefetchingStream(file, 0, file.getLength() - 1)) {
+                byte[] buffer = new byte[file.getChunkSize()];
+                int count;
+                while ((count = content.read(buffer)) != -1) {
+                    crc32.update(buffer, 0, count);
+                }
+            }
+        }
+        String contentHash = getContentHash(file);
+        filesDocuments.updateMany(contentHash == null ? eq("_id", file.getId()) : sharingContent(contentHash),
+                set(CRC32_FIELD, crc32.getValue()));
+        return crc32.getValue();
+    }
+
+    /**
+     * 存储时记录的CRC32，未记录（早期存储的文件）时返回 null
+     */
+    @Nullable
+    public static Long getRecordedCrc32(GridFSFile file) {
+        Document storage = GridFsFileCodec.getStorage(file);
+        Object value = storage == null ? null : storage.get(CRC32_FIELD);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    /**
+     * 为未记录CRC32的文件补算CRC32（读取内容计算并写入共享同一内容的文件），回收站中的文件除外
+     *
+     * @param limit 本次最多处理的文件数量
+     * @return 本次处理的文件数量，为 0 表示已无未记录CRC32的文件
+     * @throws IOException
+     */
+    public int backfillCrc32(int limit) throws IOException {
+        int count = 0;
+        List<GridFSFile> files = filesCollection.find(and(exists(CRC32_FIELD, false),
+                exists(TRASHED_AT_FIELD, false))).limit(limit).into(new ArrayList<>());
+        Set<String> contentHashes = new HashSet<>();
+        for (GridFSFile file : files) {
+            // 共享同一内容的文件已随前一文件写入
+            String contentHash = getContentHash(file);
+            if (contentHash == null || contentHashes.add(contentHash)) {
+                getCrc32(file);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 获取文件内容所在分块组的ID（fs.chunks 中的 files_id）
+     */
+    public static BsonValue getContentId(GridFSFile file) {
+        Document storage = GridFsFileCodec.getStorage(file);
+        Object contentId = storage == null ? null : storage.get(CONTENT_ID_FIELD);
+        return contentId instanceof ObjectId ? new BsonObjectId((ObjectId) contentId) : file.getId();
+    }
+
+    private static ObjectId getContentObjectId(GridFSFile file) {
+        return getContentId(file).asObjectId().getValue();
+    }
+
+    /**
+     * 获取文件内容所在的存储后端名称，未记录时为GridFS
+     */
+    public static String getBlobStoreName(GridFSFile file) {
+        return getBlobStoreName(GridFsFileCodec.getStorage(file));
+    }
+
+    private static String getBlobStoreName(@Nullable Document document) {
+        String blobStore = document == null ? null : document.getString(BLOB_STORE_FIELD);
+        return blobStore == null ? BlobStores.DEFAULT : blobStore;
+    }
+
+    /**
+     * 获取文件内容的压缩方式，未压缩时返回 null
+     */
+    @Nullable
+    public static String getCompression(GridFSFile file) {
+        Document storage = GridFsFileCodec.getStorage(file);
+        return storage == null ? null : storage.getString(COMPRESSION_FIELD);
+    }
+
+    /**
+     * 获取文件内容实际存储的字节数，未记录时为文件长度
+     */
+    public static long getStoredLength(GridFSFile file) {
+        return getStoredLength(GridFsFileCodec.getStorage(file), file.getLength());
     }
 
-    public GridFSDownloadStream getFSDownloadStream(ObjectId fileId) {
-        GridFSFile file = findOne(query(where("_id").is(fileId)));
-        return file != null ? getGridFs().openDownloadStream(fileId) : null;
+    private static long getStoredLength(@Nullable Document document, long length) {
+        Object storedLength = document == null ? null : document.get(STORED_LENGTH_FIELD);
+        return storedLength instanceof Number ? ((Number) storedLength).longValue() : length;
+    }
+
+    @Nullable
+    private static String getContentType(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        return metadata == null ? null : metadata.getString("_contentType");
+    }
+
+    private static Document storedLengthExpression() {
+        return new Document("$ifNull", Arrays.asList("$" + STORED_LENGTH_FIELD, "$length"));
+    }
+
+    /**
+     * 将文件内容迁移至另一存储后端，共享同一内容的文件一并迁移
+     * <p>
+     * 内容以新的内容ID复制至目标后端，再以源后端为条件切换内容文档及文件文档；
+     * 条件不满足（已被并发迁移或内容已释放）时删除本次复制的内容。
+     * 源后端的内容不立即删除，登记至 fs.retired 集合，由 {@link #deleteRetiredBlobs(Date, int)}
+     * 在保留期过后、且确认不再被引用时删除，正在读取旧内容的下载不受影响。
+     *
+     * @param file      GridFS文件
+     * @param blobStore 目标存储后端名称
+     * @return 是否进行了迁移
+     * @throws IOException
+     */
+    public boolean migrate(GridFSFile file, String blobStore) throws IOException {
+        BlobStore source = blobStores.get(getBlobStoreName(file));
+        BlobStore target = blobStores.get(blobStore);
+        if (source == target) {
+            return false;
+        }
+        return relocate(file, source, target, target.isCompressionSupported()
+                && compressionPolicy.shouldCompress(getContentType(file)));
+    }
+
+    /**
+     * 按压缩策略在原存储后端内压缩文件内容（如断点续传按原样写入的分块），共享同一内容的文件一并切换；
+     * 旧内容同迁移一样登记至 fs.retired 延后删除
+     *
+     * @param file GridFS文件
+     * @return 是否进行了压缩
+     * @throws IOException
+     */
+    public boolean applyCompression(GridFSFile file) throws IOException {
+        BlobStore store = blobStores.get(getBlobStoreName(file));
+        if (!store.isCompressionSupported() || getCompression(file) != null
+                || !compressionPolicy.shouldCompress(getContentType(file))) {
+            return false;
+        }
+        return relocate(file, store, store, true);
+    }
+
+    private boolean relocate(GridFSFile file, BlobStore source, BlobStore target,
+                             boolean compress) throws IOException {
+        ObjectId contentId = getContentObjectId(file);
+        ObjectId targetId = ObjectId.get();
+        long storedLength;
+        try (CountingInputStream content = new CountingInputStream(
+                source.read(contentId, file.getChunkSize(), 0, file.getLength() - 1))) {
+            storedLength = target.write(targetId, file.getChunkSize(), content, compress);
+            if (content.getByteCount() != file.getLength()) {
+                target.delete(targetId);
+                throw new IOException("内容长度不符：" + file.getId() + "，应为 " + file.getLength() + " 字节");
+            }
+        } catch (IOException | RuntimeException exp) {
+            target.delete(targetId);
+            throw exp;
+        }
+        Bson update = combine(set(BLOB_STORE_FIELD, target.getName()),
+                set(CONTENT_ID_FIELD, targetId),
+                set(STORED_LENGTH_FIELD, storedLength),
+                compress ? set(COMPRESSION_FIELD, ChunkCodec.DEFLATE) : unset(COMPRESSION_FIELD));
+        Bson stored = storedAs(source.getName(), contentId);
+        String contentHash = getContentHash(file);
+        if (contentHash == null) {
+            if (filesDocuments.updateOne(and(eq("_id", file.getId()), stored), update).getModifiedCount() == 0) {
+                target.delete(targetId);
+                return false;
+            }
+        } else {
+            if (contentsCollection.updateOne(and(eq("_id", contentHash), stored), update).getModifiedCount() == 0) {
+                target.delete(targetId);
+                return false;
+            }
+            filesDocuments.updateMany(and(sharingContent(contentHash), stored), update);
+        }
+        retiredCollection.insertOne(new Document(BLOB_STORE_FIELD, source.getName())
+                .append(CONTENT_ID_FIELD, contentId)
+                .append(CONTENT_HASH_FIELD, contentHash)
+                .append(RETIRED_AT_FIELD, new Date()));
+        return true;
+    }
+
+    /**
+     * 删除迁移后保留期已过的源内容
+     * <p>
+     * 删除前将迁移期间以旧内容登记的文件（如并发的去重上传）指向新内容，
+     * 仍有文件或内容文档引用旧内容时推迟至下次执行。
+     *
+     * @param cutoff 登记时间早于该时间的源内容可以删除
+     * @param limit  本次最多处理的数量
+     * @return 删除的数量
+     */
+    public int deleteRetiredBlobs(Date cutoff, int limit) {
+        int deleted = 0;
+        for (Document retired : retiredCollection.find(retiredBefore(cutoff)).limit(limit)) {
+            String storeName = retired.getString(BLOB_STORE_FIELD);
+            ObjectId contentId = retired.getObjectId(CONTENT_ID_FIELD);
+            String contentHash = retired.getString(CONTENT_HASH_FIELD);
+            Bson stored = storedAs(storeName, contentId);
+            if (contentHash != null) {
+                Document content = contentsCollection.find(eq("_id", contentHash)).first();
+                if (content != null && !contentId.equals(content.get(CONTENT_ID_FIELD))) {
+                    filesDocuments.updateMany(and(sharingContent(contentHash), stored),
+                            combine(set(BLOB_STORE_FIELD, getBlobStoreName(content)),
+                                    set(CONTENT_ID_FIELD, content.get(CONTENT_ID_FIELD)),
+                                    set(STORED_LENGTH_FIELD, getStoredLength(content, ((Number) content.get("length")).longValue())),
+                                    content.containsKey(COMPRESSION_FIELD)
+                                            ? set(COMPRESSION_FIELD, content.getString(COMPRESSION_FIELD))
+                                            : unset(COMPRESSION_FIELD)));
+                }
+            }
+            if (filesDocuments.find(stored).first() != null || contentsCollection.find(stored).first() != null) {
+                continue;
+            }
+            blobStores.get(storeName).delete(contentId);
+            retiredCollection.deleteOne(eq("_id", retired.get("_id")));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * 读取文件指定字节区间的内容，文件不存在或已在回收站时返回 null
+     */
+    public InputStream getContentStream(ObjectId fileId, long start, long end) {
+        GridFSFile file = findNotTrashed(fileId);
+        return file != null ? getCachedContentStream(file, start, end) : null;
+    }
+
+    private GridFSFile findNotTrashed(ObjectId fileId) {
+        return filesCollection.find(notTrashed(fileId)).first();
+    }
+
+    /**
+     * 按ID匹配未移入回收站的文件；按ID读取内容及修改文件均以此为条件，还原与彻底删除除外
+     */
+    private static Bson notTrashed(ObjectId fileId) {
+        return and(eq("_id", fileId), exists(TRASHED_AT_FIELD, false));
+    }
+
+    /**
+     * 读取文件指定字节区间的内容，优先由本地磁盘缓存提供；
+     * 未命中时从GridFS读取并预读后续分块，下载、打包及预览转换均经由此处
+     */
+    private InputStream getCachedContentStream(GridFSFile file, long start, long end) {
+        return contentCache.open(file, start, end, () -> getPrefetchingStream(file, start, end));
+    }
+
+    /**
+     * 读取文件指定字节区间的内容并异步预读后续分块，仅用于分块存储（GridFS）的内容
+     *
+     * @param file  GridFS文件
+     * @param start 起始位置
+     * @param end   结束位置（包含）
+     * @return 区间内容输入流
+     */
+    public InputStream getPrefetchingStream(GridFSFile file, long start, long end) {
+        InputStream content = getContentStream(file, start, end);
+        if (!GridFsBlobStore.NAME.equals(getBlobStoreName(file))) {
+            return content;
+        }
+        return chunkPrefetcher.prefetch(content, file.getChunkSize(), end - start + 1);
     }
 
     /*
@@ -240,8 +1290,8 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
      * @see org.springframework.core.io.ResourceLoader#getResource(java.lang.String)
      */
     public GridFsResource getResource(String location) {
-        GridFSFile file = findOne(query(whereFilename().is(location)));
-        return file != null ? new GridFsResource(file, getGridFs().openDownloadStream(location)) : null;
+        GridFSFile file = findOne(query(whereFilename().is(location).and(TRASHED_AT_FIELD).exists(false)));
+        return file != null ? new GridFsResource(file, getContentStream(file)) : null;
     }
 
     /*
@@ -257,11 +1307,12 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
 
         if (path.isPattern()) {
 
-            GridFSFindIterable files = find(query(whereFilename().regex(path.toRegex())));
+            GridFSFindIterable files = find(query(whereFilename().regex(path.toRegex())
+                    .and(TRASHED_AT_FIELD).exists(false)));
             List<GridFsResource> resources = new ArrayList<GridFsResource>();
 
             for (GridFSFile file : files) {
-                resources.add(new GridFsResource(file, getGridFs().openDownloadStream(file.getFilename())));
+                resources.add(new GridFsResource(file, getContentStream(file)));
             }
 
             return resources.toArray(new GridFsResource[resources.size()]);
@@ -270,19 +1321,60 @@ public class GridFsAssistant implements GridFsOperations, ResourcePatternResolve
         return new GridFsResource[]{getResource(locationPattern)};
     }
 
+    private static Document toMetadataDocument(@Nullable String contentType, @Nullable Document metadata) {
+        Document mData = new Document();
+
+        if (StringUtils.hasText(contentType)) {
+            mData.put("_contentType", contentType);
+        }
+
+        if (metadata != null) {
+            mData.putAll(metadata);
+            mData.remove(GridFsFileCodec.STORAGE_KEY);
+        }
+        return mData;
+    }
+
+    private static MessageDigest newContentDigest() {
+        return newDigest(CONTENT_DIGEST_ALGORITHM);
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException exp) {
+            throw new IllegalStateException(exp);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
     private Document getMappedQuery(Document query) {
         return queryMapper.getMappedObject(query, Optional.empty());
     }
 
     private GridFSBucket getGridFs() {
-        MongoDatabase db = dbFactory.getDb();
+        MongoDatabase db = withFileCodec(dbFactory.getDb());
         return bucketName == null ? GridFSBuckets.create(db) : GridFSBuckets.create(db, bucketName);
     }
 
     private static MongoCollection<GridFSFile> getFilesCollection(final MongoDatabase database, final String bucketName) {
-        return database.getCollection(bucketName + ".files", GridFSFile.class).withCodecRegistry(
-                fromRegistries(database.getCodecRegistry(), MongoClient.getDefaultCodecRegistry())
-        );
+        return withFileCodec(database).getCollection(bucketName + ".files", GridFSFile.class);
+    }
+
+    /**
+     * 以 {@link GridFsFileCodec} 解码 GridFSFile，扩展字段经由 metadata 读取
+     */
+    private static MongoDatabase withFileCodec(MongoDatabase database) {
+        CodecRegistry registry = fromRegistries(database.getCodecRegistry(), MongoClient.getDefaultCodecRegistry());
+        return database.withCodecRegistry(fromRegistries(fromCodecs(new GridFsFileCodec(registry)), registry));
     }
 
 }
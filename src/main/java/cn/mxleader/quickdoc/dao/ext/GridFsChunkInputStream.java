@@ -0,0 +1,164 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.BsonValue;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.mongodb.client.model.Sorts.ascending;
+
+/**
+ * 可定位的GridFS分块读取流
+ * <p>
+ * 与 {@link com.mongodb.client.gridfs.GridFSDownloadStream} 不同，定位时直接按分块编号（n）
+ * 从 fs.chunks 集合查询目标分块，无需读取并丢弃之前的数据。
+ * 读取范围为 [start, end]，end 为包含在内的最后一个字节位置。
+ */
+public class GridFsChunkInputStream extends InputStream {
+
+    private final MongoCollection<Document> chunksCollection;
+    private final BsonValue filesId;
+    private final int chunkSize;
+    private final long end;
+
+    private long position;
+    private MongoCursor<Document> cursor;
+    private int expectedChunkIndex;
+    private byte[] buffer;
+    private int bufferOffset;
+    private boolean closed = false;
+
+    public GridFsChunkInputStream(MongoCollection<Document> chunksCollection,
+                                  BsonValue filesId,
+                                  int chunkSize,
+                                  long start,
+                                  long end) {
+        this.chunksCollection = chunksCollection;
+        this.filesId = filesId;
+        this.chunkSize = chunkSize;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * 定位到指定位置，目标不在当前分块内时重新按编号查询分块
+     *
+     * @param newPosition 新的读取位置
+     */
+    public void seek(long newPosition) {
+        if (newPosition < 0 || newPosition > end + 1) {
+            throw new IllegalArgumentException("读取位置越界：" + newPosition);
+        }
+        long bufferStart = position - bufferOffset;
+        if (buffer != null && newPosition >= bufferStart && newPosition < bufferStart + buffer.length) {
+            bufferOffset = (int) (newPosition - bufferStart);
+        } else {
+            discardCursor();
+        }
+        position = newPosition;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+        return count == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (len == 0) {
+            return 0;
+        }
+        if (position > end) {
+            return -1;
+        }
+        if (buffer == null || bufferOffset >= buffer.length) {
+            nextChunk();
+        }
+        int count = (int) Math.min(Math.min(len, buffer.length - bufferOffset), end - position + 1);
+        System.arraycopy(buffer, bufferOffset, b, off, count);
+        bufferOffset += count;
+        position += count;
+        if (position > end) {
+            discardCursor();
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkClosed();
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = Math.min(n, end + 1 - position);
+        seek(position + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        if (buffer == null || closed) {
+            return 0;
+        }
+        return (int) Math.min(buffer.length - bufferOffset, end - position + 1);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            discardCursor();
+        }
+    }
+
+    private void nextChunk() {
+        if (cursor == null) {
+            expectedChunkIndex = (int) (position / chunkSize);
+            cursor = chunksCollection.find(GridFsQueries.chunksBetween(filesId, expectedChunkIndex,
+                    (int) (end / chunkSize)))
+                    .sort(ascending("n"))
+                    .iterator();
+            bufferOffset = (int) (position % chunkSize);
+        } else {
+            bufferOffset = 0;
+        }
+        if (!cursor.hasNext()) {
+            throw new MongoGridFSException("Could not find file chunk for file_id: " + filesId
+                    + " at chunk index " + expectedChunkIndex + ".");
+        }
+        Document chunk = cursor.next();
+        int n = chunk.getInteger("n");
+        if (n != expectedChunkIndex) {
+            throw new MongoGridFSException("Could not find file chunk for file_id: " + filesId
+                    + " at chunk index " + expectedChunkIndex + ".");
+        }
+        buffer = ChunkCodec.decode(chunk, chunkSize);
+        expectedChunkIndex++;
+    }
+
+    private void discardCursor() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+        buffer = null;
+        bufferOffset = 0;
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("The InputStream has been closed");
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * GridFS文件内容的本地磁盘读穿缓存
+ * <p>
+ * 以文件ID及上传时间为键，首次完整读取文件时边读边写入缓存目录，之后的读取直接由本地文件提供。
+ * 容量满时按访问频率淘汰（频率相同时淘汰最久未访问的），访问频率定期减半以便冷却过去的热点文件。
+ */
+@Component
+public class GridFsContentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(GridFsContentCache.class);
+
+    /**
+     * 每隔 (缓存条目数 × AGING_FACTOR) 次访问将所有条目的访问频率减半
+     */
+    private static final int AGING_FACTOR = 10;
+    private static final int MIN_AGING_PERIOD = 100;
+
+    /**
+     * 缓存文件位于配置目录下的专用子目录
+     */
+    private static final String SUBDIRECTORY = "gridfs-content";
+    /**
+     * 缓存文件（文件ID-上传时间）及写入中的临时文件（文件ID+随机数.tmp）的命名规则
+     */
+    private static final Pattern CACHE_FILE_NAME = Pattern.compile("[0-9a-f]{24}(-\\d+|\\d+\\.tmp)");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSize;
+    private final long maxFileSize;
+
+    private final Map<ObjectId, Entry> entries = new HashMap<>();
+    private long size = 0;
+    private long clock = 0;
+    private long accessesSinceAging = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public GridFsContentCache(QuickDocCacheProperties properties) throws IOException {
+        this.enabled = properties.getEnabled();
+        this.directory = Paths.get(properties.getDirectory()).resolve(SUBDIRECTORY);
+        this.maxSize = properties.getMaxSize() * 1024L * 1024L;
+        this.maxFileSize = properties.getMaxFileSize() * 1024L * 1024L;
+        if (enabled) {
+            // 缓存索引仅保存在内存中，启动时清除上次运行遗留的缓存文件
+            Files.createDirectories(directory);
+            removeStaleFiles();
+        }
+    }
+
+    /**
+     * 只删除按缓存命名规则生成的文件，缓存目录被误配置为共享目录时不影响其他文件
+     */
+    private void removeStaleFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                if (Files.isRegularFile(path) && CACHE_FILE_NAME.matcher(path.getFileName().toString()).matches()) {
+                    deleteQuietly(path);
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 读取文件指定区间的内容：命中时由本地缓存文件提供；
+     * 未命中且读取的是完整文件时，读取过程中同步写入缓存。
+     *
+     * @param file   GridFS文件
+     * @param start  起始位置
+     * @param end    结束位置（包含）
+     * @param source 未命中时从GridFS读取该区间内容
+     * @return 区间内容输入流
+     */
+    public InputStream open(GridFSFile file, long start, long end, Supplier<InputStream> source) {
+        if (!isCacheable(file)) {
+            return source.get();
+        }
+        ObjectId fileId = file.getObjectId();
+        long version = file.getUploadDate().getTime();
+        Path path = lookup(fileId, version);
+        if (path != null) {
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ).position(start);
+                return new BoundedInputStream(Channels.newInputStream(channel), end - start + 1);
+            } catch (IOException exp) {
+                log.warn("读取缓存文件失败：{}", path, exp);
+                invalidate(fileId);
+            }
+        }
+        if (start == 0 && end == file.getLength() - 1) {
+            try {
+                return new CachingInputStream(source.get(), fileId, version, file.getLength());
+            } catch (IOException exp) {
+                log.warn("创建缓存文件失败：{}", fileId, exp);
+            }
+        }
+        return source.get();
+    }
+
+    /**
+     * 文件删除、重命名或重新存储后清除其缓存
+     *
+     * @param fileId 文件ID
+     */
+    public void invalidate(ObjectId fileId) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(fileId);
+            if (entry != null) {
+                size -= entry.length;
+            }
+        }
+        if (entry != null) {
+            deleteQuietly(entry.path);
+        }
+    }
+
+    /**
+     * 缓存命中、未命中及淘汰统计
+     *
+     * @return 统计结果
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("entries", entries.size());
+        statistics.put("size", size);
+        statistics.put("maxSize", maxSize);
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        statistics.put("evictions", evictions);
+        statistics.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return statistics;
+    }
+
+    private boolean isCacheable(GridFSFile file) {
+        return enabled && file.getId().isObjectId()
+                && file.getLength() > 0 && file.getLength() <= maxFileSize && file.getLength() <= maxSize;
+    }
+
+    private synchronized Path lookup(ObjectId fileId, long version) {
+        Entry entry = entries.get(fileId);
+        if (entry == null || entry.version != version) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.frequency++;
+        entry.lastAccess = ++clock;
+        if (++accessesSinceAging >= Math.max(MIN_AGING_PERIOD, entries.size() * AGING_FACTOR)) {
+            entries.values().forEach(item -> item.frequency >>= 1);
+            accessesSinceAging = 0;
+        }
+        return entry.path;
+    }
+
+    /**
+     * 登记已完整写入的缓存文件，必要时淘汰访问频率最低的条目
+     */
+    private void admit(ObjectId fileId, long version, Path temp, long length) {
+        Path path = directory.resolve(fileId.toHexString() + "-" + version);
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry existing = entries.get(fileId);
+            if (existing != null && existing.version == version) {
+                evicted.add(temp);
+            } else {
+                if (existing != null) {
+                    entries.remove(fileId);
+                    size -= existing.length;
+                    evicted.add(existing.path);
+                }
+                while (size + length > maxSize && !entries.isEmpty()) {
+                    Entry victim = evict();
+                    evicted.add(victim.path);
+                }
+                try {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    entries.put(fileId, new Entry(path, version, length, ++clock));
+                    size += length;
+                } catch (IOException exp) {
+                    log.warn("登记缓存文件失败：{}", path, exp);
+                    evicted.add(temp);
+                }
+            }
+        }
+        evicted.forEach(GridFsContentCache::deleteQuietly);
+    }
+
+    private Entry evict() {
+        Iterator<Map.Entry<ObjectId, Entry>> iterator = entries.entrySet().iterator();
+        Map.Entry<ObjectId, Entry> victim = iterator.next();
+        while (iterator.hasNext()) {
+            Map.Entry<ObjectId, Entry> candidate = iterator.next();
+            if (candidate.getValue().frequency < victim.getValue().frequency
+                    || (candidate.getValue().frequency == victim.getValue().frequency
+                    && candidate.getValue().lastAccess < victim.getValue().lastAccess)) {
+                victim = candidate;
+            }
+        }
+        entries.remove(victim.getKey());
+        size -= victim.getValue().length;
+        evictions++;
+        return victim.getValue();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException exp) {
+            log.warn("删除缓存文件失败：{}", path, exp);
+        }
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final long version;
+        private final long length;
+        private long frequency = 1;
+        private long lastAccess;
+
+        Entry(Path path, long version, long length, long lastAccess) {
+            this.path = path;
+            this.version = version;
+            this.length = length;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * 读取GridFS内容的同时写入临时文件，内容完整读取后关闭时登记为缓存
+     */
+    private class CachingInputStream extends FilterInputStream {
+
+        private final ObjectId fileId;
+        private final long version;
+        private final long length;
+        private final Path temp;
+        private OutputStream out;
+        private long written = 0;
+
+        CachingInputStream(InputStream in, ObjectId fileId, long version, long length) throws IOException {
+            super(in);
+            this.fileId = fileId;
+            this.version = version;
+            this.length = length;
+            this.temp = Files.createTempFile(directory, fileId.toHexString(), ".tmp");
+            this.out = Files.newOutputStream(temp);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1 && out != null) {
+                try {
+                    out.write(b);
+                    written++;
+                } catch (IOException exp) {
+                    abandon();
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0 && out != null) {
+                try {
+                    out.write(b, off, count);
+                    written += count;
+                } catch (IOException exp) {
+                    abandon();
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                        out = null;
+                        if (written == length) {
+                            admit(fileId, version, temp, length);
+                        } else {
+                            deleteQuietly(temp);
+                        }
+                    } catch (IOException exp) {
+                        abandon();
+                    }
+                }
+            }
+        }
+
+        private void abandon() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException exp) {
+                    log.debug("关闭缓存临时文件失败：{}", temp, exp);
+                }
+                out = null;
+                deleteQuietly(temp);
+            }
+        }
+    }
+}
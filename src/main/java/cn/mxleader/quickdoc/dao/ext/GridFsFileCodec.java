@@ -0,0 +1,108 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonReader;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * fs.files 文档与 {@link GridFSFile} 的编解码
+ * <p>
+ * 去重、存储后端、压缩、CRC32及回收站等扩展字段位于文件文档顶层，驱动自带的解码器将其放入已废弃的
+ * extraElements；此处改为解码至 metadata 下的保留键 {@link #STORAGE_KEY}，编码时还原至顶层。
+ */
+public class GridFsFileCodec implements Codec<GridFSFile> {
+
+    /**
+     * metadata 中存放扩展字段的保留键，不随文件元数据持久化
+     */
+    public static final String STORAGE_KEY = "_storage";
+
+    private static final Set<String> STANDARD_FIELDS = new HashSet<>(Arrays.asList(
+            "_id", "filename", "length", "chunkSize", "uploadDate", "md5", "metadata", "contentType", "aliases"));
+
+    private final BsonDocumentCodec bsonDocumentCodec;
+    private final DocumentCodec documentCodec;
+
+    public GridFsFileCodec(CodecRegistry registry) {
+        this.bsonDocumentCodec = new BsonDocumentCodec(registry);
+        this.documentCodec = new DocumentCodec(registry);
+    }
+
+    @Override
+    public GridFSFile decode(BsonReader reader, DecoderContext decoderContext) {
+        BsonDocument bsonDocument = bsonDocumentCodec.decode(reader, decoderContext);
+        Document document = documentCodec.decode(new BsonDocumentReader(bsonDocument), decoderContext);
+
+        Document metadata = document.get("metadata", Document.class);
+        Document storage = new Document();
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            if (!STANDARD_FIELDS.contains(entry.getKey())) {
+                storage.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!storage.isEmpty()) {
+            metadata = metadata == null ? new Document() : metadata;
+            metadata.put(STORAGE_KEY, storage);
+        }
+
+        BsonValue id = bsonDocument.get("_id");
+        Number length = document.get("length", Number.class);
+        Number chunkSize = document.get("chunkSize", Number.class);
+        return new GridFSFile(id, document.getString("filename"), length == null ? 0 : length.longValue(),
+                chunkSize == null ? 0 : chunkSize.intValue(), document.getDate("uploadDate"),
+                document.getString("md5"), metadata);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, GridFSFile value, EncoderContext encoderContext) {
+        Document document = new Document("_id", value.getId())
+                .append("filename", value.getFilename())
+                .append("length", value.getLength())
+                .append("chunkSize", value.getChunkSize())
+                .append("uploadDate", value.getUploadDate());
+        if (value.getMD5() != null) {
+            document.append("md5", value.getMD5());
+        }
+        Document metadata = value.getMetadata();
+        if (metadata != null) {
+            Document persisted = new Document(metadata);
+            Object storage = persisted.remove(STORAGE_KEY);
+            document.append("metadata", persisted);
+            if (storage instanceof Document) {
+                document.putAll((Document) storage);
+            }
+        }
+        documentCodec.encode(writer, document, encoderContext);
+    }
+
+    @Override
+    public Class<GridFSFile> getEncoderClass() {
+        return GridFSFile.class;
+    }
+
+    /**
+     * 获取文件的扩展字段，由其他解码器解码或无扩展字段时返回 null
+     */
+    @Nullable
+    public static Document getStorage(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        Object storage = metadata == null ? null : metadata.get(STORAGE_KEY);
+        return storage instanceof Document ? (Document) storage : null;
+    }
+}
@@ -0,0 +1,141 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.dao.blob.BlobStores;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.gridfs.GridFsCriteria;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.BLOB_STORE_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.CONTENT_HASH_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.CONTENT_ID_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.RETIRED_AT_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.TRASHED_AT_FIELD;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Filters.or;
+
+/**
+ * GridFS相关集合的查询条件。
+ * <p>
+ * 服务层及 {@link GridFsAssistant} 的查询与 {@link cn.mxleader.quickdoc.dao.index.IndexCatalogue}
+ * 的样例查询均由此生成，修改查询条件时执行计划校验随之生效。
+ */
+public final class GridFsQueries {
+
+    private GridFsQueries() {
+    }
+
+    /**
+     * 容器内未移入回收站的文件
+     */
+    public static Criteria inParent(ParentLink parent) {
+        return GridFsCriteria.whereMetaData("parents").in(parent).and(TRASHED_AT_FIELD).exists(false);
+    }
+
+    /**
+     * 位于任一容器内且未移入回收站的文件
+     */
+    public static Criteria inParents(Collection<ParentLink> parents) {
+        return GridFsCriteria.whereMetaData("parents").in(parents).and(TRASHED_AT_FIELD).exists(false);
+    }
+
+    /**
+     * 容器内已移入回收站的文件
+     */
+    public static Criteria trashedIn(ParentLink parent) {
+        return GridFsCriteria.whereMetaData("parents").in(parent).and(TRASHED_AT_FIELD).exists(true);
+    }
+
+    /**
+     * 容器内指定文件名且未移入回收站的文件
+     */
+    public static Criteria namedIn(String filename, ParentLink parent) {
+        return GridFsCriteria.whereFilename().is(filename)
+                .and("metadata.parents").in(parent).and(TRASHED_AT_FIELD).exists(false);
+    }
+
+    /**
+     * 磁盘内的所有文件（含回收站）
+     */
+    public static Criteria onDisk(ObjectId diskId) {
+        return GridFsCriteria.whereMetaData("parents.diskId").is(diskId);
+    }
+
+    /**
+     * 分页游标：按排序字段位于上一页末条记录之后，排序字段相同时按文件ID
+     *
+     * @param criteria   基础条件
+     * @param field      排序字段
+     * @param lastValue  上一页末条记录的排序字段值
+     * @param lastId     上一页末条记录的文件ID
+     * @param descending 是否降序
+     */
+    public static Criteria after(Criteria criteria, String field, Object lastValue, ObjectId lastId,
+                                 boolean descending) {
+        if (field.equals("_id")) {
+            return after(criteria.and("_id"), lastId, descending);
+        }
+        return criteria.orOperator(after(Criteria.where(field), lastValue, descending),
+                after(Criteria.where(field).is(lastValue).and("_id"), lastId, descending));
+    }
+
+    private static Criteria after(Criteria criteria, Object value, boolean descending) {
+        return descending ? criteria.lt(value) : criteria.gt(value);
+    }
+
+    /**
+     * 移入回收站早于截止时间的文件
+     */
+    public static Bson trashedBefore(Date cutoff) {
+        return lte(TRASHED_AT_FIELD, cutoff);
+    }
+
+    /**
+     * 关联任一容器的文件（容器为 ParentLink 的文档形式）
+     */
+    public static Bson linkedTo(List<?> links) {
+        return in("metadata.parents", links);
+    }
+
+    /**
+     * 共享同一内容的文件
+     */
+    public static Bson sharingContent(String contentHash) {
+        return eq(CONTENT_HASH_FIELD, contentHash);
+    }
+
+    /**
+     * 内容位于指定存储后端（未记录 blobStore 字段时为GridFS）且内容ID为指定值
+     * （未记录 contentId 字段的文件以自身ID为内容ID），适用于 fs.files 及 fs.contents
+     */
+    public static Bson storedAs(String blobStore, ObjectId contentId) {
+        return and(BlobStores.DEFAULT.equals(blobStore)
+                        ? or(eq(BLOB_STORE_FIELD, blobStore), exists(BLOB_STORE_FIELD, false))
+                        : eq(BLOB_STORE_FIELD, blobStore),
+                or(eq(CONTENT_ID_FIELD, contentId), and(eq("_id", contentId), exists(CONTENT_ID_FIELD, false))));
+    }
+
+    /**
+     * 登记早于截止时间的迁移源内容（fs.retired）
+     */
+    public static Bson retiredBefore(Date cutoff) {
+        return lte(RETIRED_AT_FIELD, cutoff);
+    }
+
+    /**
+     * 分块组内编号位于区间内的分块（fs.chunks）
+     */
+    public static Bson chunksBetween(Object filesId, int first, int last) {
+        return and(eq("files_id", filesId), gte("n", first), lte("n", last));
+    }
+}
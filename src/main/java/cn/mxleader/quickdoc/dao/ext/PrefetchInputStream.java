@@ -0,0 +1,208 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预读输入流：后台任务按块读取源输入流并放入有界队列，读取方直接从队列获取，
+ * 使读取方处理当前块（写出响应、压缩等）时后续分块的数据库往返已在进行。
+ * <p>
+ * 后台任务在首次读取时才提交，线程池拒绝时退化为直接读取源输入流。
+ * 后台任务启动后源输入流仅由其访问，并由其负责关闭；读取方关闭流或超过等待时间未取走数据时，
+ * 后台任务放弃预读，读取方此后读取到已取走部分之后的位置时抛出异常。
+ */
+public class PrefetchInputStream extends InputStream {
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    /**
+     * 源输入流读取完毕的标记
+     */
+    private static final byte[] END = new byte[0];
+
+    private final InputStream source;
+    private final int blockSize;
+    private final BlockingQueue<byte[]> queue;
+    private final long timeoutMillis;
+    private final Executor executor;
+
+    private volatile boolean closed = false;
+    private volatile boolean abandoned = false;
+    private volatile IOException failure;
+
+    private boolean started = false;
+    private boolean direct = false;
+    private byte[] buffer;
+    private int bufferOffset;
+    private boolean finished = false;
+
+    /**
+     * @param source        源输入流
+     * @param blockSize     每块字节数，通常为GridFS分块大小
+     * @param depth         预读块数
+     * @param timeoutMillis 预读数据等待读取方取走的最长时间（毫秒）
+     * @param executor      执行预读任务的线程池
+     */
+    public PrefetchInputStream(InputStream source, int blockSize, int depth, long timeoutMillis,
+                               Executor executor) {
+        this.source = source;
+        this.blockSize = blockSize;
+        this.queue = new ArrayBlockingQueue<>(depth + 1);
+        this.timeoutMillis = timeoutMillis;
+        this.executor = executor;
+    }
+
+    /**
+     * 首次读取时提交预读任务，线程池已满时直接读取
+     */
+    private void start() {
+        started = true;
+        try {
+            executor.execute(this::prefetch);
+        } catch (RejectedExecutionException exp) {
+            direct = true;
+        }
+    }
+
+    private void prefetch() {
+        try {
+            while (!closed) {
+                byte[] block = readBlock();
+                if (!put(block) || block == END) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException exp) {
+            failure = exp instanceof IOException ? (IOException) exp : new IOException(exp);
+            put(END);
+        } finally {
+            try {
+                source.close();
+            } catch (IOException exp) {
+                // 忽略关闭源输入流的异常
+            }
+        }
+    }
+
+    private byte[] readBlock() throws IOException {
+        byte[] block = new byte[blockSize];
+        int offset = 0;
+        int count;
+        while (offset < blockSize && (count = source.read(block, offset, blockSize - offset)) != -1) {
+            offset += count;
+        }
+        if (offset == 0) {
+            return END;
+        }
+        if (offset < blockSize) {
+            byte[] last = new byte[offset];
+            System.arraycopy(block, 0, last, 0, offset);
+            return last;
+        }
+        return block;
+    }
+
+    /**
+     * 队列已满时等待读取方取走数据，读取方关闭、超过等待时间或线程被中断时放弃
+     */
+    private boolean put(byte[] block) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (!queue.offer(block, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (closed || System.currentTimeMillis() >= deadline) {
+                    abandoned = true;
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            abandoned = true;
+            return false;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+        return count == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("The InputStream has been closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!started) {
+            start();
+        }
+        if (direct) {
+            return source.read(b, off, len);
+        }
+        if (buffer == null || bufferOffset >= buffer.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int count = Math.min(len, buffer.length - bufferOffset);
+        System.arraycopy(buffer, bufferOffset, b, off, count);
+        bufferOffset += count;
+        return count;
+    }
+
+    private boolean nextBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        try {
+            while ((buffer = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (abandoned) {
+                    finished = true;
+                    throw new IOException("预读已放弃：读取方超过 " + timeoutMillis + " 毫秒未读取或预读线程已停止");
+                }
+            }
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("预读等待被中断");
+        }
+        bufferOffset = 0;
+        if (buffer == END) {
+            finished = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (direct) {
+            return source.available();
+        }
+        return buffer == null ? 0 : buffer.length - bufferOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            queue.clear();
+            // 预读任务未启动时源输入流由读取方关闭
+            if (!started || direct) {
+                source.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocBlobProperties;
+import cn.mxleader.quickdoc.dao.blob.BlobStore;
+import cn.mxleader.quickdoc.dao.blob.BlobStores;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Sorts.ascending;
+import static org.bson.codecs.configuration.CodecRegistries.fromCodecs;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+/**
+ * 基于Reactive Streams驱动的GridFS读取，按下游需求分批拉取分块（背压）
+ */
+@Component
+public class ReactiveGridFsAssistant {
+
+    /**
+     * 每次向驱动请求的分块数量，驱动按需求量分批拉取
+     */
+    private static final int CHUNK_BATCH_SIZE = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MongoCollection<GridFSFile> filesCollection;
+    private final MongoCollection<Document> chunksCollection;
+    private final BlobStores blobStores;
+
+    @Autowired
+    public ReactiveGridFsAssistant(ReactiveMongoDatabaseFactory dbFactory, BlobStores blobStores,
+                                   QuickDocBlobProperties blobProperties) {
+        this(dbFactory, blobStores, blobProperties.getGridFsBucket());
+    }
+
+    public ReactiveGridFsAssistant(ReactiveMongoDatabaseFactory dbFactory, BlobStores blobStores, String bucketName) {
+        MongoDatabase db = dbFactory.getMongoDatabase();
+        this.filesCollection = db.getCollection(bucketName + ".files", GridFSFile.class)
+                .withCodecRegistry(fromRegistries(fromCodecs(new GridFsFileCodec(db.getCodecRegistry())),
+                        db.getCodecRegistry()));
+        this.chunksCollection = db.getCollection(bucketName + ".chunks");
+        this.blobStores = blobStores;
+    }
+
+    public Mono<GridFSFile> findOne(ObjectId fileId) {
+        return Mono.from(filesCollection.find(and(eq("_id", fileId),
+                exists(GridFsAssistant.TRASHED_AT_FIELD, false))).first());
+    }
+
+    /**
+     * 读取文件指定字节区间的内容
+     *
+     * @param file          GridFS文件
+     * @param start         起始位置
+     * @param end           结束位置（包含）
+     * @param bufferFactory 缓冲区工厂
+     * @return 内容数据流
+     */
+    public Flux<DataBuffer> read(GridFSFile file, long start, long end, DataBufferFactory bufferFactory) {
+        if (end < start) {
+            return Flux.empty();
+        }
+        if (!BlobStores.DEFAULT.equals(GridFsAssistant.getBlobStoreName(file))) {
+            return readBlob(file, start, end, bufferFactory);
+        }
+        int chunkSize = file.getChunkSize();
+        int firstChunk = (int) (start / chunkSize);
+        int lastChunk = (int) (end / chunkSize);
+        return Flux.from(chunksCollection.find(GridFsQueries.chunksBetween(GridFsAssistant.getContentId(file),
+                firstChunk, lastChunk))
+                .sort(ascending("n")))
+                .limitRate(CHUNK_BATCH_SIZE)
+                .index()
+                .map(indexed -> {
+                    Document chunk = indexed.getT2();
+                    int n = chunk.getInteger("n");
+                    if (n != firstChunk + indexed.getT1()) {
+                        throw new MongoGridFSException("Could not find file chunk for file_id: " + file.getId()
+                                + " at chunk index " + (firstChunk + indexed.getT1()) + ".");
+                    }
+                    byte[] data = ChunkCodec.decode(chunk, chunkSize);
+                    long chunkStart = (long) n * chunkSize;
+                    int from = (int) Math.max(0, start - chunkStart);
+                    int to = (int) Math.min(data.length, end - chunkStart + 1);
+                    return bufferFactory.wrap(ByteBuffer.wrap(data, from, to - from));
+                });
+    }
+
+    /**
+     * 其他存储后端仅提供阻塞读取，在弹性线程池上执行
+     */
+    private Flux<DataBuffer> readBlob(GridFSFile file, long start, long end, DataBufferFactory bufferFactory) {
+        BlobStore store = blobStores.get(GridFsAssistant.getBlobStoreName(file));
+        ObjectId contentId = GridFsAssistant.getContentId(file).asObjectId().getValue();
+        return DataBufferUtils.readInputStream(() -> store.read(contentId, file.getChunkSize(), start, end),
+                bufferFactory, BUFFER_SIZE)
+                .subscribeOn(Schedulers.elastic());
+    }
+}
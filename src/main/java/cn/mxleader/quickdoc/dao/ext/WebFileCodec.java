@@ -0,0 +1,108 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.common.utils.FileUtils;
+import cn.mxleader.quickdoc.web.domain.WebFile;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * fs.files 文档直接解码为 {@link WebFile}，不经过 GridFSFile 及 Metadata 的中间对象
+ * <p>
+ * 只读取列表展示所需的字段，其余字段（如 metadata.parents、metadata.authorizations）直接跳过；
+ * 配合 {@link #FIELDS} 投影使用时，服务端也不会返回这些字段。
+ */
+public class WebFileCodec implements Codec<WebFile> {
+
+    public static final WebFileCodec INSTANCE = new WebFileCodec();
+
+    /**
+     * 列表查询的字段投影
+     */
+    public static final Document FIELDS = new Document("filename", 1)
+            .append("length", 1)
+            .append("uploadDate", 1)
+            .append("metadata._contentType", 1);
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private WebFileCodec() {
+    }
+
+    @Override
+    public WebFile decode(BsonReader reader, DecoderContext decoderContext) {
+        String id = null;
+        String filename = null;
+        long length = 0;
+        Date uploadDate = null;
+        String contentType = DEFAULT_CONTENT_TYPE;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            BsonType type = reader.getCurrentBsonType();
+            if ("_id".equals(name) && type == BsonType.OBJECT_ID) {
+                id = reader.readObjectId().toHexString();
+            } else if ("filename".equals(name) && type == BsonType.STRING) {
+                filename = reader.readString();
+            } else if ("length".equals(name) && type == BsonType.INT64) {
+                length = reader.readInt64();
+            } else if ("length".equals(name) && type == BsonType.INT32) {
+                length = reader.readInt32();
+            } else if ("uploadDate".equals(name) && type == BsonType.DATE_TIME) {
+                uploadDate = new Date(reader.readDateTime());
+            } else if ("metadata".equals(name) && type == BsonType.DOCUMENT) {
+                contentType = readContentType(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return new WebFile(id, filename, length, uploadDate, contentType,
+                FileUtils.getIconClass(contentType), false, false);
+    }
+
+    private static String readContentType(BsonReader reader) {
+        String contentType = DEFAULT_CONTENT_TYPE;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if ("_contentType".equals(reader.readName()) && reader.getCurrentBsonType() == BsonType.STRING) {
+                contentType = reader.readString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return contentType;
+    }
+
+    /**
+     * 按 {@link #FIELDS} 投影的结构写出，与 {@link #decode} 互逆；
+     * 图标及权限标记由读取时计算，不写出
+     */
+    @Override
+    public void encode(BsonWriter writer, WebFile value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeObjectId("_id", new ObjectId(value.getId()));
+        writer.writeString("filename", value.getFilename());
+        writer.writeInt64("length", value.getLength());
+        writer.writeDateTime("uploadDate", value.getUploadDate().getTime());
+        writer.writeStartDocument("metadata");
+        writer.writeString("_contentType", value.getType());
+        writer.writeEndDocument();
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<WebFile> getEncoderClass() {
+        return WebFile.class;
+    }
+}
@@ -0,0 +1,279 @@
+package cn.mxleader.quickdoc.dao.index;
+
+import cn.mxleader.quickdoc.dao.blob.BlobStores;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.dao.ext.GridFsQueries;
+import cn.mxleader.quickdoc.entities.*;
+import com.mongodb.MongoClient;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant.ANCESTORS_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.CONTENT_HASH_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.CONTENT_ID_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.RETIRED_AT_FIELD;
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.TRASHED_AT_FIELD;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * 索引目录：声明各集合所需的索引，以及与实际查询一致的样例查询（用于执行计划校验）。
+ * <p>
+ * 样例查询尽量由实际查询所用的条件生成（{@link GridFsQueries}、{@link FolderTreeAssistant}），
+ * 仓库方法的条件按仓库查询的方式经 QueryMapper 转换；样例以 "仓库接口.方法名" 命名，
+ * 测试据此检查每个仓库查询方法均已登记。
+ */
+@Component
+public class IndexCatalogue {
+
+    private final MongoConverter converter;
+    private final QueryMapper queryMapper;
+    private final List<DeclaredIndex> indexes = new ArrayList<>();
+    private final List<QueryProbe> probes = new ArrayList<>();
+
+    public IndexCatalogue(MongoOperations mongoOperations, GridFsAssistant gridFsAssistant) {
+        this.converter = mongoOperations.getConverter();
+        this.queryMapper = new QueryMapper(converter);
+        String files = gridFsAssistant.getFilesCollectionName();
+        String chunks = gridFsAssistant.getChunksCollectionName();
+        String contents = gridFsAssistant.getContentsCollectionName();
+        String retired = gridFsAssistant.getRetiredCollectionName();
+        String disks = mongoOperations.getCollectionName(SysDisk.class);
+        String folders = mongoOperations.getCollectionName(SysFolder.class);
+        String users = mongoOperations.getCollectionName(SysUser.class);
+        String uploads = mongoOperations.getCollectionName(SysUpload.class);
+        String profiles = mongoOperations.getCollectionName(SysProfile.class);
+        String deleteJobs = mongoOperations.getCollectionName(SysDeleteJob.class);
+
+        ObjectId diskId = new ObjectId();
+        ParentLink parent = new ParentLink(new ObjectId(), AuthTarget.FOLDER, diskId);
+        ParentLink disk = new ParentLink(diskId, AuthTarget.DISK, diskId);
+        ObjectId contentId = new ObjectId();
+        Date now = new Date();
+
+        // GridFS 文件
+        index(files, new Document("filename", 1).append("uploadDate", 1));
+        index(files, new Document("metadata.parents", 1).append("filename", 1).append("_id", 1));
+        index(files, new Document("metadata.parents", 1).append("uploadDate", 1).append("_id", 1));
+        index(files, new Document("metadata.parents", 1).append("length", 1).append("_id", 1));
+        index(files, new Document("metadata.parents.diskId", 1));
+        index(files, new Document(CONTENT_HASH_FIELD, 1));
+        index(files, new Document(CONTENT_ID_FIELD, 1), new IndexOptions().sparse(true));
+        index(files, new Document(TRASHED_AT_FIELD, 1), new IndexOptions().sparse(true));
+        index(chunks, new Document("files_id", 1).append("n", 1), new IndexOptions().unique(true));
+        probe("FileService.list", files, GridFsQueries.inParent(parent), null);
+        probe("FileService.list(cursor)", files,
+                GridFsQueries.after(GridFsQueries.inParent(parent), "uploadDate", now, new ObjectId(), false),
+                Sort.by("uploadDate", "_id"));
+        probe("FileService.getStoredFile", files, GridFsQueries.namedIn("readme.txt", parent), null);
+        probe("FileService.listTrash", files, GridFsQueries.trashedIn(parent), null);
+        probe("FileService.createZip", files, GridFsQueries.inParents(Arrays.asList(parent, disk)),
+                Sort.by("_id"));
+        probe("DiskService.migrateStorage", files, GridFsQueries.onDisk(diskId), null);
+        probe("GridFsAssistant.migrate", files, GridFsQueries.sharingContent("0"));
+        probe("GridFsAssistant.unlinkParents", files,
+                GridFsQueries.linkedTo(Arrays.asList(toDocument(parent), toDocument(disk))));
+        probe("GridFsAssistant.deleteRetiredBlobs", files, GridFsQueries.storedAs(BlobStores.DEFAULT, contentId));
+        probe("GridFsAssistant.reclaim", files, GridFsQueries.trashedBefore(now));
+        probe("GridFsChunkInputStream", chunks, GridFsQueries.chunksBetween(contentId, 0, 1));
+        index(contents, new Document(CONTENT_ID_FIELD, 1));
+        probe("GridFsAssistant.deleteRetiredBlobs(contents)", contents,
+                GridFsQueries.storedAs(BlobStores.DEFAULT, contentId));
+        index(retired, new Document(RETIRED_AT_FIELD, 1));
+        probe("GridFsAssistant.deleteRetiredBlobs(retired)", retired, GridFsQueries.retiredBefore(now));
+
+        // 磁盘（@Query 声明的查询，条件与注解一致）
+        index(disks, new Document("authorizations.name", 1).append("authorizations.type", 1));
+        probe("SysDiskRepository.findAllByAuthorizations", disks,
+                new Document("authorizations", new Document("$elemMatch", new Document("name", "admin")
+                        .append("type", AuthType.PRIVATE.name())
+                        .append("actions", new Document("$all", Collections.singletonList(AuthAction.READ.name()))))));
+
+        // 文件夹
+        index(folders, new Document("parent", 1).append("name", 1));
+        index(folders, new Document("parent.diskId", 1));
+        index(folders, new Document(ANCESTORS_FIELD, 1));
+        probe("SysFolderRepository.findAllByParent", folders, SysFolder.class,
+                where("parent").is(parent), null);
+        probe("SysFolderRepository.findByParentAndName", folders, SysFolder.class,
+                where("parent").is(parent).and("name").is("folder"), null);
+        probe("SysFolderRepository.findAllByParentDiskId", folders, SysFolder.class,
+                where("parent.diskId").is(diskId), null);
+        probe("FolderTreeAssistant.findSubtree", folders, SysFolder.class,
+                FolderTreeAssistant.subtreeOf(parent.getId()), null);
+        probe("FolderTreeAssistant.findDescendants", folders, SysFolder.class,
+                FolderTreeAssistant.descendantsOf(parent), null);
+        probe("FolderTreeAssistant.findDescendants(disk)", folders, SysFolder.class,
+                FolderTreeAssistant.descendantsOf(disk), null);
+
+        // 用户
+        index(users, new Document("username", 1));
+        index(users, new Document("groups", 1));
+        index(users, new Document("department", 1));
+        probe("SysUserRepository.findByUsername", users, SysUser.class, where("username").is("admin"), null);
+        probe("SysUserRepository.findByGroupsContaining", users, SysUser.class, where("groups").is("users"), null);
+        probe("SysUserRepository.findAllByDepartment", users, SysUser.class, where("department").is("dept"), null);
+
+        // 断点续传会话
+        index(uploads, new Document("updatedAt", 1));
+        probe("SysUploadRepository.findAllByUpdatedAtBefore", uploads, SysUpload.class,
+                where("updatedAt").lt(now), null);
+
+        // 级联删除任务
+        index(deleteJobs, new Document("status", 1));
+        index(deleteJobs, new Document("createdAt", 1));
+        index(deleteJobs, new Document("targetId", 1));
+        probe("SysDeleteJobRepository.findAllByStatusIn", deleteJobs, SysDeleteJob.class,
+                where("status").in(Collections.singletonList(SysDeleteJob.Status.FAILED)), null);
+        probe("SysDeleteJobRepository.findTop50ByOrderByCreatedAtDesc", deleteJobs, SysDeleteJob.class,
+                new Criteria(), Sort.by(Sort.Direction.DESC, "createdAt"));
+        probe("DeleteJobService.isPendingDeletion", deleteJobs, SysDeleteJob.class,
+                where("targetId").in(diskId, parent.getId()).and("status").ne(SysDeleteJob.Status.DONE), null);
+        probe("DeleteJobService.resumeExpired", deleteJobs, SysDeleteJob.class,
+                where("status").in(SysDeleteJob.Status.PENDING, SysDeleteJob.Status.RUNNING)
+                        .and("leaseExpiresAt").lt(now), null);
+
+        // 服务配置
+        index(profiles, new Document("serviceAddress", 1));
+        probe("SysProfileRepository.findByServiceAddress", profiles, SysProfile.class,
+                where("serviceAddress").is("localhost"), null);
+    }
+
+    public List<DeclaredIndex> getIndexes() {
+        return Collections.unmodifiableList(indexes);
+    }
+
+    public List<QueryProbe> getProbes() {
+        return Collections.unmodifiableList(probes);
+    }
+
+    private void index(String collection, Document keys) {
+        index(collection, keys, new IndexOptions());
+    }
+
+    private void index(String collection, Document keys, IndexOptions options) {
+        indexes.add(new DeclaredIndex(collection, keys, options.background(true)));
+    }
+
+    private void probe(String name, String collection, Document filter) {
+        probes.add(new QueryProbe(name, collection, filter, null));
+    }
+
+    private void probe(String name, String collection, Bson filter) {
+        probe(name, collection, new Document(new LinkedHashMap<>(filter.toBsonDocument(BsonDocument.class,
+                MongoClient.getDefaultCodecRegistry()))));
+    }
+
+    /**
+     * GridFS文件的查询条件，与 GridFsAssistant 相同不指定实体类型
+     */
+    private void probe(String name, String collection, Criteria criteria, @Nullable Sort sort) {
+        probe(name, collection, null, criteria, sort);
+    }
+
+    /**
+     * 按实体类型转换字段名及取值（与仓库查询、MongoOperations 查询的转换方式一致）
+     */
+    private void probe(String name, String collection, @Nullable Class<?> entityType, Criteria criteria,
+                       @Nullable Sort sort) {
+        MongoPersistentEntity<?> entity = entityType == null ? null
+                : converter.getMappingContext().getPersistentEntity(entityType);
+        Document sortDocument = null;
+        if (sort != null) {
+            sortDocument = new Document();
+            for (Sort.Order order : sort) {
+                sortDocument.append(order.getProperty(), order.isAscending() ? 1 : -1);
+            }
+            sortDocument = queryMapper.getMappedSort(sortDocument, entity);
+        }
+        probes.add(new QueryProbe(name, collection,
+                queryMapper.getMappedObject(criteria.getCriteriaObject(), Optional.ofNullable(entity)), sortDocument));
+    }
+
+    private Document toDocument(Object value) {
+        Document document = new Document();
+        converter.write(value, document);
+        document.remove("_class");
+        return document;
+    }
+
+    /**
+     * 声明的索引
+     */
+    public static class DeclaredIndex {
+        private final String collection;
+        private final Document keys;
+        private final IndexOptions options;
+
+        DeclaredIndex(String collection, Document keys, IndexOptions options) {
+            this.collection = collection;
+            this.keys = keys;
+            this.options = options;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public Document getKeys() {
+            return keys;
+        }
+
+        public IndexOptions getOptions() {
+            return options;
+        }
+    }
+
+    /**
+     * 样例查询，条件格式与实际查询生成的一致
+     */
+    public static class QueryProbe {
+        private final String name;
+        private final String collection;
+        private final Document filter;
+        private final Document sort;
+
+        QueryProbe(String name, String collection, Document filter, @Nullable Document sort) {
+            this.name = name;
+            this.collection = collection;
+            this.filter = filter;
+            this.sort = sort;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public Document getFilter() {
+            return filter;
+        }
+
+        @Nullable
+        public Document getSort() {
+            return sort;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package cn.mxleader.quickdoc.dao.index;
+
+import cn.mxleader.quickdoc.config.QuickDocIndexProperties;
+import cn.mxleader.quickdoc.config.QuickDocIndexProperties.Verify;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 索引管理：启动时按 {@link IndexCatalogue} 创建索引，并对各样例查询执行 explain，
+ * 发现全表扫描（COLLSCAN）时按配置记录告警或终止启动。
+ */
+@Component
+public class IndexManager implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexManager.class);
+
+    private static final String COLLSCAN = "COLLSCAN";
+
+    private final MongoDbFactory dbFactory;
+    private final IndexCatalogue catalogue;
+    private final QuickDocIndexProperties properties;
+
+    public IndexManager(MongoDbFactory dbFactory, IndexCatalogue catalogue, QuickDocIndexProperties properties) {
+        this.dbFactory = dbFactory;
+        this.catalogue = catalogue;
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (properties.getProvision()) {
+            provision();
+        }
+        if (properties.getVerify() != Verify.OFF) {
+            List<String> violations = new ArrayList<>();
+            explainAll().forEach((name, plan) -> {
+                if (Boolean.TRUE.equals(plan.get("collectionScan"))) {
+                    violations.add(name + " -> " + plan.get("plan"));
+                }
+            });
+            if (!violations.isEmpty()) {
+                String message = "以下查询未命中索引（COLLSCAN）：" + violations;
+                if (properties.getVerify() == Verify.FAIL) {
+                    throw new IllegalStateException(message);
+                }
+                log.warn(message);
+            }
+        }
+    }
+
+    /**
+     * 创建目录中声明的索引，已存在的相同索引不会重复创建
+     */
+    public void provision() {
+        MongoDatabase db = dbFactory.getDb();
+        for (IndexCatalogue.DeclaredIndex index : catalogue.getIndexes()) {
+            try {
+                db.getCollection(index.getCollection()).createIndex(index.getKeys(), index.getOptions());
+            } catch (MongoCommandException exp) {
+                // 同名或同键索引已以不同选项存在时不覆盖，交由管理员处理
+                log.warn("创建索引失败：{} {} - {}", index.getCollection(), index.getKeys().toJson(),
+                        exp.getErrorMessage());
+            }
+        }
+    }
+
+    /**
+     * 对每个样例查询执行 explain（queryPlanner），返回获胜执行计划的阶段链
+     *
+     * @return 样例查询名称 -> {collection, plan, collectionScan}
+     */
+    public Map<String, Map<String, Object>> explainAll() {
+        MongoDatabase db = dbFactory.getDb();
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (IndexCatalogue.QueryProbe probe : catalogue.getProbes()) {
+            Document find = new Document("find", probe.getCollection()).append("filter", probe.getFilter());
+            if (probe.getSort() != null) {
+                find.append("sort", probe.getSort());
+            }
+            Document command = new Document("explain", find).append("verbosity", "queryPlanner");
+            List<String> stages = new ArrayList<>();
+            Document queryPlanner = (Document) db.runCommand(command).get("queryPlanner");
+            collectStages((Document) queryPlanner.get("winningPlan"), stages);
+            Map<String, Object> plan = new LinkedHashMap<>();
+            plan.put("collection", probe.getCollection());
+            plan.put("plan", String.join(" <- ", stages));
+            plan.put("collectionScan", stages.contains(COLLSCAN));
+            result.put(probe.getName(), plan);
+        }
+        return result;
+    }
+
+    /**
+     * 各集合的索引使用统计（$indexStats），并标注是否为目录中声明的索引
+     *
+     * @return 集合名称 -> 索引统计列表
+     */
+    public Map<String, List<Map<String, Object>>> getIndexUsage() {
+        MongoDatabase db = dbFactory.getDb();
+        Map<String, Set<Document>> declared = new LinkedHashMap<>();
+        for (IndexCatalogue.DeclaredIndex index : catalogue.getIndexes()) {
+            declared.computeIfAbsent(index.getCollection(), key -> new LinkedHashSet<>()).add(index.getKeys());
+        }
+        Map<String, List<Map<String, Object>>> usage = new LinkedHashMap<>();
+        for (String collection : declared.keySet()) {
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Document stats : db.getCollection(collection)
+                    .aggregate(Collections.singletonList(new Document("$indexStats", new Document())))) {
+                Document key = (Document) stats.get("key");
+                Document accesses = (Document) stats.get("accesses");
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("name", stats.getString("name"));
+                item.put("key", key);
+                item.put("ops", accesses == null ? 0L : ((Number) accesses.get("ops")).longValue());
+                item.put("since", accesses == null ? null : accesses.getDate("since"));
+                item.put("declared", declared.get(collection).contains(key));
+                items.add(item);
+            }
+            usage.put(collection, items);
+        }
+        return usage;
+    }
+
+    private static void collectStages(Document plan, List<String> stages) {
+        if (plan == null) {
+            return;
+        }
+        String stage = plan.getString("stage");
+        stages.add(plan.containsKey("indexName") ? stage + "(" + plan.getString("indexName") + ")" : stage);
+        collectStages((Document) plan.get("inputStage"), stages);
+        Object inputStages = plan.get("inputStages");
+        if (inputStages instanceof List) {
+            for (Object input : (List<?>) inputStages) {
+                collectStages((Document) input, stages);
+            }
+        }
+    }
+}
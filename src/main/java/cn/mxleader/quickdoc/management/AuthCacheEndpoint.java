@@ -0,0 +1,43 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.security.authorization.AuthDecisionCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Endpoint(id = "auth-cache")
+@Component
+public class AuthCacheEndpoint {
+
+    private final AuthDecisionCache authDecisionCache;
+
+    @Autowired
+    public AuthCacheEndpoint(AuthDecisionCache authDecisionCache) {
+        this.authDecisionCache = authDecisionCache;
+    }
+
+    /**
+     * 鉴权结果缓存统计（命中率、淘汰及失效次数）
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Object> cacheStatistics() {
+        return authDecisionCache.getStatistics();
+    }
+
+    /**
+     * 清空鉴权结果缓存
+     *
+     * @return 清空后的统计
+     */
+    @DeleteOperation
+    public Map<String, Object> flush() {
+        authDecisionCache.flush();
+        return authDecisionCache.getStatistics();
+    }
+}
@@ -0,0 +1,51 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.service.DiskService;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Endpoint(id = "blob-storage")
+@Component
+public class BlobStorageEndpoint {
+
+    private final GridFsAssistant gridFsAssistant;
+    private final DiskService diskService;
+
+    @Autowired
+    public BlobStorageEndpoint(GridFsAssistant gridFsAssistant, DiskService diskService) {
+        this.gridFsAssistant = gridFsAssistant;
+        this.diskService = diskService;
+    }
+
+    /**
+     * 各存储后端的内容数量及存储字节数，以及存储迁移任务的状态
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Object> storageReport() {
+        Map<String, Object> report = new LinkedHashMap<>(gridFsAssistant.getStorageReport());
+        report.put("migrations", diskService.getMigrations());
+        return report;
+    }
+
+    /**
+     * 切换磁盘存储后端，并提交后台任务迁移磁盘内的文件内容，进度见读取操作的 migrations
+     *
+     * @param diskId  磁盘ID
+     * @param storage 目标存储后端（gridfs / local）
+     * @return 迁移任务状态
+     */
+    @WriteOperation
+    public Map<String, Object> migrate(String diskId, String storage) {
+        return diskService.migrateStorage(new ObjectId(diskId), storage);
+    }
+}
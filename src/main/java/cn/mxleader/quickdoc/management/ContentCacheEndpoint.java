@@ -0,0 +1,37 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.common.zip.ZipArchiveCache;
+import cn.mxleader.quickdoc.dao.ext.GridFsContentCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Endpoint(id = "content-cache")
+@Component
+public class ContentCacheEndpoint {
+
+    private final GridFsContentCache contentCache;
+    private final ZipArchiveCache zipArchiveCache;
+
+    @Autowired
+    public ContentCacheEndpoint(GridFsContentCache contentCache, ZipArchiveCache zipArchiveCache) {
+        this.contentCache = contentCache;
+        this.zipArchiveCache = zipArchiveCache;
+    }
+
+    /**
+     * 本地磁盘文件缓存统计（命中、未命中及淘汰次数），zip 项为文件夹压缩包缓存统计
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Object> cacheStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>(contentCache.getStatistics());
+        statistics.put("zip", zipArchiveCache.getStatistics());
+        return statistics;
+    }
+}
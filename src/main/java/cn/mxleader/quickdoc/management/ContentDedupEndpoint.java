@@ -0,0 +1,31 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Endpoint(id = "content-dedup")
+@Component
+public class ContentDedupEndpoint {
+
+    private final GridFsAssistant gridFsAssistant;
+
+    @Autowired
+    public ContentDedupEndpoint(GridFsAssistant gridFsAssistant) {
+        this.gridFsAssistant = gridFsAssistant;
+    }
+
+    /**
+     * 文件内容去重统计（节省的存储字节数）
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Object> deduplicationReport() {
+        return gridFsAssistant.getDeduplicationReport();
+    }
+}
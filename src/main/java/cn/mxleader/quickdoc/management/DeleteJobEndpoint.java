@@ -0,0 +1,58 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.entities.SysDeleteJob;
+import cn.mxleader.quickdoc.service.DeleteJobService;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@Endpoint(id = "delete-jobs")
+@Component
+public class DeleteJobEndpoint {
+
+    private final DeleteJobService deleteJobService;
+
+    @Autowired
+    public DeleteJobEndpoint(DeleteJobService deleteJobService) {
+        this.deleteJobService = deleteJobService;
+    }
+
+    /**
+     * 最近的级联删除任务及进度
+     *
+     * @return
+     */
+    @ReadOperation
+    public List<SysDeleteJob> jobs() {
+        return deleteJobService.list();
+    }
+
+    /**
+     * 指定删除任务的进度
+     *
+     * @param jobId 任务ID
+     * @return
+     */
+    @ReadOperation
+    public SysDeleteJob job(@Selector String jobId) {
+        return deleteJobService.get(new ObjectId(jobId)).orElse(null);
+    }
+
+    /**
+     * 重新执行失败的删除任务
+     *
+     * @return
+     */
+    @WriteOperation
+    public Map<String, Integer> resumeFailed() {
+        return Collections.singletonMap("resumed", deleteJobService.resumeFailed());
+    }
+}
@@ -0,0 +1,71 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.entities.SysDisk;
+import cn.mxleader.quickdoc.service.DiskService;
+import cn.mxleader.quickdoc.service.FolderService;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Endpoint(id = "disk-usage")
+@Component
+public class DiskUsageEndpoint {
+
+    private final GridFsAssistant gridFsAssistant;
+    private final DiskService diskService;
+    private final FolderService folderService;
+
+    @Autowired
+    public DiskUsageEndpoint(GridFsAssistant gridFsAssistant, DiskService diskService,
+                             FolderService folderService) {
+        this.gridFsAssistant = gridFsAssistant;
+        this.diskService = diskService;
+        this.folderService = folderService;
+    }
+
+    /**
+     * 各磁盘的逻辑字节数、实际存储字节数及压缩比，以及增量累加的文件总数、总字节数（按容器分别计入）
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Object> diskUsage() {
+        Map<ObjectId, Document> usage = gridFsAssistant.getDiskUsage();
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (SysDisk disk : diskService.list()) {
+            Document stats = usage.get(disk.getId());
+            long logicalBytes = stats == null ? 0L : ((Number) stats.get("logicalBytes")).longValue();
+            long storedBytes = stats == null ? 0L : ((Number) stats.get("storedBytes")).longValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", disk.getName());
+            item.put("storage", disk.getStorage());
+            item.put("files", stats == null ? 0 : stats.get("files"));
+            item.put("logicalBytes", logicalBytes);
+            item.put("storedBytes", storedBytes);
+            item.put("ratio", logicalBytes == 0 ? 1.0 : (double) storedBytes / logicalBytes);
+            item.put("totalFiles", disk.getTotalFiles());
+            item.put("totalSize", disk.getTotalSize());
+            report.put(disk.getId().toString(), item);
+        }
+        return report;
+    }
+
+    /**
+     * 立即重新统计文件夹及磁盘的文件总量
+     *
+     * @return
+     */
+    @WriteOperation
+    public Map<String, Object> recount() {
+        folderService.recount();
+        return diskUsage();
+    }
+}
@@ -0,0 +1,31 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.dao.ext.FolderTreeCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Endpoint(id = "folder-tree")
+@Component
+public class FolderTreeEndpoint {
+
+    private final FolderTreeCache folderTreeCache;
+
+    @Autowired
+    public FolderTreeEndpoint(FolderTreeCache folderTreeCache) {
+        this.folderTreeCache = folderTreeCache;
+    }
+
+    /**
+     * 文件夹树缓存统计（命中率、重建次数及耗时）
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Object> cacheStatistics() {
+        return folderTreeCache.getStatistics();
+    }
+}
@@ -0,0 +1,47 @@
+package cn.mxleader.quickdoc.management;
+
+import cn.mxleader.quickdoc.dao.index.IndexManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Endpoint(id = "index-usage")
+@Component
+public class IndexUsageEndpoint {
+
+    private final IndexManager indexManager;
+
+    @Autowired
+    public IndexUsageEndpoint(IndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+
+    /**
+     * 各集合索引的访问统计，以及样例查询当前的执行计划
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Object> indexUsage() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("indexes", indexManager.getIndexUsage());
+        report.put("plans", indexManager.explainAll());
+        return report;
+    }
+
+    /**
+     * 重新创建缺失的声明索引
+     *
+     * @return
+     */
+    @WriteOperation
+    public Map<String, Object> provision() {
+        indexManager.provision();
+        return indexUsage();
+    }
+}
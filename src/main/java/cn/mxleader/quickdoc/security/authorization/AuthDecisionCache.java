@@ -0,0 +1,215 @@
+package cn.mxleader.quickdoc.security.authorization;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.entities.AuthAction;
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@link PreAuth} 鉴权结果缓存
+ * <p>
+ * 以（用户、对象类型、对象ID、权限）为键缓存鉴权结果，同一页面多次调用服务时不再重复读取磁盘、文件夹或文件；
+ * 每条结果记录鉴权开始时的序号，对象授权变更或用户组变更时只登记该对象或用户的失效序号，
+ * 读取时序号早于失效序号的结果视为过时，失效无需遍历缓存。
+ * <p>
+ * 失效只作用于本节点：多节点部署时，其他节点上的授权变更最多滞后缓存时间（quickdoc.cache.auth-ttl），
+ * 因此缓存时间应保持在数秒。容量满时先清除过期及过时的结果，仍然已满则整体清空。
+ */
+@Component
+public class AuthDecisionCache {
+
+    /**
+     * 失效记录的数量上限，超出时清空失效记录并抬高序号下限，此前登记的鉴权结果全部视为过时
+     */
+    private static final int MAX_INVALIDATIONS = 10000;
+
+    private final int maxEntries;
+    private final long ttl;
+
+    private final Map<Key, Entry> decisions = new ConcurrentHashMap<>();
+    private final Map<ObjectId, Long> objectInvalidations = new ConcurrentHashMap<>();
+    private final Map<String, Long> userInvalidations = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long floor = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public AuthDecisionCache(QuickDocCacheProperties properties) {
+        this.maxEntries = properties.getAuthMaxEntries();
+        this.ttl = properties.getAuthTtl() * 1000L;
+    }
+
+    /**
+     * 获取鉴权结果，缓存不存在、已过期或已失效时调用 evaluator 重新鉴权
+     *
+     * @param username  用户名
+     * @param target    对象类型
+     * @param id        对象ID
+     * @param actions   待校验权限
+     * @param evaluator 鉴权方法
+     * @return 鉴权通过返回 true
+     */
+    public boolean isAuthorized(String username, AuthTarget target, ObjectId id, AuthAction[] actions,
+                                BooleanSupplier evaluator) {
+        if (maxEntries <= 0 || ttl <= 0) {
+            return evaluator.getAsBoolean();
+        }
+        Key key = new Key(username, target, id, actions);
+        long now = System.currentTimeMillis();
+        Entry entry = decisions.get(key);
+        if (entry != null && entry.expiresAt > now && isCurrent(key, entry.stamp)) {
+            hits.increment();
+            return entry.authorized;
+        }
+        misses.increment();
+        // 序号在鉴权之前取得，鉴权期间发生的失效使本次结果在登记前即被判定为过时
+        long stamp = sequence.get();
+        boolean authorized = evaluator.getAsBoolean();
+        if (isCurrent(key, stamp)) {
+            if (decisions.size() >= maxEntries) {
+                prune(now);
+            }
+            decisions.put(key, new Entry(authorized, now + ttl, stamp));
+        }
+        return authorized;
+    }
+
+    /**
+     * 对象授权变更后失效该对象的鉴权结果
+     *
+     * @param id 磁盘、文件夹或文件ID
+     */
+    public void invalidate(ObjectId id) {
+        objectInvalidations.put(id, sequence.incrementAndGet());
+        invalidations.increment();
+        limitInvalidations();
+    }
+
+    /**
+     * 用户组变更后失效该用户的鉴权结果
+     *
+     * @param username 用户名
+     */
+    public void invalidateUser(String username) {
+        userInvalidations.put(username.toLowerCase(), sequence.incrementAndGet());
+        invalidations.increment();
+        limitInvalidations();
+    }
+
+    /**
+     * 清空全部鉴权结果
+     */
+    public void flush() {
+        floor = sequence.incrementAndGet();
+        invalidations.add(decisions.size());
+        decisions.clear();
+    }
+
+    /**
+     * 缓存命中、未命中、淘汰及失效统计
+     *
+     * @return 统计结果
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("entries", decisions.size());
+        statistics.put("maxEntries", maxEntries);
+        statistics.put("ttl", ttl / 1000);
+        statistics.put("hits", hitCount);
+        statistics.put("misses", missCount);
+        statistics.put("evictions", evictions.sum());
+        statistics.put("invalidations", invalidations.sum());
+        statistics.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return statistics;
+    }
+
+    /**
+     * 鉴权结果的序号不早于序号下限、对象及用户的失效序号时仍然有效
+     */
+    private boolean isCurrent(Key key, long stamp) {
+        return stamp >= floor
+                && stamp >= objectInvalidations.getOrDefault(key.id, 0L)
+                && stamp >= userInvalidations.getOrDefault(key.username, 0L);
+    }
+
+    /**
+     * 容量已满：清除过期及过时的结果，仍然已满时整体清空
+     */
+    private void prune(long now) {
+        int before = decisions.size();
+        decisions.entrySet().removeIf(item ->
+                item.getValue().expiresAt <= now || !isCurrent(item.getKey(), item.getValue().stamp));
+        if (decisions.size() >= maxEntries) {
+            decisions.clear();
+        }
+        evictions.add(Math.max(0, before - decisions.size()));
+    }
+
+    /**
+     * 失效记录过多时整体清空：先清空再抬高序号下限，清空期间登记的失效同样生效
+     */
+    private void limitInvalidations() {
+        if (objectInvalidations.size() + userInvalidations.size() > MAX_INVALIDATIONS) {
+            objectInvalidations.clear();
+            userInvalidations.clear();
+            floor = sequence.incrementAndGet();
+        }
+    }
+
+    private static final class Key {
+        private final String username;
+        private final AuthTarget target;
+        private final ObjectId id;
+        private final Set<AuthAction> actions;
+
+        Key(String username, AuthTarget target, ObjectId id, AuthAction[] actions) {
+            this.username = username.toLowerCase();
+            this.target = target;
+            this.id = id;
+            this.actions = actions.length == 0 ? EnumSet.noneOf(AuthAction.class)
+                    : EnumSet.copyOf(Arrays.asList(actions));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return username.equals(key.username) && target == key.target
+                    && id.equals(key.id) && actions.equals(key.actions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, target, id, actions);
+        }
+    }
+
+    private static class Entry {
+        private final boolean authorized;
+        private final long expiresAt;
+        private final long stamp;
+
+        Entry(boolean authorized, long expiresAt, long stamp) {
+            this.authorized = authorized;
+            this.expiresAt = expiresAt;
+            this.stamp = stamp;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package cn.mxleader.quickdoc.security.authorization;
+
+import cn.mxleader.quickdoc.dao.SysDiskRepository;
+import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import cn.mxleader.quickdoc.dao.SysUserRepository;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.entities.*;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import static cn.mxleader.quickdoc.common.CommonCode.SESSION_USER;
+
+/**
+ * 磁盘、文件夹及文件的授权校验，鉴权结果经 {@link AuthDecisionCache} 缓存
+ * <p>
+ * {@link ServiceIntercept} 只校验方法的第一个匹配参数；涉及多个对象的操作（如移动到新的上级目录）
+ * 由服务实现调用本类另行校验其余对象。
+ * <p>
+ * 会话中的用户信息在登录时读取，用户组变更后不会更新；重新鉴权时按用户名读取最新的用户组。
+ */
+@Component
+public class AuthorizationChecker {
+
+    private final GridFsAssistant gridFsAssistant;
+    private final SysDiskRepository sysDiskRepository;
+    private final SysFolderRepository sysFolderRepository;
+    private final SysUserRepository sysUserRepository;
+    private final MongoConverter converter;
+    private final AuthDecisionCache authDecisionCache;
+
+    public AuthorizationChecker(GridFsAssistant gridFsAssistant,
+                                SysDiskRepository sysDiskRepository,
+                                SysFolderRepository sysFolderRepository,
+                                SysUserRepository sysUserRepository,
+                                MongoConverter converter,
+                                AuthDecisionCache authDecisionCache) {
+        this.gridFsAssistant = gridFsAssistant;
+        this.sysDiskRepository = sysDiskRepository;
+        this.sysFolderRepository = sysFolderRepository;
+        this.sysUserRepository = sysUserRepository;
+        this.converter = converter;
+        this.authDecisionCache = authDecisionCache;
+    }
+
+    /**
+     * 当前请求会话中的登录用户，非Web请求（如后台任务）时返回 null
+     */
+    @Nullable
+    public static SysUser getActiveUser() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        return (SysUser) ((ServletRequestAttributes) attributes).getRequest().getSession().getAttribute(SESSION_USER);
+    }
+
+    /**
+     * 检查用户是否有权访问磁盘、文件夹或文件，管理员默认可访问所有对象
+     *
+     * @param sysUser 用户信息
+     * @param target  对象类型
+     * @param id      对象ID
+     * @param actions 待校验权限级别（READ，WRITE，DELETE）
+     * @return 鉴权通过返回 true，对象不存在时返回 false
+     */
+    public boolean isAuthorized(SysUser sysUser, AuthTarget target, ObjectId id, AuthAction... actions) {
+        return sysUser.isAdmin() || authDecisionCache.isAuthorized(sysUser.getUsername(), target, id, actions,
+                () -> checkAuthorization(target, id, getStoredUser(sysUser), actions));
+    }
+
+    /**
+     * 数据库中的最新用户信息（含用户组），用户未保存时（如尚未同步的LDAP用户）使用会话中的信息
+     */
+    private SysUser getStoredUser(SysUser sysUser) {
+        SysUser stored = sysUserRepository.findByUsername(sysUser.getUsername());
+        return stored == null ? sysUser : stored;
+    }
+
+    /**
+     * 检查用户是否有权写入上级目录（磁盘或目录）；上级为目录时同时校验所在磁盘
+     *
+     * @param sysUser 用户信息
+     * @param parent  上级目录
+     * @return 鉴权通过返回 true
+     */
+    public boolean canWrite(SysUser sysUser, ParentLink parent) {
+        if (!isAuthorized(sysUser, AuthTarget.DISK, parent.getDiskId(), AuthAction.WRITE)) {
+            return false;
+        }
+        return parent.getTarget().equals(AuthTarget.DISK)
+                || isAuthorized(sysUser, parent.getTarget(), parent.getId(), AuthAction.WRITE);
+    }
+
+    /**
+     * 读取磁盘、文件夹或文件的授权列表并检查是否有授权访问
+     *
+     * @param authTarget 对象类型
+     * @param id         对象ID
+     * @param sysUser    用户信息
+     * @param actions    待校验权限级别（READ，WRITE，DELETE）
+     * @return 鉴权通过返回True，否则返回False
+     */
+    private Boolean checkAuthorization(AuthTarget authTarget, ObjectId id,
+                                       SysUser sysUser, AuthAction[] actions) {
+        switch (authTarget) {
+            case DISK:
+                return sysDiskRepository.findById(id)
+                        .map(disk -> checkAuthorization(disk.getAuthorizations(), sysUser, actions))
+                        .orElse(false);
+            case FOLDER:
+                return sysFolderRepository.findById(id)
+                        .map(folder -> checkAuthorization(folder.getAuthorizations(), sysUser, actions))
+                        .orElse(false);
+            case FILE:
+                GridFSFile file = gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(id)));
+                if (file == null) {
+                    return false;
+                }
+                Metadata metadata = converter.read(Metadata.class, file.getMetadata());
+                return checkAuthorization(metadata.getAuthorizations(), sysUser, actions);
+        }
+        return false;
+    }
+
+    /**
+     * 检查是否有授权访问该目录或文件
+     *
+     * @param authorizations 授权列表
+     * @param sysUser        用户信息
+     * @param actions        待校验权限级别（READ，WRITE，DELETE）
+     * @return 鉴权通过返回True，否则返回False
+     */
+    private Boolean checkAuthorization(Set<Authorization> authorizations,
+                                       SysUser sysUser, AuthAction[] actions) {
+        // 管理员默认可访问所有目录和文件
+        if (sysUser.isAdmin()) {
+            return true;
+        }
+        if (authorizations != null && authorizations.size() > 0) {
+            for (Authorization authorization : authorizations) {
+                if (checkAuthorization(authorization, sysUser, actions)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 检查是否有授权访问该目录或文件
+     *
+     * @param authorization 授权参照
+     * @param sysUser       用户信息
+     * @param actions       待校验权限级别（READ，WRITE，DELETE）
+     * @return 鉴权通过返回True，否则返回False
+     */
+    private Boolean checkAuthorization(Authorization authorization,
+                                       SysUser sysUser, AuthAction[] actions) {
+        // 管理员默认可访问所有目录和文件
+        if (sysUser.isAdmin()) {
+            return true;
+        }
+        if (Intersection(authorization.getActions(), actions).size() > 0) {
+            switch (authorization.getType()) {
+                case GROUP:
+                    for (String group : sysUser.getGroups()) {
+                        if (authorization.getName().equalsIgnoreCase(group)) {
+                            return true;
+                        }
+                    }
+                case PRIVATE:
+                    if (authorization.getName().equalsIgnoreCase(sysUser.getUsername())) {
+                        return true;
+                    } else {
+                        break;
+                    }
+            }
+        } else {
+            return false;
+        }
+        return false;
+    }
+
+    private static ArrayList<AuthAction> Intersection(Set<AuthAction> a1, AuthAction[] a2) {
+        ArrayList<AuthAction> list = new ArrayList<>();
+        for (AuthAction a1Item : a1)
+            for (int j = 0; j < a2.length; j++)
+                if (a1Item == a2[j])
+                    list.add(a2[j]);
+        return list;
+    }
+}
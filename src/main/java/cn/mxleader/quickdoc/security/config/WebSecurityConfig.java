@@ -59,7 +59,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         protected void configure(HttpSecurity http) throws Exception {
             // @TODO 删除.csrf().disable() 可屏蔽 /management 路径下的POST提交，仅支持GET方法交互
             http.csrf().disable().requestMatcher(
-                    EndpointRequest.to("mongo-status", "quick-doc-health")).authorizeRequests()
+                    EndpointRequest.to("mongo-status", "quick-doc-health",
+                            "content-dedup", "content-cache", "blob-storage",
+                            "disk-usage", "index-usage", "folder-tree", "delete-jobs", "auth-cache")).authorizeRequests()
                     .anyRequest().hasAuthority(SysUser.Authority.ADMIN.name())
                     .and().httpBasic()
                     .authenticationEntryPoint(authenticationEntryPoint())
@@ -0,0 +1,54 @@
+package cn.mxleader.quickdoc.service;
+
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.entities.SysDeleteJob;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 级联删除服务：后台分批删除文件夹或磁盘下的所有文件夹，并解除文件与这些容器的关联，
+ * 不再属于任何容器的文件彻底删除并回收内容
+ */
+public interface DeleteJobService {
+
+    /**
+     * 登记并提交级联删除任务，调用方随后删除容器本身的文档
+     *
+     * @param container 待删除的磁盘或文件夹
+     * @return 删除任务
+     */
+    SysDeleteJob submit(ParentLink container);
+
+    /**
+     * 容器本身、所在磁盘或任一上级文件夹是否有未完成的删除任务，此类容器拒绝写入
+     *
+     * @param container 磁盘或文件夹
+     * @return 正在删除或删除失败待重试时返回 true
+     */
+    boolean isPendingDeletion(ParentLink container);
+
+    Optional<SysDeleteJob> get(ObjectId jobId);
+
+    /**
+     * 最近的删除任务及进度
+     *
+     * @return
+     */
+    List<SysDeleteJob> list();
+
+    /**
+     * 重新提交失败的任务
+     *
+     * @return 重新提交的任务数量
+     */
+    int resumeFailed();
+
+    /**
+     * 接管租约已到期（执行节点宕机或失联）的未完成任务
+     *
+     * @return 重新提交的任务数量
+     */
+    int resumeExpired();
+}
@@ -10,6 +10,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface DiskService {
@@ -46,5 +47,32 @@ public interface DiskService {
      */
     SysDisk removeAuthorization(ObjectId id, Authorization authorization);
 
+    /**
+     * 删除磁盘，磁盘下的文件夹及文件由后台任务级联删除
+     *
+     * @param id 磁盘ID
+     */
     void delete(ObjectId id);
+
+    /**
+     * 切换磁盘的存储后端，并由后台任务将磁盘内文件的内容迁移至该后端；
+     * 已位于目标后端的内容不再迁移，任务中断后再次提交即可继续
+     *
+     * @param id      磁盘ID
+     * @param storage 存储后端名称（gridfs / local）
+     * @return 迁移任务状态
+     */
+    Map<String, Object> migrateStorage(ObjectId id, String storage);
+
+    /**
+     * 本次运行期间各磁盘存储迁移任务的状态
+     *
+     * @return 磁盘ID与任务状态
+     */
+    Map<String, Map<String, Object>> getMigrations();
+
+    /**
+     * 删除存储迁移后保留期已过的源内容
+     */
+    void deleteRetiredContents();
 }
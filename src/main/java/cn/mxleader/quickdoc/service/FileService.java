@@ -1,9 +1,11 @@
 package cn.mxleader.quickdoc.service;
 
+import cn.mxleader.quickdoc.common.zip.ZipArchiveCache;
+import cn.mxleader.quickdoc.common.zip.ZipLayout;
 import cn.mxleader.quickdoc.security.authorization.PreAuth;
 import cn.mxleader.quickdoc.entities.*;
+import cn.mxleader.quickdoc.web.domain.FilePage;
 import cn.mxleader.quickdoc.web.domain.WebFile;
-import com.mongodb.client.gridfs.GridFSDownloadStream;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
@@ -21,6 +23,14 @@ public interface FileService {
 
     WebFile getStoredFile(ObjectId fileId);
 
+    /**
+     * 获取GridFS文件信息（不读取内容）
+     *
+     * @param fileId 文件ID
+     * @return 文件不存在时返回 null
+     */
+    GridFSFile getFile(ObjectId fileId);
+
     @PreAuth(field = ParentLink.class)
     WebFile getStoredFile(String filename, ParentLink parent);
 
@@ -32,6 +42,18 @@ public interface FileService {
     @PreAuth(field = ParentLink.class)
     Page<WebFile> list(ParentLink parent, Pageable pageable);
 
+    /**
+     * 游标分页获取容器内文件，按 (排序字段, _id) 定位下一页，不随页码增加而变慢
+     *
+     * @param parent 上级容器
+     * @param sort   排序字段（filename、uploadDate、length，前缀“-”表示降序），为空时按 _id 排序
+     * @param cursor 上一页返回的游标，为空时获取第一页
+     * @param limit  每页数量
+     * @return
+     */
+    @PreAuth(field = ParentLink.class)
+    FilePage list(ParentLink parent, String sort, String cursor, int limit);
+
     /**
      * 根据文件名进行模糊查询
      *
@@ -40,9 +62,33 @@ public interface FileService {
      */
     Stream<WebFile> searchFilesContaining(String filename);
 
+    /**
+     * 存储文件
+     *
+     * @param file     文件内容
+     * @param filename 文件名
+     * @param parent   上级容器
+     * @return 文件ID
+     * @throws IllegalStateException 上级容器正在删除中
+     */
     @PreAuth(field = ParentLink.class, actions = AuthAction.WRITE)
     ObjectId store(InputStream file, String filename, ParentLink parent);
 
+    /**
+     * 将断点续传已接收的分块登记为文件
+     *
+     * @param fileId    文件ID（上传会话ID）
+     * @param filename  文件名
+     * @param length    文件长度
+     * @param chunkSize 分块大小
+     * @param parent    上级容器
+     * @return 文件ID
+     * @throws IllegalStateException 上级容器正在删除中
+     */
+    @PreAuth(field = ParentLink.class, actions = AuthAction.WRITE)
+    ObjectId storeChunks(ObjectId fileId, String filename, long length, int chunkSize, ParentLink parent)
+            throws IOException;
+
     ObjectId storeServerFile(String resourceLocation) throws IOException;
 
     void rename(ObjectId fileId, String newFilename);
@@ -55,8 +101,17 @@ public interface FileService {
     GridFSFile addParent(ObjectId fileId, ParentLink parent);
 
     GridFSFile addAuthorization(ObjectId fileId, Authorization authorization);
+
     /**
-     * 删除Mongo库内文件
+     * 删除文件授权信息
+     *
+     * @param fileId        文件ID
+     * @param authorization 待删除授权
+     * @return
+     */
+    GridFSFile removeAuthorization(ObjectId fileId, Authorization authorization);
+    /**
+     * 删除文件：移入回收站，内容由后台按保留期限回收
      *
      * @param fileId 文件ID
      * @return
@@ -64,6 +119,43 @@ public interface FileService {
     @PreAuth(target = AuthTarget.FILE, actions = AuthAction.DELETE)
     void delete(ObjectId fileId);
 
+    /**
+     * 容器内已移入回收站的文件
+     *
+     * @param parent 上级容器
+     * @return
+     */
+    @PreAuth(field = ParentLink.class)
+    List<WebFile> listTrash(ParentLink parent);
+
+    /**
+     * 从回收站还原文件，上级容器内已有同名文件时抛出 IllegalStateException
+     *
+     * @param fileId 文件ID
+     * @return 还原后的文件，文件不在回收站时返回 null
+     */
+    @PreAuth(target = AuthTarget.FILE, actions = AuthAction.DELETE)
+    WebFile restore(ObjectId fileId);
+
+    /**
+     * 彻底删除文件，不受回收站保留期限限制，内容由后台回收
+     *
+     * @param fileId 文件ID
+     * @return 文件存在时返回 true
+     */
+    @PreAuth(target = AuthTarget.FILE, actions = AuthAction.DELETE)
+    boolean purge(ObjectId fileId);
+
+    /**
+     * 回收超过保留期限及已彻底删除的文件，分批删除内容分块
+     */
+    void reclaimTrash();
+
+    /**
+     * 为未记录CRC32的文件分批补算CRC32，使其可直接生成不压缩的ZIP布局
+     */
+    void backfillCrc32();
+
     /**
      * 根据输入文件ID获取二进制流
      *
@@ -72,10 +164,20 @@ public interface FileService {
      */
     GridFsResource getResource(ObjectId fileId);
 
-    GridFSDownloadStream getFSDownloadStream(ObjectId fileId);
+    InputStream getFSDownloadStream(ObjectId fileId);
+
+    /**
+     * 根据输入文件ID获取指定字节区间的二进制流
+     *
+     * @param fileId 文件ID
+     * @param start  起始位置
+     * @param end    结束位置（包含）
+     * @return
+     */
+    InputStream getContentStream(ObjectId fileId, long start, long end);
 
     /**
-     * 创建ZIP文件
+     * 创建ZIP文件，启用压缩包缓存时边输出边写入缓存
      *
      * @param folderId   文件或文件夹路径
      * @param fos        生成的zip文件存在路径（包括文件名）
@@ -84,4 +186,32 @@ public interface FileService {
     void createZip(ObjectId folderId, OutputStream fos) throws IOException;
     @PreAuth(target = AuthTarget.FILE)
     void createZipFromList(ObjectId[] ids, OutputStream fos, String parent) throws IOException ;
+
+    /**
+     * 获取文件夹压缩包的缓存，文件夹子树内容不变时复用之前生成的压缩包
+     *
+     * @param folderId 文件夹ID
+     * @return 已缓存的压缩包；缓存未启用或未命中时返回 null，由调用方通过 createZip 打包输出
+     */
+    @PreAuth
+    ZipArchiveCache.Artifact getCachedZip(ObjectId folderId) throws IOException;
+
+    /**
+     * 生成文件夹的不压缩（STORED）ZIP归档布局，归档长度在输出前即可确定，并支持按字节区间读取
+     *
+     * @param folderId 文件夹ID
+     * @return 归档布局
+     */
+    @PreAuth
+    ZipLayout planZip(ObjectId folderId) throws IOException;
+
+    /**
+     * 生成指定文件的不压缩（STORED）ZIP归档布局
+     *
+     * @param ids    文件ID
+     * @param parent 归档内的目录名
+     * @return 归档布局
+     */
+    @PreAuth(target = AuthTarget.FILE)
+    ZipLayout planZipFromList(ObjectId[] ids, String parent) throws IOException;
 }
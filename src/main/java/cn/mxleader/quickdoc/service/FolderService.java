@@ -24,6 +24,24 @@ public interface FolderService {
     @PreAuth(field = ParentLink.class,actions={AuthAction.READ,AuthAction.ADMIN})
     List<TreeNode> getFolderTree(ParentLink parent);
 
+    /**
+     * 逐级展开目录树：仅返回上级目录的直接子目录，附带各子目录的子目录数量及文件数量
+     *
+     * @param parent 上级目录（可能为磁盘或目录）
+     * @return
+     */
+    @PreAuth(field = ParentLink.class,actions={AuthAction.READ,AuthAction.ADMIN})
+    List<TreeNode> getChildNodes(ParentLink parent);
+
+    /**
+     * 获取自顶层文件夹至指定文件夹的路径（面包屑）
+     *
+     * @param id 文件目录ID
+     * @return 文件夹列表，末尾为该文件夹本身
+     */
+    @PreAuth
+    List<SysFolder> getPath(ObjectId id);
+
     /**
      * 根据ID获取文件目录信息
      *
@@ -38,6 +56,7 @@ public interface FolderService {
      * @param name
      * @param parent
      * @return
+     * @throws IllegalStateException 上级目录正在删除中
      */
     SysFolder save(String name, ParentLink parent);
 
@@ -48,6 +67,7 @@ public interface FolderService {
      * @param parent
      * @param authorization
      * @return
+     * @throws IllegalStateException 上级目录正在删除中
      */
     SysFolder save(String name, ParentLink parent, Authorization authorization);
 
@@ -62,13 +82,32 @@ public interface FolderService {
     SysFolder rename(ObjectId id, String newName);
 
     /**
-     * 删除文件目录
+     * 移动文件目录（仅限同一磁盘内），下级目录随之移动；
+     * 除被移动目录外，还须有新的上级目录及其所在磁盘的写入权限
+     *
+     * @param id        文件目录ID
+     * @param newParent 新的上级目录（磁盘或目录）
+     * @return 移动后的文件目录，目录或新的上级目录不存在时返回 null
+     * @throws IllegalArgumentException 跨磁盘移动，或移动到自身及下级目录中
+     * @throws IllegalStateException    新的上级目录中已存在同名目录，或新的上级目录正在删除中
+     * @throws cn.mxleader.quickdoc.security.exp.PreAuthException 无权写入新的上级目录或其所在磁盘
+     */
+    @PreAuth(actions = AuthAction.WRITE)
+    SysFolder move(ObjectId id, ParentLink newParent);
+
+    /**
+     * 删除文件目录，下级文件夹及文件由后台任务级联删除；
+     * 同时属于其他目录的文件仅解除与被删除目录的关联
      *
      * @param folderId
-     * @return
      */
     void delete(ObjectId folderId);
 
+    /**
+     * 重新统计文件夹及磁盘的子目录数量、文件数量及总字节数，修正增量累加的偏差
+     */
+    void recount();
+
     /**
      * 增加磁盘授权信息
      *
@@ -0,0 +1,63 @@
+package cn.mxleader.quickdoc.service;
+
+import cn.mxleader.quickdoc.entities.AuthAction;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.entities.SysUpload;
+import cn.mxleader.quickdoc.security.authorization.PreAuth;
+import cn.mxleader.quickdoc.web.domain.UploadProgress;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * 断点续传上传服务：创建会话、按编号写入分段、查询进度、提交为文件
+ */
+public interface UploadService {
+
+    /**
+     * 创建上传会话
+     *
+     * @param filename      文件名
+     * @param parent        上级容器
+     * @param contentLength 文件总长度
+     * @param owner         上传用户名
+     * @return
+     */
+    @PreAuth(field = ParentLink.class, actions = AuthAction.WRITE)
+    SysUpload create(String filename, ParentLink parent, Long contentLength, String owner);
+
+    Optional<SysUpload> get(ObjectId uploadId);
+
+    /**
+     * 写入编号分段，分段内容直接写入GridFS分块，重复写入同一分段将覆盖原内容
+     *
+     * @param upload  上传会话
+     * @param part    分段编号（起始编号为0）
+     * @param content 分段内容
+     * @return 上传进度
+     * @throws IOException           分段内容长度不符
+     * @throws IllegalStateException 会话已取消、正在提交或写入租约到期后已被提交接管
+     */
+    UploadProgress writePart(SysUpload upload, int part, InputStream content) throws IOException;
+
+    UploadProgress getProgress(SysUpload upload);
+
+    /**
+     * 所有分段接收完毕后提交为文件；提交前先占用会话，占用失败（正在写入分段或已在提交）时抛出 IllegalStateException。
+     * 写入租约或提交占用到期时视为所在节点已中断，由本次提交接管
+     *
+     * @param upload 上传会话
+     * @return 文件ID
+     * @throws IOException
+     */
+    ObjectId commit(SysUpload upload) throws IOException;
+
+    void abort(SysUpload upload);
+
+    /**
+     * 清理超时未更新且无未到期写入租约、提交占用的上传会话及其分块
+     */
+    void removeExpiredUploads();
+}
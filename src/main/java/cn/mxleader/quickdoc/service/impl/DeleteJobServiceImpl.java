@@ -0,0 +1,293 @@
+package cn.mxleader.quickdoc.service.impl;
+
+import cn.mxleader.quickdoc.config.QuickDocTrashProperties;
+import cn.mxleader.quickdoc.dao.SysDeleteJobRepository;
+import cn.mxleader.quickdoc.dao.ext.FileCountCache;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeCache;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.entities.SysDeleteJob;
+import cn.mxleader.quickdoc.entities.SysFolder;
+import cn.mxleader.quickdoc.service.DeleteJobService;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static cn.mxleader.quickdoc.entities.SysDeleteJob.Status.*;
+
+@Service
+public class DeleteJobServiceImpl implements DeleteJobService, DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(DeleteJobServiceImpl.class);
+
+    private static final int FOLDER_BATCH_SIZE = 100;
+    private static final int FILE_BATCH_SIZE = 500;
+
+    /**
+     * 任务租约时长，执行节点每处理一批即续租，节点宕机后其他节点在租约到期后接管
+     */
+    private static final long LEASE_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * 彻底删除的文件回收时间为纪元时间
+     */
+    private static final Date PURGED = new Date(0);
+
+    private final SysDeleteJobRepository sysDeleteJobRepository;
+    private final FolderTreeAssistant folderTreeAssistant;
+    private final FolderTreeCache folderTreeCache;
+    private final GridFsAssistant gridFsAssistant;
+    private final FileCountCache fileCountCache;
+    private final QuickDocTrashProperties trashProperties;
+    private final MongoOperations mongoOperations;
+
+    /**
+     * 本节点标识（进程号@主机名及随机后缀），登记为所执行任务的 owner
+     */
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + ObjectId.get();
+
+    /**
+     * 任务依次执行，避免多个任务同时大量删除分块
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quickdoc-delete-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    DeleteJobServiceImpl(SysDeleteJobRepository sysDeleteJobRepository,
+                         FolderTreeAssistant folderTreeAssistant,
+                         FolderTreeCache folderTreeCache,
+                         GridFsAssistant gridFsAssistant,
+                         FileCountCache fileCountCache,
+                         QuickDocTrashProperties trashProperties,
+                         MongoOperations mongoOperations) {
+        this.sysDeleteJobRepository = sysDeleteJobRepository;
+        this.folderTreeAssistant = folderTreeAssistant;
+        this.folderTreeCache = folderTreeCache;
+        this.gridFsAssistant = gridFsAssistant;
+        this.fileCountCache = fileCountCache;
+        this.trashProperties = trashProperties;
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public SysDeleteJob submit(ParentLink container) {
+        Date now = new Date();
+        SysDeleteJob job = new SysDeleteJob(ObjectId.get(), container.getTarget(),
+                container.getId(), container.getDiskId(), PENDING, 0, 0, 0, null, now, now);
+        // 提交节点先持有租约，排队期间不被其他节点接管
+        job.setOwner(owner);
+        job.setLeaseExpiresAt(new Date(now.getTime() + LEASE_MILLIS));
+        sysDeleteJobRepository.insert(job);
+        executor.execute(() -> run(job.getId()));
+        return job;
+    }
+
+    @Override
+    public boolean isPendingDeletion(ParentLink container) {
+        // 磁盘删除任务的 targetId 即磁盘ID；文件夹还须检查其自身及所有上级文件夹
+        List<ObjectId> targetIds = new ArrayList<>();
+        targetIds.add(container.getDiskId());
+        if (container.getTarget().equals(AuthTarget.FOLDER)) {
+            targetIds.add(container.getId());
+            SysFolder folder = mongoOperations.findById(container.getId(), SysFolder.class);
+            if (folder != null) {
+                targetIds.addAll(folder.getAncestors());
+            }
+        }
+        return mongoOperations.exists(Query.query(Criteria.where("targetId").in(targetIds)
+                .and("status").ne(DONE)), SysDeleteJob.class);
+    }
+
+    @Override
+    public Optional<SysDeleteJob> get(ObjectId jobId) {
+        return sysDeleteJobRepository.findById(jobId);
+    }
+
+    @Override
+    public List<SysDeleteJob> list() {
+        return sysDeleteJobRepository.findTop50ByOrderByCreatedAtDesc();
+    }
+
+    @Override
+    public int resumeFailed() {
+        List<SysDeleteJob> jobs = sysDeleteJobRepository.findAllByStatusIn(Collections.singleton(FAILED));
+        jobs.forEach(job -> executor.execute(() -> run(job.getId())));
+        return jobs.size();
+    }
+
+    /**
+     * 服务启动后继续执行上次未完成的任务，其他节点仍持有租约的任务在领取时跳过
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (SysDeleteJob job : sysDeleteJobRepository.findAllByStatusIn(Arrays.asList(PENDING, RUNNING))) {
+            log.info("继续执行删除任务：{}（{} {}）", job.getId(), job.getTarget(), job.getTargetId());
+            executor.execute(() -> run(job.getId()));
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 600000L)
+    public int resumeExpired() {
+        List<SysDeleteJob> jobs = mongoOperations.find(Query.query(Criteria.where("status").in(PENDING, RUNNING)
+                .and("leaseExpiresAt").lt(new Date())), SysDeleteJob.class);
+        for (SysDeleteJob job : jobs) {
+            log.info("接管租约已到期的删除任务：{}（原执行节点 {}）", job.getId(), job.getOwner());
+            executor.execute(() -> run(job.getId()));
+        }
+        return jobs.size();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 先处理容器本身的文件，再分批处理下级文件夹：解除每批文件夹内文件的关联后删除这批文件夹。
+     * 每批处理后保存进度并续租；各步骤均可重复执行，中断后从头重新执行即可继续。
+     * 执行前须领取任务，已完成或其他节点持有租约的任务直接跳过；续租失败（租约已被接管）时立即停止。
+     */
+    private void run(ObjectId jobId) {
+        SysDeleteJob job = claim(jobId);
+        if (job == null) {
+            log.debug("删除任务已完成或由其他节点执行：{}", jobId);
+            return;
+        }
+        ParentLink container = job.getTarget().equals(AuthTarget.DISK)
+                ? new ParentLink(job.getDiskId(), AuthTarget.DISK, job.getDiskId())
+                : new ParentLink(job.getTargetId(), AuthTarget.FOLDER, job.getDiskId());
+        try {
+            unlinkFiles(job, Collections.singletonList(container));
+            List<SysFolder> folders;
+            while (!(folders = folderTreeAssistant.findDescendants(container, FOLDER_BATCH_SIZE)).isEmpty()) {
+                unlinkFiles(job, folders.stream()
+                        .map(folder -> new ParentLink(folder.getId(), AuthTarget.FOLDER, job.getDiskId()))
+                        .collect(Collectors.toList()));
+                folderTreeAssistant.deleteAll(folders.stream().map(SysFolder::getId).collect(Collectors.toList()));
+                job.setFoldersDeleted(job.getFoldersDeleted() + folders.size());
+                save(job);
+            }
+            job.setStatus(DONE);
+            log.info("删除任务完成：{}，删除文件夹{}个，删除文件{}个，解除关联文件{}个", jobId,
+                    job.getFoldersDeleted(), job.getFilesDeleted(), job.getFilesUnlinked());
+        } catch (LeaseLostException exp) {
+            log.warn("删除任务租约已被其他节点接管，停止执行：{}", jobId);
+            return;
+        } catch (RuntimeException exp) {
+            log.error("删除任务失败：{}", jobId, exp);
+            job.setStatus(FAILED);
+            job.setError(exp.getMessage());
+        }
+        release(job);
+        if (job.getTarget().equals(AuthTarget.DISK)) {
+            folderTreeCache.remove(job.getDiskId());
+        } else {
+            folderTreeCache.invalidate(job.getDiskId());
+        }
+    }
+
+    /**
+     * 分批解除文件与容器的关联；仍属于其他容器的文件保留，其余文件彻底删除并立即回收内容分块
+     */
+    private void unlinkFiles(SysDeleteJob job, List<ParentLink> containers) {
+        List<ObjectId> fileIds;
+        while (!(fileIds = gridFsAssistant.unlinkParents(containers, FILE_BATCH_SIZE)).isEmpty()) {
+            long deleted = gridFsAssistant.purgeOrphans(fileIds);
+            job.setFilesDeleted(job.getFilesDeleted() + deleted);
+            job.setFilesUnlinked(job.getFilesUnlinked() + fileIds.size() - deleted);
+            while (!gridFsAssistant.reclaim(PURGED, FILE_BATCH_SIZE, trashProperties.getChunkBatchSize(),
+                    trashProperties.getPauseMillis()).isEmpty()) {
+                // 分块按批删除，每批之间暂停，每批后续租
+                save(job);
+            }
+            save(job);
+        }
+        containers.forEach(container -> fileCountCache.invalidate(container.getId()));
+    }
+
+    /**
+     * 领取任务：未完成，且未被持有、由本节点持有或租约已到期时登记为本节点执行
+     *
+     * @return 领取后的任务，无法领取时返回 null
+     */
+    private SysDeleteJob claim(ObjectId jobId) {
+        Date now = new Date();
+        return mongoOperations.findAndModify(
+                Query.query(Criteria.where("_id").is(jobId).and("status").ne(DONE)
+                        .orOperator(Criteria.where("owner").is(null), Criteria.where("owner").is(owner),
+                                Criteria.where("leaseExpiresAt").lt(now))),
+                new Update().set("status", RUNNING).set("owner", owner)
+                        .set("leaseExpiresAt", new Date(now.getTime() + LEASE_MILLIS))
+                        .unset("error").set("updatedAt", now),
+                FindAndModifyOptions.options().returnNew(true),
+                SysDeleteJob.class);
+    }
+
+    /**
+     * 保存进度并续租，仅在本节点仍持有任务时生效
+     *
+     * @throws LeaseLostException 任务已被其他节点接管
+     */
+    private void save(SysDeleteJob job) {
+        Date now = new Date();
+        job.setUpdatedAt(now);
+        job.setLeaseExpiresAt(new Date(now.getTime() + LEASE_MILLIS));
+        if (!update(job, progress(job).set("leaseExpiresAt", job.getLeaseExpiresAt()))) {
+            throw new LeaseLostException();
+        }
+    }
+
+    /**
+     * 保存最终状态并释放任务，失败的任务可由任一节点重新提交
+     */
+    private void release(SysDeleteJob job) {
+        job.setUpdatedAt(new Date());
+        if (!update(job, progress(job).unset("owner").unset("leaseExpiresAt"))) {
+            log.warn("删除任务租约已被其他节点接管，不再保存状态：{}", job.getId());
+        }
+    }
+
+    private Update progress(SysDeleteJob job) {
+        return new Update().set("status", job.getStatus())
+                .set("foldersDeleted", job.getFoldersDeleted())
+                .set("filesUnlinked", job.getFilesUnlinked())
+                .set("filesDeleted", job.getFilesDeleted())
+                .set("error", job.getError())
+                .set("updatedAt", job.getUpdatedAt());
+    }
+
+    private boolean update(SysDeleteJob job, Update update) {
+        return mongoOperations.updateFirst(Query.query(Criteria.where("_id").is(job.getId()).and("owner").is(owner)),
+                update, SysDeleteJob.class).getMatchedCount() > 0;
+    }
+
+    /**
+     * 续租失败：租约已到期并被其他节点接管
+     */
+    private static class LeaseLostException extends RuntimeException {
+        LeaseLostException() {
+            super("删除任务租约已被其他节点接管");
+        }
+    }
+}
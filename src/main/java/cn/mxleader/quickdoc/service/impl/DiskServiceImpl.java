@@ -1,26 +1,94 @@
 package cn.mxleader.quickdoc.service.impl;
 
+import cn.mxleader.quickdoc.config.QuickDocBlobProperties;
 import cn.mxleader.quickdoc.dao.SysDiskRepository;
+import cn.mxleader.quickdoc.dao.blob.BlobStores;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeCache;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.dao.ext.GridFsQueries;
 import cn.mxleader.quickdoc.entities.AuthAction;
+import cn.mxleader.quickdoc.entities.AuthTarget;
 import cn.mxleader.quickdoc.entities.Authorization;
+import cn.mxleader.quickdoc.entities.ParentLink;
 import cn.mxleader.quickdoc.entities.SysDisk;
+import cn.mxleader.quickdoc.security.authorization.AuthDecisionCache;
+import cn.mxleader.quickdoc.service.DeleteJobService;
 import cn.mxleader.quickdoc.service.DiskService;
+import com.mongodb.client.gridfs.model.GridFSFile;
 import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-public class DiskServiceImpl implements DiskService {
+public class DiskServiceImpl implements DiskService, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(DiskServiceImpl.class);
+
+    private static final String PENDING = "PENDING";
+    private static final String RUNNING = "RUNNING";
+    private static final String DONE = "DONE";
+    private static final String FAILED = "FAILED";
+    private static final int RETIRED_BATCH_SIZE = 100;
+
     private final SysDiskRepository sysDiskRepository;
+    private final GridFsAssistant gridFsAssistant;
+    private final BlobStores blobStores;
+    private final DeleteJobService deleteJobService;
+    private final MongoOperations mongoOperations;
+    private final AuthDecisionCache authDecisionCache;
+    private final QuickDocBlobProperties blobProperties;
+    private final FolderTreeCache folderTreeCache;
+
+    private final Map<ObjectId, Migration> migrations = new ConcurrentHashMap<>();
 
-    DiskServiceImpl(SysDiskRepository sysDiskRepository) {
+    /**
+     * 迁移任务依次执行，避免多个磁盘同时大量复制内容
+     */
+    private final ExecutorService migrationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quickdoc-storage-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    DiskServiceImpl(SysDiskRepository sysDiskRepository,
+                    GridFsAssistant gridFsAssistant,
+                    BlobStores blobStores,
+                    DeleteJobService deleteJobService,
+                    MongoOperations mongoOperations,
+                    AuthDecisionCache authDecisionCache,
+                    QuickDocBlobProperties blobProperties,
+                    FolderTreeCache folderTreeCache) {
         this.sysDiskRepository = sysDiskRepository;
+        this.gridFsAssistant = gridFsAssistant;
+        this.blobStores = blobStores;
+        this.deleteJobService = deleteJobService;
+        this.mongoOperations = mongoOperations;
+        this.authDecisionCache = authDecisionCache;
+        this.blobProperties = blobProperties;
+        this.folderTreeCache = folderTreeCache;
     }
 
     @Override
@@ -48,7 +116,7 @@ public class DiskServiceImpl implements DiskService {
 
     @Override
     public SysDisk save(String name, Authorization authorization) {
-        return sysDiskRepository.save(new SysDisk(ObjectId.get(), name,
+        return sysDiskRepository.insert(new SysDisk(ObjectId.get(), name,
                 new HashSet<Authorization>() {{
                     add(authorization);
                 }}));
@@ -58,9 +126,7 @@ public class DiskServiceImpl implements DiskService {
     public SysDisk rename(ObjectId id, String newName) {
         Optional<SysDisk> optionalSysDisk = sysDiskRepository.findById(id);
         if (optionalSysDisk.isPresent()) {
-            SysDisk disk = optionalSysDisk.get();
-            disk.setName(newName);
-            return sysDiskRepository.save(disk);
+            return update(id, Update.update("name", newName));
         }
         return null;
     }
@@ -77,11 +143,11 @@ public class DiskServiceImpl implements DiskService {
                     for (AuthAction action : authorization.getActions()) {
                         item.add(action);
                     }
-                    return sysDiskRepository.save(disk);
+                    return saveAuthorizations(disk);
                 }
             }
             disk.addAuthorization(authorization);
-            return sysDiskRepository.save(disk);
+            return saveAuthorizations(disk);
         }
         return null;
     }
@@ -101,7 +167,7 @@ public class DiskServiceImpl implements DiskService {
                     if (item.getActions().size() == 0) {
                         disk.removeAuthorization(item);
                     }
-                    return sysDiskRepository.save(disk);
+                    return saveAuthorizations(disk);
                 }
             }
         }
@@ -113,7 +179,127 @@ public class DiskServiceImpl implements DiskService {
         Optional<SysDisk> optionalSysDisk = sysDiskRepository.findById(id);
         if (optionalSysDisk.isPresent()) {
             SysDisk disk = optionalSysDisk.get();
+            // 磁盘下的文件夹及文件由后台任务分批删除
+            deleteJobService.submit(new ParentLink(disk.getId(), AuthTarget.DISK, disk.getId()));
             sysDiskRepository.delete(disk);
+            folderTreeCache.remove(disk.getId());
         }
     }
+
+    @Override
+    public Map<String, Object> migrateStorage(ObjectId id, String storage) {
+        String blobStore = blobStores.get(storage).getName();
+        SysDisk disk = sysDiskRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("磁盘不存在：" + id));
+        Migration migration = new Migration(disk, blobStore);
+        Migration current = migrations.compute(id,
+                (key, running) -> running != null && !running.isFinished() ? running : migration);
+        if (current != migration) {
+            return current.toMap();
+        }
+        // 先切换存储后端，迁移期间新上传的文件直接写入新后端
+        update(id, Update.update("storage", blobStore));
+        migrationExecutor.execute(() -> migrate(migration));
+        return migration.toMap();
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getMigrations() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        migrations.forEach((id, migration) -> result.put(id.toHexString(), migration.toMap()));
+        return result;
+    }
+
+    private void migrate(Migration migration) {
+        migration.status = RUNNING;
+        Query query = Query.query(GridFsQueries.onDisk(migration.diskId));
+        try {
+            for (GridFSFile file : gridFsAssistant.find(query)) {
+                try {
+                    if (gridFsAssistant.migrate(file, migration.storage)) {
+                        migration.migrated.incrementAndGet();
+                    }
+                } catch (IOException | RuntimeException exp) {
+                    log.warn("迁移文件 {} 失败", file.getId(), exp);
+                    migration.failed.incrementAndGet();
+                }
+            }
+            migration.status = DONE;
+        } catch (RuntimeException exp) {
+            log.error("磁盘 {} 存储迁移失败", migration.diskName, exp);
+            migration.error = exp.getMessage();
+            migration.status = FAILED;
+        }
+        migration.finishedAt = new Date();
+        log.info("磁盘 {} 存储后端切换为 {}，迁移文件 {} 个，失败 {} 个", migration.diskName, migration.storage,
+                migration.migrated.get(), migration.failed.get());
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 600000L)
+    public void deleteRetiredContents() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, -blobProperties.getMigrationGracePeriod());
+        int deleted = gridFsAssistant.deleteRetiredBlobs(calendar.getTime(), RETIRED_BATCH_SIZE);
+        if (deleted > 0) {
+            log.info("删除存储迁移后的源内容 {} 个", deleted);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        migrationExecutor.shutdownNow();
+    }
+
+    /**
+     * 存储迁移任务状态，仅保存在内存中
+     */
+    private static class Migration {
+        private final ObjectId diskId;
+        private final String diskName;
+        private final String storage;
+        private final Date startedAt = new Date();
+        private final AtomicLong migrated = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile String status = PENDING;
+        private volatile String error;
+        private volatile Date finishedAt;
+
+        Migration(SysDisk disk, String storage) {
+            this.diskId = disk.getId();
+            this.diskName = disk.getName();
+            this.storage = storage;
+        }
+
+        boolean isFinished() {
+            return DONE.equals(status) || FAILED.equals(status);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("diskId", diskId.toHexString());
+            result.put("storage", storage);
+            result.put("status", status);
+            result.put("migrated", migrated.get());
+            result.put("failed", failed.get());
+            result.put("error", error);
+            result.put("startedAt", startedAt);
+            result.put("finishedAt", finishedAt);
+            return result;
+        }
+    }
+
+    /**
+     * 按字段更新磁盘，避免整体保存时覆盖并发累加的文件总数及总字节数
+     */
+    private SysDisk update(ObjectId id, Update update) {
+        return mongoOperations.findAndModify(Query.query(Criteria.where("_id").is(id)), update,
+                FindAndModifyOptions.options().returnNew(true), SysDisk.class);
+    }
+
+    private SysDisk saveAuthorizations(SysDisk disk) {
+        SysDisk saved = update(disk.getId(), Update.update("authorizations", disk.getAuthorizations()));
+        authDecisionCache.invalidate(disk.getId());
+        return saved;
+    }
 }
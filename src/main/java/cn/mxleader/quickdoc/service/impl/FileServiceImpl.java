@@ -1,60 +1,117 @@
 package cn.mxleader.quickdoc.service.impl;
 
 import cn.mxleader.quickdoc.common.utils.FileUtils;
+import cn.mxleader.quickdoc.common.zip.ZipArchiveCache;
+import cn.mxleader.quickdoc.common.zip.ZipLayout;
+import cn.mxleader.quickdoc.common.zip.ZipPackager;
+import cn.mxleader.quickdoc.common.zip.ZipSource;
+import cn.mxleader.quickdoc.config.QuickDocTrashProperties;
 import cn.mxleader.quickdoc.dao.SysDiskRepository;
 import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import cn.mxleader.quickdoc.dao.ext.FileCountCache;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant;
 import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.dao.ext.GridFsQueries;
+import cn.mxleader.quickdoc.dao.ext.WebFileCodec;
 import cn.mxleader.quickdoc.entities.*;
+import cn.mxleader.quickdoc.security.authorization.AuthDecisionCache;
+import cn.mxleader.quickdoc.service.DeleteJobService;
 import cn.mxleader.quickdoc.service.FileService;
+import cn.mxleader.quickdoc.web.domain.FilePage;
 import cn.mxleader.quickdoc.web.domain.WebFile;
-import com.mongodb.client.gridfs.GridFSDownloadStream;
-import com.mongodb.client.gridfs.GridFSFindIterable;
+import com.mongodb.client.MongoIterable;
 import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
 import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.convert.MongoConverter;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.gridfs.GridFsCriteria;
 import org.springframework.data.mongodb.gridfs.GridFsResource;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.TRASHED_AT_FIELD;
 
 @Service
 public class FileServiceImpl implements FileService {
 
-    private static final int BUFFER_SIZE = 8192;
+    private final Logger log = LoggerFactory.getLogger(FileServiceImpl.class);
+
+    /**
+     * 游标分页允许的排序字段
+     */
+    private static final List<String> SORT_FIELDS = Arrays.asList("filename", "uploadDate", "length");
+
+    /**
+     * 每次补算CRC32的文件数量上限
+     */
+    private static final int CRC_BACKFILL_LIMIT = 100;
 
     private final GridFsAssistant gridFsAssistant;
     private final SysDiskRepository sysDiskRepository;
     private final SysFolderRepository sysFolderRepository;
     private final MongoConverter converter;
+    private final FileCountCache fileCountCache;
+    private final FolderTreeAssistant folderTreeAssistant;
+    private final QuickDocTrashProperties trashProperties;
+    private final ZipPackager zipPackager;
+    private final ZipArchiveCache zipArchiveCache;
+    private final AuthDecisionCache authDecisionCache;
+    private final DeleteJobService deleteJobService;
+
+    private volatile boolean crcBackfilled = false;
 
     FileServiceImpl(GridFsAssistant gridFsAssistant,
                     SysDiskRepository sysDiskRepository,
                     SysFolderRepository sysFolderRepository,
-                    MongoConverter converter) {
+                    MongoConverter converter,
+                    FileCountCache fileCountCache,
+                    FolderTreeAssistant folderTreeAssistant,
+                    QuickDocTrashProperties trashProperties,
+                    ZipPackager zipPackager,
+                    ZipArchiveCache zipArchiveCache,
+                    AuthDecisionCache authDecisionCache,
+                    DeleteJobService deleteJobService) {
         this.gridFsAssistant = gridFsAssistant;
+        this.fileCountCache = fileCountCache;
+        this.folderTreeAssistant = folderTreeAssistant;
+        this.trashProperties = trashProperties;
+        this.zipPackager = zipPackager;
+        this.zipArchiveCache = zipArchiveCache;
+        this.authDecisionCache = authDecisionCache;
+        this.deleteJobService = deleteJobService;
         this.sysDiskRepository = sysDiskRepository;
         this.sysFolderRepository = sysFolderRepository;
         this.converter = converter;
     }
 
     public WebFile getStoredFile(ObjectId fileId) {
-        return switchWebFile(gridFsAssistant.findOne(new Query(Criteria.where("_id").is(fileId))));
+        return switchWebFile(getFile(fileId));
+    }
+
+    @Override
+    public GridFSFile getFile(ObjectId fileId) {
+        return gridFsAssistant.findOne(new Query(Criteria.where("_id").is(fileId)
+                .and(TRASHED_AT_FIELD).exists(false)));
     }
 
     /**
@@ -65,9 +122,7 @@ public class FileServiceImpl implements FileService {
      * @return
      */
     public WebFile getStoredFile(String filename, ParentLink parent) {
-        Query query = Query.query(GridFsCriteria.whereFilename().is(filename));
-        query.addCriteria(GridFsCriteria.whereMetaData("parents").in(parent));
-        return switchWebFile(gridFsAssistant.findOne(query));
+        return switchWebFile(gridFsAssistant.findOne(Query.query(GridFsQueries.namedIn(filename, parent))));
     }
 
     /**
@@ -77,31 +132,91 @@ public class FileServiceImpl implements FileService {
      * @return
      */
     public Stream<WebFile> getWebFiles(ObjectId folderId) {
-        return StreamSupport.stream(switchWebFiles(getStoredFiles(folderId)).spliterator(), false);
-    }
-
-    private GridFSFindIterable getStoredFiles(ObjectId folderId) {
-        Query query = Query.query(GridFsCriteria.whereMetaData("folderId").is(folderId));
-        return gridFsAssistant.find(query);
+        return sysFolderRepository.findById(folderId)
+                .map(folder -> StreamSupport.stream(
+                        findWebFiles(Query.query(GridFsQueries.inParent(folderLink(folder)))).spliterator(), false))
+                .orElseGet(Stream::empty);
     }
 
     @Override
     public List<WebFile> list(ParentLink parent) {
-        Query query = Query.query(GridFsCriteria.whereMetaData("parents").in(parent));
-        GridFSFindIterable fsFiles = gridFsAssistant.find(query);
-        return StreamSupport.stream(switchWebFiles(fsFiles).spliterator(), false)
-                .collect(Collectors.toList());
+        Query query = Query.query(GridFsQueries.inParent(parent));
+        return findWebFiles(query).into(new ArrayList<>());
     }
 
     @Override
     public Page<WebFile> list(ParentLink parent, Pageable pageable) {
-        Query query = Query.query(GridFsCriteria.whereMetaData("parents").in(parent));
-        GridFSFindIterable fsFiles = gridFsAssistant.find(query)
-                .skip((int) pageable.getOffset())
-                .limit(pageable.getPageSize());
-        List<WebFile> files = StreamSupport.stream(switchWebFiles(fsFiles).spliterator(), false)
-                .collect(Collectors.toList());
-        return new PageImpl<>(files, pageable, gridFsAssistant.count(query));
+        Query query = Query.query(GridFsQueries.inParent(parent));
+        Query pageQuery = Query.query(GridFsQueries.inParent(parent)).with(pageable);
+        List<WebFile> files = findWebFiles(pageQuery).into(new ArrayList<>());
+        return new PageImpl<>(files, pageable, count(parent));
+    }
+
+    @Override
+    public FilePage list(ParentLink parent, String sort, String cursor, int limit) {
+        boolean descending = sort != null && sort.startsWith("-");
+        String field = sort == null ? null : (descending ? sort.substring(1) : sort);
+        if (!SORT_FIELDS.contains(field)) {
+            field = "_id";
+        }
+        String sortKey = (descending ? "-" : "") + field;
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+
+        Criteria criteria = GridFsQueries.inParent(parent);
+        if (StringUtils.hasText(cursor)) {
+            Document position = decodeCursor(cursor);
+            if (!sortKey.equals(position.getString("s"))) {
+                throw new IllegalArgumentException("分页游标与排序方式不一致");
+            }
+            criteria = GridFsQueries.after(criteria, field, position.get("v"), position.getObjectId("i"),
+                    descending);
+        }
+        Sort order = field.equals("_id") ? Sort.by(direction, "_id") : Sort.by(direction, field, "_id");
+        Query query = Query.query(criteria).with(order).limit(limit + 1);
+
+        List<WebFile> files = findWebFiles(query).into(new ArrayList<>(limit + 1));
+        String next = null;
+        if (files.size() > limit) {
+            files = files.subList(0, limit);
+            next = encodeCursor(sortKey, files.get(limit - 1), field);
+        }
+        return new FilePage(files, count(parent), next);
+    }
+
+    /**
+     * 容器内文件数量（缓存）
+     */
+    private long count(ParentLink parent) {
+        return fileCountCache.get(parent.getId(),
+                () -> gridFsAssistant.count(Query.query(GridFsQueries.inParent(parent))));
+    }
+
+    /**
+     * 游标内容：排序方式（s）、最后一条记录的排序字段值（v）及ID（i），以URL安全的Base64编码
+     */
+    private static String encodeCursor(String sortKey, WebFile last, String field) {
+        Document position = new Document("s", sortKey).append("i", new ObjectId(last.getId()));
+        switch (field) {
+            case "filename":
+                position.append("v", last.getFilename());
+                break;
+            case "uploadDate":
+                position.append("v", last.getUploadDate());
+                break;
+            case "length":
+                position.append("v", last.getLength());
+                break;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(position.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Document decodeCursor(String cursor) {
+        try {
+            return Document.parse(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (RuntimeException exp) {
+            throw new IllegalArgumentException("分页游标无效：" + cursor);
+        }
     }
 
     /**
@@ -113,8 +228,8 @@ public class FileServiceImpl implements FileService {
     @Override
     public Stream<WebFile> searchFilesContaining(String filename) {
         Pattern pattern = Pattern.compile("^.*" + filename + ".*$", Pattern.CASE_INSENSITIVE);
-        Query query = Query.query(GridFsCriteria.whereFilename().is(pattern));
-        return StreamSupport.stream(switchWebFiles(gridFsAssistant.find(query)).spliterator(), false);
+        Query query = Query.query(GridFsCriteria.whereFilename().is(pattern).and(TRASHED_AT_FIELD).exists(false));
+        return StreamSupport.stream(findWebFiles(query).spliterator(), false);
     }
 
     /**
@@ -128,14 +243,58 @@ public class FileServiceImpl implements FileService {
     @Override
     //@Async
     public ObjectId store(InputStream file, String filename, ParentLink parent) {
+        checkNotDeleting(parent);
+        ObjectId fileId = gridFsAssistant.store(file, filename, createMetadata(filename, parent),
+                getDiskStorage(parent));
+        GridFSFile stored = getFile(fileId);
+        updateCount(parent, 1, stored == null ? 0 : stored.getLength());
+        return fileId;
+    }
+
+    /**
+     * 断点续传的分块按原样写入GridFS，登记文件后再迁移至磁盘指定的存储后端；
+     * 使用GridFS存储时按压缩策略就地压缩
+     */
+    @Override
+    public ObjectId storeChunks(ObjectId fileId, String filename, long length, int chunkSize,
+                                ParentLink parent) throws IOException {
+        checkNotDeleting(parent);
+        gridFsAssistant.storeChunks(fileId, filename, length, chunkSize, createMetadata(filename, parent));
+        updateCount(parent, 1, length);
+        String storage = getDiskStorage(parent);
+        GridFSFile stored = gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(fileId)));
+        if (storage == null || !gridFsAssistant.migrate(stored, storage)) {
+            gridFsAssistant.applyCompression(stored);
+        }
+        return fileId;
+    }
+
+    /**
+     * 正在删除的容器拒绝写入，否则写入的文件可能在删除任务处理过该容器后成为无主文件
+     */
+    private void checkNotDeleting(ParentLink parent) {
+        if (deleteJobService.isPendingDeletion(parent)) {
+            throw new IllegalStateException("目标目录正在删除中");
+        }
+    }
+
+    /**
+     * 获取容器所在磁盘的存储后端，未设置时返回 null（使用GridFS）
+     */
+    private String getDiskStorage(ParentLink parent) {
+        return sysDiskRepository.findById(parent.getDiskId())
+                .map(SysDisk::getStorage)
+                .orElse(null);
+    }
+
+    private Metadata createMetadata(String filename, ParentLink parent) {
         String fileType = FileUtils.getContentType(filename);
-        Metadata metadata = new Metadata(fileType,
+        return new Metadata(fileType,
                 new HashSet<ParentLink>() {{
                     add(parent);
                 }},
                 getParentAuthorizations(parent),
                 Collections.emptySet());
-        return gridFsAssistant.store(file, filename, metadata);
     }
 
     private Set<Authorization> getParentAuthorizations(ParentLink parent) {
@@ -172,19 +331,19 @@ public class FileServiceImpl implements FileService {
 
     @Override
     public GridFSFile saveMetadata(ObjectId fileId, Metadata metadata) {
-        return gridFsAssistant.updateMetadata(fileId, metadata);
+        GridFSFile file = gridFsAssistant.updateMetadata(fileId, metadata);
+        authDecisionCache.invalidate(fileId);
+        return file;
     }
 
     @Override
     @Async
     public void updateMIMEType(ObjectId fileId){
-        GridFSFile file = gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(fileId)));
-        if(file != null) {
-            Metadata metadata = converter.read(Metadata.class, file.getMetadata());
+        GridFsResource resource = getResource(fileId);
+        if(resource != null) {
             try {
-                metadata.set_contentType(FileUtils.getMimeType(getResource(fileId).getInputStream(),
-                        file.getFilename()));
-                gridFsAssistant.updateMetadata(fileId, metadata);
+                gridFsAssistant.updateContentType(fileId,
+                        FileUtils.getMimeType(resource.getInputStream(), resource.getFilename()));
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -193,37 +352,128 @@ public class FileServiceImpl implements FileService {
 
     @Override
     public GridFSFile addParent(ObjectId fileId, ParentLink parent) {
-        GridFSFile file = gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(fileId)));
-        Metadata metadata = converter.read(Metadata.class, file.getMetadata());
-        metadata.getParents().add(parent);
-        return gridFsAssistant.updateMetadata(fileId, metadata);
+        checkNotDeleting(parent);
+        // 仅在本次更新实际添加了容器时计入，并发添加同一容器或文件已移入回收站时不重复累加
+        GridFSFile file = gridFsAssistant.addParent(fileId, parent);
+        if (file == null) {
+            return getFile(fileId);
+        }
+        updateCount(parent, 1, file.getLength());
+        return file;
     }
 
     @Override
     public GridFSFile addAuthorization(ObjectId fileId, Authorization authorization) {
-        GridFSFile file = gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(fileId)));
-        Metadata metadata = converter.read(Metadata.class, file.getMetadata());
-        for (Authorization item : metadata.getAuthorizations()) {
-            if (item.getName().equalsIgnoreCase(authorization.getName())
-                    && item.getType().equals(authorization.getType())) {
-                for (AuthAction action : authorization.getActions()) {
-                    item.add(action);
-                }
-                return gridFsAssistant.updateMetadata(fileId, metadata);
-            }
-        }
-        metadata.addAuthorization(authorization);
-        return gridFsAssistant.updateMetadata(fileId, metadata);
+        GridFSFile file = gridFsAssistant.addAuthorization(fileId, authorization);
+        authDecisionCache.invalidate(fileId);
+        return file;
+    }
+
+    @Override
+    public GridFSFile removeAuthorization(ObjectId fileId, Authorization authorization) {
+        GridFSFile file = gridFsAssistant.removeAuthorization(fileId, authorization);
+        authDecisionCache.invalidate(fileId);
+        return file;
     }
 
     /**
-     * 删除Mongo库内文件
+     * 删除文件：移入回收站，内容由后台按保留期限回收
      *
      * @param fileId 文件ID
      * @return
      */
     public void delete(ObjectId fileId) {
-        gridFsAssistant.delete(new Query(Criteria.where("_id").is(fileId)));
+        updateCounts(gridFsAssistant.trash(fileId), -1);
+    }
+
+    @Override
+    public List<WebFile> listTrash(ParentLink parent) {
+        Query query = Query.query(GridFsQueries.trashedIn(parent));
+        return findWebFiles(query).into(new ArrayList<>());
+    }
+
+    @Override
+    public WebFile restore(ObjectId fileId) {
+        GridFSFile file = gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(fileId)
+                .and(TRASHED_AT_FIELD).exists(true)));
+        if (file == null) {
+            return null;
+        }
+        for (ParentLink parent : converter.read(Metadata.class, file.getMetadata()).getParents()) {
+            if (getStoredFile(file.getFilename(), parent) != null) {
+                throw new IllegalStateException("文件名冲突：" + file.getFilename());
+            }
+        }
+        GridFSFile restored = gridFsAssistant.restore(fileId);
+        updateCounts(restored, 1);
+        return switchWebFile(restored);
+    }
+
+    @Override
+    public boolean purge(ObjectId fileId) {
+        GridFSFile file = getFile(fileId);
+        boolean purged = gridFsAssistant.purge(fileId);
+        // 已在回收站中的文件此前移入时已扣减
+        if (purged) {
+            updateCounts(file, -1);
+        }
+        return purged;
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 600000L)
+    public void reclaimTrash() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DATE, -trashProperties.getRetentionDays());
+        List<GridFSFile> reclaimed = gridFsAssistant.reclaim(calendar.getTime(), trashProperties.getReclaimLimit(),
+                trashProperties.getChunkBatchSize(), trashProperties.getPauseMillis());
+        for (GridFSFile file : reclaimed) {
+            log.info("回收站文件已清理：" + file.getId() + " (" + file.getFilename() + ")");
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 600000L)
+    public void backfillCrc32() {
+        if (crcBackfilled) {
+            return;
+        }
+        try {
+            int count = gridFsAssistant.backfillCrc32(CRC_BACKFILL_LIMIT);
+            if (count > 0) {
+                log.info("已为 " + count + " 个文件补算CRC32");
+            }
+            // 新存储的文件均记录CRC32，全部补算后无需再查询
+            crcBackfilled = count < CRC_BACKFILL_LIMIT;
+        } catch (IOException exp) {
+            log.warn("补算文件CRC32失败：" + exp.getMessage());
+        }
+    }
+
+    /**
+     * 文件移入或移出回收站后，更新其所有上级容器的文件数量
+     */
+    private void updateCounts(GridFSFile file, long delta) {
+        if (file != null) {
+            converter.read(Metadata.class, file.getMetadata()).getParents()
+                    .forEach(parent -> updateCount(parent, delta, file.getLength()));
+        }
+    }
+
+    /**
+     * 失效容器的文件数量缓存，容器为文件夹时累加其记录的文件数量；
+     * 同时沿上级文件夹链累加至磁盘的文件总数及总字节数
+     *
+     * @param parent 容器
+     * @param delta  文件数量增量（1 或 -1）
+     * @param length 文件长度
+     */
+    private void updateCount(ParentLink parent, long delta, long length) {
+        fileCountCache.invalidate(parent.getId());
+        if (parent.getTarget().equals(AuthTarget.FOLDER)) {
+            folderTreeAssistant.incrementCounts(parent.getId(), 0, delta);
+        }
+        folderTreeAssistant.incrementTotals(parent, delta, delta * length);
     }
 
     /**
@@ -238,10 +488,15 @@ public class FileServiceImpl implements FileService {
     }
 
     @Override
-    public GridFSDownloadStream getFSDownloadStream(ObjectId fileId) {
+    public InputStream getFSDownloadStream(ObjectId fileId) {
         return gridFsAssistant.getFSDownloadStream(fileId);
     }
 
+    @Override
+    public InputStream getContentStream(ObjectId fileId, long start, long end) {
+        return gridFsAssistant.getContentStream(fileId, start, end);
+    }
+
     /**
      * 创建ZIP文件
      *
@@ -249,71 +504,173 @@ public class FileServiceImpl implements FileService {
      * @param fos      生成的zip文件存在路径（包括文件名）
      */
     public void createZip(ObjectId folderId, OutputStream fos) throws IOException {
-        ZipOutputStream zos = new ZipOutputStream(fos);
-        Optional<SysFolder> folder = sysFolderRepository.findById(folderId);
-        if (folder.isPresent()) {
-            compressFolder(folder.get(), zos, folder.get().getName());
-        } else {
-            throw new FileNotFoundException("文件夹ID：" + folderId);
+        List<Map.Entry<String, GridFSFile>> files = resolveFolderFiles(folderId);
+        if (!zipArchiveCache.isEnabled()) {
+            zipPackager.write(toZipSources(files), fos);
+            return;
+        }
+        long size = files.stream().mapToLong(file -> file.getValue().getLength()).sum();
+        zipArchiveCache.write(zipVersion(folderId, files), size, fos,
+                out -> zipPackager.write(toZipSources(files), out));
+    }
+
+    @Override
+    public ZipArchiveCache.Artifact getCachedZip(ObjectId folderId) throws IOException {
+        if (!zipArchiveCache.isEnabled()) {
+            return null;
+        }
+        return zipArchiveCache.get(zipVersion(folderId, resolveFolderFiles(folderId)));
+    }
+
+    /**
+     * 压缩包的内容版本：子树内任一文件的增删、移动、重命名或重新存储都会改变归档条目清单
+     */
+    private static String zipVersion(ObjectId folderId, List<Map.Entry<String, GridFSFile>> files) {
+        StringBuilder version = new StringBuilder(folderId.toHexString());
+        for (Map.Entry<String, GridFSFile> file : files) {
+            GridFSFile fs = file.getValue();
+            version.append('\n').append(file.getKey()).append('/').append(fs.getFilename())
+                    .append('\0').append(fs.getObjectId().toHexString())
+                    .append('\0').append(fs.getUploadDate().getTime())
+                    .append('\0').append(fs.getLength())
+                    .append('\0').append(fs.getMetadata() == null ? null : fs.getMetadata().getString("_contentType"));
         }
-        zos.close();
+        return DigestUtils.md5DigestAsHex(version.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<ZipSource> toZipSources(List<Map.Entry<String, GridFSFile>> files) {
+        List<ZipSource> sources = new ArrayList<>(files.size());
+        for (Map.Entry<String, GridFSFile> file : files) {
+            sources.add(toZipSource(switchWebFile(file.getValue()), file.getKey()));
+        }
+        return sources;
     }
 
     public void createZipFromList(ObjectId[] ids, OutputStream fos, String parent) throws IOException {
-        ZipOutputStream zos = new ZipOutputStream(fos);
+        List<ZipSource> sources = new ArrayList<>();
         for (ObjectId id : ids) {
-            compressFile(getResource(id), zos, parent);
+            WebFile file = getStoredFile(id);
+            if (file != null) {
+                sources.add(toZipSource(file, parent));
+            }
+        }
+        zipPackager.write(sources, fos);
+    }
+
+    @Override
+    public ZipLayout planZip(ObjectId folderId) throws IOException {
+        List<Map.Entry<String, GridFSFile>> files = resolveFolderFiles(folderId);
+        List<ZipLayout.Entry> entries = new ArrayList<>(files.size());
+        for (Map.Entry<String, GridFSFile> file : files) {
+            entries.add(toLayoutEntry(file.getValue(), file.getKey()));
+        }
+        return new ZipLayout(entries);
+    }
+
+    @Override
+    public ZipLayout planZipFromList(ObjectId[] ids, String parent) throws IOException {
+        List<ZipLayout.Entry> entries = new ArrayList<>(ids.length);
+        for (ObjectId id : ids) {
+            GridFSFile file = getFile(id);
+            if (file != null) {
+                entries.add(toLayoutEntry(file, parent));
+            }
         }
-        zos.close();
+        return new ZipLayout(entries);
     }
 
     /**
-     * 压缩文件夹
+     * 解析文件夹子树内的所有文件及其在归档内的目录：
+     * 一次聚合取出全部下级文件夹，再以一次查询取出这些文件夹内的全部文件，查询次数与子树规模无关。
+     * 目录按深度优先排列（子目录先于当前目录，同级按名称），目录内文件按ID排列，保证归档布局稳定。
      *
-     * @param folder  文件夹实体（含路径ID）
-     * @param out     ZIP输出流
-     * @param basedir 当前目录
+     * @param folderId 文件夹ID
+     * @return 所在目录及文件
      */
-    private void compressFolder(SysFolder folder,
-                                ZipOutputStream out,
-                                String basedir) {
-        // 递归压缩目录
-        ParentLink parent = new ParentLink(folder.getId(), AuthTarget.FOLDER, folder.getParent().getDiskId());
-        List<SysFolder> folders = sysFolderRepository.findAllByParent(parent);
-        if (folders != null && folders.size() > 0) {
-            for (SysFolder subFolder : folders) {
-                compressFolder(subFolder, out, basedir + "/" + subFolder.getName());
+    private List<Map.Entry<String, GridFSFile>> resolveFolderFiles(ObjectId folderId) throws FileNotFoundException {
+        List<SysFolder> folders = folderTreeAssistant.findSubtree(folderId);
+        if (folders.isEmpty()) {
+            throw new FileNotFoundException("文件夹ID：" + folderId);
+        }
+        Map<ObjectId, List<SysFolder>> children = new HashMap<>();
+        for (SysFolder folder : folders.subList(1, folders.size())) {
+            children.computeIfAbsent(folder.getParent().getId(), key -> new ArrayList<>()).add(folder);
+        }
+        Map<ParentLink, String> basedirs = new LinkedHashMap<>();
+        collectBasedirs(folders.get(0), folders.get(0).getName(), children, basedirs);
+
+        Map<ParentLink, List<GridFSFile>> grouped = new HashMap<>();
+        Query query = Query.query(GridFsQueries.inParents(basedirs.keySet())).with(Sort.by("_id"));
+        for (GridFSFile file : gridFsAssistant.find(query)) {
+            // 同一文件可同时位于子树内的多个文件夹
+            for (ParentLink parent : converter.read(Metadata.class, file.getMetadata()).getParents()) {
+                if (basedirs.containsKey(parent)) {
+                    grouped.computeIfAbsent(parent, key -> new ArrayList<>()).add(file);
+                }
             }
         }
-        // 压缩目录内的文件
-        switchWebFiles(getStoredFiles(folder.getId()))
-                .forEach(file -> {
-                    compressFile(getResource(new ObjectId(file.getId())), out, basedir);
-                });
 
+        List<Map.Entry<String, GridFSFile>> files = new ArrayList<>();
+        basedirs.forEach((parent, basedir) -> grouped.getOrDefault(parent, Collections.emptyList())
+                .forEach(file -> files.add(new AbstractMap.SimpleEntry<>(basedir, file))));
+        return files;
+    }
+
+    private static void collectBasedirs(SysFolder folder, String basedir, Map<ObjectId, List<SysFolder>> children,
+                                        Map<ParentLink, String> basedirs) {
+        List<SysFolder> subFolders = children.getOrDefault(folder.getId(), Collections.emptyList());
+        subFolders.sort(Comparator.comparing(SysFolder::getName));
+        for (SysFolder subFolder : subFolders) {
+            collectBasedirs(subFolder, basedir + "/" + subFolder.getName(), children, basedirs);
+        }
+        basedirs.put(folderLink(folder), basedir);
+    }
+
+    private static ParentLink folderLink(SysFolder folder) {
+        return new ParentLink(folder.getId(), AuthTarget.FOLDER, folder.getParent().getDiskId());
     }
 
     /**
-     * 压缩一个文件
+     * 不压缩存储的归档条目，CRC32取自文件记录；
+     * 未记录CRC32的早期文件以数据描述符存储，不在生成布局时读取全部内容（CRC32由后台任务补算）
      *
-     * @param gridFsResource 输入文件流
-     * @param out            输出ZIP流
-     * @param basedir        当前文件所在目录
+     * @param file    文件
+     * @param basedir 当前文件所在目录
      */
-    private void compressFile(GridFsResource gridFsResource, ZipOutputStream out, String basedir) {
-        try {
-            BufferedInputStream bis = new BufferedInputStream(gridFsResource.getInputStream());
-            ZipEntry entry = new ZipEntry(basedir + "/" + gridFsResource.getFilename());
-            out.putNextEntry(entry);
-            int count;
-            byte data[] = new byte[BUFFER_SIZE];
-            while ((count = bis.read(data, 0, BUFFER_SIZE)) != -1) {
-                out.write(data, 0, count);
+    private ZipLayout.Entry toLayoutEntry(GridFSFile file, String basedir) {
+        ObjectId fileId = file.getObjectId();
+        String name = basedir + "/" + file.getFilename();
+        ZipLayout.RangeOpener opener = (start, end) -> {
+            InputStream content = gridFsAssistant.getContentStream(fileId, start, end);
+            if (content == null) {
+                throw new FileNotFoundException("文件ID：" + fileId);
             }
-            bis.close();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            return content;
+        };
+        Long crc = GridFsAssistant.getRecordedCrc32(file);
+        if (crc != null) {
+            return new ZipLayout.Entry(name, file.getUploadDate().getTime(), crc, file.getLength(), opener);
         }
+        return new ZipLayout.Entry(name, file.getUploadDate().getTime(), file.getLength(),
+                GridFsAssistant.getETag(file), () -> gridFsAssistant.getCrc32(file), opener);
+    }
+
+    /**
+     * 待压缩的文件条目，内容由打包线程读取
+     *
+     * @param file    文件
+     * @param basedir 当前文件所在目录
+     */
+    private ZipSource toZipSource(WebFile file, String basedir) {
+        ObjectId fileId = new ObjectId(file.getId());
+        return new ZipSource(basedir + "/" + file.getFilename(), file.getUploadDate().getTime(), file.getType(),
+                file.getLength(), () -> {
+                    InputStream content = gridFsAssistant.getFSDownloadStream(fileId);
+                    if (content == null) {
+                        throw new FileNotFoundException("文件ID：" + fileId);
+                    }
+                    return content;
+                });
     }
 
     /**
@@ -337,12 +694,12 @@ public class FileServiceImpl implements FileService {
     }
 
     /**
-     * 批量转换文件格式
+     * 列表查询：只投影WebFile所需字段，并直接解码为WebFile
      *
-     * @param gridFSFindIterable
+     * @param query 查询条件
      * @return
      */
-    private Iterable<WebFile> switchWebFiles(GridFSFindIterable gridFSFindIterable) {
-        return gridFSFindIterable.map(gridFSFile -> switchWebFile(gridFSFile));
+    private MongoIterable<WebFile> findWebFiles(Query query) {
+        return gridFsAssistant.find(query, WebFileCodec.FIELDS, WebFileCodec.INSTANCE);
     }
 }
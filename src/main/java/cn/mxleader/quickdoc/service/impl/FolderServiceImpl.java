@@ -2,25 +2,49 @@ package cn.mxleader.quickdoc.service.impl;
 
 import cn.mxleader.quickdoc.dao.SysDiskRepository;
 import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeCache;
 import cn.mxleader.quickdoc.entities.*;
+import cn.mxleader.quickdoc.security.authorization.AuthDecisionCache;
+import cn.mxleader.quickdoc.security.authorization.AuthorizationChecker;
+import cn.mxleader.quickdoc.security.exp.PreAuthException;
+import cn.mxleader.quickdoc.service.DeleteJobService;
 import cn.mxleader.quickdoc.service.FolderService;
 import cn.mxleader.quickdoc.web.domain.TreeNode;
 import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+
+import static cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant.ANCESTORS_FIELD;
 
 @Service
 public class FolderServiceImpl implements FolderService {
 
     private final SysDiskRepository sysDiskRepository;
     private final SysFolderRepository sysFolderRepository;
+    private final FolderTreeAssistant folderTreeAssistant;
+    private final FolderTreeCache folderTreeCache;
+    private final DeleteJobService deleteJobService;
+    private final AuthDecisionCache authDecisionCache;
+    private final AuthorizationChecker authorizationChecker;
 
     FolderServiceImpl(SysDiskRepository sysDiskRepository,
-                      SysFolderRepository sysFolderRepository) {
+                      SysFolderRepository sysFolderRepository,
+                      FolderTreeAssistant folderTreeAssistant,
+                      FolderTreeCache folderTreeCache,
+                      DeleteJobService deleteJobService,
+                      AuthDecisionCache authDecisionCache,
+                      AuthorizationChecker authorizationChecker) {
         this.sysDiskRepository = sysDiskRepository;
         this.sysFolderRepository = sysFolderRepository;
+        this.folderTreeAssistant = folderTreeAssistant;
+        this.folderTreeCache = folderTreeCache;
+        this.deleteJobService = deleteJobService;
+        this.authDecisionCache = authDecisionCache;
+        this.authorizationChecker = authorizationChecker;
     }
 
     @Override
@@ -33,17 +57,37 @@ public class FolderServiceImpl implements FolderService {
         return sysFolderRepository.findAllByParentDiskId(diskId);
     }
 
+    /**
+     * 由磁盘文件夹树的缓存快照渲染，快照仅在磁盘内文件夹结构变化后重建
+     *
+     * @param parent 上级目录（可能为磁盘或目录）
+     * @return
+     */
     @Override
     public List<TreeNode> getFolderTree(ParentLink parent) {
-        return sysFolderRepository.findAllByParent(parent)
-                .stream()
-                .map(sysFolder -> {
-                    List<TreeNode> subNodes = getFolderTree(new ParentLink(sysFolder.getId(),
-                            AuthTarget.FOLDER, parent.getDiskId()));
-                    return new TreeNode(sysFolder.getId().toString(), sysFolder.getName(),
-                            parent.getId().toString(), subNodes, (subNodes != null && subNodes.size() > 0));
-                })
-                .collect(Collectors.toList());
+        return folderTreeCache.get(parent.getDiskId()).toTreeNodes(parent.getId());
+    }
+
+    @Override
+    public List<TreeNode> getChildNodes(ParentLink parent) {
+        List<SysFolder> folders = sysFolderRepository.findAllByParent(parent);
+        List<TreeNode> nodes = new ArrayList<>(folders.size());
+        for (SysFolder folder : folders) {
+            TreeNode node = new TreeNode(folder.getId().toString(), folder.getName(),
+                    parent.getId().toString(), Collections.emptyList(), folder.getFolderCount() > 0);
+            node.setOpen(false);
+            node.setFolderCount(folder.getFolderCount());
+            node.setFileCount(folder.getFileCount());
+            node.setTotalFiles(folder.getTotalFiles());
+            node.setTotalSize(folder.getTotalSize());
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    @Override
+    public List<SysFolder> getPath(ObjectId id) {
+        return folderTreeAssistant.findPath(id);
     }
 
     /**
@@ -59,19 +103,22 @@ public class FolderServiceImpl implements FolderService {
 
     @Override
     public SysFolder save(String name, ParentLink parent) {
+        checkNotDeleting(parent);
         Optional<SysFolder> optionalSysFolder = sysFolderRepository.findByParentAndName(parent, name);
         if (!optionalSysFolder.isPresent()) {
             if (parent.getTarget().equals(AuthTarget.DISK)) {
                 Optional<SysDisk> sysDisk = sysDiskRepository.findById(parent.getId());
                 if (sysDisk.isPresent()) {
-                    return sysFolderRepository.save(new SysFolder(ObjectId.get(), name, parent,
+                    return saveFolder(new SysFolder(ObjectId.get(), name, parent,
                             sysDisk.get().getAuthorizations()));
                 }
             } else {
                 Optional<SysFolder> sysFolder = sysFolderRepository.findById(parent.getId());
                 if (sysFolder.isPresent()) {
-                    return sysFolderRepository.save(new SysFolder(ObjectId.get(), name, parent,
-                            sysFolder.get().getAuthorizations()));
+                    SysFolder folder = new SysFolder(ObjectId.get(), name, parent,
+                            sysFolder.get().getAuthorizations());
+                    folder.setAncestors(childAncestors(sysFolder.get()));
+                    return saveFolder(folder);
                 }
             }
         }
@@ -80,12 +127,21 @@ public class FolderServiceImpl implements FolderService {
 
     @Override
     public SysFolder save(String name, ParentLink parent, Authorization authorization) {
+        checkNotDeleting(parent);
         Optional<SysFolder> optionalSysFolder = sysFolderRepository.findByParentAndName(parent, name);
         if (!optionalSysFolder.isPresent()) {
-            return sysFolderRepository.save(new SysFolder(ObjectId.get(), name, parent,
+            SysFolder folder = new SysFolder(ObjectId.get(), name, parent,
                     new HashSet<Authorization>() {{
                         add(authorization);
-                    }}));
+                    }});
+            if (parent.getTarget().equals(AuthTarget.FOLDER)) {
+                Optional<SysFolder> sysFolder = sysFolderRepository.findById(parent.getId());
+                if (!sysFolder.isPresent()) {
+                    return null;
+                }
+                folder.setAncestors(childAncestors(sysFolder.get()));
+            }
+            return saveFolder(folder);
         }
         return null;
     }
@@ -96,22 +152,119 @@ public class FolderServiceImpl implements FolderService {
         if (optionalSysFolder.isPresent()) {
             SysFolder folder = optionalSysFolder.get();
             //@TODO 检查名称是否冲突
-            folder.setName(newName);
-            return sysFolderRepository.save(folder);
+            SysFolder renamed = folderTreeAssistant.update(id, Update.update("name", newName));
+            folderTreeCache.invalidate(folder.getParent().getDiskId());
+            return renamed;
         }
         return null;
     }
 
+    @Override
+    public SysFolder move(ObjectId id, ParentLink newParent) {
+        Optional<SysFolder> optionalSysFolder = sysFolderRepository.findById(id);
+        if (!optionalSysFolder.isPresent()) {
+            return null;
+        }
+        SysFolder folder = optionalSysFolder.get();
+        if (!folder.getParent().getDiskId().equals(newParent.getDiskId())) {
+            throw new IllegalArgumentException("不支持跨磁盘移动目录");
+        }
+        List<ObjectId> ancestors;
+        if (newParent.getTarget().equals(AuthTarget.DISK)) {
+            if (!newParent.getId().equals(newParent.getDiskId())) {
+                return null;
+            }
+            ancestors = Collections.emptyList();
+        } else {
+            Optional<SysFolder> parentFolder = sysFolderRepository.findById(newParent.getId());
+            if (!parentFolder.isPresent()) {
+                return null;
+            }
+            ancestors = childAncestors(parentFolder.get());
+            if (ancestors.contains(id)) {
+                throw new IllegalArgumentException("不能将目录移动到其自身或下级目录中");
+            }
+        }
+        // ServiceIntercept 只校验被移动的目录，新的上级目录及其所在磁盘须另行校验写入权限
+        SysUser sysUser = AuthorizationChecker.getActiveUser();
+        if (sysUser != null && !authorizationChecker.canWrite(sysUser, newParent)) {
+            throw new PreAuthException("鉴权失败！", new AuthAction[]{AuthAction.WRITE}, newParent.getTarget(),
+                    newParent.getId(), "FolderService.move", sysUser.getUsername());
+        }
+        checkNotDeleting(newParent);
+        if (sysFolderRepository.findByParentAndName(newParent, folder.getName()).isPresent()) {
+            throw new IllegalStateException("目标目录中已存在同名目录：" + folder.getName());
+        }
+        SysFolder moved = folderTreeAssistant.update(id, Update.update("parent", newParent)
+                .set(ANCESTORS_FIELD, ancestors));
+        if (moved == null) {
+            return null;
+        }
+        folderTreeAssistant.moveDescendants(id, folder.getAncestors(), ancestors);
+        incrementFolderCount(folder.getParent(), -1);
+        incrementFolderCount(newParent, 1);
+        // 同一磁盘内移动，磁盘总量先减后加保持不变
+        folderTreeAssistant.incrementTotals(folder.getParent(), -moved.getTotalFiles(), -moved.getTotalSize());
+        folderTreeAssistant.incrementTotals(newParent, moved.getTotalFiles(), moved.getTotalSize());
+        folderTreeCache.invalidate(newParent.getDiskId());
+        return moved;
+    }
+
+    /**
+     * 正在删除的容器拒绝写入，否则新建或移入的文件夹可能在删除任务处理过该容器后成为无主文件夹
+     */
+    private void checkNotDeleting(ParentLink parent) {
+        if (deleteJobService.isPendingDeletion(parent)) {
+            throw new IllegalStateException("目标目录正在删除中");
+        }
+    }
+
+    /**
+     * 保存新建的文件夹，累加上级目录的子目录数量并使所在磁盘的文件夹树缓存失效
+     */
+    private SysFolder saveFolder(SysFolder folder) {
+        SysFolder saved = sysFolderRepository.insert(folder);
+        incrementFolderCount(folder.getParent(), 1);
+        folderTreeCache.invalidate(folder.getParent().getDiskId());
+        return saved;
+    }
+
+    private void incrementFolderCount(ParentLink parent, long delta) {
+        if (parent.getTarget().equals(AuthTarget.FOLDER)) {
+            folderTreeAssistant.incrementCounts(parent.getId(), delta, 0);
+        }
+    }
+
+    /**
+     * 子目录的上级路径：上级目录的 ancestors 加上上级目录本身
+     */
+    private static List<ObjectId> childAncestors(SysFolder parent) {
+        List<ObjectId> ancestors = new ArrayList<>(parent.getAncestors());
+        ancestors.add(parent.getId());
+        return ancestors;
+    }
+
     @Override
     public void delete(ObjectId id) {
         Optional<SysFolder> optionalSysFolder = sysFolderRepository.findById(id);
         if (optionalSysFolder.isPresent()) {
             SysFolder folder = optionalSysFolder.get();
-            // @TODO 方案1：检查子目录和文件是否存在，方案2：同步删除子目录和文件 (隐患，子目录有可能与多组共享)
+            // 下级文件夹及文件由后台任务分批删除，任务按 ancestors 查找下级，不依赖该文件夹文档
+            deleteJobService.submit(new ParentLink(folder.getId(), AuthTarget.FOLDER, folder.getParent().getDiskId()));
             sysFolderRepository.delete(folder);
+            incrementFolderCount(folder.getParent(), -1);
+            // 后台任务解除文件关联时不再扣减总量，此处一次扣减整棵子树
+            folderTreeAssistant.incrementTotals(folder.getParent(), -folder.getTotalFiles(), -folder.getTotalSize());
+            folderTreeCache.invalidate(folder.getParent().getDiskId());
         }
     }
 
+    @Override
+    @Scheduled(cron = "0 0 3 * * ?")
+    public void recount() {
+        folderTreeAssistant.recount();
+    }
+
     @Override
     public SysFolder addAuthorization(ObjectId id, Authorization authorization) {
         Optional<SysFolder> sysFolder = sysFolderRepository.findById(id);
@@ -124,11 +277,11 @@ public class FolderServiceImpl implements FolderService {
                     for (AuthAction action : authorization.getActions()) {
                         item.add(action);
                     }
-                    return sysFolderRepository.save(folder);
+                    return saveAuthorizations(folder);
                 }
             }
             folder.addAuthorization(authorization);
-            return sysFolderRepository.save(folder);
+            return saveAuthorizations(folder);
         }
         return null;
     }
@@ -148,11 +301,17 @@ public class FolderServiceImpl implements FolderService {
                     if (item.getActions().size() == 0) {
                         folder.removeAuthorization(item);
                     }
-                    return sysFolderRepository.save(folder);
+                    return saveAuthorizations(folder);
                 }
             }
         }
         return null;
     }
 
+    private SysFolder saveAuthorizations(SysFolder folder) {
+        SysFolder saved = folderTreeAssistant.update(folder.getId(),
+                Update.update("authorizations", folder.getAuthorizations()));
+        authDecisionCache.invalidate(folder.getId());
+        return saved;
+    }
 }
@@ -0,0 +1,198 @@
+package cn.mxleader.quickdoc.service.impl;
+
+import cn.mxleader.quickdoc.config.QuickDocUploadProperties;
+import cn.mxleader.quickdoc.dao.SysUploadRepository;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.entities.SysUpload;
+import cn.mxleader.quickdoc.service.FileService;
+import cn.mxleader.quickdoc.service.UploadService;
+import cn.mxleader.quickdoc.web.domain.UploadProgress;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import static cn.mxleader.quickdoc.dao.ext.GridFsAssistant.DEFAULT_CHUNK_SIZE;
+
+@Service
+public class UploadServiceImpl implements UploadService {
+
+    private final Logger log = LoggerFactory.getLogger(UploadServiceImpl.class);
+
+    private final GridFsAssistant gridFsAssistant;
+    private final SysUploadRepository sysUploadRepository;
+    private final MongoOperations mongoOperations;
+    private final FileService fileService;
+    private final QuickDocUploadProperties properties;
+
+    UploadServiceImpl(GridFsAssistant gridFsAssistant,
+                      SysUploadRepository sysUploadRepository,
+                      MongoOperations mongoOperations,
+                      FileService fileService,
+                      QuickDocUploadProperties properties) {
+        this.gridFsAssistant = gridFsAssistant;
+        this.sysUploadRepository = sysUploadRepository;
+        this.mongoOperations = mongoOperations;
+        this.fileService = fileService;
+        this.properties = properties;
+    }
+
+    @Override
+    public SysUpload create(String filename, ParentLink parent, Long contentLength, String owner) {
+        Date now = new Date();
+        return sysUploadRepository.save(new SysUpload(ObjectId.get(), filename, parent, owner, contentLength,
+                DEFAULT_CHUNK_SIZE, (long) DEFAULT_CHUNK_SIZE * properties.getPartChunks(),
+                new HashSet<>(), now, now));
+    }
+
+    @Override
+    public Optional<SysUpload> get(ObjectId uploadId) {
+        return sysUploadRepository.findById(uploadId);
+    }
+
+    @Override
+    public UploadProgress writePart(SysUpload upload, int part, InputStream content) throws IOException {
+        if (part < 0 || part >= upload.getPartCount()) {
+            throw new IllegalArgumentException("分段编号超出范围：" + part);
+        }
+        // 登记带有效期的写入租约，会话已删除或正在提交时拒绝写入
+        SysUpload.Lease lease = newLease();
+        SysUpload current = mongoOperations.findAndModify(
+                Query.query(Criteria.where("_id").is(upload.getId()).and("state").exists(false)),
+                new Update().push("writers", lease).set("updatedAt", new Date()),
+                FindAndModifyOptions.options().returnNew(true),
+                SysUpload.class);
+        if (current == null) {
+            throw new IllegalStateException("上传会话不存在或正在提交");
+        }
+        int firstChunk = (int) (part * upload.getPartSize() / upload.getChunkSize());
+        boolean written = false;
+        try {
+            gridFsAssistant.writeChunks(upload.getId(), upload.getChunkSize(), firstChunk,
+                    content, upload.getPartLength(part));
+            written = true;
+        } finally {
+            // 租约仍在时才登记分段：租约到期被提交接管后，本次写入不再计入
+            Update update = new Update().pull("writers", new Document("_id", lease.getId()))
+                    .set("updatedAt", new Date());
+            if (written) {
+                update.addToSet("parts", part);
+            }
+            current = mongoOperations.findAndModify(
+                    Query.query(Criteria.where("_id").is(upload.getId()).and("writers._id").is(lease.getId())),
+                    update, FindAndModifyOptions.options().returnNew(true),
+                    SysUpload.class);
+            if (current == null && !mongoOperations.exists(
+                    Query.query(Criteria.where("_id").is(upload.getId())), SysUpload.class)) {
+                // 写入期间会话被取消，清除本次写入的分块
+                gridFsAssistant.deleteChunks(upload.getId());
+            }
+        }
+        if (current == null) {
+            throw new IllegalStateException("上传会话已取消或分段写入超时");
+        }
+        return getProgress(current);
+    }
+
+    @Override
+    public UploadProgress getProgress(SysUpload upload) {
+        return new UploadProgress(upload.getReceivedOffset(), upload.getContentLength(),
+                upload.getParts().size());
+    }
+
+    @Override
+    public ObjectId commit(SysUpload upload) throws IOException {
+        // 先占用会话：仅在无未到期的分段写入时成功，防止重复提交及与写入、取消交错；
+        // 写入租约或提交占用到期视为所在节点已中断，由本次提交接管
+        Date now = new Date();
+        SysUpload.Lease claim = newLease();
+        SysUpload claimed = mongoOperations.findAndModify(
+                Query.query(Criteria.where("_id").is(upload.getId())
+                        .and("writers").not().elemMatch(Criteria.where("expiresAt").gte(now))
+                        .orOperator(Criteria.where("state").exists(false),
+                                Criteria.where("claim.expiresAt").lt(now))),
+                new Update().set("state", SysUpload.State.COMMITTING).set("claim", claim)
+                        .set("writers", Collections.emptyList()).set("updatedAt", now),
+                FindAndModifyOptions.options().returnNew(true),
+                SysUpload.class);
+        if (claimed == null) {
+            throw new IllegalStateException("上传会话不存在、正在写入分段或已在提交");
+        }
+        Query claimedQuery = Query.query(Criteria.where("_id").is(claimed.getId())
+                .and("claim._id").is(claim.getId()));
+        if (gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(claimed.getId()))) != null) {
+            // 接管的提交在登记文件后中断，仅需删除会话
+            mongoOperations.remove(claimedQuery, SysUpload.class);
+            return claimed.getId();
+        }
+        ObjectId fileId;
+        try {
+            if (!claimed.isComplete()) {
+                throw new IllegalStateException("文件尚未上传完毕，已连续接收 "
+                        + claimed.getReceivedOffset() + " 字节");
+            }
+            fileId = fileService.storeChunks(claimed.getId(), claimed.getFilename(),
+                    claimed.getContentLength(), claimed.getChunkSize(), claimed.getParent());
+        } catch (IOException | RuntimeException exp) {
+            mongoOperations.updateFirst(claimedQuery, new Update().unset("state").unset("claim"),
+                    SysUpload.class);
+            throw exp;
+        }
+        sysUploadRepository.deleteById(claimed.getId());
+        return fileId;
+    }
+
+    @Override
+    public void abort(SysUpload upload) {
+        // 正在提交的会话不可取消，其分块即将成为文件内容；提交占用到期后可取消
+        SysUpload removed = mongoOperations.findAndRemove(
+                Query.query(Criteria.where("_id").is(upload.getId())
+                        .orOperator(Criteria.where("state").exists(false),
+                                Criteria.where("claim.expiresAt").lt(new Date()))),
+                SysUpload.class);
+        if (removed != null) {
+            gridFsAssistant.deleteChunks(upload.getId());
+        }
+    }
+
+    private SysUpload.Lease newLease() {
+        return new SysUpload.Lease(ObjectId.get(),
+                new Date(System.currentTimeMillis() + properties.getLeaseTimeout() * 60000L));
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 3600000L)
+    public void removeExpiredUploads() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.HOUR, -properties.getSessionTimeout());
+        Date now = new Date();
+        for (SysUpload upload : sysUploadRepository.findAllByUpdatedAtBefore(calendar.getTime())) {
+            if (upload.getWriters().stream().anyMatch(writer -> writer.getExpiresAt().after(now))) {
+                continue;
+            }
+            if (upload.getState() == SysUpload.State.COMMITTING
+                    && gridFsAssistant.findOne(Query.query(Criteria.where("_id").is(upload.getId()))) != null) {
+                // 提交过程在登记文件后中断：分块归文件所有，仅删除会话
+                log.info("清理已提交的上传会话：" + upload.getId() + " (" + upload.getFilename() + ")");
+                mongoOperations.remove(Query.query(Criteria.where("_id").is(upload.getId())
+                        .and("state").is(SysUpload.State.COMMITTING)), SysUpload.class);
+                continue;
+            }
+            // 提交占用未到期时 abort 不会删除会话
+            log.info("清理超时上传会话：" + upload.getId() + " (" + upload.getFilename() + ")");
+            abort(upload);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package cn.mxleader.quickdoc.service.impl;
 import cn.mxleader.quickdoc.common.utils.PasswordUtil;
 import cn.mxleader.quickdoc.dao.SysUserRepository;
 import cn.mxleader.quickdoc.entities.SysUser;
+import cn.mxleader.quickdoc.security.authorization.AuthDecisionCache;
 import cn.mxleader.quickdoc.service.UserService;
 import cn.mxleader.quickdoc.web.domain.WebUser;
 import org.bson.types.ObjectId;
@@ -22,9 +23,11 @@ import java.util.Set;
 @Service
 public class UserServiceImpl implements UserService {
     private final SysUserRepository userRepository;
+    private final AuthDecisionCache authDecisionCache;
 
-    public UserServiceImpl(SysUserRepository userRepository) {
+    public UserServiceImpl(SysUserRepository userRepository, AuthDecisionCache authDecisionCache) {
         this.userRepository = userRepository;
+        this.authDecisionCache = authDecisionCache;
     }
 
     @Override
@@ -58,8 +61,9 @@ public class UserServiceImpl implements UserService {
         Optional<SysUser> userOptional = userRepository.findById(new ObjectId(webUser.getId()));
         if (userOptional.isPresent()) {
             SysUser user = userOptional.get();
+            authDecisionCache.invalidateUser(user.getUsername());
             BeanUtils.copyProperties(webUser, user, getEmptyPropertyNames(webUser));
-            return userRepository.save(user);
+            return saveGroups(user);
         }
         return null;
     }
@@ -94,6 +98,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void delete(ObjectId userId) {
+        userRepository.findById(userId).ifPresent(user -> authDecisionCache.invalidateUser(user.getUsername()));
         userRepository.deleteById(userId);
     }
 
@@ -103,7 +108,7 @@ public class UserServiceImpl implements UserService {
         if (optionalSysUser.isPresent()) {
             SysUser user = optionalSysUser.get();
             user.addGroup(group);
-            return userRepository.save(user);
+            return saveGroups(user);
         }
         return null;
     }
@@ -114,7 +119,7 @@ public class UserServiceImpl implements UserService {
         if (optionalSysUser.isPresent()) {
             SysUser user = optionalSysUser.get();
             user.removeGroup(group);
-            return userRepository.save(user);
+            return saveGroups(user);
         }
         return null;
     }
@@ -125,11 +130,20 @@ public class UserServiceImpl implements UserService {
         if (optionalSysUser.isPresent()) {
             SysUser user = optionalSysUser.get();
             user.setGroups(groups);
-            return userRepository.save(user);
+            return saveGroups(user);
         }
         return null;
     }
 
+    /**
+     * 保存用户，并失效该用户的鉴权结果缓存（用户组可能已变更）
+     */
+    private SysUser saveGroups(SysUser user) {
+        SysUser saved = userRepository.save(user);
+        authDecisionCache.invalidateUser(user.getUsername());
+        return saved;
+    }
+
     @Override
     public SysUser addAuth(ObjectId userId, SysUser.Authority authority) {
         Optional<SysUser> optionalSysUser = userRepository.findById(userId);
@@ -1,19 +1,27 @@
 package cn.mxleader.quickdoc.web;
 
+import cn.mxleader.quickdoc.common.zip.ZipArchiveCache;
+import cn.mxleader.quickdoc.common.zip.ZipLayout;
+import cn.mxleader.quickdoc.config.QuickDocDownloadProperties;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
 import cn.mxleader.quickdoc.entities.SysUser;
 import cn.mxleader.quickdoc.service.FileService;
 import cn.mxleader.quickdoc.service.PreviewService;
+import cn.mxleader.quickdoc.web.support.DownloadHeaders;
+import cn.mxleader.quickdoc.web.support.RangeResponseWriter;
+import com.mongodb.client.gridfs.model.GridFSFile;
 import org.bson.types.ObjectId;
-import org.jodconverter.office.OfficeException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.mongodb.gridfs.GridFsResource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
@@ -29,11 +37,14 @@ public class FileController {
 
     private final FileService fileService;
     private final PreviewService previewService;
+    private final QuickDocDownloadProperties downloadProperties;
 
     @Autowired
-    public FileController(FileService fileService,PreviewService previewService) {
+    public FileController(FileService fileService, PreviewService previewService,
+                          QuickDocDownloadProperties downloadProperties) {
         this.fileService = fileService;
         this.previewService = previewService;
+        this.downloadProperties = downloadProperties;
     }
 
     @RequestMapping("/search")
@@ -45,56 +56,94 @@ public class FileController {
     }
 
     /**
-     * 打包下载指定文件夹内的所有内容
+     * 打包下载指定文件夹内的所有内容；已启用压缩包缓存时重复下载直接读取缓存的压缩包；
+     * stored=true 时以不压缩方式打包，预先给出 Content-Length 并支持Range断点续传
      *
+     * @param request
      * @param response
      * @param folderId
+     * @param stored   是否不压缩打包
      * @throws IOException
      */
     @GetMapping(value = "/zip-resource/{folderId}", produces = MediaType.MULTIPART_FORM_DATA_VALUE)
     public @ResponseBody
-    void downloadDocument(HttpServletResponse response,
+    void downloadDocument(HttpServletRequest request,
+                          HttpServletResponse response,
                           @PathVariable ObjectId folderId,
+                          @RequestParam(defaultValue = "false") Boolean stored,
                           @SessionAttribute(SESSION_USER) SysUser activeUser) throws IOException {
         response.setHeader("Content-Disposition",
                 "attachment; filename=" + folderId + ".zip");
-        // @TODO 压缩包文件大小在文件下载完毕前无法获取
-        // response.setHeader("Content-Length", String.valueOf(fsResource.contentLength()));
-
-        fileService.createZip(folderId, response.getOutputStream());
+        if (stored) {
+            writeZipLayout(request, response, fileService.planZip(folderId));
+            return;
+        }
+        ZipArchiveCache.Artifact artifact = fileService.getCachedZip(folderId);
+        if (artifact != null) {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.ETAG, artifact.getETag());
+            RangeResponseWriter.write(request, response, artifact.getLength(), -1, artifact.getETag(),
+                    "application/zip", artifact::open);
+        } else {
+            // 压缩打包时文件大小在下载完毕前无法获取
+            fileService.createZip(folderId, response.getOutputStream());
+        }
     }
 
     @GetMapping(value = "/zip-package", produces = MediaType.MULTIPART_FORM_DATA_VALUE)
     public @ResponseBody
-    void downloadZipPackage(HttpServletResponse response,
+    void downloadZipPackage(HttpServletRequest request,
+                            HttpServletResponse response,
                             @RequestParam String parent,
-                            @RequestParam ObjectId[] ids) throws IOException {
+                            @RequestParam ObjectId[] ids,
+                            @RequestParam(defaultValue = "false") Boolean stored) throws IOException {
         response.setHeader("Content-Disposition",
                 "attachment; filename=" + java.net.URLEncoder.encode(parent + ".zip", "UTF-8"));
-        // @TODO 压缩包文件大小在文件下载完毕前无法获取
-        // response.setHeader("Content-Length", String.valueOf(fsResource.contentLength()));
+        if (stored) {
+            writeZipLayout(request, response, fileService.planZipFromList(ids, parent));
+        } else {
+            // 压缩打包时文件大小在下载完毕前无法获取
+            fileService.createZipFromList(ids, response.getOutputStream(), parent);
+        }
+    }
 
-        fileService.createZipFromList(ids, response.getOutputStream(), parent);
+    private void writeZipLayout(HttpServletRequest request, HttpServletResponse response,
+                                ZipLayout layout) throws IOException {
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.ETAG, layout.getETag());
+        RangeResponseWriter.write(request, response, layout.getLength(), -1, layout.getETag(),
+                "application/zip", layout::open);
     }
 
     /**
-     * 文件下载： 提供文件ID
+     * 文件下载： 提供文件ID，支持Range断点续传及多区间请求；
+     * 客户端缓存未过期（If-None-Match / If-Modified-Since）时返回304
      *
+     * @param request
      * @param response
      * @param fileId   文件存储ID号
      * @throws IOException
      */
-    @GetMapping(value = "/download/{fileId}", produces = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @GetMapping(value = "/download/{fileId}")
     public @ResponseBody
-    void downloadDocument(HttpServletResponse response,
+    void downloadDocument(HttpServletRequest request,
+                          HttpServletResponse response,
                           @PathVariable String fileId) throws IOException {
-        GridFsResource fs = fileService.getResource(new ObjectId(fileId));
+        ObjectId id = new ObjectId(fileId);
+        GridFSFile fs = fileService.getFile(id);
+        if (fs == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String eTag = GridFsAssistant.getETag(fs);
+        if (checkNotModified(request, response, fs, eTag)) {
+            return;
+        }
 
-        response.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE);
-        response.setHeader("Content-Disposition",
-                "attachment; filename=" + java.net.URLEncoder.encode(fs.getFilename(), "UTF-8"));
-        response.setHeader("Content-Length", String.valueOf(fs.contentLength()));
-        FileCopyUtils.copy(fs.getInputStream(), response.getOutputStream());
+        DownloadHeaders.of(fs, downloadProperties.getCacheControl()).forEach((name, values) ->
+                response.setHeader(name, String.join(", ", values)));
+        RangeResponseWriter.write(request, response, fs.getLength(), fs.getUploadDate().getTime(), eTag,
+                DownloadHeaders.getContentType(fs), (start, end) -> fileService.getContentStream(id, start, end));
     }
 
     /**
@@ -106,8 +155,27 @@ public class FileController {
      */
     @GetMapping(value = "/preview/{fileId}")
     public @ResponseBody
-    HttpEntity<byte[]> previewDocument(@PathVariable ObjectId fileId) throws IOException {
+    HttpEntity<byte[]> previewDocument(HttpServletRequest request,
+                                       HttpServletResponse response,
+                                       @PathVariable ObjectId fileId) throws IOException {
+        GridFSFile fs = fileService.getFile(fileId);
+        if (fs != null && checkNotModified(request, response, fs, GridFsAssistant.getETag(fs))) {
+            return null;
+        }
         return previewService.getEntity(fileService.getResource(fileId));
     }
 
+    /**
+     * 设置 ETag / Last-Modified / Cache-Control 响应头，并校验条件请求
+     *
+     * @return 客户端缓存仍然有效（已设置304状态）时返回 true
+     */
+    private boolean checkNotModified(HttpServletRequest request, HttpServletResponse response,
+                                     GridFSFile fs, String eTag) {
+        if (StringUtils.hasText(downloadProperties.getCacheControl())) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, downloadProperties.getCacheControl());
+        }
+        return new ServletWebRequest(request, response).checkNotModified(eTag, fs.getUploadDate().getTime());
+    }
+
 }
@@ -0,0 +1,38 @@
+package cn.mxleader.quickdoc.web.config;
+
+import cn.mxleader.quickdoc.web.reactive.FileDownloadHandler;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.reactive.ServletHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+/**
+ * 在Jetty容器内挂载WebFlux函数式路由（Servlet 3.1 非阻塞IO），
+ * 请求仍经过Spring Security过滤器链，鉴权方式与 DispatcherServlet 下的接口一致
+ */
+@Configuration
+public class ReactiveWebConfig {
+
+    public static final String REACTIVE_PATH = "/reactive/*";
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveRoutes(FileDownloadHandler fileDownloadHandler) {
+        return RouterFunctions.route(GET("/file/download/{fileId}"), fileDownloadHandler::download);
+    }
+
+    @Bean
+    public ServletRegistrationBean<ServletHttpHandlerAdapter> reactiveServlet(
+            RouterFunction<ServerResponse> reactiveRoutes) {
+        ServletRegistrationBean<ServletHttpHandlerAdapter> registration = new ServletRegistrationBean<>(
+                new ServletHttpHandlerAdapter(RouterFunctions.toHttpHandler(reactiveRoutes)), REACTIVE_PATH);
+        registration.setName("reactiveDispatcher");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+}
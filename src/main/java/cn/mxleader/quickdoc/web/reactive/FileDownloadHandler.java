@@ -0,0 +1,95 @@
+package cn.mxleader.quickdoc.web.reactive;
+
+import cn.mxleader.quickdoc.config.QuickDocDownloadProperties;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.dao.ext.ReactiveGridFsAssistant;
+import cn.mxleader.quickdoc.web.support.DownloadHeaders;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.types.ObjectId;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.springframework.web.reactive.function.BodyInserters.fromDataBuffers;
+
+/**
+ * 非阻塞文件下载：GridFS分块以 Flux&lt;DataBuffer&gt; 形式按客户端接收速度输出，
+ * 慢速客户端不再占用请求线程。响应头及条件请求校验与 /file/download/{fileId} 共用 {@link DownloadHeaders}，
+ * 并支持单区间Range请求。
+ */
+@Component
+public class FileDownloadHandler {
+
+    private final ReactiveGridFsAssistant reactiveGridFsAssistant;
+    private final QuickDocDownloadProperties downloadProperties;
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    public FileDownloadHandler(ReactiveGridFsAssistant reactiveGridFsAssistant,
+                               QuickDocDownloadProperties downloadProperties) {
+        this.reactiveGridFsAssistant = reactiveGridFsAssistant;
+        this.downloadProperties = downloadProperties;
+    }
+
+    public Mono<ServerResponse> download(ServerRequest request) {
+        ObjectId fileId;
+        try {
+            fileId = new ObjectId(request.pathVariable("fileId"));
+        } catch (IllegalArgumentException exp) {
+            return ServerResponse.badRequest().build();
+        }
+        return reactiveGridFsAssistant.findOne(fileId)
+                .flatMap(file -> writeFile(request, file))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    private Mono<ServerResponse> writeFile(ServerRequest request, GridFSFile file) {
+        HttpHeaders requestHeaders = request.headers().asHttpHeaders();
+        String eTag = GridFsAssistant.getETag(file);
+        long lastModified = file.getUploadDate().getTime();
+        if (DownloadHeaders.isNotModified(requestHeaders, eTag, lastModified)) {
+            HttpHeaders validators = DownloadHeaders.validators(file, downloadProperties.getCacheControl());
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                    .headers(headers -> headers.putAll(validators))
+                    .build();
+        }
+
+        long length = file.getLength();
+        long start = 0;
+        long end = length - 1;
+        HttpStatus status = HttpStatus.OK;
+
+        List<HttpRange> ranges;
+        try {
+            ranges = request.headers().range();
+        } catch (IllegalArgumentException exp) {
+            ranges = null;
+        }
+        if (ranges != null && ranges.size() == 1
+                && DownloadHeaders.matchesIfRange(requestHeaders.getFirst(HttpHeaders.IF_RANGE), lastModified, eTag)) {
+            start = ranges.get(0).getRangeStart(length);
+            end = ranges.get(0).getRangeEnd(length);
+            if (start >= length || start > end) {
+                return ServerResponse.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+        }
+
+        HttpHeaders responseHeaders = DownloadHeaders.of(file, downloadProperties.getCacheControl());
+        ServerResponse.BodyBuilder builder = ServerResponse.status(status)
+                .headers(headers -> headers.putAll(responseHeaders))
+                .contentLength(end - start + 1);
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            builder.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        return builder.body(fromDataBuffers(reactiveGridFsAssistant.read(file, start, end, bufferFactory)));
+    }
+}
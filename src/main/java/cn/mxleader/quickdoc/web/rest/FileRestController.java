@@ -4,16 +4,33 @@ import cn.mxleader.quickdoc.common.utils.FileUtils;
 import cn.mxleader.quickdoc.entities.*;
 import cn.mxleader.quickdoc.service.FileService;
 import cn.mxleader.quickdoc.service.FolderService;
+import cn.mxleader.quickdoc.service.UploadService;
+import cn.mxleader.quickdoc.web.domain.FilePage;
 import cn.mxleader.quickdoc.web.domain.LayuiData;
+import cn.mxleader.quickdoc.web.domain.UploadProgress;
 import cn.mxleader.quickdoc.web.domain.WebFile;
+import cn.mxleader.quickdoc.web.domain.WebUpload;
+import com.mongodb.MongoGridFSException;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.servlet.ServletRequestContext;
+import org.apache.commons.io.input.CountingInputStream;
 import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 import static cn.mxleader.quickdoc.common.CommonCode.SESSION_USER;
 
@@ -22,33 +39,61 @@ import static cn.mxleader.quickdoc.common.CommonCode.SESSION_USER;
 //@Api(value = "File Rest API", description = "文件操作接口")
 public class FileRestController {
 
+    private final Logger log = LoggerFactory.getLogger(FileRestController.class);
+
     private final FileService fileService;
     private final FolderService folderService;
+    private final UploadService uploadService;
+    private final MultipartConfigElement multipartConfig;
 
     FileRestController(FileService fileService,
-                       FolderService folderService) {
+                       FolderService folderService,
+                       UploadService uploadService,
+                       MultipartConfigElement multipartConfig) {
         this.fileService = fileService;
         this.folderService = folderService;
+        this.uploadService = uploadService;
+        this.multipartConfig = multipartConfig;
     }
 
     /**
      * 根据上级ID和分类（DISK：磁盘，FOLDER：目录）获取文件清单
+     * <p>
+     * 传入 cursor（首页传空值）或不传 page 时使用游标分页，返回结果中的 cursor 用于获取下一页；
+     * 否则按页码分页。
      *
      * @param parentId   上级ID
      * @param parentType 上级分类
      * @param page       当前页面编号（起始编号为1）
      * @param limit      每页显示数量限制
+     * @param cursor     游标分页时上一页返回的游标
+     * @param sort       游标分页的排序字段（filename、uploadDate、length，前缀“-”表示降序）
      * @return 返回LayUI标准Table数据格式
      */
     @RequestMapping(value = "/list", method = RequestMethod.GET)
     //@ApiOperation(value = "根据上级目录ID获取文件列表")
     public LayuiData<List<WebFile>> list(@RequestParam ObjectId parentId,
                                          @RequestParam AuthTarget parentType,
-                                         @RequestParam Integer page,
-                                         @RequestParam Integer limit) {
-        Page<WebFile> filePage = fileService.list(getParentLink(parentId, parentType),
-                PageRequest.of(page - 1, limit));
-        return new LayuiData<>(0, "", filePage.getTotalElements(), filePage.getContent());
+                                         @RequestParam(required = false) Integer page,
+                                         @RequestParam Integer limit,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) String sort) {
+        if (limit < 1) {
+            return new LayuiData<>(1, "每页数量无效", 0, null);
+        }
+        ParentLink parent = getParentLink(parentId, parentType);
+        if (cursor == null && page != null) {
+            Page<WebFile> filePage = fileService.list(parent, PageRequest.of(page - 1, limit));
+            return new LayuiData<>(0, "", filePage.getTotalElements(), filePage.getContent());
+        }
+        try {
+            FilePage filePage = fileService.list(parent, sort, cursor, limit);
+            LayuiData<List<WebFile>> data = new LayuiData<>(0, "", filePage.getCount(), filePage.getFiles());
+            data.setCursor(filePage.getCursor());
+            return data;
+        } catch (IllegalArgumentException exp) {
+            return new LayuiData<>(1, exp.getMessage(), 0, null);
+        }
     }
 
     @PostMapping(value = "/upload")
@@ -62,8 +107,177 @@ public class FileRestController {
             return new LayuiData<>(1, "文件名冲突", 0, false);
         }
 
-        ObjectId fileId = fileService.store(file.getInputStream(), filename, parent);
+        try {
+            ObjectId fileId = fileService.store(file.getInputStream(), filename, parent);
+            afterStore(fileId, user);
+        } catch (IllegalStateException exp) {
+            return new LayuiData<>(1, exp.getMessage(), 0, false);
+        }
+        return new LayuiData<>(0, "", 0, true);
+    }
+
+    /**
+     * 流式上传：multipart请求体边接收边写入GridFS，不经过临时文件
+     * <p>
+     * 使用PUT方法以避开Spring MultipartResolver（仅解析POST请求）的整体解析及落盘；
+     * 请求参数通过路径传递，避免读取表单参数触发容器解析multipart内容。
+     * 内存占用以GridFS分块大小为上限，超出 spring.servlet.multipart 大小限制时立即中止并清理已写入分块。
+     *
+     * @param parentType 上级分类
+     * @param parentId   上级ID
+     * @param request
+     * @return
+     * @throws IOException
+     */
+    @PutMapping(value = "/stream/{parentType}/{parentId}")
+    public LayuiData<Boolean> streamUpload(@PathVariable AuthTarget parentType,
+                                           @PathVariable ObjectId parentId,
+                                           HttpServletRequest request,
+                                           @SessionAttribute(SESSION_USER) SysUser user) throws IOException {
+        // ServletFileUpload.isMultipartContent(HttpServletRequest) 仅接受POST请求，此处只校验内容类型
+        if (!FileUploadBase.isMultipartContent(new ServletRequestContext(request))) {
+            return new LayuiData<>(1, "请求内容不是multipart格式", 0, false);
+        }
+        ParentLink parent = getParentLink(parentId, parentType);
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setFileSizeMax(multipartConfig.getMaxFileSize());
+        upload.setSizeMax(multipartConfig.getMaxRequestSize());
+        try {
+            FileItemIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField()) {
+                    continue;
+                }
+                String filename = FileUtils.getFilename(item.getName());
+                if (fileService.getStoredFile(filename, parent) != null) {
+                    return new LayuiData<>(1, "文件名冲突", 0, false);
+                }
+                long begin = System.currentTimeMillis();
+                try (CountingInputStream content = new CountingInputStream(item.openStream())) {
+                    ObjectId fileId = fileService.store(content, filename, parent);
+                    afterStore(fileId, user);
+                    log.info("流式上传完成：" + filename + "，" + content.getByteCount()
+                            + " 字节，耗时 " + (System.currentTimeMillis() - begin) + " 毫秒");
+                }
+            }
+        } catch (FileUploadException | FileUploadBase.FileUploadIOException | MongoGridFSException
+                | IllegalStateException exp) {
+            return new LayuiData<>(1, exp.getMessage(), 0, false);
+        }
+        return new LayuiData<>(0, "", 0, true);
+    }
+
+    /**
+     * 断点续传：创建上传会话
+     *
+     * @param filename      文件名
+     * @param parentId      上级ID
+     * @param parentType    上级分类
+     * @param contentLength 文件总长度
+     * @return 上传会话信息（含分段大小及分段数量）
+     */
+    @PostMapping(value = "/upload/session")
+    public LayuiData<WebUpload> createUpload(@RequestParam String filename,
+                                             @RequestParam ObjectId parentId,
+                                             @RequestParam AuthTarget parentType,
+                                             @RequestParam Long contentLength,
+                                             @SessionAttribute(SESSION_USER) SysUser user) {
+        filename = FileUtils.getFilename(filename);
+        ParentLink parent = getParentLink(parentId, parentType);
+        if (fileService.getStoredFile(filename, parent) != null) {
+            return new LayuiData<>(1, "文件名冲突", 0, null);
+        }
+        if (contentLength < 0) {
+            return new LayuiData<>(1, "文件长度无效", 0, null);
+        }
+        SysUpload upload = uploadService.create(filename, parent, contentLength, user.getUsername());
+        return new LayuiData<>(0, "", 0, new WebUpload(upload, uploadService.getProgress(upload)));
+    }
+
+    /**
+     * 断点续传：写入编号分段（请求体为分段原始内容）
+     *
+     * @param uploadId 上传会话ID
+     * @param part     分段编号（起始编号为0）
+     * @return 上传进度
+     */
+    @PutMapping(value = "/upload/session/{uploadId}/{part}")
+    public LayuiData<UploadProgress> uploadPart(@PathVariable ObjectId uploadId,
+                                                @PathVariable Integer part,
+                                                HttpServletRequest request,
+                                                @SessionAttribute(SESSION_USER) SysUser user) {
+        Optional<SysUpload> upload = getUpload(uploadId, user);
+        if (!upload.isPresent()) {
+            return new LayuiData<>(1, "上传会话不存在", 0, null);
+        }
+        try {
+            return new LayuiData<>(0, "", 0,
+                    uploadService.writePart(upload.get(), part, request.getInputStream()));
+        } catch (IOException | IllegalArgumentException | IllegalStateException exp) {
+            return new LayuiData<>(1, exp.getMessage(), 0, uploadService.getProgress(upload.get()));
+        }
+    }
+
+    /**
+     * 断点续传：查询已连续接收的字节数
+     *
+     * @param uploadId 上传会话ID
+     * @return 上传进度
+     */
+    @GetMapping(value = "/upload/session/{uploadId}")
+    public LayuiData<UploadProgress> uploadProgress(@PathVariable ObjectId uploadId,
+                                                    @SessionAttribute(SESSION_USER) SysUser user) {
+        return getUpload(uploadId, user)
+                .map(upload -> new LayuiData<>(0, "", 0, uploadService.getProgress(upload)))
+                .orElse(new LayuiData<>(1, "上传会话不存在", 0, null));
+    }
+
+    /**
+     * 断点续传：所有分段上传完毕后提交文件
+     *
+     * @param uploadId 上传会话ID
+     * @return
+     * @throws IOException
+     */
+    @PostMapping(value = "/upload/session/{uploadId}/commit")
+    public LayuiData<Boolean> commitUpload(@PathVariable ObjectId uploadId,
+                                           @SessionAttribute(SESSION_USER) SysUser user) throws IOException {
+        Optional<SysUpload> upload = getUpload(uploadId, user);
+        if (!upload.isPresent()) {
+            return new LayuiData<>(1, "上传会话不存在", 0, false);
+        }
+        if (fileService.getStoredFile(upload.get().getFilename(), upload.get().getParent()) != null) {
+            return new LayuiData<>(1, "文件名冲突", 0, false);
+        }
+        try {
+            afterStore(uploadService.commit(upload.get()), user);
+        } catch (IllegalStateException exp) {
+            return new LayuiData<>(1, exp.getMessage(), 0, false);
+        }
+        return new LayuiData<>(0, "", 0, true);
+    }
+
+    @DeleteMapping(value = "/upload/session/{uploadId}")
+    public LayuiData<Boolean> abortUpload(@PathVariable ObjectId uploadId,
+                                          @SessionAttribute(SESSION_USER) SysUser user) {
+        Optional<SysUpload> upload = getUpload(uploadId, user);
+        upload.ifPresent(uploadService::abort);
+        return new LayuiData<>(0, "", 0, upload.isPresent());
+    }
 
+    private Optional<SysUpload> getUpload(ObjectId uploadId, SysUser user) {
+        return uploadService.get(uploadId)
+                .filter(upload -> upload.getOwner().equals(user.getUsername()));
+    }
+
+    /**
+     * 文件存储完成后的处理：鉴别文件类型，授予上传用户删除权限
+     *
+     * @param fileId 文件ID
+     * @param user   上传用户
+     */
+    private void afterStore(ObjectId fileId, SysUser user) {
         /*
          *  鉴别文件类型
          *  因CentOS 7 环境无法通过Files.probeContentType(path) 准确获取大部分文件的文件类型，需补充执行如下过程
@@ -77,7 +291,6 @@ public class FileRestController {
          */
 
         fileService.addAuthorization(fileId, new Authorization(user.getUsername(), AuthType.PRIVATE, AuthAction.DELETE));
-        return new LayuiData<>(0, "", 0, true);
     }
 
     @PostMapping(value = "/delete")
@@ -87,6 +300,38 @@ public class FileRestController {
         return new LayuiData<>(0, "", 0, true);
     }
 
+    /**
+     * 容器内已移入回收站的文件
+     *
+     * @param parentId   上级ID
+     * @param parentType 上级分类
+     * @return
+     */
+    @GetMapping(value = "/trash")
+    public LayuiData<List<WebFile>> trash(@RequestParam ObjectId parentId,
+                                          @RequestParam AuthTarget parentType) {
+        List<WebFile> files = fileService.listTrash(getParentLink(parentId, parentType));
+        return new LayuiData<>(0, "", files.size(), files);
+    }
+
+    @PostMapping(value = "/restore")
+    public LayuiData<WebFile> restore(@RequestBody String fileId) {
+        try {
+            WebFile file = fileService.restore(new ObjectId(fileId));
+            if (file == null) {
+                return new LayuiData<>(1, "文件不在回收站内", 0, null);
+            }
+            return new LayuiData<>(0, "", 0, file);
+        } catch (IllegalStateException exp) {
+            return new LayuiData<>(1, exp.getMessage(), 0, null);
+        }
+    }
+
+    @PostMapping(value = "/purge")
+    public LayuiData<Boolean> purge(@RequestBody String fileId) {
+        return new LayuiData<>(0, "", 0, fileService.purge(new ObjectId(fileId)));
+    }
+
     private ParentLink getParentLink(ObjectId parentId, AuthTarget parentType) {
         ParentLink parent = null;
         switch (parentType) {
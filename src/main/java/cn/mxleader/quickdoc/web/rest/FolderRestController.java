@@ -31,19 +31,35 @@ public class FolderRestController {
                 AuthTarget.DISK, new ObjectId(parentId)));
     }
 
+    @GetMapping("/children")
+    //@ApiOperation(value = "逐级展开目录树：获取上级目录（磁盘或目录）的直接子目录")
+    public List<TreeNode> getChildren(@RequestParam ObjectId parentId,
+                                      @RequestParam(defaultValue = "DISK") AuthTarget parentType,
+                                      @RequestParam ObjectId diskId) {
+        return folderService.getChildNodes(new ParentLink(parentId, parentType, diskId));
+    }
+
     @GetMapping("/list")
     //@ApiOperation(value = "根据磁盘ID号获取目录列表")
     public List<TreeNode> getFoldersOfDisk(@RequestParam String diskId) {
-        return folderService.listFoldersInDisk(new ObjectId(diskId))
+        List<SysFolder> folders = folderService.listFoldersInDisk(new ObjectId(diskId));
+        Set<ObjectId> parentIds = folders.stream()
+                .map(sysFolder -> sysFolder.getParent().getId())
+                .collect(Collectors.toSet());
+        return folders.stream()
+                .map(sysFolder -> new TreeNode(sysFolder.getId().toString(), sysFolder.getName(),
+                        sysFolder.getParent().getId().toString(), Collections.emptyList(),
+                        parentIds.contains(sysFolder.getId())))
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/path")
+    //@ApiOperation(value = "获取自顶层目录至当前目录的路径")
+    public List<TreeNode> getPath(@RequestParam ObjectId id) {
+        return folderService.getPath(id)
                 .stream()
-                .map(sysFolder -> {
-                            List<TreeNode> subNodes = folderService.getFolderTree(new ParentLink(sysFolder.getId(),
-                                    AuthTarget.FOLDER, new ObjectId(diskId)));
-                            return new TreeNode(sysFolder.getId().toString(), sysFolder.getName(),
-                                    sysFolder.getParent().getId().toString(), Collections.emptyList(),
-                                    (subNodes != null && subNodes.size() > 0));
-                        }
-                )
+                .map(sysFolder -> new TreeNode(sysFolder.getId().toString(), sysFolder.getName(),
+                        sysFolder.getParent().getId().toString(), Collections.emptyList()))
                 .collect(Collectors.toList());
     }
 
@@ -113,6 +129,24 @@ public class FolderRestController {
         }
     }
 
+    @PostMapping("/move")
+    //@ApiOperation("移动目录")
+    public LayuiData<TreeNode> move(@RequestParam ObjectId id,
+                                    @RequestParam ObjectId parentId,
+                                    @RequestParam AuthTarget parentType,
+                                    @RequestParam ObjectId diskId) {
+        try {
+            SysFolder sysFolder = folderService.move(id, new ParentLink(parentId, parentType, diskId));
+            if (sysFolder == null) {
+                return new LayuiData<>(1, "目录或目标目录不存在", 0, null);
+            }
+            return new LayuiData<>(0, "", 1, new TreeNode(sysFolder.getId().toString(), sysFolder.getName(),
+                    sysFolder.getParent().getId().toString(), Collections.emptyList()));
+        } catch (IllegalArgumentException | IllegalStateException exp) {
+            return new LayuiData<>(1, exp.getMessage(), 0, null);
+        }
+    }
+
     @PostMapping("/delete")
     //@ApiOperation("删除目录")
     public Boolean delete(@RequestParam ObjectId id) {
@@ -0,0 +1,126 @@
+package cn.mxleader.quickdoc.web.support;
+
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+
+/**
+ * 文件下载的响应头及条件请求校验，Servlet下载（/file/download）与非阻塞下载（/reactive/download）共用
+ */
+public final class DownloadHeaders {
+
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private DownloadHeaders() {
+    }
+
+    /**
+     * 文件下载的响应头：Content-Type、Content-Disposition、Accept-Ranges、ETag、Last-Modified 及 Cache-Control
+     *
+     * @param file         GridFS文件
+     * @param cacheControl Cache-Control 头，为空时不设置
+     * @return 响应头
+     */
+    public static HttpHeaders of(GridFSFile file, @Nullable String cacheControl) {
+        HttpHeaders headers = validators(file, cacheControl);
+        headers.set(HttpHeaders.CONTENT_TYPE, getContentType(file));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(file.getFilename()));
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        return headers;
+    }
+
+    /**
+     * 缓存校验相关的响应头：ETag、Last-Modified 及 Cache-Control，304响应同样需要
+     */
+    public static HttpHeaders validators(GridFSFile file, @Nullable String cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(GridFsAssistant.getETag(file));
+        headers.setLastModified(file.getUploadDate().getTime());
+        if (StringUtils.hasText(cacheControl)) {
+            headers.setCacheControl(cacheControl);
+        }
+        return headers;
+    }
+
+    /**
+     * 文件的实际内容类型，未记录时为 application/octet-stream
+     */
+    public static String getContentType(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        String contentType = metadata == null ? null : metadata.getString("_contentType");
+        return StringUtils.hasText(contentType) ? contentType : DEFAULT_CONTENT_TYPE;
+    }
+
+    public static String getContentDisposition(String filename) {
+        try {
+            return "attachment; filename=" + URLEncoder.encode(filename, "UTF-8");
+        } catch (UnsupportedEncodingException exp) {
+            throw new IllegalStateException(exp);
+        }
+    }
+
+    /**
+     * 条件请求校验：If-None-Match 弱匹配实体标签，无该头时按 If-Modified-Since 比较最后修改时间（精确到秒）
+     *
+     * @param requestHeaders 请求头
+     * @param eTag           实体标签
+     * @param lastModified   最后修改时间（毫秒）
+     * @return 客户端缓存仍然有效时返回 true
+     */
+    public static boolean isNotModified(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        List<String> ifNoneMatch;
+        try {
+            ifNoneMatch = requestHeaders.getIfNoneMatch();
+        } catch (IllegalArgumentException exp) {
+            return false;
+        }
+        if (!ifNoneMatch.isEmpty()) {
+            String opaqueTag = opaque(eTag);
+            return ifNoneMatch.stream().anyMatch(tag -> "*".equals(tag) || opaque(tag).equals(opaqueTag));
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = requestHeaders.getIfModifiedSince();
+        } catch (IllegalArgumentException exp) {
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range 校验：实体标签须强匹配，日期须与最后修改时间一致（精确到秒）；无该头时返回 true
+     *
+     * @param ifRange      If-Range 请求头
+     * @param lastModified 最后修改时间（毫秒），未知时为 -1
+     * @param eTag         实体标签，未知时为 null
+     * @return 可以按Range请求返回部分内容时返回 true
+     */
+    public static boolean matchesIfRange(@Nullable String ifRange, long lastModified, @Nullable String eTag) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return eTag != null && !ifRange.startsWith("W/") && ifRange.equals(eTag);
+        }
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.IF_RANGE, ifRange);
+            long ifRangeDate = headers.getFirstDate(HttpHeaders.IF_RANGE);
+            return lastModified >= 0 && ifRangeDate / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException exp) {
+            return false;
+        }
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,160 @@
+package cn.mxleader.quickdoc.web.support;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP Range 请求处理（RFC 7233）
+ * <p>
+ * 支持单区间（206 Partial Content）、多区间（multipart/byteranges）以及 If-Range 条件校验；
+ * 内容读取由 {@link ContentReader} 按区间直接定位，无需从头读取。
+ */
+public class RangeResponseWriter {
+
+    /**
+     * 单次请求允许的最大区间数量，超出时忽略Range头返回完整内容
+     */
+    private static final int MAX_RANGES = 32;
+
+    private static final String CRLF = "\r\n";
+
+    /**
+     * 按字节区间读取内容
+     */
+    @FunctionalInterface
+    public interface ContentReader {
+        /**
+         * @param start 起始位置
+         * @param end   结束位置（包含）
+         */
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    private RangeResponseWriter() {
+    }
+
+    /**
+     * 根据请求头输出完整内容或部分内容，调用前需由调用方设置 Content-Type 及 Content-Disposition
+     *
+     * @param request      HTTP请求
+     * @param response     HTTP响应
+     * @param length       内容总长度
+     * @param lastModified 最后修改时间（毫秒），未知时为 -1
+     * @param eTag         实体标签，未知时为 null
+     * @param partType     多区间响应中每个分段的内容类型
+     * @param reader       区间内容读取器
+     * @throws IOException
+     */
+    public static void write(HttpServletRequest request,
+                             HttpServletResponse response,
+                             long length,
+                             long lastModified,
+                             String eTag,
+                             String partType,
+                             ContentReader reader) throws IOException {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null
+                || !DownloadHeaders.matchesIfRange(request.getHeader(HttpHeaders.IF_RANGE), lastModified, eTag)) {
+            writeFull(response, length, reader);
+            return;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException exp) {
+            writeUnsatisfiable(response, length);
+            return;
+        }
+        if (ranges.size() > MAX_RANGES) {
+            writeFull(response, length, reader);
+            return;
+        }
+
+        List<long[]> satisfiable = new ArrayList<>();
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start < length && start <= end) {
+                satisfiable.add(new long[]{start, end});
+            }
+        }
+        if (satisfiable.isEmpty()) {
+            writeUnsatisfiable(response, length);
+        } else if (satisfiable.size() == 1) {
+            long[] range = satisfiable.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range[0], range[1], length));
+            response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(range[1] - range[0] + 1));
+            copy(reader.open(range[0], range[1]), response.getOutputStream());
+        } else {
+            writeMultipart(response, length, partType, satisfiable, reader);
+        }
+    }
+
+    private static void writeFull(HttpServletResponse response, long length,
+                                  ContentReader reader) throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(length));
+        if (length > 0) {
+            copy(reader.open(0, length - 1), response.getOutputStream());
+        }
+    }
+
+    private static void writeUnsatisfiable(HttpServletResponse response, long length) {
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, "0");
+    }
+
+    private static void writeMultipart(HttpServletResponse response, long length, String partType,
+                                       List<long[]> ranges, ContentReader reader) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] header = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + partType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range[0], range[1], length) + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range[1] - range[0] + 1;
+        }
+        byte[] trailer = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            out.write(partHeaders.get(i));
+            copy(reader.open(range[0], range[1]), out);
+        }
+        out.write(trailer);
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try (InputStream input = in) {
+            StreamUtils.copy(input, out);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package cn.mxleader.quickdoc.entities
+
+import org.bson.types.ObjectId
+import org.springframework.data.annotation.Id
+import org.springframework.data.mongodb.core.mapping.Document
+import java.util.*
+
+/**
+ * 文件夹或磁盘的级联删除任务，进度保存在数据库中，服务重启后继续执行未完成的任务
+ */
+@Document
+data class SysDeleteJob(@Id val id: ObjectId,
+                        val target: AuthTarget,
+                        val targetId: ObjectId,
+                        val diskId: ObjectId,
+                        var status: Status,
+                        var foldersDeleted: Long,
+                        var filesUnlinked: Long,
+                        var filesDeleted: Long,
+                        var error: String?,
+                        var createdAt: Date,
+                        var updatedAt: Date) {
+
+    /**
+     * 执行任务的节点，任务完成或失败后清除
+     */
+    var owner: String? = null
+
+    /**
+     * 租约到期时间，执行节点每处理一批即续租；到期未续租的任务可由其他节点接管
+     */
+    var leaseExpiresAt: Date? = null
+
+    enum class Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+}
@@ -3,7 +3,22 @@ package cn.mxleader.quickdoc.entities
 import org.bson.types.ObjectId
 import org.springframework.data.annotation.Id
 
-class SysDisk(@Id var id: ObjectId, var name: String, var authorizations: Set<Authorization>){
+class SysDisk(@Id var id: ObjectId,
+              var name: String,
+              var authorizations: Set<Authorization>,
+              var storage: String? = null) {
+    constructor(id: ObjectId, name: String, authorizations: Set<Authorization>)
+            : this(id, name, authorizations, null)
+
+    /**
+     * 磁盘内的文件总数（不含回收站文件）
+     */
+    var totalFiles: Long = 0
+
+    /**
+     * 磁盘内的文件总字节数（不含回收站文件）
+     */
+    var totalSize: Long = 0
 
     fun addAuthorization(authorization: Authorization) {
         this.authorizations += authorization
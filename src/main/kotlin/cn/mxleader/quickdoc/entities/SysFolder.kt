@@ -8,6 +8,31 @@ import org.springframework.data.mongodb.core.mapping.Document
 data class SysFolder(@Id var id: ObjectId, var name: String,
                      var parent: ParentLink, var authorizations: Set<Authorization>){
 
+    /**
+     * 上级文件夹ID，自顶层文件夹至直接上级依次排列；位于磁盘根目录时为空
+     */
+    var ancestors: List<ObjectId> = emptyList()
+
+    /**
+     * 直接子目录数量
+     */
+    var folderCount: Long = 0
+
+    /**
+     * 直接包含的文件数量（不含回收站文件）
+     */
+    var fileCount: Long = 0
+
+    /**
+     * 包含所有下级文件夹在内的文件总数（不含回收站文件）
+     */
+    var totalFiles: Long = 0
+
+    /**
+     * 包含所有下级文件夹在内的文件总字节数（不含回收站文件）
+     */
+    var totalSize: Long = 0
+
     fun addAuthorization(authorization: Authorization) {
         this.authorizations += authorization
     }
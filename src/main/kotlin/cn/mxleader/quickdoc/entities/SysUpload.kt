@@ -0,0 +1,68 @@
+package cn.mxleader.quickdoc.entities
+
+import org.bson.types.ObjectId
+import org.springframework.data.annotation.Id
+import org.springframework.data.mongodb.core.mapping.Document
+import java.util.*
+
+/**
+ * 断点续传上传会话，会话ID即为提交后的文件ID，
+ * 已接收分段的内容直接写入以会话ID为 files_id 的GridFS分块
+ */
+@Document
+data class SysUpload(@Id val id: ObjectId,
+                     var filename: String,
+                     var parent: ParentLink,
+                     var owner: String,
+                     var contentLength: Long,
+                     var chunkSize: Int,
+                     var partSize: Long,
+                     var parts: Set<Int>,
+                     var createdAt: Date,
+                     var updatedAt: Date) {
+
+    enum class State {
+        /**
+         * 已由提交操作占用，不再接受分段写入
+         */
+        COMMITTING
+    }
+
+    /**
+     * 带有效期的占用登记，持有者所在节点崩溃时到期后可由其他请求接管
+     */
+    data class Lease(val id: ObjectId,
+                     val expiresAt: Date)
+
+    /**
+     * 会话状态，接收分段期间为空
+     */
+    var state: State? = null
+
+    /**
+     * 提交操作的占用登记，state 为 COMMITTING 时存在
+     */
+    var claim: Lease? = null
+
+    /**
+     * 正在写入分段的请求，写入完成后移除；提交须等待未到期的写入结束
+     */
+    var writers: List<Lease> = emptyList()
+
+    fun getPartCount(): Int = ((contentLength + partSize - 1) / partSize).toInt()
+
+    fun getPartLength(part: Int): Long = Math.min(partSize, contentLength - part * partSize)
+
+    /**
+     * 从起始位置连续接收的字节数，客户端据此续传
+     */
+    fun getReceivedOffset(): Long {
+        var part = 0
+        while (parts.contains(part)) {
+            part++
+        }
+        return Math.min(part * partSize, contentLength)
+    }
+
+    fun isComplete(): Boolean = parts.size >= getPartCount()
+}
@@ -0,0 +1,10 @@
+package cn.mxleader.quickdoc.web.domain
+
+/**
+ * 游标分页的文件列表
+ *
+ * @param files  当前页文件
+ * @param count  容器内文件总数
+ * @param cursor 下一页游标，已到最后一页时为 null
+ */
+data class FilePage(val files: List<WebFile>, val count: Long, val cursor: String?)
@@ -1,3 +1,8 @@
 package cn.mxleader.quickdoc.web.domain
 
-data class LayuiData<T>(val code: Int, val msg: String, var count:Long, var data: T)
\ No newline at end of file
+data class LayuiData<T>(val code: Int, val msg: String, var count:Long, var data: T) {
+    /**
+     * 游标分页时下一页的游标，已到最后一页时为 null
+     */
+    var cursor: String? = null
+}
@@ -20,6 +20,26 @@ data class TreeNode(val id: String, var name: String,
                 isParent: Boolean)
             : this(id, name, parentId, children, isParent, true, "", 0)
 
+    /**
+     * 直接子目录数量，逐级展开时返回
+     */
+    var folderCount: Long? = null
+
+    /**
+     * 直接包含的文件数量，逐级展开时返回
+     */
+    var fileCount: Long? = null
+
+    /**
+     * 包含所有下级目录在内的文件总数，逐级展开时返回
+     */
+    var totalFiles: Long? = null
+
+    /**
+     * 包含所有下级目录在内的文件总字节数，逐级展开时返回
+     */
+    var totalSize: Long? = null
+
     fun getCompletePath():String = "$path-$name"
 
     fun addChildren(child: TreeNode) {
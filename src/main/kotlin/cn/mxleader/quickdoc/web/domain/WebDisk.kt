@@ -2,6 +2,8 @@ package cn.mxleader.quickdoc.web.domain
 
 import cn.mxleader.quickdoc.entities.SysDisk
 
-data class WebDisk(val id: String, var name: String,var authorizations: String) {
-    constructor(disk: SysDisk) : this(disk.id.toString(), disk.name,disk.authorizations.toString())
+data class WebDisk(val id: String, var name: String,var authorizations: String,
+                   var totalFiles: Long = 0, var totalSize: Long = 0) {
+    constructor(disk: SysDisk) : this(disk.id.toString(), disk.name,disk.authorizations.toString(),
+            disk.totalFiles, disk.totalSize)
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package cn.mxleader.quickdoc.web.domain
+
+import cn.mxleader.quickdoc.entities.SysUpload
+
+data class WebUpload(val id: String,
+                     var filename: String,
+                     var contentLength: Long,
+                     var partSize: Long,
+                     var partCount: Int,
+                     var progress: UploadProgress) {
+    constructor(upload: SysUpload, progress: UploadProgress) : this(upload.id.toString(), upload.filename,
+            upload.contentLength, upload.partSize, upload.getPartCount(), progress)
+}
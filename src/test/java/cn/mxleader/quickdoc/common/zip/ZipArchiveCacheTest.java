@@ -0,0 +1,179 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipArchiveCacheTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("quickdoc-zip-cache-test");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    private static String key(String name) {
+        return DigestUtils.md5DigestAsHex(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] content(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 17);
+        }
+        return data;
+    }
+
+    private static byte[] read(ZipArchiveCache.Artifact artifact) throws IOException {
+        try (InputStream in = artifact.open(0, artifact.getLength() - 1)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("zip-archives"))) {
+            return files.count();
+        }
+    }
+
+    @Test
+    @DisplayName("未命中时边输出边写入缓存，之后直接读取缓存")
+    public void teesFirstRequestIntoCache() throws IOException {
+        ZipArchiveCache cache = new ZipArchiveCache(true, directory, 1024, 1024);
+        byte[] data = content(300);
+        assertNull(cache.get(key("a")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(key("a"), data.length, out, target -> target.write(data));
+        assertArrayEquals(data, out.toByteArray());
+
+        ZipArchiveCache.Artifact artifact = cache.get(key("a"));
+        assertNotNull(artifact);
+        assertEquals(data.length, artifact.getLength());
+        assertArrayEquals(data, read(artifact));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    @DisplayName("实际长度超出单个压缩包上限时照常输出，不予缓存")
+    public void oversizedArchiveIsNotCached() throws IOException {
+        ZipArchiveCache cache = new ZipArchiveCache(true, directory, 1024, 100);
+        byte[] data = content(300);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(key("a"), 50, out, target -> target.write(data));
+
+        assertArrayEquals(data, out.toByteArray());
+        assertNull(cache.get(key("a")));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    @DisplayName("生成失败时抛出异常并删除临时文件")
+    public void failureRemovesTempFile() throws IOException {
+        ZipArchiveCache cache = new ZipArchiveCache(true, directory, 1024, 1024);
+        assertThrows(IOException.class, () -> cache.write(key("a"), 10, new ByteArrayOutputStream(), target -> {
+            target.write(content(10));
+            throw new IOException("客户端已断开");
+        }));
+        assertNull(cache.get(key("a")));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    @DisplayName("被淘汰的压缩包在读取方关闭后才删除，此后不可再打开")
+    public void evictionWaitsForReaders() throws IOException {
+        ZipArchiveCache cache = new ZipArchiveCache(true, directory, 500, 500);
+        byte[] data = content(300);
+        cache.write(key("a"), data.length, new ByteArrayOutputStream(), target -> target.write(data));
+        ZipArchiveCache.Artifact first = cache.get(key("a"));
+        InputStream reader = first.open(0, first.getLength() - 1);
+
+        cache.write(key("b"), data.length, new ByteArrayOutputStream(), target -> target.write(data));
+        assertNull(cache.get(key("a")));
+        assertEquals(2, countFiles());
+        assertArrayEquals(data, IOUtils.toByteArray(reader));
+
+        reader.close();
+        assertEquals(1, countFiles());
+        assertThrows(FileNotFoundException.class, () -> first.open(0, 10));
+    }
+
+    @Test
+    @DisplayName("同一压缩包正在生成时，其他请求直接输出而不等待")
+    public void concurrentRequestDoesNotWait() throws Exception {
+        ZipArchiveCache cache = new ZipArchiveCache(true, directory, 1024, 1024);
+        byte[] data = content(100);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = executor.submit(() -> {
+                cache.write(key("a"), data.length, new ByteArrayOutputStream(), target -> {
+                    writing.countDown();
+                    target.write(data);
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException exp) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                return null;
+            });
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            cache.write(key("a"), data.length, out, target -> target.write(data));
+            assertArrayEquals(data, out.toByteArray());
+            assertNull(cache.get(key("a")));
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            assertNotNull(cache.get(key("a")));
+            assertEquals(1, countFiles());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("启动时只清除子目录中按缓存命名规则生成的文件")
+    public void removesOnlyOwnFiles() throws IOException {
+        Path foreign = Files.createFile(directory.resolve("foreign.txt"));
+        Path subdirectory = Files.createDirectories(directory.resolve("zip-archives"));
+        Path cached = Files.createFile(subdirectory.resolve(key("a") + "123.zip"));
+        Path temp = Files.createFile(subdirectory.resolve(key("b") + "456.tmp"));
+        Path other = Files.createFile(subdirectory.resolve("notes.zip"));
+        new ZipArchiveCache(true, directory, 1024, 1024);
+
+        assertTrue(Files.exists(foreign));
+        assertFalse(Files.exists(cached));
+        assertFalse(Files.exists(temp));
+        assertTrue(Files.exists(other));
+    }
+}
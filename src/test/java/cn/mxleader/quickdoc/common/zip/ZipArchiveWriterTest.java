@@ -0,0 +1,144 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipArchiveWriterTest {
+
+    private static final long MODIFIED = 1530000000000L;
+
+    private static byte[] text(String value, int repeat) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < repeat; i++) {
+            builder.append(value).append(i);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (DeflaterOutputStream target = new DeflaterOutputStream(out, deflater)) {
+            target.write(data);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static File toFile(byte[] archive) throws IOException {
+        File file = File.createTempFile("zip-writer-test-", ".zip");
+        file.deleteOnExit();
+        Files.write(file.toPath(), archive);
+        return file;
+    }
+
+    @Test
+    @DisplayName("STORED、DEFLATED及数据描述符条目均可被ZipFile与ZipInputStream读取")
+    public void writesReadableArchive() throws IOException {
+        byte[] stored = text("stored", 50);
+        byte[] deflated = text("deflated", 500);
+        byte[] streamed = text("streamed", 500);
+        byte[] compressed = deflate(deflated);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipArchiveWriter writer = new ZipArchiveWriter(out);
+        writer.putEntry("目录/stored.txt", MODIFIED, ZipArchiveWriter.STORED, crc(stored), stored.length,
+                stored.length);
+        writer.write(stored);
+        writer.putEntry("deflated.txt", MODIFIED, ZipArchiveWriter.DEFLATED, crc(deflated), compressed.length,
+                deflated.length);
+        writer.write(compressed);
+        writer.closeEntry();
+        writer.putEntry("streamed.txt", MODIFIED, ZipArchiveWriter.DEFLATED);
+        writer.write(deflate(streamed));
+        writer.closeEntry(crc(streamed), streamed.length);
+        writer.finish();
+        assertEquals(out.size(), writer.getOffset());
+
+        try (ZipFile zip = new ZipFile(toFile(out.toByteArray()), StandardCharsets.UTF_8)) {
+            assertEquals(3, zip.size());
+            assertArrayEquals(stored, IOUtils.toByteArray(zip.getInputStream(zip.getEntry("目录/stored.txt"))));
+            assertArrayEquals(deflated, IOUtils.toByteArray(zip.getInputStream(zip.getEntry("deflated.txt"))));
+            ZipEntry entry = zip.getEntry("streamed.txt");
+            assertEquals(streamed.length, entry.getSize());
+            assertEquals(crc(streamed), entry.getCrc());
+            assertArrayEquals(streamed, IOUtils.toByteArray(zip.getInputStream(entry)));
+        }
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()),
+                StandardCharsets.UTF_8)) {
+            assertEquals("目录/stored.txt", in.getNextEntry().getName());
+            assertArrayEquals(stored, IOUtils.toByteArray(in));
+            assertEquals("deflated.txt", in.getNextEntry().getName());
+            assertArrayEquals(deflated, IOUtils.toByteArray(in));
+            assertEquals("streamed.txt", in.getNextEntry().getName());
+            assertArrayEquals(streamed, IOUtils.toByteArray(in));
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    @DisplayName("条目数量超过65535时写入Zip64结束记录")
+    public void writesZip64EndRecord() throws IOException {
+        int count = 70000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipArchiveWriter writer = new ZipArchiveWriter(out);
+        byte[] data = {'x'};
+        for (int i = 0; i < count; i++) {
+            writer.putEntry("f" + i, MODIFIED, ZipArchiveWriter.STORED, crc(data), 1, 1);
+            writer.write(data);
+        }
+        writer.finish();
+
+        try (ZipFile zip = new ZipFile(toFile(out.toByteArray()))) {
+            assertEquals(count, zip.size());
+            assertArrayEquals(data, IOUtils.toByteArray(zip.getInputStream(zip.getEntry("f" + (count - 1)))));
+        }
+    }
+
+    @Test
+    @DisplayName("条目数据与声明长度不一致时拒绝")
+    public void rejectsLengthMismatch() throws IOException {
+        ZipArchiveWriter writer = new ZipArchiveWriter(new ByteArrayOutputStream());
+        writer.putEntry("a", MODIFIED, ZipArchiveWriter.STORED, 0, 2, 2);
+        assertThrows(IOException.class, () -> writer.write(new byte[3]));
+        writer.write(new byte[1]);
+        assertThrows(IOException.class, writer::closeEntry);
+    }
+
+    @Test
+    @DisplayName("数据描述符条目须补写CRC32及长度")
+    public void dataDescriptorRequiresCrc() throws IOException {
+        ZipArchiveWriter writer = new ZipArchiveWriter(new ByteArrayOutputStream());
+        writer.putEntry("a", MODIFIED, ZipArchiveWriter.DEFLATED);
+        assertThrows(IOException.class, writer::closeEntry);
+        assertThrows(IOException.class, writer::finish);
+
+        ZipArchiveWriter stored = new ZipArchiveWriter(new ByteArrayOutputStream());
+        stored.putEntry("b", MODIFIED, ZipArchiveWriter.STORED);
+        stored.write(new byte[4]);
+        assertThrows(IOException.class, () -> stored.closeEntry(0, 5));
+    }
+}
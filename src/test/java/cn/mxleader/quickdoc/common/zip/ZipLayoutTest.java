@@ -0,0 +1,175 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipLayoutTest {
+
+    private static final long MODIFIED = 1530000000000L;
+
+    private static byte[] content(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 13 + seed);
+        }
+        return data;
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    private static ZipLayout.RangeOpener opener(byte[] data) {
+        return (start, end) -> new ByteArrayInputStream(data, (int) start, (int) (end - start + 1));
+    }
+
+    private static ZipLayout.Entry known(String name, byte[] data) {
+        return new ZipLayout.Entry(name, MODIFIED, crc(data), data.length, opener(data));
+    }
+
+    private static ZipLayout.Entry unknown(String name, byte[] data, AtomicInteger calculations) {
+        return new ZipLayout.Entry(name, MODIFIED, data.length, "tag-" + name, () -> {
+            calculations.incrementAndGet();
+            return crc(data);
+        }, opener(data));
+    }
+
+    private static byte[] read(ZipLayout layout, long start, long end) throws IOException {
+        try (InputStream in = layout.open(start, end)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static ZipFile toZipFile(byte[] archive) throws IOException {
+        File file = File.createTempFile("zip-layout-test-", ".zip");
+        file.deleteOnExit();
+        Files.write(file.toPath(), archive);
+        return new ZipFile(file, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("布局长度与实际输出一致，输出为可读取的ZIP归档")
+    public void producesReadableArchive() throws IOException {
+        byte[] first = content(5000, 1);
+        byte[] second = new byte[0];
+        byte[] third = content(123, 3);
+        ZipLayout layout = new ZipLayout(Arrays.asList(known("目录/a.bin", first), known("目录/空文件", second),
+                known("b.bin", third)));
+
+        byte[] archive = read(layout, 0, layout.getLength() - 1);
+        assertEquals(layout.getLength(), archive.length);
+        try (ZipFile zip = toZipFile(archive)) {
+            assertEquals(3, zip.size());
+            assertArrayEquals(first, IOUtils.toByteArray(zip.getInputStream(zip.getEntry("目录/a.bin"))));
+            assertEquals(0, zip.getEntry("目录/空文件").getSize());
+            assertArrayEquals(third, IOUtils.toByteArray(zip.getInputStream(zip.getEntry("b.bin"))));
+        }
+    }
+
+    @Test
+    @DisplayName("任意区间拼接后与完整输出一致")
+    public void rangesMatchWholeArchive() throws IOException {
+        ZipLayout layout = new ZipLayout(Arrays.asList(known("a", content(3000, 1)), known("b", content(700, 2))));
+        byte[] archive = read(layout, 0, layout.getLength() - 1);
+
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        long step = 257;
+        for (long start = 0; start < layout.getLength(); start += step) {
+            joined.write(read(layout, start, Math.min(start + step, layout.getLength()) - 1));
+        }
+        assertArrayEquals(archive, joined.toByteArray());
+        assertThrows(IllegalArgumentException.class, () -> layout.open(0, layout.getLength()));
+    }
+
+    @Test
+    @DisplayName("CRC32未知的条目使用数据描述符，顺序输出时随内容计算，不额外读取")
+    public void dataDescriptorComputedWhileStreaming() throws IOException {
+        byte[] first = content(4000, 1);
+        byte[] second = content(900, 2);
+        AtomicInteger calculations = new AtomicInteger();
+        ZipLayout layout = new ZipLayout(Arrays.asList(unknown("a", first, calculations), known("b", second)));
+
+        byte[] archive = read(layout, 0, layout.getLength() - 1);
+        assertEquals(layout.getLength(), archive.length);
+        assertEquals(0, calculations.get());
+        try (ZipFile zip = toZipFile(archive)) {
+            ZipEntry entry = zip.getEntry("a");
+            assertEquals(crc(first), entry.getCrc());
+            assertEquals(first.length, entry.getSize());
+            assertArrayEquals(first, IOUtils.toByteArray(zip.getInputStream(entry)));
+            assertArrayEquals(second, IOUtils.toByteArray(zip.getInputStream(zip.getEntry("b"))));
+        }
+    }
+
+    @Test
+    @DisplayName("续传区间未覆盖完整内容时计算CRC32，结果与完整输出一致")
+    public void dataDescriptorComputedForResumedRange() throws IOException {
+        byte[] data = content(4000, 1);
+        AtomicInteger calculations = new AtomicInteger();
+        ZipLayout layout = new ZipLayout(Arrays.asList(unknown("a", data, calculations)));
+        long start = layout.getLength() - 200;
+        byte[] tail = read(layout, start, layout.getLength() - 1);
+        assertEquals(1, calculations.get());
+
+        ZipLayout fresh = new ZipLayout(Arrays.asList(unknown("a", data, new AtomicInteger())));
+        byte[] archive = read(fresh, 0, fresh.getLength() - 1);
+        assertArrayEquals(Arrays.copyOfRange(archive, (int) start, archive.length), tail);
+    }
+
+    @Test
+    @DisplayName("实体标签随条目变化，相同条目保持不变")
+    public void eTagFollowsEntries() {
+        byte[] data = content(100, 1);
+        String eTag = new ZipLayout(Arrays.asList(known("a", data))).getETag();
+        assertEquals(eTag, new ZipLayout(Arrays.asList(known("a", data))).getETag());
+        assertNotEquals(eTag, new ZipLayout(Arrays.asList(known("b", data))).getETag());
+        assertNotEquals(eTag, new ZipLayout(Arrays.asList(known("a", content(100, 2)))).getETag());
+        AtomicInteger calculations = new AtomicInteger();
+        assertNotEquals(eTag, new ZipLayout(Arrays.asList(unknown("a", data, calculations))).getETag());
+        assertEquals(0, calculations.get());
+    }
+
+    @Test
+    @DisplayName("条目超过4GB时使用Zip64扩展及Zip64结束记录")
+    public void zip64ForLargeEntry() throws IOException {
+        long size = 5L * 1024 * 1024 * 1024;
+        List<ZipLayout.Entry> entries = new ArrayList<>();
+        entries.add(new ZipLayout.Entry("large.bin", MODIFIED, 0, size,
+                (start, end) -> new ByteArrayInputStream(new byte[(int) (end - start + 1)])));
+        ZipLayout layout = new ZipLayout(entries);
+
+        int name = "large.bin".length();
+        long localHeader = 30 + name + 20;
+        long centralHeader = 46 + name + 20;
+        assertEquals(localHeader + size + centralHeader + 56 + 20 + 22, layout.getLength());
+
+        byte[] header = read(layout, 0, localHeader - 1);
+        assertEquals(45, header[4]);
+        byte[] trailer = read(layout, localHeader + size, layout.getLength() - 1);
+        int zip64End = (int) centralHeader;
+        assertEquals(0x50, trailer[zip64End] & 0xFF);
+        assertEquals(0x4b, trailer[zip64End + 1] & 0xFF);
+        assertEquals(0x06, trailer[zip64End + 2] & 0xFF);
+        assertEquals(0x06, trailer[zip64End + 3] & 0xFF);
+    }
+}
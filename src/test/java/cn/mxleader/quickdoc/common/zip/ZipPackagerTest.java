@@ -0,0 +1,156 @@
+package cn.mxleader.quickdoc.common.zip;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipPackagerTest {
+
+    private static final long MODIFIED = 1530000000000L;
+
+    private final ZipPackager packager = new ZipPackager(2, 64 * 1024,
+            contentType -> "text/plain".equals(contentType));
+
+    @AfterEach
+    public void shutdown() {
+        packager.shutdown();
+    }
+
+    private static byte[] content(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ((i / 7) * 31 + seed);
+        }
+        return data;
+    }
+
+    private static ZipSource source(String name, String contentType, byte[] data) {
+        return new ZipSource(name, MODIFIED, contentType, data.length, () -> new ByteArrayInputStream(data));
+    }
+
+    private static Set<String> spooledFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir"))
+                .list((dir, name) -> name.startsWith("quickdoc-zip-"));
+        return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    @DisplayName("按原顺序打包，首个条目直接写出，其余条目按预读字节数上限分批处理")
+    public void packsInOrder() throws IOException {
+        List<ZipSource> sources = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            // 条目长度跨越预读上限及内存暂存阈值
+            byte[] data = content(i % 3 == 0 ? 1536 * 1024 : 20 * 1024 + i, i);
+            contents.add(data);
+            sources.add(source("dir/file-" + i, i % 2 == 0 ? "text/plain" : "image/png", data));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        packager.write(sources, out);
+
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()),
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < sources.size(); i++) {
+                ZipEntry entry = in.getNextEntry();
+                assertNotNull(entry);
+                assertEquals("dir/file-" + i, entry.getName());
+                assertArrayEquals(contents.get(i), IOUtils.toByteArray(in));
+            }
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    @DisplayName("空列表生成空归档")
+    public void packsEmptyList() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        packager.write(new ArrayList<>(), out);
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    @DisplayName("条目读取失败时抛出异常，已预读条目的临时文件全部删除")
+    public void failureReleasesSpooledEntries() throws Exception {
+        Set<String> before = spooledFiles();
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        List<ZipSource> sources = new ArrayList<>();
+        sources.add(source("first", "text/plain", content(100, 1)));
+        sources.add(new ZipSource("missing", MODIFIED, "text/plain", 10, () -> {
+            // 另一工作线程开始处理后续条目后才失败，使取消时该条目仍在处理中
+            try {
+                started.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException exp) {
+                Thread.currentThread().interrupt();
+            }
+            throw new FileNotFoundException("missing");
+        }));
+        for (int i = 0; i < 4; i++) {
+            byte[] data = content(3 * 1024 * 1024, i);
+            sources.add(new ZipSource("large-" + i, MODIFIED, "image/png", 10, () -> {
+                opened.incrementAndGet();
+                started.countDown();
+                return slow(data, closed);
+            }));
+        }
+        assertThrows(FileNotFoundException.class, () -> packager.write(sources, new ByteArrayOutputStream()));
+
+        // 等待取消时仍在处理的条目读取完毕
+        long deadline = System.currentTimeMillis() + 10000;
+        while (closed.get() < opened.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(opened.get() > 0);
+        assertEquals(opened.get(), closed.get());
+        Thread.sleep(200);
+        Set<String> leaked = spooledFiles();
+        leaked.removeAll(before);
+        assertTrue(leaked.isEmpty(), "未删除的临时文件：" + leaked);
+    }
+
+    /**
+     * 读取较慢且不响应中断的内容
+     */
+    private static InputStream slow(byte[] data, AtomicInteger closed) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException exp) {
+                    // 模拟不响应中断的读取
+                }
+                return super.read(b, off, Math.min(len, 64 * 1024));
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import com.mongodb.MongoGridFSException;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkCodecTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final Deflater deflater = new Deflater();
+
+    @AfterEach
+    public void endDeflater() {
+        deflater.end();
+    }
+
+    private static byte[] compressible(int length) {
+        byte[] data = new byte[length];
+        byte[] pattern = "quickdoc ".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < length; i++) {
+            data[i] = pattern[i % pattern.length];
+        }
+        return data;
+    }
+
+    private static Document chunk(byte[] data, boolean compressed) {
+        Document chunk = new Document("files_id", ObjectId.get()).append("n", 0).append("data", new Binary(data));
+        if (compressed) {
+            chunk.append(ChunkCodec.COMPRESSED_FIELD, true);
+        }
+        return chunk;
+    }
+
+    @Test
+    @DisplayName("压缩后解压还原原始数据")
+    public void roundTrip() {
+        byte[] data = compressible(CHUNK_SIZE);
+        byte[] deflated = ChunkCodec.deflate(deflater, data, data.length);
+
+        assertNotNull(deflated);
+        assertTrue(deflated.length < data.length);
+        assertArrayEquals(data, ChunkCodec.decode(chunk(deflated, true), CHUNK_SIZE));
+    }
+
+    @Test
+    @DisplayName("只压缩缓冲区的有效部分，末尾分块可短于分块大小")
+    public void partialBuffer() {
+        byte[] buffer = compressible(CHUNK_SIZE);
+        byte[] deflated = ChunkCodec.deflate(deflater, buffer, 100);
+
+        assertNotNull(deflated);
+        assertArrayEquals(Arrays.copyOf(buffer, 100), ChunkCodec.decode(chunk(deflated, true), CHUNK_SIZE));
+    }
+
+    @Test
+    @DisplayName("压缩器可重复使用")
+    public void reusesDeflater() {
+        byte[] first = compressible(CHUNK_SIZE);
+        byte[] second = Arrays.copyOf(compressible(CHUNK_SIZE + 3), CHUNK_SIZE);
+        second[0] = 'x';
+
+        byte[] deflatedFirst = ChunkCodec.deflate(deflater, first, first.length);
+        byte[] deflatedSecond = ChunkCodec.deflate(deflater, second, second.length);
+
+        assertArrayEquals(first, ChunkCodec.decode(chunk(deflatedFirst, true), CHUNK_SIZE));
+        assertArrayEquals(second, ChunkCodec.decode(chunk(deflatedSecond, true), CHUNK_SIZE));
+    }
+
+    @Test
+    @DisplayName("压缩后未变小时返回 null")
+    public void incompressibleReturnsNull() {
+        byte[] data = new byte[CHUNK_SIZE];
+        new Random(42).nextBytes(data);
+
+        assertNull(ChunkCodec.deflate(deflater, data, data.length));
+    }
+
+    @Test
+    @DisplayName("未标记压缩的分块原样返回")
+    public void uncompressedChunk() {
+        byte[] data = compressible(10);
+        assertArrayEquals(data, ChunkCodec.decode(chunk(data, false), CHUNK_SIZE));
+    }
+
+    @Test
+    @DisplayName("损坏的压缩分块抛出异常")
+    public void corruptChunk() {
+        byte[] deflated = ChunkCodec.deflate(deflater, compressible(CHUNK_SIZE), CHUNK_SIZE);
+        byte[] truncated = Arrays.copyOf(deflated, deflated.length / 2);
+
+        assertThrows(MongoGridFSException.class, () -> ChunkCodec.decode(chunk(truncated, true), CHUNK_SIZE));
+        assertThrows(MongoGridFSException.class,
+                () -> ChunkCodec.decode(chunk(new byte[]{1, 2, 3, 4}, true), CHUNK_SIZE));
+    }
+
+    @Test
+    @DisplayName("解压后超出分块大小时抛出异常")
+    public void oversizedChunk() {
+        byte[] deflated = ChunkCodec.deflate(deflater, compressible(CHUNK_SIZE), CHUNK_SIZE);
+
+        assertThrows(MongoGridFSException.class, () -> ChunkCodec.decode(chunk(deflated, true), CHUNK_SIZE / 2));
+    }
+}
@@ -0,0 +1,43 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileCountCacheTest {
+
+    private final FileCountCache cache = new FileCountCache(new QuickDocCacheProperties());
+    private final ObjectId parentId = new ObjectId();
+
+    @Test
+    @DisplayName("缓存有效期内不重复统计")
+    public void cachesCount() {
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals(3, cache.get(parentId, () -> calls.incrementAndGet() + 2));
+        assertEquals(3, cache.get(parentId, () -> calls.incrementAndGet() + 2));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @DisplayName("失效后重新统计")
+    public void invalidateRecounts() {
+        cache.get(parentId, () -> 3);
+        cache.invalidate(parentId);
+        assertEquals(4, cache.get(parentId, () -> 4));
+    }
+
+    @Test
+    @DisplayName("统计期间发生失效的，结果不予缓存")
+    public void invalidationDuringCountIsNotOverwritten() {
+        assertEquals(3, cache.get(parentId, () -> {
+            cache.invalidate(parentId);
+            return 3;
+        }));
+        assertEquals(4, cache.get(parentId, () -> 4));
+    }
+}
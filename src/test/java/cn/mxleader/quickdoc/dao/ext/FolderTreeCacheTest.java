@@ -0,0 +1,98 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class FolderTreeCacheTest {
+
+    private final ObjectId diskId = new ObjectId();
+    private final SysFolderRepository sysFolderRepository = mock(SysFolderRepository.class);
+
+    private FolderTreeCache newCache(int ttl) {
+        QuickDocCacheProperties properties = new QuickDocCacheProperties();
+        properties.setFolderTreeTtl(ttl);
+        when(sysFolderRepository.findAllByParentDiskId(diskId)).thenReturn(Collections.emptyList());
+        return new FolderTreeCache(sysFolderRepository, properties);
+    }
+
+    @Test
+    @DisplayName("版本一致时复用快照，失效后重建")
+    public void rebuildsAfterInvalidate() {
+        FolderTreeCache cache = newCache(60);
+        FolderTree tree = cache.get(diskId);
+        assertSame(tree, cache.get(diskId));
+        verify(sysFolderRepository, times(1)).findAllByParentDiskId(diskId);
+
+        cache.invalidate(diskId);
+        assertNotSame(tree, cache.get(diskId));
+        verify(sysFolderRepository, times(2)).findAllByParentDiskId(diskId);
+    }
+
+    @Test
+    @DisplayName("快照超过缓存时间后重建，其他节点的变更由此生效")
+    public void rebuildsExpiredSnapshot() {
+        FolderTreeCache cache = newCache(0);
+        cache.get(diskId);
+        cache.get(diskId);
+        verify(sysFolderRepository, times(2)).findAllByParentDiskId(diskId);
+    }
+
+    @Test
+    @DisplayName("同一磁盘并发读取时只重建一次")
+    public void concurrentMissesRebuildOnce() throws Exception {
+        FolderTreeCache cache = newCache(60);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sysFolderRepository.findAllByParentDiskId(diskId)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<FolderTree>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> cache.get(diskId)));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> cache.get(diskId)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            FolderTree tree = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<FolderTree> future : futures) {
+                assertSame(tree, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(sysFolderRepository, times(1)).findAllByParentDiskId(diskId);
+    }
+
+    @Test
+    @DisplayName("磁盘删除后移除其快照")
+    public void removeDropsDisk() {
+        FolderTreeCache cache = newCache(60);
+        cache.get(diskId);
+        assertEquals(1, cache.getStatistics().get("disks"));
+
+        cache.remove(diskId);
+        assertEquals(0, cache.getStatistics().get("disks"));
+        cache.get(diskId);
+        verify(sysFolderRepository, times(2)).findAllByParentDiskId(diskId);
+    }
+}
@@ -0,0 +1,66 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.support.MongoTestSupport;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class GridFsAssistantCrcTest extends MongoTestSupport {
+
+    private static final byte[] DATA = {1, 2, 3, 4, 5};
+
+    private GridFsAssistant assistant;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        assistant = newAssistant();
+    }
+
+    private GridFSFile file(ObjectId id) {
+        return assistant.findOne(query(where("_id").is(id)));
+    }
+
+    private static long crc() {
+        CRC32 crc = new CRC32();
+        crc.update(DATA, 0, DATA.length);
+        return crc.getValue();
+    }
+
+    private void forgetCrc32() {
+        mongoTemplate.getCollection("fs.files").updateMany(new Document(),
+                new Document("$unset", new Document(GridFsAssistant.CRC32_FIELD, "")));
+    }
+
+    @Test
+    @DisplayName("存储时记录CRC32")
+    public void recordsCrcOnStore() {
+        ObjectId id = assistant.store(new ByteArrayInputStream(DATA), "a.bin");
+        assertEquals(Long.valueOf(crc()), GridFsAssistant.getRecordedCrc32(file(id)));
+    }
+
+    @Test
+    @DisplayName("补算未记录的CRC32，回收站中的文件除外")
+    public void backfillsMissingCrc() throws IOException {
+        ObjectId live = assistant.store(new ByteArrayInputStream(DATA), "a.bin");
+        ObjectId trashed = assistant.store(new ByteArrayInputStream(new byte[]{9}), "b.bin");
+        assistant.trash(trashed);
+        forgetCrc32();
+        assertNull(GridFsAssistant.getRecordedCrc32(file(live)));
+
+        assertEquals(1, assistant.backfillCrc32(10));
+        assertEquals(Long.valueOf(crc()), GridFsAssistant.getRecordedCrc32(file(live)));
+        assertNull(GridFsAssistant.getRecordedCrc32(file(trashed)));
+        assertEquals(0, assistant.backfillCrc32(10));
+    }
+}
@@ -0,0 +1,146 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.support.MongoTestSupport;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.apache.commons.io.IOUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class GridFsAssistantDedupTest extends MongoTestSupport {
+
+    private GridFsAssistant assistant;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        assistant = newAssistant();
+    }
+
+    private static InputStream content(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    private GridFSFile file(ObjectId id) {
+        return assistant.findOne(query(where("_id").is(id)));
+    }
+
+    @Test
+    @DisplayName("相同内容只写入一次分块，引用计数递增")
+    public void duplicateSharesChunks() throws IOException {
+        int length = 3 * GridFsAssistant.DEFAULT_CHUNK_SIZE + 17;
+        ObjectId first = assistant.store(content(length, 1), "a.bin");
+        long chunks = countChunks();
+        ObjectId second = assistant.store(content(length, 1), "b.bin");
+
+        assertEquals(4, chunks);
+        assertEquals(chunks, countChunks());
+        GridFSFile firstFile = file(first);
+        GridFSFile secondFile = file(second);
+        String hash = GridFsAssistant.getContentHash(firstFile);
+        assertNotNull(hash);
+        assertEquals(hash, GridFsAssistant.getContentHash(secondFile));
+        assertEquals(first, GridFsAssistant.getContentId(secondFile).asObjectId().getValue());
+        assertEquals(2, findContent(hash).getInteger("references").intValue());
+        assertEquals(firstFile.getMD5(), secondFile.getMD5());
+        assertEquals(assistant.getCrc32(firstFile), assistant.getCrc32(secondFile));
+        try (InputStream in = assistant.getContentStream(secondFile)) {
+            assertTrue(Arrays.equals(IOUtils.toByteArray(content(length, 1)), IOUtils.toByteArray(in)));
+        }
+    }
+
+    @Test
+    @DisplayName("超出内存判重上限的相同内容写入后去重，只保留一组分块")
+    public void largeDuplicateSharesChunks() throws IOException {
+        int length = 6 * GridFsAssistant.DEFAULT_CHUNK_SIZE + 5;
+        ObjectId first = assistant.store(content(length, 2), "a.bin");
+        ObjectId second = assistant.store(content(length, 2), "b.bin");
+
+        assertEquals(7, countChunks());
+        GridFSFile secondFile = file(second);
+        assertEquals(length, secondFile.getLength());
+        assertEquals(first, GridFsAssistant.getContentId(secondFile).asObjectId().getValue());
+        assertEquals(2, findContent(GridFsAssistant.getContentHash(secondFile)).getInteger("references").intValue());
+        try (InputStream in = assistant.getContentStream(secondFile)) {
+            assertTrue(Arrays.equals(IOUtils.toByteArray(content(length, 2)), IOUtils.toByteArray(in)));
+        }
+    }
+
+    @Test
+    @DisplayName("不同内容分别存储")
+    public void distinctContentStoredSeparately() {
+        ObjectId first = assistant.store(content(100, 1), "a.bin");
+        ObjectId second = assistant.store(content(100, 2), "b.bin");
+
+        assertNotEquals(GridFsAssistant.getContentHash(file(first)), GridFsAssistant.getContentHash(file(second)));
+        assertEquals(second, GridFsAssistant.getContentId(file(second)).asObjectId().getValue());
+        assertEquals(2, countChunks());
+    }
+
+    @Test
+    @DisplayName("最后一个引用删除时才删除分块及内容文档")
+    public void releaseOnLastReference() {
+        ObjectId first = assistant.store(content(100, 1), "a.bin");
+        ObjectId second = assistant.store(content(100, 1), "b.bin");
+        String hash = GridFsAssistant.getContentHash(file(first));
+
+        assistant.delete(query(where("_id").is(first)));
+        assertEquals(1, countChunks());
+        assertEquals(1, findContent(hash).getInteger("references").intValue());
+        assertNotNull(file(second));
+
+        assistant.delete(query(where("_id").is(second)));
+        assertEquals(0, countChunks());
+        assertNull(findContent(hash));
+    }
+
+    @Test
+    @DisplayName("内容释放后重新上传相同内容时重新写入")
+    public void storeAfterRelease() throws IOException {
+        ObjectId first = assistant.store(content(100, 1), "a.bin");
+        assistant.delete(query(where("_id").is(first)));
+        ObjectId second = assistant.store(content(100, 1), "b.bin");
+
+        GridFSFile file = file(second);
+        assertEquals(second, GridFsAssistant.getContentId(file).asObjectId().getValue());
+        assertEquals(1, countChunks());
+        try (InputStream in = assistant.getContentStream(file)) {
+            assertEquals(100, IOUtils.toByteArray(in).length);
+        }
+    }
+
+    @Test
+    @DisplayName("空文件")
+    public void emptyContent() {
+        ObjectId id = assistant.store(new ByteArrayInputStream(new byte[0]), "empty.txt");
+        GridFSFile file = file(id);
+        assertEquals(0, file.getLength());
+        assertNotNull(GridFsAssistant.getContentHash(file));
+        assertEquals(0, countChunks());
+    }
+
+    @Test
+    @DisplayName("文件元数据不包含扩展字段的保留键")
+    public void metadataDoesNotPersistStorageKey() {
+        ObjectId id = assistant.store(new ByteArrayInputStream("x".getBytes(StandardCharsets.UTF_8)),
+                "x.txt", "text/plain");
+        Document raw = mongoTemplate.getCollection("fs.files").find(new Document("_id", id)).first();
+        assertFalse(raw.get("metadata", Document.class).containsKey(GridFsFileCodec.STORAGE_KEY));
+        assertEquals("text/plain", file(id).getMetadata().getString("_contentType"));
+    }
+}
@@ -0,0 +1,180 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocBlobProperties;
+import cn.mxleader.quickdoc.config.QuickDocCompressionProperties;
+import cn.mxleader.quickdoc.dao.blob.CompressionPolicy;
+import cn.mxleader.quickdoc.dao.blob.LocalBlobStore;
+import cn.mxleader.quickdoc.support.MongoTestSupport;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.apache.commons.io.IOUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class GridFsAssistantMigrationTest extends MongoTestSupport {
+
+    private static final Date FUTURE = new Date(Long.MAX_VALUE);
+
+    private Path localDirectory;
+    private GridFsAssistant assistant;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        localDirectory = Files.createTempDirectory("quickdoc-blobs-test");
+        QuickDocBlobProperties properties = new QuickDocBlobProperties();
+        properties.setLocalDirectory(localDirectory.toString());
+        assistant = newAssistant(new LocalBlobStore(properties));
+    }
+
+    @AfterEach
+    public void deleteLocalDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(localDirectory);
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        return data;
+    }
+
+    private GridFSFile file(ObjectId id) {
+        return assistant.findOne(query(where("_id").is(id)));
+    }
+
+    private byte[] read(GridFSFile file) throws IOException {
+        try (InputStream in = assistant.getContentStream(file)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private long countLocalFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(localDirectory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    @DisplayName("迁移后文件指向目标后端，源内容保留至保留期结束")
+    public void migrateRetainsSourceUntilSweep() throws IOException {
+        byte[] data = data(2 * GridFsAssistant.DEFAULT_CHUNK_SIZE + 5);
+        ObjectId id = assistant.store(new ByteArrayInputStream(data), "a.bin");
+        long chunks = countChunks();
+
+        assertTrue(assistant.migrate(file(id), LocalBlobStore.NAME));
+        GridFSFile migrated = file(id);
+        assertEquals(LocalBlobStore.NAME, GridFsAssistant.getBlobStoreName(migrated));
+        assertNotEquals(id, GridFsAssistant.getContentId(migrated).asObjectId().getValue());
+        assertArrayEquals(data, read(migrated));
+        assertEquals(chunks, countChunks());
+
+        assertEquals(0, assistant.deleteRetiredBlobs(new Date(0), 10));
+        assertEquals(chunks, countChunks());
+
+        assertEquals(1, assistant.deleteRetiredBlobs(FUTURE, 10));
+        assertEquals(0, countChunks());
+        assertArrayEquals(data, read(file(id)));
+    }
+
+    @Test
+    @DisplayName("以过期的文件对象重复迁移时不切换且删除本次复制的内容")
+    public void staleMigrateIsRejected() throws IOException {
+        ObjectId id = assistant.store(new ByteArrayInputStream(data(100)), "a.bin");
+        GridFSFile stale = file(id);
+
+        assertTrue(assistant.migrate(stale, LocalBlobStore.NAME));
+        long localFiles = countLocalFiles();
+        assertFalse(assistant.migrate(stale, LocalBlobStore.NAME));
+
+        assertEquals(localFiles, countLocalFiles());
+        assertArrayEquals(data(100), read(file(id)));
+    }
+
+    @Test
+    @DisplayName("共享同一内容的文件一并迁移")
+    public void migrateSharedContent() throws IOException {
+        ObjectId first = assistant.store(new ByteArrayInputStream(data(100)), "a.bin");
+        ObjectId second = assistant.store(new ByteArrayInputStream(data(100)), "b.bin");
+
+        assertTrue(assistant.migrate(file(first), LocalBlobStore.NAME));
+
+        GridFSFile secondFile = file(second);
+        assertEquals(LocalBlobStore.NAME, GridFsAssistant.getBlobStoreName(secondFile));
+        assertEquals(GridFsAssistant.getContentId(file(first)), GridFsAssistant.getContentId(secondFile));
+        Document content = findContent(GridFsAssistant.getContentHash(secondFile));
+        assertEquals(LocalBlobStore.NAME, content.getString(GridFsAssistant.BLOB_STORE_FIELD));
+        assertEquals(2, content.getInteger("references").intValue());
+        assertArrayEquals(data(100), read(secondFile));
+    }
+
+    @Test
+    @DisplayName("删除源内容前将仍指向旧内容的文件改为指向新内容")
+    public void sweepRepointsStragglers() throws IOException {
+        ObjectId first = assistant.store(new ByteArrayInputStream(data(100)), "a.bin");
+        ObjectId second = assistant.store(new ByteArrayInputStream(data(100)), "b.bin");
+        assertTrue(assistant.migrate(file(first), LocalBlobStore.NAME));
+        // 模拟迁移期间以旧内容登记的文件
+        mongoTemplate.getCollection("fs.files").updateOne(new Document("_id", second),
+                new Document("$set", new Document(GridFsAssistant.BLOB_STORE_FIELD, "gridfs")
+                        .append(GridFsAssistant.CONTENT_ID_FIELD, first)));
+
+        assertEquals(1, assistant.deleteRetiredBlobs(FUTURE, 10));
+
+        GridFSFile secondFile = file(second);
+        assertEquals(LocalBlobStore.NAME, GridFsAssistant.getBlobStoreName(secondFile));
+        assertArrayEquals(data(100), read(secondFile));
+        assertEquals(0, countChunks());
+    }
+
+    @Test
+    @DisplayName("源内容仍被引用时推迟删除")
+    public void sweepDefersReferencedSource() {
+        ObjectId id = assistant.store(new ByteArrayInputStream(data(100)), "a.bin");
+        mongoTemplate.getCollection("fs.retired").insertOne(new Document(GridFsAssistant.BLOB_STORE_FIELD, "gridfs")
+                .append(GridFsAssistant.CONTENT_ID_FIELD, id)
+                .append(GridFsAssistant.RETIRED_AT_FIELD, new Date(0)));
+
+        assertEquals(0, assistant.deleteRetiredBlobs(FUTURE, 10));
+        assertEquals(1, countChunks());
+    }
+
+    @Test
+    @DisplayName("断点续传按原样登记的内容按压缩策略就地压缩，去重统计按实际存储字节计算")
+    public void applyCompressionToStoredChunks() throws IOException {
+        QuickDocCompressionProperties properties = new QuickDocCompressionProperties();
+        properties.setEnabled(true);
+        GridFsAssistant compressing = newAssistant(new CompressionPolicy(properties));
+        int chunkSize = GridFsAssistant.DEFAULT_CHUNK_SIZE;
+        byte[] data = new byte[2 * chunkSize + 5];
+        ObjectId id = ObjectId.get();
+        compressing.writeChunks(id, chunkSize, 0, new ByteArrayInputStream(data), data.length);
+        compressing.storeChunks(id, "a.txt", data.length, chunkSize, null);
+        assertNull(GridFsAssistant.getCompression(file(id)));
+
+        assertTrue(compressing.applyCompression(file(id)));
+        GridFSFile compressed = file(id);
+        assertEquals(ChunkCodec.DEFLATE, GridFsAssistant.getCompression(compressed));
+        long storedLength = GridFsAssistant.getStoredLength(compressed);
+        assertTrue(storedLength < data.length);
+        assertFalse(compressing.applyCompression(compressed));
+        assertArrayEquals(data, read(compressed));
+        assertEquals(storedLength, compressing.getDeduplicationReport().get("storedBytes"));
+    }
+}
@@ -0,0 +1,78 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.support.MongoTestSupport;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class GridFsAssistantTrashTest extends MongoTestSupport {
+
+    private GridFsAssistant assistant;
+    private ObjectId fileId;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        assistant = newAssistant();
+        fileId = assistant.store(new ByteArrayInputStream(new byte[]{1, 2, 3}), "a.bin");
+        assertNotNull(assistant.trash(fileId));
+    }
+
+    private GridFSFile file() {
+        return assistant.findOne(query(where("_id").is(fileId)));
+    }
+
+    @Test
+    @DisplayName("按ID读取回收站中的文件时视为不存在")
+    public void readsSkipTrashedFile() {
+        assertNull(assistant.getContentStream(fileId, 0, 2));
+        assertNull(assistant.getFSDownloadStream(fileId));
+        assertNull(assistant.getResource(fileId));
+    }
+
+    @Test
+    @DisplayName("按文件名或通配符读取资源时跳过回收站中的文件")
+    public void resourcesSkipTrashedFile() {
+        assertNull(assistant.getResource("a.bin"));
+        assertEquals(0, assistant.getResources("*.bin").length);
+
+        assertNotNull(assistant.restore(fileId));
+        assertNotNull(assistant.getResource("a.bin"));
+        assertEquals(1, assistant.getResources("*.bin").length);
+    }
+
+    @Test
+    @DisplayName("回收站中的文件不可重命名或增加容器")
+    public void mutationsSkipTrashedFile() {
+        assistant.rename(fileId, "b.bin");
+        ObjectId folderId = new ObjectId();
+        assertNull(assistant.addParent(fileId, new ParentLink(folderId, AuthTarget.FOLDER, new ObjectId())));
+
+        GridFSFile file = file();
+        assertEquals("a.bin", file.getFilename());
+        assertFalse(file.getMetadata() != null && file.getMetadata().containsKey("parents"));
+    }
+
+    @Test
+    @DisplayName("还原后恢复读取及修改")
+    public void restoreReenablesAccess() throws IOException {
+        assertNotNull(assistant.restore(fileId));
+        assistant.rename(fileId, "b.bin");
+        assertEquals("b.bin", file().getFilename());
+        try (InputStream in = assistant.getContentStream(fileId, 0, 2)) {
+            assertNotNull(in);
+            assertEquals(1, in.read());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GridFsContentCacheTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("quickdoc-cache-test");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    private GridFsContentCache newCache() throws IOException {
+        QuickDocCacheProperties properties = new QuickDocCacheProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        return new GridFsContentCache(properties);
+    }
+
+    @Test
+    @DisplayName("启动时不删除配置目录中的其他文件")
+    public void keepsForeignFiles() throws IOException {
+        Path foreign = Files.createFile(directory.resolve("foreign.txt"));
+        newCache();
+
+        assertTrue(Files.exists(foreign));
+        assertTrue(Files.isDirectory(directory.resolve("gridfs-content")));
+    }
+
+    @Test
+    @DisplayName("启动时只清除按缓存命名规则生成的文件")
+    public void removesOnlyCacheFiles() throws IOException {
+        Path subdirectory = Files.createDirectories(directory.resolve("gridfs-content"));
+        String id = ObjectId.get().toHexString();
+        Path cached = Files.createFile(subdirectory.resolve(id + "-1500000000000"));
+        Path temp = Files.createFile(subdirectory.resolve(id + "123456789.tmp"));
+        Path other = Files.createFile(subdirectory.resolve("notes.txt"));
+        newCache();
+
+        assertFalse(Files.exists(cached));
+        assertFalse(Files.exists(temp));
+        assertTrue(Files.exists(other));
+    }
+}
@@ -0,0 +1,109 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GridFsFileCodecTest {
+
+    private final GridFsFileCodec codec = new GridFsFileCodec(MongoClient.getDefaultCodecRegistry());
+
+    private GridFSFile decode(Document document) {
+        BsonDocument bson = new BsonDocument();
+        new DocumentCodec().encode(new BsonDocumentWriter(bson), document, EncoderContext.builder().build());
+        return codec.decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+    }
+
+    private Document encode(GridFSFile file) {
+        BsonDocument bson = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(bson), file, EncoderContext.builder().build());
+        return new DocumentCodec().decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+    }
+
+    private static Document filesDocument(ObjectId id) {
+        return new Document("_id", id)
+                .append("filename", "a.txt")
+                .append("length", 10L)
+                .append("chunkSize", 261120)
+                .append("uploadDate", new Date(1000))
+                .append("md5", "d41d8cd98f00b204e9800998ecf8427e")
+                .append("metadata", new Document("_contentType", "text/plain"));
+    }
+
+    @Test
+    @DisplayName("扩展字段解码至 metadata._storage")
+    public void decodesStorageFields() {
+        ObjectId id = ObjectId.get();
+        ObjectId contentId = ObjectId.get();
+        GridFSFile file = decode(filesDocument(id)
+                .append(GridFsAssistant.CONTENT_HASH_FIELD, "abc")
+                .append(GridFsAssistant.CONTENT_ID_FIELD, contentId)
+                .append(GridFsAssistant.BLOB_STORE_FIELD, "local")
+                .append(GridFsAssistant.STORED_LENGTH_FIELD, 7L)
+                .append(GridFsAssistant.COMPRESSION_FIELD, "deflate"));
+
+        assertEquals(id, file.getObjectId());
+        assertEquals("a.txt", file.getFilename());
+        assertEquals(10L, file.getLength());
+        assertEquals(261120, file.getChunkSize());
+        assertEquals("text/plain", file.getMetadata().getString("_contentType"));
+        assertEquals("abc", GridFsAssistant.getContentHash(file));
+        assertEquals(contentId, GridFsAssistant.getContentId(file).asObjectId().getValue());
+        assertEquals("local", GridFsAssistant.getBlobStoreName(file));
+        assertEquals(7L, GridFsAssistant.getStoredLength(file));
+        assertEquals("deflate", GridFsAssistant.getCompression(file));
+        assertEquals("\"abc\"", GridFsAssistant.getETag(file));
+    }
+
+    @Test
+    @DisplayName("无扩展字段时使用缺省值")
+    public void defaultsWithoutStorageFields() {
+        ObjectId id = ObjectId.get();
+        GridFSFile file = decode(filesDocument(id).append("length", 12));
+
+        assertNull(GridFsFileCodec.getStorage(file));
+        assertEquals(12L, file.getLength());
+        assertNull(GridFsAssistant.getContentHash(file));
+        assertEquals(id, GridFsAssistant.getContentId(file).asObjectId().getValue());
+        assertEquals("gridfs", GridFsAssistant.getBlobStoreName(file));
+        assertEquals(12L, GridFsAssistant.getStoredLength(file));
+        assertNull(GridFsAssistant.getCompression(file));
+        assertEquals("\"d41d8cd98f00b204e9800998ecf8427e\"", GridFsAssistant.getETag(file));
+    }
+
+    @Test
+    @DisplayName("无 metadata 时扩展字段仍可读取")
+    public void decodesWithoutMetadata() {
+        Document document = filesDocument(ObjectId.get()).append(GridFsAssistant.BLOB_STORE_FIELD, "local");
+        document.remove("metadata");
+        GridFSFile file = decode(document);
+
+        assertEquals("local", GridFsAssistant.getBlobStoreName(file));
+        assertNull(file.getMetadata().getString("_contentType"));
+    }
+
+    @Test
+    @DisplayName("编码时扩展字段还原至顶层")
+    public void encodeRestoresTopLevelFields() {
+        Document original = filesDocument(ObjectId.get())
+                .append(GridFsAssistant.CONTENT_HASH_FIELD, "abc")
+                .append(GridFsAssistant.TRASHED_AT_FIELD, new Date(2000));
+        Document encoded = encode(decode(original));
+
+        assertEquals(original, encoded);
+        assertFalse(encoded.get("metadata", Document.class).containsKey(GridFsFileCodec.STORAGE_KEY));
+    }
+}
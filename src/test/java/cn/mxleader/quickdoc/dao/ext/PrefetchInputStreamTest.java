@@ -0,0 +1,103 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefetchInputStreamTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static byte[] content(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        return data;
+    }
+
+    @Test
+    @DisplayName("预读后内容与源输入流一致")
+    public void readsWholeContent() throws IOException {
+        byte[] data = content(5 * BLOCK_SIZE + 3);
+        try (InputStream in = new PrefetchInputStream(new ByteArrayInputStream(data), BLOCK_SIZE, 2, 1000,
+                executor)) {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    @DisplayName("首次读取时才提交预读任务，未读取即关闭时由读取方关闭源输入流")
+    public void startsOnFirstRead() throws IOException {
+        AtomicInteger submitted = new AtomicInteger();
+        TrackingInputStream source = new TrackingInputStream(content(4 * BLOCK_SIZE));
+        InputStream in = new PrefetchInputStream(source, BLOCK_SIZE, 2, 1000, task -> {
+            submitted.incrementAndGet();
+            executor.execute(task);
+        });
+        assertEquals(0, submitted.get());
+        in.close();
+        assertEquals(0, submitted.get());
+        assertTrue(source.closed.get());
+    }
+
+    @Test
+    @DisplayName("线程池拒绝时直接读取源输入流")
+    public void readsDirectlyWhenRejected() throws IOException {
+        byte[] data = content(3 * BLOCK_SIZE);
+        TrackingInputStream source = new TrackingInputStream(data);
+        InputStream in = new PrefetchInputStream(source, BLOCK_SIZE, 2, 1000, task -> {
+            throw new RejectedExecutionException();
+        });
+        assertArrayEquals(data, IOUtils.toByteArray(in));
+        in.close();
+        assertTrue(source.closed.get());
+    }
+
+    @Test
+    @DisplayName("读取方超时未读取时放弃预读并关闭源输入流，继续读取时抛出异常")
+    public void producerGivesUpAfterTimeout() throws Exception {
+        TrackingInputStream source = new TrackingInputStream(content(20 * BLOCK_SIZE));
+        InputStream in = new PrefetchInputStream(source, BLOCK_SIZE, 1, 200, executor);
+        assertEquals(0, in.read());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!source.closed.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(source.closed.get());
+        assertThrows(IOException.class, () -> IOUtils.toByteArray(in));
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        TrackingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cn.mxleader.quickdoc.dao.ext;
+
+import cn.mxleader.quickdoc.web.domain.WebFile;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebFileCodecTest {
+
+    private static WebFile decode(Document document) {
+        BsonDocument bson = new BsonDocument();
+        new DocumentCodec().encode(new BsonDocumentWriter(bson), document, EncoderContext.builder().build());
+        return WebFileCodec.INSTANCE.decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+    }
+
+    @Test
+    @DisplayName("只读取列表所需字段，跳过其余字段")
+    public void decodeSkipsOtherFields() {
+        ObjectId id = ObjectId.get();
+        WebFile file = decode(new Document("_id", id)
+                .append("filename", "a.txt")
+                .append("length", 12)
+                .append("chunkSize", 261120)
+                .append("uploadDate", new Date(1000))
+                .append("metadata", new Document("parents", Arrays.asList(new Document("_id", ObjectId.get())))
+                        .append("_contentType", "text/plain")));
+
+        assertEquals(id.toHexString(), file.getId());
+        assertEquals("a.txt", file.getFilename());
+        assertEquals(12L, file.getLength());
+        assertEquals(new Date(1000), file.getUploadDate());
+        assertEquals("text/plain", file.getType());
+    }
+
+    @Test
+    @DisplayName("未记录内容类型时为 application/octet-stream")
+    public void decodeDefaultContentType() {
+        WebFile file = decode(new Document("_id", ObjectId.get())
+                .append("filename", "a")
+                .append("length", 1L)
+                .append("uploadDate", new Date(1000)));
+
+        assertEquals("application/octet-stream", file.getType());
+    }
+
+    @Test
+    @DisplayName("编码与解码互逆")
+    public void roundTrip() {
+        WebFile file = new WebFile(ObjectId.get().toHexString(), "a.pdf", 42L, new Date(5000),
+                "application/pdf", null, false, false);
+        BsonDocument bson = new BsonDocument();
+        WebFileCodec.INSTANCE.encode(new BsonDocumentWriter(bson), file, EncoderContext.builder().build());
+        WebFile decoded = WebFileCodec.INSTANCE.decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+
+        assertEquals(file.getId(), decoded.getId());
+        assertEquals(file.getFilename(), decoded.getFilename());
+        assertEquals(file.getLength(), decoded.getLength());
+        assertEquals(file.getUploadDate(), decoded.getUploadDate());
+        assertEquals(file.getType(), decoded.getType());
+        assertEquals(WebFileCodec.FIELDS.size() + 1, bson.size());
+    }
+}
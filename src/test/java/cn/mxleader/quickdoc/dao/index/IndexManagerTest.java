@@ -0,0 +1,94 @@
+package cn.mxleader.quickdoc.dao.index;
+
+import cn.mxleader.quickdoc.config.QuickDocIndexProperties;
+import cn.mxleader.quickdoc.support.MongoTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.repository.Repository;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexManagerTest extends MongoTestSupport {
+
+    private IndexCatalogue catalogue;
+    private IndexManager indexManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        catalogue = new IndexCatalogue(mongoTemplate, newAssistant());
+        indexManager = new IndexManager(dbFactory, catalogue, new QuickDocIndexProperties());
+    }
+
+    @Test
+    @DisplayName("创建目录中的索引后，所有样例查询均命中索引")
+    public void probesUseIndexes() {
+        indexManager.provision();
+
+        Map<String, Map<String, Object>> plans = indexManager.explainAll();
+
+        assertEquals(catalogue.getProbes().size(), plans.size());
+        List<String> violations = new ArrayList<>();
+        plans.forEach((name, plan) -> {
+            if (Boolean.TRUE.equals(plan.get("collectionScan"))) {
+                violations.add(name + " -> " + plan.get("plan"));
+            }
+        });
+        assertTrue(violations.isEmpty(), "未命中索引的样例查询：" + violations);
+    }
+
+    @Test
+    @DisplayName("重复创建索引不报错")
+    public void provisionIsIdempotent() {
+        indexManager.provision();
+        indexManager.provision();
+
+        assertFalse(indexManager.getIndexUsage().isEmpty());
+    }
+
+    @Test
+    @DisplayName("每个仓库查询方法均已登记样例查询")
+    public void everyRepositoryMethodHasProbe() throws ClassNotFoundException {
+        Set<String> probes = catalogue.getProbes().stream()
+                .map(IndexCatalogue.QueryProbe::getName)
+                .collect(Collectors.toSet());
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                return beanDefinition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(Repository.class));
+
+        List<String> missing = new ArrayList<>();
+        int repositories = 0;
+        for (BeanDefinition candidate : scanner.findCandidateComponents("cn.mxleader.quickdoc.dao")) {
+            Class<?> repository = Class.forName(candidate.getBeanClassName());
+            repositories++;
+            for (Method method : repository.getDeclaredMethods()) {
+                if (method.isDefault() || method.isSynthetic() || Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                String name = repository.getSimpleName() + "." + method.getName();
+                if (!probes.contains(name)) {
+                    missing.add(name);
+                }
+            }
+        }
+        assertTrue(repositories > 0);
+        assertTrue(missing.isEmpty(), "未登记样例查询的仓库方法：" + missing);
+    }
+}
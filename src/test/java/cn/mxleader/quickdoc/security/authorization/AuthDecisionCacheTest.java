@@ -0,0 +1,112 @@
+package cn.mxleader.quickdoc.security.authorization;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.entities.AuthAction;
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthDecisionCacheTest {
+
+    private static final AuthAction[] WRITE = {AuthAction.WRITE};
+
+    private final ObjectId folderId = new ObjectId();
+    private final ObjectId otherId = new ObjectId();
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    private static AuthDecisionCache newCache(int maxEntries, int ttl) {
+        QuickDocCacheProperties properties = new QuickDocCacheProperties();
+        properties.setAuthMaxEntries(maxEntries);
+        properties.setAuthTtl(ttl);
+        return new AuthDecisionCache(properties);
+    }
+
+    private boolean check(AuthDecisionCache cache, String username, ObjectId id) {
+        return cache.isAuthorized(username, AuthTarget.FOLDER, id, WRITE, () -> {
+            evaluations.incrementAndGet();
+            return true;
+        });
+    }
+
+    @Test
+    @DisplayName("缓存时间内不重复鉴权")
+    public void cachesDecision() {
+        AuthDecisionCache cache = newCache(100, 60);
+        assertTrue(check(cache, "alice", folderId));
+        assertTrue(check(cache, "Alice", folderId));
+        assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    @DisplayName("对象失效只影响该对象的鉴权结果")
+    public void invalidateObject() {
+        AuthDecisionCache cache = newCache(100, 60);
+        check(cache, "alice", folderId);
+        check(cache, "alice", otherId);
+        cache.invalidate(folderId);
+
+        check(cache, "alice", folderId);
+        check(cache, "alice", otherId);
+        assertEquals(3, evaluations.get());
+    }
+
+    @Test
+    @DisplayName("用户失效不区分用户名大小写，只影响该用户")
+    public void invalidateUser() {
+        AuthDecisionCache cache = newCache(100, 60);
+        check(cache, "alice", folderId);
+        check(cache, "bob", folderId);
+        cache.invalidateUser("ALICE");
+
+        check(cache, "alice", folderId);
+        check(cache, "bob", folderId);
+        assertEquals(3, evaluations.get());
+    }
+
+    @Test
+    @DisplayName("鉴权期间发生失效的，结果不予缓存")
+    public void invalidationDuringEvaluation() {
+        AuthDecisionCache cache = newCache(100, 60);
+        assertFalse(cache.isAuthorized("alice", AuthTarget.FOLDER, folderId, WRITE, () -> {
+            cache.invalidate(folderId);
+            return false;
+        }));
+        assertTrue(check(cache, "alice", folderId));
+        assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    @DisplayName("清空后全部重新鉴权")
+    public void flush() {
+        AuthDecisionCache cache = newCache(100, 60);
+        check(cache, "alice", folderId);
+        cache.flush();
+        check(cache, "alice", folderId);
+        assertEquals(2, evaluations.get());
+        assertEquals(1, cache.getStatistics().get("entries"));
+    }
+
+    @Test
+    @DisplayName("容量已满时不超出上限")
+    public void boundedByMaxEntries() {
+        AuthDecisionCache cache = newCache(2, 60);
+        for (int i = 0; i < 5; i++) {
+            check(cache, "user" + i, folderId);
+            assertTrue((Integer) cache.getStatistics().get("entries") <= 2);
+        }
+    }
+
+    @Test
+    @DisplayName("缓存时间为 0 时不缓存")
+    public void disabledWithoutTtl() {
+        AuthDecisionCache cache = newCache(100, 0);
+        check(cache, "alice", folderId);
+        check(cache, "alice", folderId);
+        assertEquals(2, evaluations.get());
+    }
+}
@@ -0,0 +1,74 @@
+package cn.mxleader.quickdoc.security.authorization;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.dao.SysDiskRepository;
+import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import cn.mxleader.quickdoc.dao.SysUserRepository;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.entities.*;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AuthorizationCheckerTest {
+
+    private final ObjectId diskId = new ObjectId();
+    private final SysFolder folder = new SysFolder(new ObjectId(), "shared",
+            new ParentLink(diskId, AuthTarget.DISK, diskId),
+            Collections.singleton(new Authorization("dev", AuthType.GROUP, AuthAction.WRITE)));
+
+    private SysUserRepository sysUserRepository;
+    private AuthDecisionCache authDecisionCache;
+    private AuthorizationChecker checker;
+
+    private static SysUser user(Set<String> groups) {
+        return new SysUser(new ObjectId(), "alice", "Alice", "", "", new ObjectId(), false, "",
+                Collections.singleton(SysUser.Authority.USER), Collections.emptySet(), groups, null);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        SysFolderRepository sysFolderRepository = mock(SysFolderRepository.class);
+        when(sysFolderRepository.findById(folder.getId())).thenReturn(Optional.of(folder));
+        sysUserRepository = mock(SysUserRepository.class);
+        authDecisionCache = new AuthDecisionCache(new QuickDocCacheProperties());
+        checker = new AuthorizationChecker(mock(GridFsAssistant.class), mock(SysDiskRepository.class),
+                sysFolderRepository, sysUserRepository, mock(MongoConverter.class), authDecisionCache);
+    }
+
+    @Test
+    @DisplayName("按数据库中的最新用户组鉴权，会话中的用户组已过时也不影响")
+    public void usesStoredGroups() {
+        SysUser session = user(Collections.singleton("dev"));
+        when(sysUserRepository.findByUsername("alice")).thenReturn(session);
+        assertTrue(checker.isAuthorized(session, AuthTarget.FOLDER, folder.getId(), AuthAction.WRITE));
+
+        // 用户被移出 dev 组，会话中的用户信息不变
+        when(sysUserRepository.findByUsername("alice")).thenReturn(user(Collections.emptySet()));
+        authDecisionCache.invalidateUser("alice");
+        assertFalse(checker.isAuthorized(session, AuthTarget.FOLDER, folder.getId(), AuthAction.WRITE));
+    }
+
+    @Test
+    @DisplayName("用户未保存时使用会话中的用户组")
+    public void fallsBackToSessionUser() {
+        assertTrue(checker.isAuthorized(user(Collections.singleton("dev")), AuthTarget.FOLDER, folder.getId(),
+                AuthAction.WRITE));
+    }
+
+    @Test
+    @DisplayName("对象不存在时鉴权失败")
+    public void missingObjectIsDenied() {
+        assertFalse(checker.isAuthorized(user(Collections.singleton("dev")), AuthTarget.FOLDER, new ObjectId(),
+                AuthAction.WRITE));
+    }
+}
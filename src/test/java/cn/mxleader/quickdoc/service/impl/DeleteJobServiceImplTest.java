@@ -0,0 +1,111 @@
+package cn.mxleader.quickdoc.service.impl;
+
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.entities.SysDeleteJob;
+import cn.mxleader.quickdoc.entities.SysFolder;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static cn.mxleader.quickdoc.entities.SysDeleteJob.Status.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 删除任务的租约领取及正在删除目录的写入拦截
+ */
+public class DeleteJobServiceImplTest extends ServiceTestSupport {
+
+    private DeleteJobServiceImpl deleteJobService;
+    private ObjectId diskId;
+    private SysFolder deleted;
+    private SysFolder child;
+    private SysFolder sibling;
+
+    @BeforeEach
+    public void createFolders() {
+        deleteJobService = newDeleteJobService();
+        diskId = new ObjectId();
+        ParentLink root = new ParentLink(diskId, AuthTarget.DISK, diskId);
+        // 被删除文件夹的文档已删除，只保留下级文件夹
+        deleted = new SysFolder(new ObjectId(), "deleted", root, Collections.emptySet());
+        child = new SysFolder(new ObjectId(), "child",
+                new ParentLink(deleted.getId(), AuthTarget.FOLDER, diskId), Collections.emptySet());
+        child.setAncestors(Collections.singletonList(deleted.getId()));
+        sibling = new SysFolder(new ObjectId(), "sibling", root, Collections.emptySet());
+        mongoTemplate.insert(child);
+        mongoTemplate.insert(sibling);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        deleteJobService.destroy();
+    }
+
+    private SysDeleteJob insertJob(SysDeleteJob.Status status, String owner, long leaseMillis) {
+        Date now = new Date();
+        SysDeleteJob job = new SysDeleteJob(new ObjectId(), AuthTarget.FOLDER, deleted.getId(), diskId, status,
+                0, 0, 0, null, now, now);
+        job.setOwner(owner);
+        job.setLeaseExpiresAt(new Date(now.getTime() + leaseMillis));
+        return sysDeleteJobRepository.insert(job);
+    }
+
+    private SysDeleteJob awaitStatus(ObjectId jobId, SysDeleteJob.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        SysDeleteJob job;
+        while (!(job = sysDeleteJobRepository.findById(jobId).get()).getStatus().equals(status)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return job;
+    }
+
+    @Test
+    @DisplayName("其他节点持有租约的任务不被领取")
+    public void skipsJobLeasedByAnotherNode() throws InterruptedException {
+        SysDeleteJob job = insertJob(RUNNING, "other-node", 3600000L);
+        deleteJobService.resumeUnfinished();
+        assertEquals(0, deleteJobService.resumeExpired());
+        Thread.sleep(500);
+
+        SysDeleteJob current = sysDeleteJobRepository.findById(job.getId()).get();
+        assertEquals(RUNNING, current.getStatus());
+        assertEquals("other-node", current.getOwner());
+        assertTrue(sysFolderRepository.findById(child.getId()).isPresent());
+    }
+
+    @Test
+    @DisplayName("租约到期的任务由本节点接管并完成，完成后释放租约")
+    public void takesOverExpiredLease() throws InterruptedException {
+        SysDeleteJob job = insertJob(RUNNING, "other-node", -1000L);
+        assertEquals(1, deleteJobService.resumeExpired());
+
+        SysDeleteJob current = awaitStatus(job.getId(), DONE);
+        assertEquals(DONE, current.getStatus());
+        assertEquals(1, current.getFoldersDeleted());
+        assertNull(current.getOwner());
+        assertNull(current.getLeaseExpiresAt());
+        assertFalse(sysFolderRepository.findById(child.getId()).isPresent());
+        assertTrue(sysFolderRepository.findById(sibling.getId()).isPresent());
+    }
+
+    @Test
+    @DisplayName("被删除文件夹及其下级拒绝写入，任务完成后不再拦截")
+    public void detectsPendingDeletion() {
+        SysDeleteJob job = insertJob(PENDING, "other-node", 3600000L);
+        assertTrue(deleteJobService.isPendingDeletion(new ParentLink(deleted.getId(), AuthTarget.FOLDER, diskId)));
+        assertTrue(deleteJobService.isPendingDeletion(new ParentLink(child.getId(), AuthTarget.FOLDER, diskId)));
+        assertFalse(deleteJobService.isPendingDeletion(new ParentLink(sibling.getId(), AuthTarget.FOLDER, diskId)));
+        assertFalse(deleteJobService.isPendingDeletion(new ParentLink(diskId, AuthTarget.DISK, diskId)));
+
+        job.setStatus(DONE);
+        sysDeleteJobRepository.save(job);
+        assertFalse(deleteJobService.isPendingDeletion(new ParentLink(child.getId(), AuthTarget.FOLDER, diskId)));
+    }
+}
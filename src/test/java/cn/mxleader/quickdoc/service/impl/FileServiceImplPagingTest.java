@@ -0,0 +1,123 @@
+package cn.mxleader.quickdoc.service.impl;
+
+import cn.mxleader.quickdoc.entities.AuthTarget;
+import cn.mxleader.quickdoc.entities.ParentLink;
+import cn.mxleader.quickdoc.entities.SysDisk;
+import cn.mxleader.quickdoc.service.DeleteJobService;
+import cn.mxleader.quickdoc.web.domain.FilePage;
+import cn.mxleader.quickdoc.web.domain.WebFile;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件列表游标分页
+ */
+public class FileServiceImplPagingTest extends ServiceTestSupport {
+
+    private static final int FILES = 11;
+
+    private FileServiceImpl fileService;
+    private ParentLink parent;
+    private List<ObjectId> fileIds;
+
+    @BeforeEach
+    public void storeFiles() {
+        fileService = newFileService(Mockito.mock(DeleteJobService.class));
+        ObjectId diskId = new ObjectId();
+        sysDiskRepository.save(new SysDisk(diskId, "测试磁盘", Collections.emptySet()));
+        parent = new ParentLink(diskId, AuthTarget.DISK, diskId);
+
+        fileIds = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            // 文件名两两重复，长度各不相同，用于验证排序字段值相同时按ID续接
+            byte[] content = new byte[i + 1];
+            content[0] = (byte) i;
+            fileIds.add(fileService.store(new ByteArrayInputStream(content), "file-" + (i / 2) + ".txt", parent));
+        }
+    }
+
+    @Test
+    @DisplayName("默认按ID分页，逐页遍历不重不漏")
+    public void pagesById() {
+        List<WebFile> files = readAll(null, 3);
+        assertEquals(FILES, files.size());
+        for (int i = 0; i < FILES; i++) {
+            assertEquals(fileIds.get(i).toHexString(), files.get(i).getId());
+        }
+    }
+
+    @Test
+    @DisplayName("按文件名升序分页，文件名相同时按ID续接")
+    public void pagesByFilename() {
+        List<WebFile> files = readAll("filename", 3);
+        assertEquals(FILES, files.size());
+        assertDistinct(files);
+        List<WebFile> expected = new ArrayList<>(files);
+        expected.sort(Comparator.comparing(WebFile::getFilename).thenComparing(WebFile::getId));
+        assertEquals(expected, files);
+    }
+
+    @Test
+    @DisplayName("按长度降序分页")
+    public void pagesByLengthDescending() {
+        List<WebFile> files = readAll("-length", 4);
+        assertEquals(FILES, files.size());
+        for (int i = 0; i < FILES; i++) {
+            assertEquals(FILES - i, files.get(i).getLength());
+        }
+    }
+
+    @Test
+    @DisplayName("游标与排序方式不一致或无法解析时拒绝请求")
+    public void rejectsInvalidCursor() {
+        String cursor = fileService.list(parent, "filename", null, 3).getCursor();
+        assertNotNull(cursor);
+        assertThrows(IllegalArgumentException.class, () -> fileService.list(parent, "-length", cursor, 3));
+        assertThrows(IllegalArgumentException.class, () -> fileService.list(parent, null, "!!!", 3));
+    }
+
+    @Test
+    @DisplayName("回收站文件不出现在列表中，也不计入总数")
+    public void excludesTrashedFiles() {
+        FilePage first = fileService.list(parent, null, null, FILES);
+        assertEquals(FILES, first.getCount());
+
+        fileService.delete(fileIds.get(0));
+        FilePage page = fileService.list(parent, null, null, FILES);
+        assertEquals(FILES - 1, page.getCount());
+        assertEquals(FILES - 1, page.getFiles().size());
+        assertNull(page.getCursor());
+        assertTrue(page.getFiles().stream().noneMatch(file -> file.getId().equals(fileIds.get(0).toHexString())));
+    }
+
+    private List<WebFile> readAll(String sort, int limit) {
+        List<WebFile> files = new ArrayList<>();
+        String cursor = null;
+        do {
+            FilePage page = fileService.list(parent, sort, cursor, limit);
+            assertTrue(page.getFiles().size() <= limit);
+            assertEquals(FILES, page.getCount());
+            files.addAll(page.getFiles());
+            cursor = page.getCursor();
+        } while (cursor != null);
+        return files;
+    }
+
+    private static void assertDistinct(List<WebFile> files) {
+        Set<String> ids = new HashSet<>();
+        files.forEach(file -> assertTrue(ids.add(file.getId()), "重复的文件：" + file.getId()));
+    }
+}
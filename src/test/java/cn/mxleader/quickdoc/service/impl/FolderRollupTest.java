@@ -0,0 +1,161 @@
+package cn.mxleader.quickdoc.service.impl;
+
+import cn.mxleader.quickdoc.entities.*;
+import cn.mxleader.quickdoc.security.authorization.AuthorizationChecker;
+import cn.mxleader.quickdoc.service.DeleteJobService;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件夹及磁盘的文件总数、总字节数汇总：增量维护及重新统计
+ */
+public class FolderRollupTest extends ServiceTestSupport {
+
+    private FileServiceImpl fileService;
+    private FolderServiceImpl folderService;
+    private ObjectId diskId;
+    private SysFolder a;
+    private SysFolder b;
+    private SysFolder c;
+    private ObjectId fileInB;
+
+    @BeforeEach
+    public void createTree() {
+        DeleteJobService deleteJobService = Mockito.mock(DeleteJobService.class);
+        fileService = newFileService(deleteJobService);
+        folderService = newFolderService(deleteJobService, Mockito.mock(AuthorizationChecker.class));
+
+        diskId = new ObjectId();
+        sysDiskRepository.save(new SysDisk(diskId, "测试磁盘", Collections.emptySet()));
+        ParentLink root = new ParentLink(diskId, AuthTarget.DISK, diskId);
+        // 磁盘根目录下 a、c 两个文件夹，b 位于 a 之下
+        a = folderService.save("a", root);
+        b = folderService.save("b", link(a));
+        c = folderService.save("c", root);
+
+        fileInB = store(3, b);
+        store(5, a);
+        fileService.store(new ByteArrayInputStream(new byte[7]), "root.bin", root);
+    }
+
+    private ParentLink link(SysFolder folder) {
+        return new ParentLink(folder.getId(), AuthTarget.FOLDER, diskId);
+    }
+
+    private ObjectId store(int length, SysFolder folder) {
+        return fileService.store(new ByteArrayInputStream(new byte[length]), folder.getName() + ".bin", link(folder));
+    }
+
+    private void assertFolder(SysFolder folder, long folderCount, long fileCount, long totalFiles, long totalSize) {
+        SysFolder current = sysFolderRepository.findById(folder.getId()).get();
+        assertEquals(folderCount, current.getFolderCount(), folder.getName() + " folderCount");
+        assertEquals(fileCount, current.getFileCount(), folder.getName() + " fileCount");
+        assertEquals(totalFiles, current.getTotalFiles(), folder.getName() + " totalFiles");
+        assertEquals(totalSize, current.getTotalSize(), folder.getName() + " totalSize");
+    }
+
+    private void assertDisk(long totalFiles, long totalSize) {
+        SysDisk disk = sysDiskRepository.findById(diskId).get();
+        assertEquals(totalFiles, disk.getTotalFiles());
+        assertEquals(totalSize, disk.getTotalSize());
+    }
+
+    @Test
+    @DisplayName("存储文件时累加所在文件夹、所有上级文件夹及磁盘")
+    public void storePropagatesToAncestors() {
+        assertFolder(b, 0, 1, 1, 3);
+        assertFolder(a, 1, 1, 2, 8);
+        assertFolder(c, 0, 0, 0, 0);
+        assertDisk(3, 15);
+    }
+
+    @Test
+    @DisplayName("移入回收站时扣减，还原后恢复")
+    public void trashAndRestore() {
+        fileService.delete(fileInB);
+        assertFolder(b, 0, 0, 0, 0);
+        assertFolder(a, 1, 1, 1, 5);
+        assertDisk(2, 12);
+
+        fileService.restore(fileInB);
+        assertFolder(b, 0, 1, 1, 3);
+        assertFolder(a, 1, 1, 2, 8);
+        assertDisk(3, 15);
+    }
+
+    @Test
+    @DisplayName("添加上级容器时按关联计入新容器")
+    public void addParentCountsPerLink() {
+        fileService.addParent(fileInB, link(c));
+        assertFolder(c, 0, 1, 1, 3);
+        assertFolder(b, 0, 1, 1, 3);
+        assertDisk(4, 18);
+    }
+
+    @Test
+    @DisplayName("重复添加同一上级容器只计入一次")
+    public void addParentTwiceCountsOnce() {
+        assertNotNull(fileService.addParent(fileInB, link(c)));
+        assertNotNull(fileService.addParent(fileInB, link(c)));
+        assertFolder(c, 0, 1, 1, 3);
+        assertDisk(4, 18);
+    }
+
+    @Test
+    @DisplayName("回收站中的文件添加上级容器时不计入")
+    public void addParentSkipsTrashedFile() {
+        fileService.delete(fileInB);
+        assertNull(fileService.addParent(fileInB, link(c)));
+        assertFolder(c, 0, 0, 0, 0);
+        assertDisk(2, 12);
+    }
+
+    @Test
+    @DisplayName("移动文件夹时总量自原上级链转移至新上级链，磁盘总量不变")
+    public void moveTransfersTotals() {
+        folderService.move(b.getId(), link(c));
+        assertFolder(a, 0, 1, 1, 5);
+        assertFolder(c, 1, 0, 1, 3);
+        assertFolder(b, 0, 1, 1, 3);
+        assertDisk(3, 15);
+    }
+
+    @Test
+    @DisplayName("重新统计修正偏差的汇总值")
+    public void recountRepairsDrift() {
+        fileService.addParent(fileInB, link(c));
+        fileService.delete(fileInB);
+        Update drift = new Update().set("folderCount", 9).set("fileCount", 9)
+                .set("totalFiles", 99).set("totalSize", 999);
+        mongoTemplate.updateMulti(new Query(), drift, SysFolder.class);
+        mongoTemplate.updateMulti(new Query(), drift, SysDisk.class);
+
+        folderTreeAssistant.recount();
+        assertFolder(b, 0, 0, 0, 0);
+        assertFolder(a, 1, 1, 1, 5);
+        assertFolder(c, 0, 0, 0, 0);
+        assertDisk(2, 12);
+    }
+
+    @Test
+    @DisplayName("重新统计时不计入所在容器已删除的文件")
+    public void recountSkipsRemovedContainers() {
+        // 模拟级联删除任务已删除文件夹文档、尚未解除文件关联
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(b.getId())), SysFolder.class);
+
+        folderTreeAssistant.recount();
+        assertFolder(a, 0, 1, 1, 5);
+        assertDisk(2, 12);
+    }
+}
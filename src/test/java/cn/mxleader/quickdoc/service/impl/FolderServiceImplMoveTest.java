@@ -0,0 +1,131 @@
+package cn.mxleader.quickdoc.service.impl;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.dao.SysDiskRepository;
+import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import cn.mxleader.quickdoc.dao.SysUserRepository;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeCache;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.entities.*;
+import cn.mxleader.quickdoc.security.authorization.AuthDecisionCache;
+import cn.mxleader.quickdoc.security.authorization.AuthorizationChecker;
+import cn.mxleader.quickdoc.security.exp.PreAuthException;
+import cn.mxleader.quickdoc.service.DeleteJobService;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static cn.mxleader.quickdoc.common.CommonCode.SESSION_USER;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FolderServiceImplMoveTest {
+
+    private final ObjectId diskId = ObjectId.get();
+    private final SysFolder source = folder("source", writable());
+    private final SysFolder target = folder("target", Collections.emptySet());
+
+    private SysDiskRepository sysDiskRepository;
+    private SysFolderRepository sysFolderRepository;
+    private FolderTreeAssistant folderTreeAssistant;
+    private DeleteJobService deleteJobService;
+    private FolderServiceImpl folderService;
+
+    private static Set<Authorization> writable() {
+        Set<Authorization> authorizations = new HashSet<>();
+        authorizations.add(new Authorization("alice", AuthType.PRIVATE, AuthAction.WRITE));
+        return authorizations;
+    }
+
+    private SysFolder folder(String name, Set<Authorization> authorizations) {
+        return new SysFolder(ObjectId.get(), name, new ParentLink(diskId, AuthTarget.DISK, diskId), authorizations);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        sysDiskRepository = mock(SysDiskRepository.class);
+        sysFolderRepository = mock(SysFolderRepository.class);
+        folderTreeAssistant = mock(FolderTreeAssistant.class);
+        deleteJobService = mock(DeleteJobService.class);
+        AuthDecisionCache authDecisionCache = new AuthDecisionCache(new QuickDocCacheProperties());
+        AuthorizationChecker authorizationChecker = new AuthorizationChecker(mock(GridFsAssistant.class),
+                sysDiskRepository, sysFolderRepository, mock(SysUserRepository.class), mock(MongoConverter.class),
+                authDecisionCache);
+        folderService = new FolderServiceImpl(sysDiskRepository, sysFolderRepository, folderTreeAssistant,
+                mock(FolderTreeCache.class), deleteJobService, authDecisionCache, authorizationChecker);
+
+        when(sysFolderRepository.findById(source.getId())).thenReturn(Optional.of(source));
+        when(sysFolderRepository.findById(target.getId())).thenReturn(Optional.of(target));
+        when(sysFolderRepository.findByParentAndName(any(), any())).thenReturn(Optional.empty());
+        when(folderTreeAssistant.update(eq(source.getId()), any(Update.class))).thenReturn(source);
+        when(sysDiskRepository.findById(diskId)).thenReturn(Optional.of(new SysDisk(diskId, "disk", writable())));
+
+        SysUser alice = new SysUser(ObjectId.get(), "alice", "Alice", "", "", ObjectId.get(), false, "",
+                Collections.singleton(SysUser.Authority.USER), Collections.emptySet(), Collections.emptySet(), null);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.getSession().setAttribute(SESSION_USER, alice);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @DisplayName("无权写入目标目录时拒绝移动")
+    public void rejectsMoveIntoReadOnlyFolder() {
+        ParentLink newParent = new ParentLink(target.getId(), AuthTarget.FOLDER, diskId);
+        PreAuthException exp = assertThrows(PreAuthException.class, () -> folderService.move(source.getId(), newParent));
+        assertEquals(target.getId().toString(), exp.getTargetId());
+        verify(folderTreeAssistant, never()).update(any(), any());
+    }
+
+    @Test
+    @DisplayName("有目标目录写入权限但无所在磁盘写入权限时拒绝移动")
+    public void rejectsMoveWithoutDiskWrite() {
+        target.setAuthorizations(writable());
+        when(sysDiskRepository.findById(diskId)).thenReturn(Optional.of(
+                new SysDisk(diskId, "disk", Collections.emptySet())));
+        ParentLink newParent = new ParentLink(target.getId(), AuthTarget.FOLDER, diskId);
+        assertThrows(PreAuthException.class, () -> folderService.move(source.getId(), newParent));
+        verify(folderTreeAssistant, never()).update(any(), any());
+    }
+
+    @Test
+    @DisplayName("有目标目录及所在磁盘写入权限时完成移动")
+    public void movesIntoWritableFolder() {
+        target.setAuthorizations(writable());
+        ParentLink newParent = new ParentLink(target.getId(), AuthTarget.FOLDER, diskId);
+        assertSame(source, folderService.move(source.getId(), newParent));
+        verify(folderTreeAssistant).update(eq(source.getId()), any(Update.class));
+    }
+
+    @Test
+    @DisplayName("目标目录正在删除时拒绝移入及新建目录")
+    public void rejectsWritesIntoFolderPendingDeletion() {
+        target.setAuthorizations(writable());
+        ParentLink newParent = new ParentLink(target.getId(), AuthTarget.FOLDER, diskId);
+        when(deleteJobService.isPendingDeletion(newParent)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> folderService.move(source.getId(), newParent));
+        assertThrows(IllegalStateException.class, () -> folderService.save("child", newParent));
+        verify(folderTreeAssistant, never()).update(any(), any());
+        verify(sysFolderRepository, never()).insert(any(SysFolder.class));
+    }
+}
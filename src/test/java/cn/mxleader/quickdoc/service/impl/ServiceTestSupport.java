@@ -0,0 +1,71 @@
+package cn.mxleader.quickdoc.service.impl;
+
+import cn.mxleader.quickdoc.common.zip.ZipArchiveCache;
+import cn.mxleader.quickdoc.common.zip.ZipPackager;
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.config.QuickDocTrashProperties;
+import cn.mxleader.quickdoc.dao.SysDeleteJobRepository;
+import cn.mxleader.quickdoc.dao.SysDiskRepository;
+import cn.mxleader.quickdoc.dao.SysFolderRepository;
+import cn.mxleader.quickdoc.dao.ext.FileCountCache;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeAssistant;
+import cn.mxleader.quickdoc.dao.ext.FolderTreeCache;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.security.authorization.AuthDecisionCache;
+import cn.mxleader.quickdoc.security.authorization.AuthorizationChecker;
+import cn.mxleader.quickdoc.service.DeleteJobService;
+import cn.mxleader.quickdoc.support.MongoTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+
+/**
+ * 服务层测试基类，各服务实现共享同一组数据访问组件及缓存
+ */
+public abstract class ServiceTestSupport extends MongoTestSupport {
+
+    @Autowired
+    protected SysDiskRepository sysDiskRepository;
+
+    @Autowired
+    protected SysFolderRepository sysFolderRepository;
+
+    @Autowired
+    protected SysDeleteJobRepository sysDeleteJobRepository;
+
+    protected GridFsAssistant gridFsAssistant;
+    protected FolderTreeAssistant folderTreeAssistant;
+    protected FolderTreeCache folderTreeCache;
+    protected FileCountCache fileCountCache;
+    protected AuthDecisionCache authDecisionCache;
+
+    @BeforeEach
+    public void createComponents() throws IOException {
+        QuickDocCacheProperties properties = new QuickDocCacheProperties();
+        gridFsAssistant = newAssistant();
+        folderTreeAssistant = new FolderTreeAssistant(mongoTemplate, gridFsAssistant);
+        folderTreeCache = new FolderTreeCache(sysFolderRepository, properties);
+        fileCountCache = new FileCountCache(properties);
+        authDecisionCache = new AuthDecisionCache(properties);
+    }
+
+    protected FileServiceImpl newFileService(DeleteJobService deleteJobService) {
+        return new FileServiceImpl(gridFsAssistant, sysDiskRepository, sysFolderRepository, converter,
+                fileCountCache, folderTreeAssistant, new QuickDocTrashProperties(),
+                Mockito.mock(ZipPackager.class), Mockito.mock(ZipArchiveCache.class), authDecisionCache,
+                deleteJobService);
+    }
+
+    protected FolderServiceImpl newFolderService(DeleteJobService deleteJobService,
+                                                 AuthorizationChecker authorizationChecker) {
+        return new FolderServiceImpl(sysDiskRepository, sysFolderRepository, folderTreeAssistant,
+                folderTreeCache, deleteJobService, authDecisionCache, authorizationChecker);
+    }
+
+    protected DeleteJobServiceImpl newDeleteJobService() {
+        return new DeleteJobServiceImpl(sysDeleteJobRepository, folderTreeAssistant, folderTreeCache,
+                gridFsAssistant, fileCountCache, new QuickDocTrashProperties(), mongoTemplate);
+    }
+}
@@ -0,0 +1,72 @@
+package cn.mxleader.quickdoc.support;
+
+import cn.mxleader.quickdoc.config.QuickDocCacheProperties;
+import cn.mxleader.quickdoc.config.QuickDocCompressionProperties;
+import cn.mxleader.quickdoc.config.QuickDocDownloadProperties;
+import cn.mxleader.quickdoc.dao.blob.BlobStore;
+import cn.mxleader.quickdoc.dao.blob.BlobStores;
+import cn.mxleader.quickdoc.dao.blob.CompressionPolicy;
+import cn.mxleader.quickdoc.dao.blob.GridFsBlobStore;
+import cn.mxleader.quickdoc.dao.ext.ChunkPrefetcher;
+import cn.mxleader.quickdoc.dao.ext.GridFsAssistant;
+import cn.mxleader.quickdoc.dao.ext.GridFsContentCache;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于嵌入式MongoDB的测试基类，每个测试前清空数据库
+ */
+@DataMongoTest
+@ExtendWith(SpringExtension.class)
+public abstract class MongoTestSupport {
+
+    @Autowired
+    protected MongoDbFactory dbFactory;
+
+    @Autowired
+    protected MongoConverter converter;
+
+    @Autowired
+    protected MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void dropDatabase() {
+        mongoTemplate.getDb().drop();
+    }
+
+    protected GridFsAssistant newAssistant(BlobStore... extraStores) throws IOException {
+        return newAssistant(new CompressionPolicy(new QuickDocCompressionProperties()), extraStores);
+    }
+
+    protected GridFsAssistant newAssistant(CompressionPolicy compressionPolicy,
+                                           BlobStore... extraStores) throws IOException {
+        List<BlobStore> stores = new ArrayList<>();
+        stores.add(new GridFsBlobStore(dbFactory));
+        stores.addAll(Arrays.asList(extraStores));
+        return new GridFsAssistant(dbFactory, converter, new GridFsContentCache(new QuickDocCacheProperties()),
+                new BlobStores(stores), compressionPolicy,
+                new ChunkPrefetcher(new QuickDocDownloadProperties()));
+    }
+
+    protected long countChunks() {
+        return mongoTemplate.getCollection("fs.chunks").count();
+    }
+
+    protected Document findContent(String contentHash) {
+        return mongoTemplate.getCollection("fs.contents")
+                .find(new Document("_id", contentHash))
+                .first();
+    }
+}
@@ -0,0 +1,99 @@
+package cn.mxleader.quickdoc.web.support;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DownloadHeadersTest {
+
+    private static final long UPLOAD_DATE = 1530000000000L;
+    private static final String MD5 = "0123456789abcdef0123456789abcdef";
+    private static final String ETAG = "\"" + MD5 + "\"";
+
+    private static GridFSFile file(Document metadata) {
+        return new GridFSFile(new BsonObjectId(ObjectId.get()), "报告 1.pdf", 10, 255 * 1024,
+                new Date(UPLOAD_DATE), MD5, metadata);
+    }
+
+    @Test
+    @DisplayName("响应头使用文件实际的内容类型及缓存校验信息")
+    public void responseHeaders() {
+        HttpHeaders headers = DownloadHeaders.of(file(new Document("_contentType", "application/pdf")),
+                "private, no-cache");
+
+        assertEquals("application/pdf", headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        assertEquals("attachment; filename=%E6%8A%A5%E5%91%8A+1.pdf", headers.getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals("bytes", headers.getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(ETAG, headers.getETag());
+        assertEquals(UPLOAD_DATE, headers.getLastModified());
+        assertEquals("private, no-cache", headers.getCacheControl());
+    }
+
+    @Test
+    @DisplayName("未记录内容类型时为 application/octet-stream，未配置时不设置 Cache-Control")
+    public void defaults() {
+        HttpHeaders headers = DownloadHeaders.of(file(null), "");
+
+        assertEquals(DownloadHeaders.DEFAULT_CONTENT_TYPE, headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        assertFalse(headers.containsKey(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    @DisplayName("If-None-Match 弱匹配实体标签")
+    public void ifNoneMatch() {
+        HttpHeaders request = new HttpHeaders();
+        request.setIfNoneMatch("W/" + ETAG);
+        assertTrue(DownloadHeaders.isNotModified(request, ETAG, UPLOAD_DATE));
+
+        request.setIfNoneMatch("\"other\"");
+        request.setIfModifiedSince(UPLOAD_DATE);
+        assertFalse(DownloadHeaders.isNotModified(request, ETAG, UPLOAD_DATE));
+
+        request.setIfNoneMatch("*");
+        assertTrue(DownloadHeaders.isNotModified(request, ETAG, UPLOAD_DATE));
+    }
+
+    @Test
+    @DisplayName("无 If-None-Match 时按 If-Modified-Since 比较（精确到秒）")
+    public void ifModifiedSince() {
+        HttpHeaders request = new HttpHeaders();
+        assertFalse(DownloadHeaders.isNotModified(request, ETAG, UPLOAD_DATE));
+
+        request.setIfModifiedSince(UPLOAD_DATE);
+        assertTrue(DownloadHeaders.isNotModified(request, ETAG, UPLOAD_DATE + 500));
+
+        request.setIfModifiedSince(UPLOAD_DATE - 1000);
+        assertFalse(DownloadHeaders.isNotModified(request, ETAG, UPLOAD_DATE));
+    }
+
+    @Test
+    @DisplayName("If-Range 实体标签须强匹配")
+    public void ifRangeETag() {
+        assertTrue(DownloadHeaders.matchesIfRange(null, UPLOAD_DATE, ETAG));
+        assertTrue(DownloadHeaders.matchesIfRange(ETAG, UPLOAD_DATE, ETAG));
+        assertFalse(DownloadHeaders.matchesIfRange("W/" + ETAG, UPLOAD_DATE, ETAG));
+        assertFalse(DownloadHeaders.matchesIfRange("\"other\"", UPLOAD_DATE, ETAG));
+        assertFalse(DownloadHeaders.matchesIfRange(ETAG, UPLOAD_DATE, null));
+    }
+
+    @Test
+    @DisplayName("If-Range 日期须与最后修改时间一致")
+    public void ifRangeDate() {
+        HttpHeaders dates = new HttpHeaders();
+        dates.setDate(UPLOAD_DATE);
+        String date = dates.getFirst(HttpHeaders.DATE);
+
+        assertTrue(DownloadHeaders.matchesIfRange(date, UPLOAD_DATE + 500, ETAG));
+        assertFalse(DownloadHeaders.matchesIfRange(date, UPLOAD_DATE + 1000, ETAG));
+        assertFalse(DownloadHeaders.matchesIfRange(date, -1, ETAG));
+        assertFalse(DownloadHeaders.matchesIfRange("not a date", UPLOAD_DATE, ETAG));
+    }
+}
@@ -0,0 +1,129 @@
+package cn.mxleader.quickdoc.web.support;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RangeResponseWriterTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+    private static final long LAST_MODIFIED = 1530000000000L;
+    private static final String ETAG = "\"v1\"";
+
+    private MockHttpServletResponse write(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RangeResponseWriter.write(request, response, CONTENT.length, LAST_MODIFIED, ETAG, "text/plain",
+                (start, end) -> new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, (int) start, (int) end + 1)));
+        return response;
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static MockHttpServletRequest range(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+
+    @Test
+    @DisplayName("无Range头时返回完整内容")
+    public void fullContent() throws IOException {
+        MockHttpServletResponse response = write(new MockHttpServletRequest("GET", "/file"));
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("20", response.getHeader(HttpHeaders.CONTENT_LENGTH));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("单区间返回206及Content-Range")
+    public void singleRange() throws IOException {
+        MockHttpServletResponse response = write(range("bytes=2-5"));
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 2-5/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("4", response.getHeader(HttpHeaders.CONTENT_LENGTH));
+        assertEquals("2345", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("后缀区间及超出长度的结束位置")
+    public void suffixAndOpenRanges() throws IOException {
+        assertEquals("hij", write(range("bytes=-3")).getContentAsString());
+        MockHttpServletResponse response = write(range("bytes=18-100"));
+        assertEquals("bytes 18-19/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("ij", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("起始位置超出长度返回416")
+    public void unsatisfiable() throws IOException {
+        MockHttpServletResponse response = write(range("bytes=20-30"));
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("格式错误的Range头返回416")
+    public void malformed() throws IOException {
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+                write(range("bytes=abc")).getStatus());
+    }
+
+    @Test
+    @DisplayName("多区间返回multipart/byteranges，Content-Length与实际长度一致")
+    public void multipleRanges() throws IOException {
+        MockHttpServletResponse response = write(range("bytes=0-1,10-12"));
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String boundary = response.getContentType().substring(response.getContentType().indexOf('=') + 1);
+        String body = response.getContentAsString();
+        assertEquals(String.valueOf(response.getContentAsByteArray().length),
+                response.getHeader(HttpHeaders.CONTENT_LENGTH));
+        assertTrue(body.contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n--" + boundary));
+        assertTrue(body.contains("Content-Range: bytes 10-12/20\r\n\r\nabc\r\n--" + boundary + "--"));
+    }
+
+    @Test
+    @DisplayName("If-Range实体标签匹配时返回部分内容，不匹配或弱标签时返回完整内容")
+    public void ifRangeETag() throws IOException {
+        MockHttpServletRequest request = range("bytes=0-0");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, write(request).getStatus());
+
+        request = range("bytes=0-0");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"v2\"");
+        assertEquals(HttpServletResponse.SC_OK, write(request).getStatus());
+
+        request = range("bytes=0-0");
+        request.addHeader(HttpHeaders.IF_RANGE, "W/" + ETAG);
+        assertEquals(HttpServletResponse.SC_OK, write(request).getStatus());
+    }
+
+    @Test
+    @DisplayName("If-Range日期与最后修改时间一致（精确到秒）时返回部分内容")
+    public void ifRangeDate() throws IOException {
+        MockHttpServletRequest request = range("bytes=0-0");
+        request.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED + 500));
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, write(request).getStatus());
+
+        request = range("bytes=0-0");
+        request.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED - 1000));
+        assertEquals(HttpServletResponse.SC_OK, write(request).getStatus());
+    }
+}